@@ -1,14 +1,18 @@
 package alicanteweb.pelisapp.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
 
 @Configuration
 @EnableAsync
+@EnableScheduling
 public class AsyncConfig {
 
     @Bean(name = "tmdbTaskExecutor")
@@ -32,4 +36,58 @@ public class AsyncConfig {
         executor.initialize();
         return executor;
     }
+
+    /**
+     * Ejecutor de lotes de moderación hacia Ollama, un hilo por envío simultáneo. OllamaBatchModerator
+     * no entrega un lote sin tener un envío libre, así que nunca hay trabajo esperando aquí; si aun así
+     * se rechaza, el lote falla y cada llamante aplica su fallback (el agrupador nunca envía él mismo).
+     */
+    @Bean(name = "moderationBatchExecutor")
+    public Executor moderationBatchExecutor(@Value("${app.moderation.batch.concurrency:1}") int concurrency) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(concurrency);
+        executor.setMaxPoolSize(concurrency);
+        executor.setQueueCapacity(concurrency);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setThreadNamePrefix("OllamaBatch-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Pool dedicado a BCrypt. Pocos hilos y cola corta sin CallerRuns: si está lleno el login se rechaza
+     * al momento (ver BoundedPasswordEncoder) y los hilos de Tomcat siguen libres para el resto de páginas.
+     */
+    @Bean(name = "passwordHashExecutor")
+    public Executor passwordHashExecutor(
+            @Value("${app.security.password.threads:0}") int threads,
+            @Value("${app.security.password.queue-capacity:16}") int queueCapacity) {
+        int poolSize = threads > 0 ? threads : Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setThreadNamePrefix("PasswordHash-");
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Pool para generar miniaturas. Cada tarea decodifica una imagen en memoria, así que pocos hilos
+     * y cola corta; si se llena, ImageVariantService sirve el original en lugar de esperar.
+     */
+    @Bean(name = "imageResizeExecutor")
+    public Executor imageResizeExecutor(
+            @Value("${app.images.variants.threads:2}") int threads,
+            @Value("${app.images.variants.queue-capacity:64}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setThreadNamePrefix("ImageResize-");
+        executor.initialize();
+        return executor;
+    }
 }
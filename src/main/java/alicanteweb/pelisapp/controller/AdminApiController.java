@@ -1,17 +1,42 @@
 package alicanteweb.pelisapp.controller;
 
+import alicanteweb.pelisapp.dto.BulkModerationRequest;
 import alicanteweb.pelisapp.dto.ConnectionStatus;
 import alicanteweb.pelisapp.entity.*;
 import alicanteweb.pelisapp.repository.*;
+import alicanteweb.pelisapp.security.UserAccessChangedEvent;
 import alicanteweb.pelisapp.service.*;
-
+import alicanteweb.pelisapp.service.image.ImageFetchQueue;
+import alicanteweb.pelisapp.service.image.ImageHotCache;
+import alicanteweb.pelisapp.service.image.ImagePathUpdater;
+import alicanteweb.pelisapp.service.image.ImageStoreQuotaManager;
+import alicanteweb.pelisapp.service.image.ImageVariantService;
+import alicanteweb.pelisapp.service.image.LazyImageFetcher;
+import alicanteweb.pelisapp.service.image.PosterRepairJob;
+import alicanteweb.pelisapp.service.video.StreamScheduler;
+import alicanteweb.pelisapp.service.moderation.ModerationPipeline;
+import alicanteweb.pelisapp.service.moderation.ModerationScheduler;
+import alicanteweb.pelisapp.service.moderation.ModerationVerdictCache;
+import alicanteweb.pelisapp.service.moderation.OllamaBatchModerator;
+import alicanteweb.pelisapp.service.moderation.OllamaCircuitBreaker;
+import alicanteweb.pelisapp.service.moderation.ToxicityClassifier;
+
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.Instant;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -27,18 +52,36 @@ import java.util.Optional;
 @PreAuthorize("hasAnyRole('ADMIN', 'ROLE_ADMIN', 'Administrador')")
 public class AdminApiController {
 
+    private static final int TRAINING_EXPORT_PAGE_SIZE = 1000;
+
     // Services - Solo los esenciales
     private final TMDBMovieLoaderService tmdbMovieLoaderService;
     private final ModerationService moderationService;
     private final SystemHealthService systemHealthService;
     private final AuthService authService; // Agregado para búsqueda de usuarios
-    private final MoviePosterRedownloadService moviePosterRedownloadService;
+    private final ModerationVerdictCache moderationVerdictCache;
+    private final OllamaBatchModerator ollamaBatchModerator;
+    private final OllamaCircuitBreaker ollamaCircuitBreaker;
+    private final ModerationScheduler moderationScheduler;
+    private final ToxicityClassifier toxicityClassifier;
+    private final ModerationPipeline moderationPipeline;
+    private final ModerationQueueService moderationQueueService;
+    private final ImageFetchQueue imageFetchQueue;
+    private final ImagePathUpdater imagePathUpdater;
+    private final ImageVariantService imageVariantService;
+    private final ImageHotCache imageHotCache;
+    private final LazyImageFetcher lazyImageFetcher;
+    private final ImageStoreQuotaManager imageStoreQuotaManager;
+    private final PosterRepairJob posterRepairJob;
+    private final StreamScheduler streamScheduler;
 
     // Repositories
     private final MovieRepository movieRepository;
     private final UserRepository userRepository;
     private final CommentModerationRepository commentModerationRepository;
 
+    private final ApplicationEventPublisher eventPublisher;
+
     // ============= USER MANAGEMENT =============
 
     /*
@@ -119,6 +162,7 @@ public class AdminApiController {
             User user = userOpt.get();
             user.setBanned(true);
             userRepository.save(user);
+            eventPublisher.publishEvent(UserAccessChangedEvent.changed(user.getUsername()));
 
             log.info("Usuario ID {} baneado", userId);
             return ResponseEntity.ok("Usuario baneado exitosamente");
@@ -140,6 +184,7 @@ public class AdminApiController {
             User user = userOpt.get();
             user.setBanned(false);
             userRepository.save(user);
+            eventPublisher.publishEvent(UserAccessChangedEvent.changed(user.getUsername()));
 
             log.info("Usuario ID {} desbaneado", userId);
             return ResponseEntity.ok("Usuario desbaneado exitosamente");
@@ -150,6 +195,31 @@ public class AdminApiController {
         }
     }
 
+    /**
+     * Invalida todos los tokens emitidos hasta ahora al usuario (cierre de sesión en todos los dispositivos).
+     */
+    @PostMapping("/users/{userId}/logout")
+    public ResponseEntity<String> forceLogout(@PathVariable Long userId) {
+        try {
+            Optional<User> userOpt = userRepository.findById(userId);
+            if (userOpt.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+
+            User user = userOpt.get();
+            user.setTokensValidAfter(Instant.now());
+            userRepository.save(user);
+            eventPublisher.publishEvent(UserAccessChangedEvent.changed(user.getUsername()));
+
+            log.info("Sesiones del usuario ID {} cerradas", userId);
+            return ResponseEntity.ok("Sesiones cerradas exitosamente");
+
+        } catch (Exception e) {
+            log.error("Error cerrando sesiones del usuario {}: {}", userId, e.getMessage());
+            return ResponseEntity.badRequest().body("Error: " + e.getMessage());
+        }
+    }
+
     @PostMapping("/users/{userId}/delete")
     public ResponseEntity<String> deleteUser(@PathVariable Long userId) {
         try {
@@ -169,6 +239,7 @@ public class AdminApiController {
             }
 
             userRepository.delete(user);
+            eventPublisher.publishEvent(UserAccessChangedEvent.deleted(user.getUsername()));
 
             log.info("Usuario ID {} eliminado permanentemente", userId);
             return ResponseEntity.ok("Usuario eliminado exitosamente");
@@ -303,38 +374,19 @@ public class AdminApiController {
         }
     }
 
-    @PostMapping("/images/reload")
-    public ResponseEntity<Map<String, Object>> reloadAllMoviePosters() {
+    /**
+     * Reparación de carátulas que faltan o están vacías: continúa desde el checkpoint
+     * ({@code restart=true} empieza desde el principio).
+     */
+    @PostMapping({"/images/reload", "/images/posters/repair"})
+    public ResponseEntity<Map<String, Object>> reloadAllMoviePosters(@RequestParam(defaultValue = "false") boolean restart) {
         try {
-            List<Movie> movies = movieRepository.findAll();
-            int reloaded = 0;
-            int errors = 0;
-
-            for (Movie movie : movies) {
-                try {
-                    if (movie.getTmdbId() != null && (movie.getPosterLocalPath() == null || movie.getPosterLocalPath().isBlank())) {
-                        boolean ok = moviePosterRedownloadService.redownloadMoviePoster(movie);
-                        if (ok) {
-                            reloaded++;
-                        } else {
-                            errors++;
-                        }
-                    }
-                } catch (Exception e) {
-                    log.error("Error recargando poster para película {}: {}", movie.getId(), e.getMessage());
-                    errors++;
-                }
-            }
-
-            Map<String, Object> result = new HashMap<>();
+            Map<String, Object> result = new HashMap<>(posterRepairJob.start(restart));
             result.put("success", true);
-            result.put("total_movies", movies.size());
-            result.put("reloaded", reloaded);
-            result.put("errors", errors);
-
+            result.put("message", "Reparación de carátulas en marcha; consulta el progreso en /api/admin/images/posters/repair");
             return ResponseEntity.ok(result);
         } catch (Exception e) {
-            log.error("Error recargando posters: {}", e.getMessage());
+            log.error("Error iniciando la reparación de carátulas: {}", e.getMessage());
             Map<String, Object> error = new HashMap<>();
             error.put("success", false);
             error.put("error", e.getMessage());
@@ -342,6 +394,34 @@ public class AdminApiController {
         }
     }
 
+    @GetMapping("/images/posters/repair")
+    public ResponseEntity<Map<String, Object>> getPosterRepairStatus() {
+        return ResponseEntity.ok(posterRepairJob.getStatus());
+    }
+
+    @PostMapping("/images/posters/repair/stop")
+    public ResponseEntity<Map<String, Object>> stopPosterRepair() {
+        return ResponseEntity.ok(posterRepairJob.stop());
+    }
+
+    @GetMapping("/images/stats")
+    public ResponseEntity<Map<String, Object>> getImageFetchStats() {
+        Map<String, Object> stats = new HashMap<>(imageFetchQueue.getStats());
+        stats.put("pending_path_updates", imagePathUpdater.getPendingUpdates());
+        stats.put("applied_path_updates", imagePathUpdater.getAppliedUpdates());
+        stats.put("variants", imageVariantService.getStats());
+        stats.put("hot", imageHotCache.getStats());
+        stats.put("skipped_downloads", imagePathUpdater.getSkippedDownloads());
+        stats.put("fetch_on_miss", lazyImageFetcher.getStats());
+        stats.put("quota", imageStoreQuotaManager.getStats());
+        return ResponseEntity.ok(stats);
+    }
+
+    @GetMapping("/video/stats")
+    public ResponseEntity<Map<String, Object>> getVideoStreamStats() {
+        return ResponseEntity.ok(streamScheduler.getStats());
+    }
+
     // ============= CAST MANAGEMENT =============
 
     @GetMapping("/cast/movie/{movieId}")
@@ -396,28 +476,85 @@ public class AdminApiController {
     public ResponseEntity<Map<String, Object>> getModerationStats() {
         Map<String, Object> stats = new HashMap<>();
 
-        stats.put("total_moderations", commentModerationRepository.count());
-        stats.put("pending", commentModerationRepository.countByStatus(CommentModeration.ModerationStatus.PENDING));
-        stats.put("approved", commentModerationRepository.countByStatus(CommentModeration.ModerationStatus.APPROVED));
-        stats.put("rejected", commentModerationRepository.countByStatus(CommentModeration.ModerationStatus.REJECTED));
-        stats.put("manual_review", commentModerationRepository.countByStatus(CommentModeration.ModerationStatus.MANUAL_REVIEW));
+        // Totales de la tabla de contadores: sin COUNT(*) sobre comment_moderation
+        Map<CommentModeration.ModerationStatus, Long> counts = moderationQueueService.getCounts();
+        stats.put("total_moderations", counts.values().stream().mapToLong(Long::longValue).sum());
+        stats.put("pending", counts.get(CommentModeration.ModerationStatus.PENDING));
+        stats.put("approved", counts.get(CommentModeration.ModerationStatus.APPROVED));
+        stats.put("rejected", counts.get(CommentModeration.ModerationStatus.REJECTED));
+        stats.put("manual_review", counts.get(CommentModeration.ModerationStatus.MANUAL_REVIEW));
         stats.put("ollama_available", moderationService.isOllamaAvailable());
+        stats.put("verdict_cache", moderationVerdictCache.getStats());
+        stats.put("ollama_batching", ollamaBatchModerator.getStats());
+        stats.put("ollama_circuit", ollamaCircuitBreaker.getStats());
+        stats.put("scheduler", moderationScheduler.getStats());
+        stats.put("classifier", toxicityClassifier.getStats());
+        stats.put("pipeline", moderationPipeline.getStats());
 
         return ResponseEntity.ok(stats);
     }
 
-    @GetMapping("/moderation/pending")
-    public ResponseEntity<List<CommentModeration>> getPendingModerations() {
+    /**
+     * Cola de moderación paginada por clave. Para la página siguiente se pasa el {@code nextCursor} recibido.
+     */
+    @GetMapping("/moderation/queue")
+    public ResponseEntity<Map<String, Object>> getModerationQueue(
+            @RequestParam(defaultValue = "MANUAL_REVIEW") CommentModeration.ModerationStatus status,
+            @RequestParam(required = false) Double minScore,
+            @RequestParam(required = false) Double maxScore,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        try {
+            ModerationQueueService.QueuePage page =
+                    moderationQueueService.findQueue(status, minScore, maxScore, from, to, cursor, size);
 
-        // Simplificado - retornar lista vacía por ahora
-        return ResponseEntity.ok(List.of());
+            Map<String, Object> result = new HashMap<>();
+            result.put("items", page.items());
+            result.put("nextCursor", page.nextCursor());
+            result.put("hasMore", page.hasMore());
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+
+    /**
+     * Aprueba o rechaza hasta {@value ModerationQueueService#MAX_BULK_IDS} moderaciones en una sola transacción.
+     */
+    @PostMapping("/moderation/bulk")
+    public ResponseEntity<Map<String, Object>> bulkModerate(@Valid @RequestBody BulkModerationRequest request,
+                                                            Authentication auth) {
+        CommentModeration.ModerationStatus target = "approve".equals(request.getAction())
+                ? CommentModeration.ModerationStatus.APPROVED
+                : CommentModeration.ModerationStatus.REJECTED;
+        try {
+            int updated = moderationQueueService.decideAll(request.getIds(), target, currentUser(auth));
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("success", true);
+            result.put("requested", request.getIds().size());
+            result.put("updated", updated);
+            result.put("status", target.name());
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> error = new HashMap<>();
+            error.put("success", false);
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
     }
 
     @PostMapping("/moderation/{moderationId}/approve")
-    public ResponseEntity<String> approveModerationManually(@PathVariable Long moderationId) {
+    public ResponseEntity<String> approveModerationManually(@PathVariable Long moderationId, Authentication auth) {
         try {
-            // Simplificado por ahora
-            log.info("Aprobación manual de moderación {} solicitada", moderationId);
+            int updated = moderationQueueService.decideAll(
+                    List.of(moderationId), CommentModeration.ModerationStatus.APPROVED, currentUser(auth));
+            log.info("Aprobación manual de moderación {} ({} cambios)", moderationId, updated);
             return ResponseEntity.ok("Moderación aprobada exitosamente");
         } catch (Exception e) {
             log.error("Error aprobando moderación {}: {}", moderationId, e.getMessage());
@@ -426,10 +563,11 @@ public class AdminApiController {
     }
 
     @PostMapping("/moderation/{moderationId}/reject")
-    public ResponseEntity<String> rejectModerationManually(@PathVariable Long moderationId) {
+    public ResponseEntity<String> rejectModerationManually(@PathVariable Long moderationId, Authentication auth) {
         try {
-            // Simplificado por ahora
-            log.info("Rechazo manual de moderación {} solicitado", moderationId);
+            int updated = moderationQueueService.decideAll(
+                    List.of(moderationId), CommentModeration.ModerationStatus.REJECTED, currentUser(auth));
+            log.info("Rechazo manual de moderación {} ({} cambios)", moderationId, updated);
             return ResponseEntity.ok("Moderación rechazada exitosamente");
 
         } catch (Exception e) {
@@ -438,6 +576,42 @@ public class AdminApiController {
         }
     }
 
+    /**
+     * Exportación TSV (etiqueta 1 = rechazada, 0 = aprobada) para entrenar offline el clasificador local.
+     * Se escribe en la respuesta página a página, sin montar la exportación completa en memoria.
+     */
+    @GetMapping(value = "/moderation/training-export", produces = "text/tab-separated-values")
+    public void exportModerationTrainingData(HttpServletResponse response) throws IOException {
+        response.setContentType("text/tab-separated-values; charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"moderation-training.tsv\"");
+        PrintWriter writer = response.getWriter();
+        long afterId = 0;
+        int exported = 0;
+        List<Object[]> page;
+        do {
+            page = commentModerationRepository.findTrainingSamplesAfter(afterId,
+                    PageRequest.of(0, TRAINING_EXPORT_PAGE_SIZE));
+            for (Object[] row : page) {
+                afterId = (Long) row[0];
+                boolean rejected = row[1] == CommentModeration.ModerationStatus.REJECTED;
+                String text = ((String) row[2]).replace('\t', ' ').replace('\r', ' ').replace('\n', ' ');
+                writer.append(rejected ? '1' : '0').append('\t').append(text).append('\n');
+            }
+            exported += page.size();
+            writer.flush();
+        } while (page.size() == TRAINING_EXPORT_PAGE_SIZE);
+        log.info("📤 Exportados {} ejemplos de entrenamiento de moderación", exported);
+    }
+
+    /**
+     * Recarga el modelo del clasificador local tras reentrenarlo.
+     */
+    @PostMapping("/moderation/classifier/reload")
+    public ResponseEntity<Map<String, Object>> reloadToxicityClassifier() {
+        toxicityClassifier.loadModel();
+        return ResponseEntity.ok(toxicityClassifier.getStats());
+    }
+
     // ============= DEBUG =============
 
     @GetMapping("/debug/movie/{id}")
@@ -548,4 +722,8 @@ public class AdminApiController {
             return ResponseEntity.status(500).body(errorStatus);
         }
     }
+
+    private User currentUser(Authentication auth) {
+        return auth == null ? null : userRepository.findByUsername(auth.getName()).orElse(null);
+    }
 }
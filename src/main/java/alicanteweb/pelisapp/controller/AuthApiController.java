@@ -3,8 +3,10 @@ package alicanteweb.pelisapp.controller;
 import alicanteweb.pelisapp.dto.LoginRequest;
 import alicanteweb.pelisapp.dto.LoginResponse;
 import alicanteweb.pelisapp.dto.RegisterRequest;
+import alicanteweb.pelisapp.security.ClientIpResolver;
 import alicanteweb.pelisapp.service.AuthService;
 import alicanteweb.pelisapp.service.EmailConfirmationService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
@@ -18,6 +20,7 @@ import java.util.Map;
 public class AuthApiController {
     private final AuthService authService;
     private final EmailConfirmationService emailConfirmationService;
+    private final ClientIpResolver clientIpResolver;
 
     @PostMapping("/register")
     public ResponseEntity<LoginResponse> register(@Valid @RequestBody RegisterRequest req) {
@@ -26,8 +29,8 @@ public class AuthApiController {
     }
 
     @PostMapping("/login")
-    public ResponseEntity<LoginResponse> login(@Valid @RequestBody LoginRequest req) {
-        LoginResponse resp = authService.login(req);
+    public ResponseEntity<LoginResponse> login(@Valid @RequestBody LoginRequest req, HttpServletRequest request) {
+        LoginResponse resp = authService.login(req, clientIpResolver.resolve(request));
         return ResponseEntity.ok(resp);
     }
 
@@ -38,6 +41,15 @@ public class AuthApiController {
         return ResponseEntity.ok(resp);
     }
 
+    @PostMapping("/logout")
+    public ResponseEntity<Map<String, Object>> logout(@RequestHeader(value = "Authorization", required = false) String authorization,
+                                                      @RequestBody(required = false) Map<String, String> req) {
+        String accessToken = authorization != null && authorization.startsWith("Bearer ") ? authorization.substring(7) : null;
+        String refreshToken = req != null ? req.get("refreshToken") : null;
+        authService.logout(accessToken, refreshToken);
+        return ResponseEntity.ok(Map.of("success", true));
+    }
+
     @GetMapping("/confirm-email")
     public ResponseEntity<Map<String, Object>> confirmEmail(@RequestParam("token") String token) {
         var result = emailConfirmationService.confirmAccount(token);
@@ -1,34 +1,166 @@
 package alicanteweb.pelisapp.controller;
 
+import alicanteweb.pelisapp.service.image.ImageResponseWriter;
+import alicanteweb.pelisapp.service.image.ImageResponseWriter.Caching;
+import alicanteweb.pelisapp.service.image.ImageStoreQuotaManager;
+import alicanteweb.pelisapp.service.image.ImageVariantService;
+import alicanteweb.pelisapp.service.image.LazyImageFetcher;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 
-import java.net.MalformedURLException;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Optional;
 
+/**
+ * Sirve las imágenes locales. Los blobs con hash en el nombre se cachean como inmutables y las
+ * peticiones condicionales se contestan con 304 sin leer el disco (ver {@link ImageResponseWriter}).
+ * Las rutas {@code /images/tmdb/...} se descargan de TMDB en segundo plano la primera vez que se piden
+ * (ver {@link LazyImageFetcher}), igual que los blobs que {@link ImageStoreQuotaManager} haya borrado;
+ * mientras tanto se redirige al original remoto, sin bloquear el hilo de la petición.
+ */
 @Controller
 public class ImageController {
 
     private final Path storagePath;
+    private final ImageVariantService imageVariantService;
+    private final ImageResponseWriter imageResponseWriter;
+    private final LazyImageFetcher lazyImageFetcher;
+    private final ImageStoreQuotaManager imageStoreQuotaManager;
 
-    public ImageController(@Value("${app.images.storage-path:./data/images}") String storagePath) {
+    public ImageController(@Value("${app.images.storage-path:./data/images}") String storagePath,
+                           ImageVariantService imageVariantService,
+                           ImageResponseWriter imageResponseWriter,
+                           LazyImageFetcher lazyImageFetcher,
+                           ImageStoreQuotaManager imageStoreQuotaManager) {
         this.storagePath = Path.of(storagePath).toAbsolutePath().normalize();
+        this.imageVariantService = imageVariantService;
+        this.imageResponseWriter = imageResponseWriter;
+        this.lazyImageFetcher = lazyImageFetcher;
+        this.imageStoreQuotaManager = imageStoreQuotaManager;
     }
 
-    @GetMapping("/images/{fileName:.+}")
-    public ResponseEntity<Resource> serveImage(@PathVariable String fileName) throws MalformedURLException {
-        Path file = storagePath.resolve(fileName).normalize();
-        if (!file.startsWith(storagePath) || !file.toFile().exists()) {
-            return ResponseEntity.notFound().build();
+    /**
+     * Miniatura de una imagen local: {@code /images/w185/posters/ab/abcd.jpg}.
+     * Si no se puede generar a tiempo se sirve el original con caché corta.
+     */
+    @GetMapping("/images/{width:w\\d+}/**")
+    public void serveVariant(@PathVariable String width, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        ImageVariantService.Width variantWidth = ImageVariantService.Width.parse(width).orElse(null);
+        String relative = relativePath(request, "/images/" + width + "/");
+        if (variantWidth == null || relative == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
         }
-        UrlResource resource = new UrlResource(file.toUri());
-        return ResponseEntity.ok().contentType(MediaType.IMAGE_JPEG).header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + fileName + "\"").body(resource);
+        if (relative.startsWith(LazyImageFetcher.LAZY_FOLDER + "/")) {
+            String[] parts = relative.split("/");
+            if (parts.length != 3 || !lazyImageFetcher.accepts(parts[1], parts[2])) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            Optional<String> blob = lazyImageFetcher.resolve(parts[1], parts[2]);
+            if (blob.isEmpty()) {
+                response.sendRedirect(lazyImageFetcher.remoteUrl(parts[2], variantWidth.key()));
+                return;
+            }
+            relative = blob.get();
+        }
+
+        String hash = ImageResponseWriter.contentHashOf(Path.of(relative).getFileName().toString());
+        String etag = hash != null ? hash + "-" + variantWidth.key() : null;
+        if (etag != null && imageResponseWriter.notModified(request, response, etag, Caching.IMMUTABLE)) {
+            return;
+        }
+
+        Optional<Path> variant = imageVariantService.resolve(relative, variantWidth);
+        if (variant.isEmpty() && hash != null && !Files.isRegularFile(storagePath.resolve(relative).normalize())) {
+            // Original borrado por la cuota: se recupera en segundo plano y, mientras, se sirve el remoto
+            Optional<String> remote = lazyImageFetcher.refetch(relative);
+            if (remote.isPresent()) {
+                response.sendRedirect(remote.get());
+                return;
+            }
+        }
+        if (variant.isPresent()) {
+            imageResponseWriter.write(request, response, variant.get(), etag,
+                    etag != null ? Caching.IMMUTABLE : Caching.REVALIDATE);
+            imageStoreQuotaManager.touch(relative);
+            return;
+        }
+        Path original = storagePath.resolve(relative).normalize();
+        if (!original.startsWith(storagePath) || !Files.isRegularFile(original)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        imageResponseWriter.write(request, response, original, null, Caching.SHORT);
+        imageStoreQuotaManager.touch(relative);
+    }
+
+    /**
+     * Imagen de TMDB bajo demanda: {@code /images/tmdb/posters/abc.jpg}. Se sirve el blob local; si
+     * falta se lanza su descarga y se redirige al original remoto.
+     */
+    @GetMapping("/images/" + LazyImageFetcher.LAZY_FOLDER + "/{subfolder}/{file:.+}")
+    public void serveLazy(@PathVariable String subfolder, @PathVariable String file,
+                          HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!lazyImageFetcher.accepts(subfolder, file)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        Optional<String> blob = lazyImageFetcher.resolve(subfolder, file);
+        Path path = blob.map(relative -> storagePath.resolve(relative).normalize()).orElse(null);
+        if (path == null || !path.startsWith(storagePath) || !Files.isRegularFile(path)) {
+            response.sendRedirect(lazyImageFetcher.remoteUrl(file, null));
+            return;
+        }
+        // Las rutas de TMDB no cambian de contenido: el blob se cachea como inmutable
+        String hash = ImageResponseWriter.contentHashOf(path.getFileName().toString());
+        imageResponseWriter.write(request, response, path, hash, hash != null ? Caching.IMMUTABLE : Caching.REVALIDATE);
+        imageStoreQuotaManager.touch(blob.get());
+    }
+
+    @GetMapping("/images/**")
+    public void serveImage(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String relative = relativePath(request, "/images/");
+        Path file = relative != null ? storagePath.resolve(relative).normalize() : null;
+        if (file == null || !file.startsWith(storagePath) || file.equals(storagePath)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        // Blob por contenido: el ETag sale del nombre y la revalidación no necesita el archivo
+        String hash = ImageResponseWriter.contentHashOf(file.getFileName().toString());
+        if (hash != null && imageResponseWriter.notModified(request, response, hash, Caching.IMMUTABLE)) {
+            return;
+        }
+        if (!Files.isRegularFile(file)) {
+            Optional<String> remote = hash != null ? lazyImageFetcher.refetch(relative) : Optional.empty();
+            if (remote.isPresent()) {
+                response.sendRedirect(remote.get());
+            } else {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            }
+            return;
+        }
+        imageResponseWriter.write(request, response, file, hash, hash != null ? Caching.IMMUTABLE : Caching.REVALIDATE);
+        imageStoreQuotaManager.touch(relative);
+    }
+
+    private static String relativePath(HttpServletRequest request, String prefix) {
+        String fullPrefix = request.getContextPath() + prefix;
+        String uri = request.getRequestURI();
+        if (!uri.startsWith(fullPrefix)) {
+            return null;
+        }
+        String relative = URLDecoder.decode(uri.substring(fullPrefix.length()), StandardCharsets.UTF_8);
+        return relative.isBlank() ? null : relative;
     }
 }
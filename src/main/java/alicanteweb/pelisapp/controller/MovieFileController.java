@@ -1,37 +1,47 @@
 package alicanteweb.pelisapp.controller;
 
+import alicanteweb.pelisapp.security.ClientIpResolver;
+import alicanteweb.pelisapp.service.video.StreamLimitException;
+import alicanteweb.pelisapp.service.video.StreamScheduler;
+import alicanteweb.pelisapp.service.video.VideoRangeWriter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
-import org.springframework.web.bind.annotation.RequestHeader;
-import org.springframework.web.bind.annotation.RequestMapping;
 
 import java.io.IOException;
-import java.net.MalformedURLException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 
 /**
  * Controlador para servir archivos de películas con soporte de streaming
+ * (rangos, multipart/byteranges e If-Range en {@link VideoRangeWriter}). Todas las conexiones
+ * pasan por {@link StreamScheduler}: límite de conexiones por usuario y en total, y ancho de banda
+ * regulado (la reproducción va por delante de las descargas).
  */
 @Controller
-@RequestMapping("/movies")
 @Slf4j
 public class MovieFileController {
 
     private final Path moviesStoragePath;
-
-    public MovieFileController(@Value("${app.movies.storage-path:./data/movies}") String storagePath) {
+    private final VideoRangeWriter videoRangeWriter;
+    private final StreamScheduler streamScheduler;
+    private final ClientIpResolver clientIpResolver;
+
+    public MovieFileController(@Value("${app.movies.storage-path:./data/movies}") String storagePath,
+                               VideoRangeWriter videoRangeWriter,
+                               StreamScheduler streamScheduler,
+                               ClientIpResolver clientIpResolver) {
         this.moviesStoragePath = Paths.get(storagePath).toAbsolutePath().normalize();
+        this.videoRangeWriter = videoRangeWriter;
+        this.streamScheduler = streamScheduler;
+        this.clientIpResolver = clientIpResolver;
         log.info("🎬 Configurado directorio de películas: {}", this.moviesStoragePath);
 
         // Crear directorio si no existe
@@ -43,145 +53,79 @@ public class MovieFileController {
         }
     }
 
-    @GetMapping("/download/{movieId}/{fileName:.+}")
-    public ResponseEntity<Resource> downloadMovie(
-            @PathVariable Long movieId,
-            @PathVariable String fileName,
-            @RequestHeader(value = "Range", required = false) String rangeHeader) {
+    @GetMapping("/movies/download/{movieId}/{fileName:.+}")
+    public void downloadMovie(@PathVariable Long movieId, @PathVariable String fileName,
+                              HttpServletRequest request, HttpServletResponse response) throws IOException {
+        log.info("🎬 Solicitada descarga: Movie ID={}, File={}, Range={}", movieId, fileName, request.getHeader("Range"));
+        serveMovieFile(movieId.toString() + "/" + fileName, StreamScheduler.Kind.BULK, request, response);
+    }
 
-        try {
-            log.info("🎬 Solicitada descarga: Movie ID={}, File={}, Range={}", movieId, fileName, rangeHeader);
-
-            // Construir ruta del archivo
-            Path moviePath = moviesStoragePath.resolve(movieId.toString()).resolve(fileName).normalize();
-
-            // Verificar que el archivo esté dentro del directorio permitido
-            if (!moviePath.startsWith(moviesStoragePath)) {
-                log.warn("⚠️ Intento de acceso fuera del directorio permitido: {}", moviePath);
-                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
-            }
-
-            // Verificar que el archivo existe
-            if (!Files.exists(moviePath)) {
-                log.warn("❌ Archivo no encontrado: {}", moviePath);
-                return ResponseEntity.notFound().build();
-            }
-
-            // Crear recurso
-            Resource resource = new UrlResource(moviePath.toUri());
-            if (!resource.exists() || !resource.isReadable()) {
-                log.error("❌ Archivo no legible: {}", moviePath);
-                return ResponseEntity.notFound().build();
-            }
-
-            // Determinar tipo de contenido
-            String contentType = determineContentType(fileName);
-            long fileSize = Files.size(moviePath);
-
-            // Si es una solicitud con Range (streaming), manejar parcial
-            if (rangeHeader != null && rangeHeader.startsWith("bytes=")) {
-                return handleRangeRequest(resource, rangeHeader, fileSize, contentType, fileName);
-            }
-
-            // Respuesta completa
-            log.info("✅ Sirviendo archivo completo: {} ({} bytes)", fileName, fileSize);
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .contentLength(fileSize)
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
-                    .header(HttpHeaders.ACCEPT_RANGES, "bytes")
-                    .body(resource);
-
-        } catch (Exception e) {
-            log.error("❌ Error sirviendo archivo de película: {}", e.getMessage(), e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+    @GetMapping("/movies/stream/{movieId}/{fileName:.+}")
+    public void streamMovie(@PathVariable Long movieId, @PathVariable String fileName,
+                            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        log.debug("🎬 Solicitado streaming: Movie ID={}, File={}, Range={}", movieId, fileName, request.getHeader("Range"));
+        serveMovieFile(movieId.toString() + "/" + fileName, StreamScheduler.Kind.PLAYBACK, request, response);
+    }
+
+    /**
+     * Acceso directo a los archivos del directorio de películas (antes un recurso estático sin límites),
+     * con los mismos límites que el streaming.
+     */
+    @GetMapping("/video/**")
+    public void serveVideo(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String prefix = request.getContextPath() + "/video/";
+        String uri = request.getRequestURI();
+        String relative = uri.startsWith(prefix)
+                ? URLDecoder.decode(uri.substring(prefix.length()), StandardCharsets.UTF_8) : "";
+        if (relative.isBlank()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
         }
+        serveMovieFile(relative, StreamScheduler.Kind.PLAYBACK, request, response);
     }
 
-    @GetMapping("/stream/{movieId}/{fileName:.+}")
-    public ResponseEntity<Resource> streamMovie(
-            @PathVariable Long movieId,
-            @PathVariable String fileName,
-            @RequestHeader(value = "Range", required = false) String rangeHeader) {
+    /**
+     * Sirve el archivo o los rangos pedidos; los bytes van del archivo al socket sin pasar por el heap.
+     */
+    private void serveMovieFile(String relativePath, StreamScheduler.Kind kind,
+                                HttpServletRequest request, HttpServletResponse response) throws IOException {
+        // Construir ruta del archivo
+        Path moviePath = moviesStoragePath.resolve(relativePath).normalize();
+
+        // Verificar que el archivo esté dentro del directorio permitido
+        if (!moviePath.startsWith(moviesStoragePath)) {
+            log.warn("⚠️ Intento de acceso fuera del directorio permitido: {}", moviePath);
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+
+        // Verificar que el archivo existe y se puede leer
+        if (!Files.isRegularFile(moviePath) || !Files.isReadable(moviePath)) {
+            log.warn("❌ Archivo no encontrado: {}", moviePath);
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
 
-        try {
-            log.info("🎬 Solicitado streaming: Movie ID={}, File={}, Range={}", movieId, fileName, rangeHeader);
-
-            // Construir ruta del archivo
-            Path moviePath = moviesStoragePath.resolve(movieId.toString()).resolve(fileName).normalize();
-
-            // Verificaciones de seguridad
-            if (!moviePath.startsWith(moviesStoragePath)) {
-                log.warn("⚠️ Intento de acceso fuera del directorio permitido: {}", moviePath);
-                return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
-            }
-
-            if (!Files.exists(moviePath)) {
-                log.warn("❌ Archivo no encontrado: {}", moviePath);
-                return ResponseEntity.notFound().build();
-            }
-
-            Resource resource = new UrlResource(moviePath.toUri());
-            if (!resource.exists() || !resource.isReadable()) {
-                log.error("❌ Archivo no legible: {}", moviePath);
-                return ResponseEntity.notFound().build();
-            }
-
-            String contentType = determineContentType(fileName);
-            long fileSize = Files.size(moviePath);
-
-            // Para streaming, siempre manejar rangos
-            if (rangeHeader != null && rangeHeader.startsWith("bytes=")) {
-                return handleRangeRequest(resource, rangeHeader, fileSize, contentType, fileName);
-            }
-
-            // Sin range header, devolver respuesta básica para streaming
-            log.info("✅ Iniciando streaming: {} ({} bytes)", fileName, fileSize);
-            return ResponseEntity.ok()
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .contentLength(fileSize)
-                    .header(HttpHeaders.ACCEPT_RANGES, "bytes")
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + fileName + "\"")
-                    .body(resource);
-
-        } catch (Exception e) {
-            log.error("❌ Error en streaming de película: {}", e.getMessage(), e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        String fileName = moviePath.getFileName().toString();
+        String disposition = kind == StreamScheduler.Kind.BULK ? "attachment" : "inline";
+        try (StreamScheduler.Stream stream = streamScheduler.open(streamOwner(request), kind)) {
+            videoRangeWriter.write(request, response, moviePath, determineContentType(fileName), disposition, stream);
+        } catch (StreamLimitException e) {
+            response.setHeader("Retry-After", "5");
+            response.sendError(e.isPerUser() ? 429 : HttpServletResponse.SC_SERVICE_UNAVAILABLE, e.getMessage());
+        } catch (IOException e) {
+            // Lo normal es que el reproductor corte la conexión al buscar otra posición
+            log.debug("Conexión cerrada sirviendo {}: {}", fileName, e.getMessage());
         }
     }
 
-    private ResponseEntity<Resource> handleRangeRequest(Resource resource, String rangeHeader,
-                                                       long fileSize, String contentType, String fileName) {
-        try {
-            // Parsear header Range: bytes=start-end
-            String[] ranges = rangeHeader.replace("bytes=", "").split("-");
-            long start = Long.parseLong(ranges[0]);
-            long end = ranges.length > 1 && !ranges[1].isEmpty() ?
-                      Long.parseLong(ranges[1]) : fileSize - 1;
-
-            // Validar rangos
-            if (start >= fileSize || end >= fileSize || start > end) {
-                return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
-                        .header(HttpHeaders.CONTENT_RANGE, "bytes */" + fileSize)
-                        .build();
-            }
-
-            long contentLength = end - start + 1;
-
-            log.info("📊 Sirviendo rango: bytes {}-{}/{} ({} bytes)", start, end, fileSize, contentLength);
-
-            return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
-                    .contentType(MediaType.parseMediaType(contentType))
-                    .contentLength(contentLength)
-                    .header(HttpHeaders.CONTENT_RANGE, String.format("bytes %d-%d/%d", start, end, fileSize))
-                    .header(HttpHeaders.ACCEPT_RANGES, "bytes")
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + fileName + "\"")
-                    .body(resource);
-
-        } catch (Exception e) {
-            log.error("❌ Error procesando solicitud de rango: {}", e.getMessage());
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
-        }
+    /**
+     * Usuario autenticado o, si es anónimo, su IP (las cabeceras del proxy solo si es de confianza).
+     */
+    private String streamOwner(HttpServletRequest request) {
+        return request.getUserPrincipal() != null
+                ? "user:" + request.getUserPrincipal().getName()
+                : "ip:" + clientIpResolver.resolve(request);
     }
 
     private String determineContentType(String fileName) {
@@ -1,23 +1,80 @@
 package alicanteweb.pelisapp.controller;
 
 import alicanteweb.pelisapp.dto.ReviewCreateRequest;
+import alicanteweb.pelisapp.dto.ReviewUpdateRequest;
+import alicanteweb.pelisapp.entity.CommentModeration;
 import alicanteweb.pelisapp.entity.Review;
+import alicanteweb.pelisapp.entity.User;
+import alicanteweb.pelisapp.repository.UserRepository;
 import alicanteweb.pelisapp.service.ReviewService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/reviews")
 @RequiredArgsConstructor
 public class ReviewApiController {
     private final ReviewService reviewService;
+    private final UserRepository userRepository;
 
+    /**
+     * Registra la reseña y responde sin esperar a la moderación (202 mientras siga PENDING).
+     */
     @PostMapping("")
-    public ResponseEntity<Review> createReview(@Valid @RequestBody ReviewCreateRequest req) {
+    public ResponseEntity<Map<String, Object>> createReview(@Valid @RequestBody ReviewCreateRequest req) {
         Review review = reviewService.createReview(req.getUserId(), req.getMovieId(), req.getText(), req.getStars());
-        return ResponseEntity.ok(review);
+        CommentModeration.ModerationStatus status = review.getModeration().getStatus();
+        HttpStatus httpStatus = status == CommentModeration.ModerationStatus.PENDING ? HttpStatus.ACCEPTED : HttpStatus.OK;
+        return ResponseEntity.status(httpStatus).body(Map.of(
+                "id", review.getId(),
+                "moderationStatus", status.name()
+        ));
+    }
+
+    /**
+     * Edita una reseña propia del usuario autenticado; vuelve a moderarse con prioridad sobre las nuevas.
+     */
+    @PutMapping("/{id}")
+    public ResponseEntity<Map<String, Object>> editReview(@PathVariable("id") Long reviewId,
+                                                          @Valid @RequestBody ReviewUpdateRequest req,
+                                                          @AuthenticationPrincipal UserDetails userDetails) {
+        Review review = reviewService.editReview(currentUserId(userDetails), reviewId, req.getText(), req.getStars());
+        CommentModeration.ModerationStatus status = review.getModeration().getStatus();
+        HttpStatus httpStatus = status == CommentModeration.ModerationStatus.PENDING ? HttpStatus.ACCEPTED : HttpStatus.OK;
+        return ResponseEntity.status(httpStatus).body(Map.of(
+                "id", reviewId,
+                "moderationStatus", status.name()
+        ));
+    }
+
+    /**
+     * Apela la decisión de moderación de una reseña propia del usuario autenticado.
+     */
+    @PostMapping("/{id}/appeal")
+    public ResponseEntity<Map<String, Object>> appealModeration(@PathVariable("id") Long reviewId,
+                                                                @AuthenticationPrincipal UserDetails userDetails) {
+        CommentModeration.ModerationStatus status = reviewService.appealModeration(currentUserId(userDetails), reviewId);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of(
+                "id", reviewId,
+                "moderationStatus", status.name()
+        ));
+    }
+
+    @GetMapping("/{id}/moderation")
+    public ResponseEntity<Map<String, Object>> getModerationStatus(@PathVariable("id") Long reviewId) {
+        CommentModeration.ModerationStatus status = reviewService.getModerationStatus(reviewId);
+        return ResponseEntity.ok(Map.of(
+                "id", reviewId,
+                "moderationStatus", status.name()
+        ));
     }
 
     @PostMapping("/{id}/like")
@@ -25,4 +82,16 @@ public class ReviewApiController {
         reviewService.likeReview(userId, reviewId);
         return ResponseEntity.ok().build();
     }
+
+    /**
+     * Id del usuario autenticado; la propiedad de la reseña nunca se toma de la petición.
+     */
+    private Long currentUserId(UserDetails userDetails) {
+        if (userDetails == null) {
+            throw new AuthenticationCredentialsNotFoundException("Debes iniciar sesión");
+        }
+        return userRepository.findByUsername(userDetails.getUsername())
+                .map(User::getId)
+                .orElseThrow(() -> new AuthenticationCredentialsNotFoundException("Usuario no encontrado"));
+    }
 }
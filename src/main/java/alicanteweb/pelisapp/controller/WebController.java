@@ -3,6 +3,7 @@ package alicanteweb.pelisapp.controller;
 import alicanteweb.pelisapp.entity.*;
 import alicanteweb.pelisapp.repository.*;
 import alicanteweb.pelisapp.service.*;
+import alicanteweb.pelisapp.service.image.PosterRepairJob;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -35,6 +36,7 @@ public class WebController {
     // Services
     private final TMDBMovieLoaderService tmdbMovieLoaderService;
     private final EmailConfirmationService emailConfirmationService;
+    private final PosterRepairJob posterRepairJob;
 
     @Value("${app.email.enabled:false}")
     private boolean emailEnabled;
@@ -203,16 +205,21 @@ public class WebController {
     public String redownloadPostersAsync(Authentication auth) {
         String redirect = requireAdminOrRedirect(auth, null);
         if (redirect != null) return "❌ Sin permisos de administrador";
-        try {
-            log.info("🔄 Iniciando redescarga asincrónica de carátulas");
-            long totalMovies = movieRepository.count();
-            String result = String.format("✅ Proceso asincrónico iniciado para %d películas", totalMovies);
-            log.info(result);
-            return result;
-        } catch (Exception e) {
-            log.error("❌ Error en redescarga asincrónica: {}", e.getMessage());
-            return "❌ Error en redescarga asincrónica: " + e.getMessage();
-        }
+        return startPosterRepair(false);
+    }
+
+    @GetMapping("/admin/poster-repair/status")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> getPosterRepairStatus(Authentication auth) {
+        if (isNotAdmin(auth)) return ResponseEntity.status(403).body(Map.of("success", false, "message", "Sin permisos de administrador"));
+        return ResponseEntity.ok(posterRepairJob.getStatus());
+    }
+
+    @PostMapping("/admin/poster-repair/stop")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> stopPosterRepair(Authentication auth) {
+        if (isNotAdmin(auth)) return ResponseEntity.status(403).body(Map.of("success", false, "message", "Sin permisos de administrador"));
+        return ResponseEntity.ok(posterRepairJob.stop());
     }
 
     @GetMapping("/admin/poster-stats")
@@ -396,15 +403,22 @@ Sin carátula: %d (%.1f%%)
     public String reloadMoviePosters(Authentication auth) {
         String redirect = requireAdminOrRedirect(auth, null);
         if (redirect != null) return "❌ Sin permisos de administrador";
+        return startPosterRepair(true);
+    }
+
+    /**
+     * Arranca (o continúa desde el checkpoint) la reparación de carátulas en segundo plano.
+     */
+    private String startPosterRepair(boolean restart) {
         try {
-            log.info("🖼️ Iniciando recarga de posters de películas");
-            long totalMovies = movieRepository.count();
-            String result = String.format("✅ Proceso de recarga de posters iniciado para %d películas", totalMovies);
+            Map<String, Object> status = posterRepairJob.start(restart);
+            String result = String.format("✅ Reparación de carátulas en marcha desde el id %s (de %s)",
+                    status.get("last_id"), status.get("max_id"));
             log.info(result);
             return result;
         } catch (Exception e) {
-            log.error("❌ Error recargando posters: {}", e.getMessage());
-            return "❌ Error recargando posters: " + e.getMessage();
+            log.error("❌ Error iniciando la reparación de carátulas: {}", e.getMessage());
+            return "❌ Error iniciando la reparación de carátulas: " + e.getMessage();
         }
     }
 
@@ -546,7 +560,7 @@ Sin carátula: %d (%.1f%%)
         if (redirect != null) return "❌ Sin permisos de administrador";
         try {
             int total = tmdbMovieLoaderService.redownloadCastDirectorImages();
-            return "✅ Redescarga de imágenes de reparto y director completada: " + total + " imágenes";
+            return "✅ Redescarga de imágenes de reparto y director encolada: " + total + " imágenes";
         } catch (Exception e) {
             log.error("❌ Error en redescarga de reparto/director: {}", e.getMessage());
             return "❌ Error en redescarga de reparto/director: " + e.getMessage();
@@ -38,7 +38,7 @@ public class MovieViewController {
             } catch (Exception e) {
                 log.error("Error obteniendo detalles de reparto para película {}: {}", id, e.getMessage());
             }
-            List<Review> reviews = reviewRepository.findByMovieIdOrderByCreatedAtDesc(movie.getId());
+            List<Review> reviews = reviewRepository.findVisibleByMovieIdOrderByCreatedAtDesc(movie.getId());
             MovieStats stats = calculateMovieStats(reviews);
             Review userReview = null;
             if (auth != null && auth.isAuthenticated()) {
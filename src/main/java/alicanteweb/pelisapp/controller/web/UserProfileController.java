@@ -28,7 +28,7 @@ public class UserProfileController {
             String username = principal.getName();
             User user = userRepository.findByUsername(username)
                     .orElseThrow(() -> new IllegalArgumentException("Usuario no encontrado"));
-            List<Review> userReviews = reviewRepository.findAllByUser_Id(user.getId());
+            List<Review> userReviews = reviewRepository.findVisibleByUserId(user.getId());
             model.addAttribute("user", user);
             model.addAttribute("reviews", userReviews);
             model.addAttribute("reviewCount", userReviews.size());
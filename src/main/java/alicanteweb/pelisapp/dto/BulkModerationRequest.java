@@ -0,0 +1,23 @@
+package alicanteweb.pelisapp.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Setter
+@Getter
+public class BulkModerationRequest {
+    @NotEmpty
+    @Size(max = 500)
+    private List<@NotNull Long> ids;
+
+    @NotNull
+    @Pattern(regexp = "approve|reject")
+    private String action;
+
+}
@@ -0,0 +1,27 @@
+package alicanteweb.pelisapp.dto;
+
+import alicanteweb.pelisapp.entity.CommentModeration;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Elemento de la cola de moderación del panel de administración.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ModerationQueueItem {
+    private Long id;
+    private Long reviewId;
+    private String username;
+    private String movieTitle;
+    private String text;
+    private CommentModeration.ModerationStatus status;
+    private Double toxicityScore;
+    private String moderationReason;
+    private Boolean aiProcessed;
+    private Instant createdAt;
+}
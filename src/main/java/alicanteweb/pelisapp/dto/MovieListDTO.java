@@ -19,6 +19,9 @@ public class MovieListDTO {
     private String description;
     private String posterPath;
     private String posterLocalPath;
+    // Miniaturas para las tarjetas del listado (locales si hay copia, si no de TMDB)
+    private String posterUrl;
+    private String posterThumbUrl;
     private LocalDate releaseDate;
     private Integer runtimeMinutes;
     private Long tmdbId;
@@ -0,0 +1,18 @@
+package alicanteweb.pelisapp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Película leída por el trabajo de reparación de carátulas (solo las columnas que necesita).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PosterRepairCandidate {
+    private Long id;
+    private Long tmdbId;
+    private String posterPath;
+    private String posterLocalPath;
+}
@@ -0,0 +1,19 @@
+package alicanteweb.pelisapp.dto;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import lombok.Getter;
+import lombok.Setter;
+
+@Setter
+@Getter
+public class ReviewUpdateRequest {
+    @NotBlank
+    private String text;
+
+    @Min(1)
+    @Max(5)
+    private int stars;
+
+}
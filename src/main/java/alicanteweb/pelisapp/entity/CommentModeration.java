@@ -9,7 +9,8 @@ import java.time.Instant;
 
 @Entity
 @Table(name = "comment_moderation", indexes = {
-    @Index(columnList = "status"),
+    // Cola de moderación: filtro por estado y paginación por clave (created_at, id) sin ordenar en memoria
+    @Index(columnList = "status, created_at, id"),
     @Index(columnList = "created_at")
 })
 @Getter
@@ -48,6 +49,11 @@ public class CommentModeration {
     @Column(name = "ai_processed")
     private Boolean aiProcessed = false;
 
+    // Se incrementa cada vez que se reabre la moderación (edición o apelación); un veredicto solo
+    // se aplica si se calculó para la generación actual
+    @Column(name = "generation")
+    private Integer generation = 0;
+
     public enum ModerationStatus {
         PENDING,      // Esperando moderación
         APPROVED,     // Aprobado (por IA o humano)
@@ -0,0 +1,31 @@
+package alicanteweb.pelisapp.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Contador de moderaciones por estado, mantenido en cada transición.
+ * Evita los COUNT(*) sobre comment_moderation en las estadísticas del panel.
+ */
+@Entity
+@Table(name = "moderation_status_counter")
+@Getter
+@Setter
+@NoArgsConstructor
+public class ModerationStatusCounter {
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20)
+    private CommentModeration.ModerationStatus status;
+
+    @Column(nullable = false)
+    private Long total = 0L;
+
+    public ModerationStatusCounter(CommentModeration.ModerationStatus status, Long total) {
+        this.status = status;
+        this.total = total;
+    }
+}
@@ -0,0 +1,41 @@
+package alicanteweb.pelisapp.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * Veredicto de moderación persistido, indexado por el hash del texto normalizado.
+ * Permite reutilizar decisiones de la IA entre reinicios.
+ */
+@Entity
+@Table(name = "moderation_verdict_cache", indexes = {
+    @Index(columnList = "created_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+public class ModerationVerdictEntry {
+
+    @Id
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    @Column(name = "sim_hash", nullable = false)
+    private Long simHash;
+
+    @Column(name = "token_count", nullable = false)
+    private Integer tokenCount;
+
+    @Column(name = "toxicity_score", nullable = false)
+    private Double toxicityScore;
+
+    @Column(length = 1000)
+    private String reason;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+}
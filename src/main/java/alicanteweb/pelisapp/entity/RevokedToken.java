@@ -0,0 +1,39 @@
+package alicanteweb.pelisapp.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * Token JWT revocado antes de caducar, identificado por su {@code jti}.
+ * El id autoincremental hace de secuencia de cambios: cada nodo lee las filas nuevas desde el último id visto.
+ */
+@Entity
+@Table(name = "revoked_token", indexes = {
+    @Index(columnList = "jti", unique = true),
+    @Index(columnList = "expires_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+public class RevokedToken {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 64)
+    private String jti;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+
+    @Column(name = "revoked_at", nullable = false)
+    private Instant revokedAt;
+
+    @Column(length = 100)
+    private String reason;
+}
@@ -0,0 +1,45 @@
+package alicanteweb.pelisapp.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+/**
+ * Índice del almacén de imágenes por contenido: ruta de la imagen en TMDB → blob guardado.
+ * Varias rutas pueden apuntar al mismo blob si TMDB sirve la misma imagen con nombres distintos.
+ */
+@Entity
+@Table(name = "stored_image", indexes = {
+    @Index(columnList = "source_path", unique = true),
+    @Index(columnList = "sha256"),
+    @Index(columnList = "blob_path")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+public class StoredImage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Ruta de la URL de origen, p. ej. /t/p/w500/abc.jpg
+    @Column(name = "source_path", nullable = false, length = 512)
+    private String sourcePath;
+
+    @Column(nullable = false, length = 64)
+    private String sha256;
+
+    // Ruta relativa al directorio de imágenes, p. ej. posters/ab/abcd...jpg
+    @Column(name = "blob_path", nullable = false, length = 255)
+    private String blobPath;
+
+    @Column(name = "size_bytes", nullable = false)
+    private long sizeBytes;
+
+    @Column(name = "stored_at", nullable = false)
+    private Instant storedAt;
+}
@@ -50,6 +50,10 @@ public class User {
     @Column(name = "banned", nullable = false)
     private boolean banned = false;
 
+    // Los tokens emitidos hasta este instante dejan de aceptarse (cierre de sesión forzado)
+    @Column(name = "tokens_valid_after")
+    private Instant tokensValidAfter;
+
     private Integer criticLevel = 0; // computed based on likes per review
 
     @OneToMany(mappedBy = "user", fetch = FetchType.LAZY, cascade = CascadeType.ALL)
@@ -4,9 +4,12 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 import alicanteweb.pelisapp.entity.Actor;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface ActorRepository extends JpaRepository<Actor, Long> {
     Optional<Actor> findByTmdbId(Long tmdbId);
+    List<Actor> findByTmdbIdIn(Collection<Long> tmdbIds);
 }
@@ -1,13 +1,22 @@
 package alicanteweb.pelisapp.repository;
 
+import alicanteweb.pelisapp.dto.ModerationQueueItem;
 import alicanteweb.pelisapp.entity.CommentModeration;
+import alicanteweb.pelisapp.entity.User;
+import jakarta.persistence.LockModeType;
 import alicanteweb.pelisapp.entity.CommentModeration.ModerationStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -25,4 +34,107 @@ public interface CommentModerationRepository extends JpaRepository<CommentModera
 
     @Query("SELECT cm FROM CommentModeration cm WHERE cm.aiProcessed = false AND cm.status = 'PENDING'")
     List<CommentModeration> findPendingAiModeration();
+
+    /**
+     * Ejemplos de entrenamiento para el clasificador local: estado final y texto de las reseñas
+     * aprobadas o rechazadas por el LLM o por un moderador (no por reglas ni por el propio clasificador).
+     * Se recorren por páginas de id ({@code id, estado, texto}) para no cargar la exportación entera.
+     */
+    @Query("SELECT cm.id, cm.status, r.text FROM CommentModeration cm JOIN cm.review r " +
+           "WHERE cm.id > :afterId AND cm.status IN ('APPROVED', 'REJECTED') " +
+           "AND (cm.aiProcessed = true OR cm.reviewedBy IS NOT NULL) " +
+           "AND r.text IS NOT NULL AND r.text <> '' ORDER BY cm.id")
+    List<Object[]> findTrainingSamplesAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Resuelve la moderación PENDING de una reseña con un único UPDATE.
+     * No toca filas ya decididas (p. ej. por un administrador) ni reabiertas después de calcular el
+     * veredicto ({@code generation} distinta: el texto ha cambiado; las filas anteriores a la columna
+     * tienen {@code NULL} y cuentan como generación 0). Devuelve las filas afectadas.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE CommentModeration cm SET cm.status = :status, cm.toxicityScore = :score, " +
+           "cm.moderationReason = :reason, cm.aiProcessed = :aiProcessed, cm.reviewedAt = :reviewedAt " +
+           "WHERE cm.review.id = :reviewId AND COALESCE(cm.generation, 0) = :generation AND cm.status = 'PENDING'")
+    int resolvePending(@Param("reviewId") Long reviewId,
+                       @Param("generation") int generation,
+                       @Param("status") ModerationStatus status,
+                       @Param("score") Double score,
+                       @Param("reason") String reason,
+                       @Param("aiProcessed") boolean aiProcessed,
+                       @Param("reviewedAt") Instant reviewedAt);
+
+    /**
+     * Moderaciones PENDING creadas antes de {@code before}, las más antiguas primero:
+     * {@code id de la reseña, generación, texto}. Usa el índice {@code (status, created_at, id)}.
+     */
+    @Query("SELECT r.id, COALESCE(cm.generation, 0), r.text FROM CommentModeration cm JOIN cm.review r " +
+           "WHERE cm.status = 'PENDING' AND cm.createdAt < :before ORDER BY cm.createdAt ASC, cm.id ASC")
+    List<Object[]> findStalePending(@Param("before") Instant before, Pageable pageable);
+
+    /**
+     * Primera página de la cola de moderación. Estado y rango de fechas son obligatorios (el servicio
+     * rellena los límites abiertos) para que el índice {@code (status, created_at, id)} dé las filas
+     * ya ordenadas; los filtros de puntuación son opcionales y se aplican sobre ellas.
+     */
+    @Query("SELECT new alicanteweb.pelisapp.dto.ModerationQueueItem(cm.id, r.id, u.username, m.title, r.text, " +
+           "cm.status, cm.toxicityScore, cm.moderationReason, cm.aiProcessed, cm.createdAt) " +
+           "FROM CommentModeration cm JOIN cm.review r JOIN r.user u JOIN r.movie m " +
+           "WHERE cm.status = :status " +
+           "AND cm.createdAt >= :from AND cm.createdAt < :to " +
+           "AND (:minScore IS NULL OR cm.toxicityScore >= :minScore) " +
+           "AND (:maxScore IS NULL OR cm.toxicityScore <= :maxScore) " +
+           "ORDER BY cm.createdAt ASC, cm.id ASC")
+    List<ModerationQueueItem> findQueueFirstPage(@Param("status") ModerationStatus status,
+                                                 @Param("minScore") Double minScore,
+                                                 @Param("maxScore") Double maxScore,
+                                                 @Param("from") Instant from,
+                                                 @Param("to") Instant to,
+                                                 Pageable pageable);
+
+    /**
+     * Página siguiente de la cola por clave (created_at, id): continúa tras el último elemento de la
+     * anterior sin OFFSET. El {@code createdAt >= :afterCreatedAt} redundante deja al optimizador
+     * empezar el recorrido del índice justo en el cursor.
+     */
+    @Query("SELECT new alicanteweb.pelisapp.dto.ModerationQueueItem(cm.id, r.id, u.username, m.title, r.text, " +
+           "cm.status, cm.toxicityScore, cm.moderationReason, cm.aiProcessed, cm.createdAt) " +
+           "FROM CommentModeration cm JOIN cm.review r JOIN r.user u JOIN r.movie m " +
+           "WHERE cm.status = :status " +
+           "AND cm.createdAt >= :from AND cm.createdAt < :to " +
+           "AND cm.createdAt >= :afterCreatedAt " +
+           "AND (cm.createdAt > :afterCreatedAt OR cm.id > :afterId) " +
+           "AND (:minScore IS NULL OR cm.toxicityScore >= :minScore) " +
+           "AND (:maxScore IS NULL OR cm.toxicityScore <= :maxScore) " +
+           "ORDER BY cm.createdAt ASC, cm.id ASC")
+    List<ModerationQueueItem> findQueueNextPage(@Param("status") ModerationStatus status,
+                                                @Param("minScore") Double minScore,
+                                                @Param("maxScore") Double maxScore,
+                                                @Param("from") Instant from,
+                                                @Param("to") Instant to,
+                                                @Param("afterCreatedAt") Instant afterCreatedAt,
+                                                @Param("afterId") Long afterId,
+                                                Pageable pageable);
+
+    /**
+     * Bloquea las filas indicadas hasta el final de la transacción (acciones en bloque).
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT cm FROM CommentModeration cm WHERE cm.id IN :ids")
+    List<CommentModeration> lockAllById(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Decide varias moderaciones con un único UPDATE. No toca las que ya tienen ese estado.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE CommentModeration cm SET cm.status = :status, cm.reviewedAt = :reviewedAt, cm.reviewedBy = :reviewer " +
+           "WHERE cm.id IN :ids AND cm.status <> :status")
+    int decideAll(@Param("ids") Collection<Long> ids,
+                  @Param("status") ModerationStatus status,
+                  @Param("reviewedAt") Instant reviewedAt,
+                  @Param("reviewer") User reviewer);
+
+    @Query("SELECT cm.status, COUNT(cm) FROM CommentModeration cm GROUP BY cm.status")
+    List<Object[]> countGroupedByStatus();
 }
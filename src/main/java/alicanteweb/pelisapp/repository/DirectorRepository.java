@@ -4,9 +4,12 @@ import alicanteweb.pelisapp.entity.Director;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface DirectorRepository extends JpaRepository<Director,Long> {
     Optional<Director> findByTmdbId(Long tmdbId);
+    List<Director> findByTmdbIdIn(Collection<Long> tmdbIds);
 }
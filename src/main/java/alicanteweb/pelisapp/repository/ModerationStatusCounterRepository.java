@@ -0,0 +1,32 @@
+package alicanteweb.pelisapp.repository;
+
+import alicanteweb.pelisapp.entity.CommentModeration.ModerationStatus;
+import alicanteweb.pelisapp.entity.ModerationStatusCounter;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ModerationStatusCounterRepository extends JpaRepository<ModerationStatusCounter, ModerationStatus> {
+
+    /**
+     * Suma {@code delta} al contador del estado con un UPDATE atómico en la propia fila.
+     */
+    @Modifying
+    @Query("UPDATE ModerationStatusCounter c SET c.total = c.total + :delta WHERE c.status = :status")
+    int adjust(@Param("status") ModerationStatus status, @Param("delta") long delta);
+
+    /**
+     * Bloquea todos los contadores hasta el final de la transacción: los {@link #adjust} en curso
+     * terminan antes y los nuevos esperan.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM ModerationStatusCounter c")
+    List<ModerationStatusCounter> lockAll();
+}
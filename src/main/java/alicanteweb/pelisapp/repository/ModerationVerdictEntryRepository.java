@@ -0,0 +1,24 @@
+package alicanteweb.pelisapp.repository;
+
+import alicanteweb.pelisapp.entity.ModerationVerdictEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface ModerationVerdictEntryRepository extends JpaRepository<ModerationVerdictEntry, String> {
+
+    List<ModerationVerdictEntry> findByCreatedAtAfterOrderByCreatedAtDesc(Instant createdAfter, Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ModerationVerdictEntry v WHERE v.createdAt < :cutoff")
+    int deleteExpired(@Param("cutoff") Instant cutoff);
+}
@@ -1,5 +1,6 @@
 package alicanteweb.pelisapp.repository;
 
+import alicanteweb.pelisapp.dto.PosterRepairCandidate;
 import alicanteweb.pelisapp.entity.Movie;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -8,11 +9,14 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface MovieRepository extends JpaRepository<Movie,Long> {
     Optional<Movie> findByTmdbId(Long tmdbId);
+    List<Movie> findByTmdbIdIn(Collection<Long> tmdbIds);
     Optional<Movie> findByTitle(String title);
     Page<Movie> findAll(Pageable pageable);
     Page<Movie> findByCategories_Name(String name, Pageable pageable);
@@ -26,4 +30,16 @@ public interface MovieRepository extends JpaRepository<Movie,Long> {
            "LEFT JOIN FETCH m.categories " +
            "WHERE m.id = :id")
     Optional<Movie> findByIdWithCastAndDirectors(@Param("id") Long id);
+
+    /**
+     * Películas con carátula en TMDB a partir de {@code afterId}, en orden de id (paginación por clave).
+     */
+    @Query("SELECT new alicanteweb.pelisapp.dto.PosterRepairCandidate(m.id, m.tmdbId, m.posterPath, m.posterLocalPath) " +
+           "FROM Movie m " +
+           "WHERE m.id > :afterId AND m.tmdbId IS NOT NULL AND m.posterPath IS NOT NULL AND m.posterPath <> '' " +
+           "ORDER BY m.id ASC")
+    List<PosterRepairCandidate> findPosterRepairPage(@Param("afterId") Long afterId, Pageable pageable);
+
+    @Query("SELECT COALESCE(MAX(m.id), 0) FROM Movie m")
+    Long findMaxId();
 }
@@ -4,6 +4,8 @@ import alicanteweb.pelisapp.entity.Review;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -17,4 +19,18 @@ public interface ReviewRepository extends JpaRepository<Review,Long> {
     List<Review> findByMovieId(Long movieId);
     List<Review> findByMovieIdOrderByCreatedAtDesc(Long movieId);
     Optional<Review> findByUserIdAndMovieId(Long userId, Long movieId);
+
+    /**
+     * Reseñas publicables de una película: aprobadas por moderación (o anteriores a ella).
+     */
+    @Query("SELECT r FROM Review r LEFT JOIN r.moderation m WHERE r.movie.id = :movieId " +
+           "AND (m IS NULL OR m.status = 'APPROVED') ORDER BY r.createdAt DESC")
+    List<Review> findVisibleByMovieIdOrderByCreatedAtDesc(@Param("movieId") Long movieId);
+
+    /**
+     * Reseñas publicables de un usuario, para perfiles y logros: las PENDING o REJECTED no cuentan.
+     */
+    @Query("SELECT r FROM Review r LEFT JOIN r.moderation m WHERE r.user.id = :userId " +
+           "AND (m IS NULL OR m.status = 'APPROVED') ORDER BY r.createdAt DESC")
+    List<Review> findVisibleByUserId(@Param("userId") Long userId);
 }
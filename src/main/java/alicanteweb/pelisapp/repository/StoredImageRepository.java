@@ -0,0 +1,15 @@
+package alicanteweb.pelisapp.repository;
+
+import alicanteweb.pelisapp.entity.StoredImage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface StoredImageRepository extends JpaRepository<StoredImage, Long> {
+
+    Optional<StoredImage> findBySourcePath(String sourcePath);
+
+    Optional<StoredImage> findFirstByBlobPath(String blobPath);
+}
@@ -7,6 +7,8 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import alicanteweb.pelisapp.entity.User;
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -22,4 +24,9 @@ public interface UserRepository extends JpaRepository<User,Long> {
 
     @Query("SELECT u FROM User u LEFT JOIN FETCH u.roles WHERE u.username = :username")
     Optional<User> findByUsernameWithRoles(@Param("username") String username);
+
+    // Usuarios con el acceso restringido: [username, banned, tokensValidAfter]
+    @Query("SELECT u.username, u.banned, u.tokensValidAfter FROM User u " +
+           "WHERE u.banned = true OR u.tokensValidAfter > :since")
+    List<Object[]> findAccessRestrictions(@Param("since") Instant since);
 }
@@ -0,0 +1,98 @@
+package alicanteweb.pelisapp.security;
+
+import alicanteweb.pelisapp.entity.User;
+import alicanteweb.pelisapp.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Conjunto en memoria de usuarios cuyo acceso por JWT está revocado, para autenticar las peticiones
+ * de la API sin consultar la tabla {@code usuario}.
+ *
+ * <p>Por cada usuario guarda el instante hasta el que sus tokens dejan de valer: {@link Instant#MAX}
+ * si está baneado o borrado, {@code tokensValidAfter} si se forzó el cierre de sesión. Solo contiene
+ * usuarios restringidos, así que ocupa muy poco. Se carga al arrancar, se actualiza con cada
+ * {@link UserAccessChangedEvent} y se recarga entera de forma periódica por si la BD cambia por
+ * otra vía. Los cierres de sesión más antiguos que la validez de un access token se descartan.</p>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AccessRevocationRegistry {
+
+    private final UserRepository userRepository;
+
+    @Value("${app.jwt.access-expiration-ms:86400000}")
+    private long accessValidityMs;
+
+    // Copia inmutable que se sustituye en cada cambio: las lecturas no bloquean
+    private volatile Map<String, Instant> revokedUntil = Map.of();
+
+    // Usuarios borrados: ya no están en BD, se recuerdan hasta que caduquen sus tokens
+    private final Map<String, Instant> deletedUsers = new HashMap<>();
+
+    /**
+     * Indica si un token del usuario emitido en {@code issuedAt} ya no debe aceptarse.
+     */
+    public boolean isRevoked(String username, Instant issuedAt) {
+        Instant cutoff = revokedUntil.get(username);
+        if (cutoff == null) {
+            return false;
+        }
+        // iat del JWT va en segundos: un token del mismo segundo que el cierre de sesión también se revoca
+        return issuedAt == null || !issuedAt.isAfter(cutoff.truncatedTo(ChronoUnit.SECONDS));
+    }
+
+    public int size() {
+        return revokedUntil.size();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.security.revocation.refresh-interval-ms:300000}",
+               initialDelayString = "${app.security.revocation.refresh-interval-ms:300000}")
+    public synchronized void reload() {
+        Instant now = Instant.now();
+        Map<String, Instant> restrictions = new HashMap<>();
+        for (Object[] row : userRepository.findAccessRestrictions(now.minusMillis(accessValidityMs))) {
+            restrictions.put((String) row[0], cutoffFor((Boolean) row[1], (Instant) row[2]));
+        }
+        deletedUsers.values().removeIf(until -> until.isBefore(now));
+        deletedUsers.keySet().forEach(username -> restrictions.put(username, Instant.MAX));
+        revokedUntil = Map.copyOf(restrictions);
+        log.debug("🔐 Registro de revocaciones recargado: {} usuarios restringidos", restrictions.size());
+    }
+
+    @EventListener
+    public synchronized void onUserAccessChanged(UserAccessChangedEvent event) {
+        Map<String, Instant> updated = new HashMap<>(revokedUntil);
+        if (event.deleted()) {
+            deletedUsers.put(event.username(), Instant.now().plusMillis(accessValidityMs));
+            updated.put(event.username(), Instant.MAX);
+        } else {
+            Optional<User> user = userRepository.findByUsername(event.username());
+            Instant cutoff = user.map(u -> cutoffFor(u.isBanned(), u.getTokensValidAfter())).orElse(Instant.MAX);
+            if (cutoff != null) {
+                updated.put(event.username(), cutoff);
+            } else {
+                updated.remove(event.username());
+            }
+        }
+        revokedUntil = Map.copyOf(updated);
+        log.info("🔐 Acceso JWT actualizado para {} ({} usuarios restringidos)", event.username(), updated.size());
+    }
+
+    private static Instant cutoffFor(boolean banned, Instant tokensValidAfter) {
+        return banned ? Instant.MAX : tokensValidAfter;
+    }
+}
@@ -0,0 +1,103 @@
+package alicanteweb.pelisapp.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * {@link PasswordEncoder} que ejecuta el hash en un pool acotado ({@code passwordHashExecutor}).
+ *
+ * <p>BCrypt consume decenas de milisegundos de CPU por llamada. Limitando los hilos que lo ejecutan,
+ * una ráfaga de logins no puede ocupar todos los núcleos ni todos los hilos de Tomcat: cuando la cola
+ * del pool está llena el login se rechaza al momento con {@link LoginThrottledException} en lugar de
+ * esperar. {@link #upgradeEncoding} se delega para que Spring Security rehashee la contraseña al
+ * hacer login si se sube el coste.</p>
+ *
+ * <p>El tiempo máximo cubre la espera en cola y el hash. Si vence, la tarea se cancela con interrupción
+ * y se saca de la cola: una petición abandonada no ocupa un hueco ni llega a ejecutarse detrás de otras.</p>
+ */
+@Slf4j
+public class BoundedPasswordEncoder implements PasswordEncoder {
+
+    private final PasswordEncoder delegate;
+    private final Executor executor;
+    private final long timeoutMs;
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate, Executor executor, long timeoutMs) {
+        this.delegate = delegate;
+        this.executor = executor;
+        this.timeoutMs = timeoutMs;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return offload(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return offload(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getTimedOutCount() {
+        return timedOut.sum();
+    }
+
+    private <T> T offload(Supplier<T> task) {
+        FutureTask<T> future = new FutureTask<>(task::get);
+        try {
+            executor.execute(future);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            log.warn("🔒 Pool de contraseñas saturado, login rechazado");
+            throw new LoginThrottledException("Servicio de autenticación ocupado. Inténtalo de nuevo en unos segundos.", 1);
+        }
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            removeFromQueue(future);
+            timedOut.increment();
+            throw new LoginThrottledException("Servicio de autenticación ocupado. Inténtalo de nuevo en unos segundos.", 1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Verificación de contraseña interrumpida", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void removeFromQueue(Runnable task) {
+        if (executor instanceof ThreadPoolTaskExecutor taskExecutor) {
+            taskExecutor.getThreadPoolExecutor().remove(task);
+        } else if (executor instanceof ThreadPoolExecutor pool) {
+            pool.remove(task);
+        }
+    }
+}
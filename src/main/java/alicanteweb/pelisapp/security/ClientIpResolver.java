@@ -0,0 +1,144 @@
+package alicanteweb.pelisapp.security;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * IP real del cliente para límites por IP (login, conexiones de vídeo).
+ *
+ * <p>{@code X-Forwarded-For} y {@code X-Real-IP} solo se tienen en cuenta si la conexión llega de un
+ * proxy de confianza ({@code app.security.trusted-proxies}, IPs o CIDR); si no, cualquiera podría
+ * cambiar de IP en cada petición. La cabecera se recorre de derecha a izquierda saltando los proxies
+ * de confianza: la primera IP que no lo es la ha añadido nuestro proxy y no el cliente.</p>
+ */
+@Component
+@Slf4j
+public class ClientIpResolver {
+
+    private static final Pattern IPV4 = Pattern.compile("\\d{1,3}(\\.\\d{1,3}){3}");
+    private static final Pattern IPV6 = Pattern.compile("[0-9a-fA-F.]*:[0-9a-fA-F:.]*");
+
+    private final List<Cidr> trustedProxies = new ArrayList<>();
+
+    public ClientIpResolver(@Value("${app.security.trusted-proxies:127.0.0.1,::1}") List<String> trustedProxies) {
+        for (String proxy : trustedProxies) {
+            if (proxy.isBlank()) {
+                continue;
+            }
+            Cidr cidr = Cidr.parse(proxy.trim());
+            if (cidr == null) {
+                log.warn("⚠️ Proxy de confianza ignorado (no es una IP ni un CIDR): {}", proxy);
+            } else {
+                this.trustedProxies.add(cidr);
+            }
+        }
+    }
+
+    public String resolve(HttpServletRequest request) {
+        String remoteAddr = request.getRemoteAddr();
+        if (!isTrusted(remoteAddr)) {
+            return remoteAddr;
+        }
+
+        String xForwardedFor = request.getHeader("X-Forwarded-For");
+        if (xForwardedFor != null && !xForwardedFor.isBlank()) {
+            String[] hops = xForwardedFor.split(",");
+            for (int i = hops.length - 1; i >= 0; i--) {
+                String hop = hops[i].trim();
+                if (!hop.isEmpty() && !isTrusted(hop)) {
+                    return hop;
+                }
+            }
+            // Toda la cadena son proxies nuestros: el primero es el más cercano al cliente
+            String first = hops.length > 0 ? hops[0].trim() : "";
+            return first.isEmpty() ? remoteAddr : first;
+        }
+
+        String xRealIP = request.getHeader("X-Real-IP");
+        if (xRealIP != null && !xRealIP.isBlank()) {
+            return xRealIP.trim();
+        }
+
+        return remoteAddr;
+    }
+
+    boolean isTrusted(String ip) {
+        byte[] address = Cidr.literal(ip);
+        if (address == null) {
+            return false;
+        }
+        for (Cidr proxy : trustedProxies) {
+            if (proxy.contains(address)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Red IPv4 o IPv6 con su longitud de prefijo.
+     */
+    private record Cidr(byte[] network, int prefix) {
+
+        static Cidr parse(String value) {
+            int slash = value.indexOf('/');
+            byte[] network = literal(slash < 0 ? value : value.substring(0, slash));
+            if (network == null) {
+                return null;
+            }
+            int prefix = network.length * 8;
+            if (slash >= 0) {
+                try {
+                    prefix = Integer.parseInt(value.substring(slash + 1));
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+                if (prefix < 0 || prefix > network.length * 8) {
+                    return null;
+                }
+            }
+            return new Cidr(network, prefix);
+        }
+
+        /**
+         * Bytes de una IP literal, o {@code null}. Nunca resuelve nombres: las cabeceras las
+         * escribe el cliente y no queremos una consulta DNS por petición.
+         */
+        static byte[] literal(String ip) {
+            if (ip == null || ip.isEmpty() || !(IPV4.matcher(ip).matches() || IPV6.matcher(ip).matches())) {
+                return null;
+            }
+            try {
+                return InetAddress.getByName(ip).getAddress();
+            } catch (UnknownHostException | SecurityException e) {
+                return null;
+            }
+        }
+
+        boolean contains(byte[] address) {
+            if (address.length != network.length) {
+                return false;
+            }
+            int fullBytes = prefix / 8;
+            for (int i = 0; i < fullBytes; i++) {
+                if (address[i] != network[i]) {
+                    return false;
+                }
+            }
+            int remaining = prefix % 8;
+            if (remaining == 0) {
+                return true;
+            }
+            int mask = 0xFF << (8 - remaining);
+            return (address[fullBytes] & mask) == (network[fullBytes] & mask);
+        }
+    }
+}
@@ -47,7 +47,8 @@ public class CustomAuthenticationFailureHandler extends SimpleUrlAuthenticationF
         log.warn("[DEBUG] Mensaje mostrado al usuario: {}", errorMessage);
 
         // Implementar protección contra ataques de fuerza bruta
-        if (!(exception instanceof DisabledException || exception instanceof LockedException)) {
+        if (!(exception instanceof DisabledException || exception instanceof LockedException
+                || exception instanceof LoginThrottledException)) {
             handleFailedLoginAttempt(session, remoteAddr);
         }
 
@@ -72,6 +73,8 @@ public class CustomAuthenticationFailureHandler extends SimpleUrlAuthenticationF
             return "Nombre de usuario o contraseña incorrectos.";
         } else if (exception instanceof DisabledException) {
             return "Tu cuenta no ha sido activada. Verifica tu email para confirmar la cuenta.";
+        } else if (exception instanceof LoginThrottledException) {
+            return exception.getMessage();
         } else if (exception instanceof LockedException) {
             return "Tu cuenta ha sido bloqueada temporalmente.";
         } else {
@@ -7,6 +7,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
@@ -16,7 +17,7 @@ import java.util.stream.Collectors;
 @Service
 @RequiredArgsConstructor
 @Slf4j
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
 
     private final UserRepository userRepository;
 
@@ -49,9 +50,25 @@ public class CustomUserDetailsService implements UserDetailsService {
                     .map(role -> new SimpleGrantedAuthority("ROLE_" + role.getName()))
                     .collect(Collectors.toList()))
                 .accountExpired(false)
-                .accountLocked(false)
+                .accountLocked(user.isBanned())
                 .credentialsExpired(false)
                 .disabled(false)
                 .build();
     }
+
+    /**
+     * Rehash al hacer login: Spring Security lo llama cuando el hash guardado usa un coste BCrypt
+     * menor que {@code app.security.bcrypt.strength}, con la contraseña recién verificada ya codificada.
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails userDetails, String newPassword) {
+        userRepository.findByUsername(userDetails.getUsername()).ifPresent(user -> {
+            user.setPassword(newPassword);
+            userRepository.save(user);
+            log.info("Hash de contraseña actualizado al nuevo coste para {}", userDetails.getUsername());
+        });
+        return org.springframework.security.core.userdetails.User.withUserDetails(userDetails)
+                .password(newPassword)
+                .build();
+    }
 }
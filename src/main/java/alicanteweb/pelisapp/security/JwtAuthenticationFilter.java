@@ -5,24 +5,33 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.stream.Collectors;
+import java.util.List;
 
+/**
+ * Autentica las peticiones con {@code Authorization: Bearer} sin consultar la BD: el principal sale de
+ * los claims verificados del token y los baneos, cierres de sesión y tokens revocados se comprueban en memoria.
+ * Solo se aceptan access tokens; los de refresco, confirmación o reseteo no autentican.
+ */
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
+    private static final String ACCESS_TOKEN_TYPE = "access";
+
     private final JwtTokenProvider tokenProvider;
-    private final UserDetailsService userDetailsService;
+    private final AccessRevocationRegistry revocationRegistry;
+    private final TokenRevocationStore tokenRevocationStore;
 
-    public JwtAuthenticationFilter(JwtTokenProvider tokenProvider, UserDetailsService userDetailsService) {
+    public JwtAuthenticationFilter(JwtTokenProvider tokenProvider, AccessRevocationRegistry revocationRegistry,
+                                   TokenRevocationStore tokenRevocationStore) {
         this.tokenProvider = tokenProvider;
-        this.userDetailsService = userDetailsService;
+        this.revocationRegistry = revocationRegistry;
+        this.tokenRevocationStore = tokenRevocationStore;
     }
 
     @Override
@@ -30,14 +39,18 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         String bearer = request.getHeader("Authorization");
         if (StringUtils.hasText(bearer) && bearer.startsWith("Bearer ")) {
             String token = bearer.substring(7);
-            if (tokenProvider.validateToken(token)) {
-                String username = tokenProvider.getUsername(token);
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                var roles = tokenProvider.getRoles(token);
-                var authorities = roles.stream().map(SimpleGrantedAuthority::new).collect(Collectors.toList());
-                UsernamePasswordAuthenticationToken auth = new UsernamePasswordAuthenticationToken(userDetails, null, authorities);
-                SecurityContextHolder.getContext().setAuthentication(auth);
-            }
+            tokenProvider.parseAndVerify(token)
+                .filter(verified -> ACCESS_TOKEN_TYPE.equals(verified.type()))
+                .filter(verified -> !revocationRegistry.isRevoked(verified.username(), verified.issuedAt()))
+                .filter(verified -> !tokenRevocationStore.isRevoked(verified.tokenId(), verified.expiresAt()))
+                .ifPresent(verified -> {
+                    List<GrantedAuthority> authorities = verified.roles().stream()
+                        .<GrantedAuthority>map(SimpleGrantedAuthority::new)
+                        .toList();
+                    JwtUserPrincipal principal = new JwtUserPrincipal(verified.username(), authorities);
+                    UsernamePasswordAuthenticationToken auth = new UsernamePasswordAuthenticationToken(principal, null, authorities);
+                    SecurityContextHolder.getContext().setAuthentication(auth);
+                });
         }
 
         filterChain.doFilter(request, response);
@@ -1,30 +1,80 @@
 package alicanteweb.pelisapp.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.Date;
-import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Optional;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+/**
+ * Emisión y verificación de tokens JWT.
+ *
+ * <p>El parser se construye una sola vez (es inmutable y seguro entre hilos) y {@link #parseAndVerify}
+ * verifica la firma una única vez por token: el resultado se guarda en una caché acotada, indexada
+ * por el SHA-256 del token, cuyas entradas caducan con el propio token (o antes, según
+ * {@code app.jwt.verified-cache.ttl}). Los tokens inválidos nunca se cachean.</p>
+ */
 @Component
 public class JwtTokenProvider {
 
     private final Key key;
+    private final JwtParser parser;
     private final long accessValidityMs;
     private final long refreshValidityMs;
+    private final Cache<String, VerifiedToken> verifiedTokens;
 
     public JwtTokenProvider(@Value("${app.jwt.secret:changeit123456789012345678901234}") String secret,
                             @Value("${app.jwt.access-expiration-ms:86400000}") long accessValidityMs,
-                            @Value("${app.jwt.refresh-expiration-ms:604800000}") long refreshValidityMs) {
+                            @Value("${app.jwt.refresh-expiration-ms:604800000}") long refreshValidityMs,
+                            @Value("${app.jwt.verified-cache.max-size:10000}") long verifiedCacheSize,
+                            @Value("${app.jwt.verified-cache.ttl:5m}") Duration verifiedCacheTtl) {
         this.key = Keys.hmacShaKeyFor(secret.getBytes());
+        this.parser = Jwts.parserBuilder().setSigningKey(key).build();
         this.accessValidityMs = accessValidityMs;
         this.refreshValidityMs = refreshValidityMs;
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(verifiedCacheSize)
+                .expireAfter(new UntilTokenExpiry(verifiedCacheTtl))
+                .build();
+    }
+
+    /**
+     * Verifica firma y caducidad del token una sola vez y devuelve sus datos.
+     * Vacío si el token es inválido, está manipulado o ha caducado.
+     */
+    public Optional<VerifiedToken> parseAndVerify(String token) {
+        if (token == null || token.isBlank()) {
+            return Optional.empty();
+        }
+        String cacheKey = sha256(token);
+        VerifiedToken cached = verifiedTokens.getIfPresent(cacheKey);
+        if (cached != null) {
+            return cached.isExpired() ? Optional.empty() : Optional.of(cached);
+        }
+        try {
+            VerifiedToken verified = VerifiedToken.from(parser.parseClaimsJws(token).getBody());
+            verifiedTokens.put(cacheKey, verified);
+            return Optional.of(verified);
+        } catch (JwtException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
     }
 
     public String createAccessToken(String username, Set<String> roles) {
@@ -34,6 +84,7 @@ public class JwtTokenProvider {
         String rolesClaim = String.join(",", roles);
 
         return Jwts.builder()
+                .setId(UUID.randomUUID().toString())
                 .setSubject(username)
                 .claim("roles", rolesClaim)
                 .claim("typ", "access")
@@ -48,6 +99,7 @@ public class JwtTokenProvider {
         Date expiry = new Date(now.getTime() + refreshValidityMs);
 
         return Jwts.builder()
+                .setId(UUID.randomUUID().toString())
                 .setSubject(username)
                 .claim("typ", "refresh")
                 .setIssuedAt(now)
@@ -57,36 +109,24 @@ public class JwtTokenProvider {
     }
 
     public boolean validateToken(String token) {
-        try {
-            Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token);
-            return true;
-        } catch (JwtException | IllegalArgumentException e) {
-            return false;
-        }
+        return parseAndVerify(token).isPresent();
     }
 
     public String getUsername(String token) {
-        Claims claims = Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody();
-        return claims.getSubject();
+        return verified(token).username();
     }
 
     public Set<String> getRoles(String token) {
-        Claims claims = Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody();
-        Object roles = claims.get("roles");
-        if (roles == null) return new HashSet<>();
-        return Arrays.stream(roles.toString().split(",")).map(String::trim).filter(s -> !s.isEmpty()).collect(Collectors.toSet());
+        return verified(token).roles();
     }
 
     public boolean isRefreshToken(String token) {
-        Claims claims = Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody();
-        Object typ = claims.get("typ");
-        return "refresh".equals(typ);
+        return "refresh".equals(verified(token).type());
     }
 
     public long getExpiryMillis(String token) {
-        Claims claims = Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody();
-        Date exp = claims.getExpiration();
-        return exp == null ? 0L : exp.getTime();
+        Instant expiresAt = verified(token).expiresAt();
+        return expiresAt == null ? 0L : expiresAt.toEpochMilli();
     }
 
     /**
@@ -126,39 +166,21 @@ public class JwtTokenProvider {
      * Obtiene el email del token de confirmación
      */
     public String getEmailFromToken(String token) {
-        try {
-            Claims claims = Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody();
-            return claims.get("email", String.class);
-        } catch (JwtException | IllegalArgumentException e) {
-            return null;
-        }
+        return parseAndVerify(token).map(VerifiedToken::email).orElse(null);
     }
 
     /**
      * Verifica si un token es de confirmación
      */
     public boolean isConfirmationToken(String token) {
-        try {
-            Claims claims = Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody();
-            Object typ = claims.get("typ");
-            return "confirmation".equals(typ);
-        } catch (JwtException | IllegalArgumentException e) {
-            return false;
-        }
+        return parseAndVerify(token).map(verified -> "confirmation".equals(verified.type())).orElse(false);
     }
 
     /**
      * Validación más estricta para tokens de confirmación
      */
     public boolean validateConfirmationToken(String token) {
-        try {
-            if (!validateToken(token)) {
-                return false;
-            }
-            return isConfirmationToken(token);
-        } catch (Exception e) {
-            return false;
-        }
+        return isConfirmationToken(token);
     }
 
     /**
@@ -182,13 +204,7 @@ public class JwtTokenProvider {
      * Verifica si un token es de reseteo de contraseña
      */
     public boolean isPasswordResetToken(String token) {
-        try {
-            Claims claims = Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody();
-            Object typ = claims.get("typ");
-            return "password-reset".equals(typ);
-        } catch (JwtException | IllegalArgumentException e) {
-            return false;
-        }
+        return parseAndVerify(token).map(verified -> "password-reset".equals(verified.type())).orElse(false);
     }
 
     /**
@@ -196,7 +212,7 @@ public class JwtTokenProvider {
      */
     public TokenInfo getTokenInfo(String token) {
         try {
-            Claims claims = Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody();
+            Claims claims = parser.parseClaimsJws(token).getBody();
 
             TokenInfo info = new TokenInfo();
             info.username = claims.getSubject();
@@ -217,6 +233,68 @@ public class JwtTokenProvider {
         }
     }
 
+    private VerifiedToken verified(String token) {
+        return parseAndVerify(token).orElseThrow(() -> new JwtException("Token JWT inválido o caducado"));
+    }
+
+    private static String sha256(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    /**
+     * Datos de un token con la firma ya verificada. Inmutable, se comparte desde la caché.
+     */
+    public record VerifiedToken(String tokenId, String username, Set<String> roles, String type, String email,
+                                Instant issuedAt, Instant expiresAt) {
+
+        static VerifiedToken from(Claims claims) {
+            Object rolesClaim = claims.get("roles");
+            Set<String> roles = rolesClaim == null ? Set.of() : Arrays.stream(rolesClaim.toString().split(","))
+                    .map(String::trim)
+                    .filter(role -> !role.isEmpty())
+                    .collect(Collectors.toUnmodifiableSet());
+            return new VerifiedToken(claims.getId(), claims.getSubject(), roles, claims.get("typ", String.class),
+                    claims.get("email", String.class),
+                    claims.getIssuedAt() != null ? claims.getIssuedAt().toInstant() : null,
+                    claims.getExpiration() != null ? claims.getExpiration().toInstant() : null);
+        }
+
+        public boolean isExpired() {
+            return expiresAt != null && !expiresAt.isAfter(Instant.now());
+        }
+    }
+
+    /**
+     * Cada entrada vive hasta que caduca su token, como mucho {@code maxTtl}.
+     */
+    private record UntilTokenExpiry(Duration maxTtl) implements Expiry<String, VerifiedToken> {
+
+        @Override
+        public long expireAfterCreate(String key, VerifiedToken token, long currentTime) {
+            long maxNanos = maxTtl.toNanos();
+            if (token.expiresAt() == null) {
+                return maxNanos;
+            }
+            long untilExpiry = TimeUnit.MILLISECONDS.toNanos(token.expiresAt().toEpochMilli() - System.currentTimeMillis());
+            return Math.max(0, Math.min(untilExpiry, maxNanos));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, VerifiedToken token, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        @Override
+        public long expireAfterRead(String key, VerifiedToken token, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
     /**
      * Clase para información del token
      */
@@ -0,0 +1,50 @@
+package alicanteweb.pelisapp.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Usuario autenticado por JWT, construido solo con los claims ya verificados del token.
+ * No lleva contraseña ni se carga de BD; los baneos y cierres de sesión los decide
+ * {@link AccessRevocationRegistry} antes de crearlo.
+ */
+public record JwtUserPrincipal(String username, List<GrantedAuthority> authorities) implements UserDetails {
+
+    @Override
+    public String getUsername() {
+        return username;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    @Override
+    public String getPassword() {
+        return null;
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+}
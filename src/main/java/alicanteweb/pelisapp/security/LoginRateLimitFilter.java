@@ -0,0 +1,61 @@
+package alicanteweb.pelisapp.security;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.web.authentication.AuthenticationFailureHandler;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Aplica {@link LoginRateLimiter} al login por formulario ({@code POST /login}) antes de autenticar.
+ * Si se supera el límite responde con el handler de fallo habitual, sin tocar BD ni BCrypt.
+ * Los fallos de contraseña se anotan con {@link #recordingFailures}.
+ */
+public class LoginRateLimitFilter extends OncePerRequestFilter {
+
+    private final LoginRateLimiter rateLimiter;
+    private final ClientIpResolver clientIpResolver;
+    private final AuthenticationFailureHandler failureHandler;
+
+    public LoginRateLimitFilter(LoginRateLimiter rateLimiter, ClientIpResolver clientIpResolver,
+                                AuthenticationFailureHandler failureHandler) {
+        this.rateLimiter = rateLimiter;
+        this.clientIpResolver = clientIpResolver;
+        this.failureHandler = failureHandler;
+    }
+
+    /**
+     * Envuelve el handler de fallo del formulario para gastar el intento del usuario solo cuando la
+     * contraseña es incorrecta.
+     */
+    public static AuthenticationFailureHandler recordingFailures(LoginRateLimiter rateLimiter,
+                                                                 AuthenticationFailureHandler delegate) {
+        return (request, response, exception) -> {
+            if (exception instanceof BadCredentialsException) {
+                rateLimiter.recordFailure(request.getParameter("username"));
+            }
+            delegate.onAuthenticationFailure(request, response, exception);
+        };
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !("POST".equals(request.getMethod()) && "/login".equals(request.getServletPath()));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        try {
+            rateLimiter.checkAttempt(clientIpResolver.resolve(request), request.getParameter("username"));
+        } catch (LoginThrottledException e) {
+            response.setHeader("Retry-After", String.valueOf(e.getRetryAfterSeconds()));
+            failureHandler.onAuthenticationFailure(request, response, e);
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+}
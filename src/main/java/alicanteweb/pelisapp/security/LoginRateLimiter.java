@@ -0,0 +1,134 @@
+package alicanteweb.pelisapp.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limita los intentos de login con un token bucket por IP y otro por nombre de usuario.
+ *
+ * <p>Se consulta antes de tocar la BD o BCrypt, así una ráfaga de credential stuffing se corta
+ * sin gastar CPU. El bucket por IP (la de {@link ClientIpResolver}, que solo cree a los proxies de
+ * confianza) frena a un atacante que prueba muchos usuarios; el de usuario, a uno que reparte los
+ * intentos contra la misma cuenta entre muchas IPs. Este último solo se gasta con contraseñas
+ * incorrectas ({@link #recordFailure}), así los logins correctos del dueño no lo agotan.</p>
+ */
+@Component
+@Slf4j
+public class LoginRateLimiter {
+
+    @Value("${app.security.login.ip.capacity:20}")
+    private int ipCapacity;
+
+    @Value("${app.security.login.ip.refill-per-minute:20}")
+    private double ipRefillPerMinute;
+
+    @Value("${app.security.login.username.capacity:5}")
+    private int usernameCapacity;
+
+    @Value("${app.security.login.username.refill-per-minute:5}")
+    private double usernameRefillPerMinute;
+
+    private Cache<String, TokenBucket> ipBuckets;
+    private Cache<String, TokenBucket> usernameBuckets;
+
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        ipBuckets = Caffeine.newBuilder().maximumSize(100_000).expireAfterAccess(Duration.ofMinutes(30)).build();
+        usernameBuckets = Caffeine.newBuilder().maximumSize(100_000).expireAfterAccess(Duration.ofMinutes(30)).build();
+    }
+
+    /**
+     * Consume un intento para la IP y comprueba que al usuario le queden fallos, o lanza
+     * {@link LoginThrottledException}.
+     */
+    public void checkAttempt(String clientIp, String username) {
+        TokenBucket ipBucket = ipBuckets.get(clientIp, ip -> new TokenBucket(ipCapacity, ipRefillPerMinute));
+        long waitNanos = ipBucket.tryConsume();
+        if (waitNanos == 0 && username != null && !username.isBlank()) {
+            TokenBucket userBucket = usernameBuckets.getIfPresent(usernameKey(username));
+            waitNanos = userBucket != null ? userBucket.available() : 0;
+        }
+        if (waitNanos > 0) {
+            throttled.increment();
+            long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos) + 1);
+            log.warn("🚫 Login limitado - Usuario: {}, IP: {}, reintentar en {} s", username, clientIp, retryAfter);
+            throw new LoginThrottledException(
+                    "Demasiados intentos de inicio de sesión. Inténtalo de nuevo en " + retryAfter + " segundos.", retryAfter);
+        }
+        allowed.increment();
+    }
+
+    /**
+     * Gasta un intento del usuario tras una contraseña incorrecta.
+     */
+    public void recordFailure(String username) {
+        if (username == null || username.isBlank()) {
+            return;
+        }
+        usernameBuckets.get(usernameKey(username), name -> new TokenBucket(usernameCapacity, usernameRefillPerMinute))
+                .tryConsume();
+    }
+
+    public long getAllowedCount() {
+        return allowed.sum();
+    }
+
+    public long getThrottledCount() {
+        return throttled.sum();
+    }
+
+    private static String usernameKey(String username) {
+        return username.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Token bucket con recarga continua. {@link #tryConsume} devuelve 0 si hay ficha
+     * o los nanosegundos que faltan para la siguiente.
+     */
+    static final class TokenBucket {
+        private final double capacity;
+        private final double tokensPerNano;
+        private double tokens;
+        private long lastRefill;
+
+        TokenBucket(int capacity, double refillPerMinute) {
+            this.capacity = capacity;
+            this.tokensPerNano = refillPerMinute / TimeUnit.MINUTES.toNanos(1);
+            this.tokens = capacity;
+            this.lastRefill = System.nanoTime();
+        }
+
+        synchronized long tryConsume() {
+            long wait = available();
+            if (wait == 0) {
+                tokens -= 1;
+            }
+            return wait;
+        }
+
+        /**
+         * Como {@link #tryConsume} pero sin gastar la ficha.
+         */
+        synchronized long available() {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+            lastRefill = now;
+            if (tokens >= 1) {
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) / tokensPerNano);
+        }
+    }
+}
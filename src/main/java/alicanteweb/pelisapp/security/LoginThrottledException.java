@@ -0,0 +1,21 @@
+package alicanteweb.pelisapp.security;
+
+import org.springframework.security.core.AuthenticationException;
+
+/**
+ * Intento de login rechazado sin comprobar la contraseña: límite de intentos superado
+ * o pool de BCrypt saturado. Se traduce a 429 en la API.
+ */
+public class LoginThrottledException extends AuthenticationException {
+
+    private final long retryAfterSeconds;
+
+    public LoginThrottledException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
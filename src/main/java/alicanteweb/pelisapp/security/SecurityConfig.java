@@ -1,5 +1,6 @@
 package alicanteweb.pelisapp.security;
 
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -22,6 +23,7 @@ import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
 import java.util.Arrays;
+import java.util.concurrent.Executor;
 
 @Configuration
 @EnableMethodSecurity
@@ -29,18 +31,28 @@ public class SecurityConfig {
 
     private final JwtTokenProvider tokenProvider;
     private final CustomUserDetailsService userDetailsService;
+    private final AccessRevocationRegistry revocationRegistry;
+    private final TokenRevocationStore tokenRevocationStore;
+    private final LoginRateLimiter loginRateLimiter;
+    private final ClientIpResolver clientIpResolver;
 
     @Value("${app.dev-mode:false}")
     private boolean devMode;
 
-    public SecurityConfig(JwtTokenProvider tokenProvider, CustomUserDetailsService userDetailsService) {
+    public SecurityConfig(JwtTokenProvider tokenProvider, CustomUserDetailsService userDetailsService,
+                          AccessRevocationRegistry revocationRegistry, TokenRevocationStore tokenRevocationStore,
+                          LoginRateLimiter loginRateLimiter, ClientIpResolver clientIpResolver) {
         this.tokenProvider = tokenProvider;
         this.userDetailsService = userDetailsService;
+        this.revocationRegistry = revocationRegistry;
+        this.tokenRevocationStore = tokenRevocationStore;
+        this.loginRateLimiter = loginRateLimiter;
+        this.clientIpResolver = clientIpResolver;
     }
 
     @Bean
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
-        JwtAuthenticationFilter jwtFilter = new JwtAuthenticationFilter(tokenProvider, userDetailsService);
+        JwtAuthenticationFilter jwtFilter = new JwtAuthenticationFilter(tokenProvider, revocationRegistry, tokenRevocationStore);
 
         http
             .csrf(AbstractHttpConfigurer::disable)
@@ -91,7 +103,7 @@ public class SecurityConfig {
                     .loginPage("/login")
                     .loginProcessingUrl("/login")
                     .successHandler(authenticationSuccessHandler())
-                    .failureHandler(authenticationFailureHandler())
+                    .failureHandler(LoginRateLimitFilter.recordingFailures(loginRateLimiter, authenticationFailureHandler()))
                     .usernameParameter("username")
                     .passwordParameter("password")
                     .permitAll()
@@ -114,6 +126,10 @@ public class SecurityConfig {
                     .userDetailsService(userDetailsService)
             )
 
+            // Límite de intentos antes de autenticar el formulario de login
+            .addFilterBefore(new LoginRateLimitFilter(loginRateLimiter, clientIpResolver, authenticationFailureHandler()),
+                    UsernamePasswordAuthenticationFilter.class)
+
             // Solo añadir JWT filter para rutas de API
             .addFilterBefore(jwtFilter, UsernamePasswordAuthenticationFilter.class);
 
@@ -121,8 +137,11 @@ public class SecurityConfig {
     }
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder(10); // Strength factor estándar para compatibilidad
+    public PasswordEncoder passwordEncoder(@Qualifier("passwordHashExecutor") Executor passwordHashExecutor,
+                                           @Value("${app.security.bcrypt.strength:10}") int strength,
+                                           @Value("${app.security.password.timeout-ms:2000}") long timeoutMs) {
+        // Las contraseñas con un coste menor se rehashean al hacer login (CustomUserDetailsService.updatePassword)
+        return new BoundedPasswordEncoder(new BCryptPasswordEncoder(strength), passwordHashExecutor, timeoutMs);
     }
 
     @Bean
@@ -0,0 +1,118 @@
+package alicanteweb.pelisapp.security;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Filtro de Bloom repartido en franjas por fecha de caducidad del token.
+ *
+ * <p>Cada identificador se guarda en la franja que contiene su {@code exp}, y se consulta solo esa
+ * franja. Cuando una franja entera ha caducado se descarta de una vez, así el filtro no acumula
+ * tokens muertos ni necesita borrar elementos. Sin falsos negativos; los positivos hay que
+ * confirmarlos contra el almacén autoritativo.</p>
+ */
+final class TimeBucketedBloomFilter {
+
+    private final long bucketMillis;
+    private final int expectedPerBucket;
+    private final double falsePositiveRate;
+    private final Map<Long, Bloom> buckets = new ConcurrentHashMap<>();
+
+    TimeBucketedBloomFilter(long bucketMillis, int expectedPerBucket, double falsePositiveRate) {
+        this.bucketMillis = bucketMillis;
+        this.expectedPerBucket = expectedPerBucket;
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    void add(String id, Instant expiresAt) {
+        buckets.computeIfAbsent(bucketOf(expiresAt), bucket -> new Bloom(expectedPerBucket, falsePositiveRate))
+               .add(hash(id));
+    }
+
+    boolean mightContain(String id, Instant expiresAt) {
+        Bloom bloom = buckets.get(bucketOf(expiresAt));
+        return bloom != null && bloom.mightContain(hash(id));
+    }
+
+    /**
+     * Descarta las franjas cuyos tokens ya han caducado todos. Devuelve cuántas se eliminaron.
+     */
+    int dropExpired(Instant now) {
+        long current = bucketOf(now);
+        int before = buckets.size();
+        buckets.keySet().removeIf(bucket -> bucket < current);
+        return before - buckets.size();
+    }
+
+    int bucketCount() {
+        return buckets.size();
+    }
+
+    private long bucketOf(Instant expiresAt) {
+        return Math.floorDiv(expiresAt.toEpochMilli(), bucketMillis);
+    }
+
+    /**
+     * FNV-1a de 64 bits sobre los caracteres con el mezclado final de MurmurHash3.
+     */
+    static long hash(String id) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < id.length(); i++) {
+            h ^= id.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Filtro de Bloom de tamaño fijo con doble hashing (Kirsch-Mitzenmacher) y bits atómicos.
+     */
+    private static final class Bloom {
+        private final AtomicLongArray words;
+        private final long bitCount;
+        private final int hashCount;
+
+        Bloom(int expected, double falsePositiveRate) {
+            long bits = (long) Math.ceil(-expected * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            this.words = new AtomicLongArray((int) Math.max(1, (bits + 63) / 64));
+            this.bitCount = words.length() * 64L;
+            this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expected * Math.log(2)));
+        }
+
+        void add(long hash) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 1; i <= hashCount; i++) {
+                long bit = Integer.toUnsignedLong(h1 + i * h2) % bitCount;
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long current;
+                do {
+                    current = words.get(word);
+                    if ((current & mask) != 0) {
+                        break;
+                    }
+                } while (!words.compareAndSet(word, current, current | mask));
+            }
+        }
+
+        boolean mightContain(long hash) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 1; i <= hashCount; i++) {
+                long bit = Integer.toUnsignedLong(h1 + i * h2) % bitCount;
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package alicanteweb.pelisapp.security;
+
+import alicanteweb.pelisapp.entity.RevokedToken;
+import alicanteweb.pelisapp.repository.RevokedTokenRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Revocación de tokens JWT por {@code jti}.
+ *
+ * <p>La lista autoritativa está en {@code revoked_token}. Cada nodo mantiene en memoria un
+ * {@link TimeBucketedBloomFilter} con los jti revocados aún vigentes: el caso habitual (token no
+ * revocado) se resuelve con un par de accesos a memoria, sin BD. Solo los positivos del filtro se
+ * confirman en BD, y la respuesta se cachea hasta que llegue una revocación nueva de ese jti.</p>
+ *
+ * <p>Los nodos se sincronizan leyendo las filas con id mayor que el último visto. Cada consulta
+ * vuelve a leer un margen de ids anteriores, por si una transacción con id menor confirmó más tarde;
+ * añadir dos veces el mismo jti al filtro no tiene efecto.</p>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TokenRevocationStore {
+
+    private static final int POLL_BATCH_SIZE = 1000;
+
+    private final RevokedTokenRepository revokedTokenRepository;
+
+    @Value("${app.jwt.revocation.bucket:1h}")
+    private Duration bucketWidth;
+
+    @Value("${app.jwt.revocation.expected-per-bucket:10000}")
+    private int expectedPerBucket;
+
+    @Value("${app.jwt.revocation.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    @Value("${app.jwt.revocation.poll-overlap:100}")
+    private long pollOverlap;
+
+    private volatile TimeBucketedBloomFilter filter;
+    private volatile long lastSeenId;
+    private final Cache<String, Boolean> confirmed = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(Duration.ofMinutes(10))
+            .build();
+
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder filterHits = new LongAdder();
+    private final LongAdder revokedHits = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        filter = newFilter();
+    }
+
+    /**
+     * Indica si el token está revocado. Los tokens sin jti (emitidos antes de existir la revocación) no lo están.
+     */
+    public boolean isRevoked(String tokenId, Instant expiresAt) {
+        if (tokenId == null || expiresAt == null) {
+            return false;
+        }
+        checks.increment();
+        if (!filter.mightContain(tokenId, expiresAt)) {
+            return false;
+        }
+        filterHits.increment();
+        boolean revoked = confirmed.get(tokenId, revokedTokenRepository::existsByJti);
+        if (revoked) {
+            revokedHits.increment();
+        }
+        return revoked;
+    }
+
+    /**
+     * Revoca un token hasta su caducidad. Idempotente.
+     */
+    public void revoke(String tokenId, Instant expiresAt, String reason) {
+        if (tokenId == null || expiresAt == null || !expiresAt.isAfter(Instant.now())) {
+            return;
+        }
+        if (!revokedTokenRepository.existsByJti(tokenId)) {
+            RevokedToken revoked = new RevokedToken();
+            revoked.setJti(tokenId);
+            revoked.setExpiresAt(expiresAt);
+            revoked.setRevokedAt(Instant.now());
+            revoked.setReason(reason);
+            try {
+                revokedTokenRepository.save(revoked);
+            } catch (DataIntegrityViolationException e) {
+                log.debug("Token {} ya revocado por otra petición", tokenId);
+            }
+        }
+        remember(tokenId, expiresAt);
+        log.info("🔐 Token {} revocado ({})", tokenId, reason);
+    }
+
+    /**
+     * Reconstruye el filtro con todas las revocaciones vigentes.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        TimeBucketedBloomFilter rebuilt = newFilter();
+        long maxId = 0;
+        List<RevokedToken> active = revokedTokenRepository.findByExpiresAtAfter(Instant.now());
+        for (RevokedToken revoked : active) {
+            rebuilt.add(revoked.getJti(), revoked.getExpiresAt());
+            maxId = Math.max(maxId, revoked.getId());
+        }
+        filter = rebuilt;
+        lastSeenId = Math.max(lastSeenId, maxId);
+        confirmed.invalidateAll();
+        log.info("🔐 Filtro de revocación cargado: {} tokens revocados en {} franjas", active.size(), rebuilt.bucketCount());
+    }
+
+    @Scheduled(fixedDelayString = "${app.jwt.revocation.poll-interval-ms:2000}")
+    public synchronized void poll() {
+        try {
+            List<RevokedToken> changes;
+            do {
+                long from = Math.max(0, lastSeenId - pollOverlap);
+                changes = revokedTokenRepository.findByIdGreaterThanOrderByIdAsc(from, PageRequest.ofSize(POLL_BATCH_SIZE));
+                long newest = lastSeenId;
+                for (RevokedToken revoked : changes) {
+                    remember(revoked.getJti(), revoked.getExpiresAt());
+                    newest = Math.max(newest, revoked.getId());
+                }
+                if (newest == lastSeenId) {
+                    break;
+                }
+                lastSeenId = newest;
+            } while (changes.size() == POLL_BATCH_SIZE);
+        } catch (Exception e) {
+            log.warn("No se pudieron leer las revocaciones de tokens: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(cron = "${app.jwt.revocation.purge-cron:0 15 * * * *}")
+    public void purgeExpired() {
+        Instant now = Instant.now();
+        int deleted = revokedTokenRepository.deleteExpired(now);
+        int buckets = filter.dropExpired(now);
+        if (deleted > 0 || buckets > 0) {
+            log.debug("Revocaciones caducadas: {} filas y {} franjas eliminadas", deleted, buckets);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("checks", checks.sum());
+        stats.put("filter_hits", filterHits.sum());
+        stats.put("revoked_hits", revokedHits.sum());
+        stats.put("buckets", filter.bucketCount());
+        stats.put("last_seen_id", lastSeenId);
+        return stats;
+    }
+
+    private void remember(String tokenId, Instant expiresAt) {
+        filter.add(tokenId, expiresAt);
+        // Un "no revocado" cacheado por un falso positivo anterior ya no es válido
+        if (Boolean.FALSE.equals(confirmed.getIfPresent(tokenId))) {
+            confirmed.invalidate(tokenId);
+        }
+    }
+
+    private TimeBucketedBloomFilter newFilter() {
+        return new TimeBucketedBloomFilter(bucketWidth.toMillis(), expectedPerBucket, falsePositiveRate);
+    }
+}
@@ -0,0 +1,16 @@
+package alicanteweb.pelisapp.security;
+
+/**
+ * Se publica cuando cambia el acceso de un usuario (baneo, desbaneo, cierre de sesión forzado o borrado)
+ * para que {@link AccessRevocationRegistry} vuelva a leer su estado.
+ */
+public record UserAccessChangedEvent(String username, boolean deleted) {
+
+    public static UserAccessChangedEvent changed(String username) {
+        return new UserAccessChangedEvent(username, false);
+    }
+
+    public static UserAccessChangedEvent deleted(String username) {
+        return new UserAccessChangedEvent(username, true);
+    }
+}
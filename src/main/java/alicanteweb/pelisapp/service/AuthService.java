@@ -9,9 +9,12 @@ import alicanteweb.pelisapp.entity.User;
 import alicanteweb.pelisapp.repository.RoleRepository;
 import alicanteweb.pelisapp.repository.UserRepository;
 import alicanteweb.pelisapp.security.JwtTokenProvider;
+import alicanteweb.pelisapp.security.LoginRateLimiter;
+import alicanteweb.pelisapp.security.TokenRevocationStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
@@ -20,6 +23,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
@@ -41,6 +45,8 @@ public class AuthService {
     private final RoleRepository roleRepository;
     private final PasswordEncoder passwordEncoder;
     private final JwtTokenProvider jwtTokenProvider;
+    private final TokenRevocationStore tokenRevocationStore;
+    private final LoginRateLimiter loginRateLimiter;
     private final AuthenticationManager authenticationManager;
 
     /**
@@ -105,8 +111,9 @@ public class AuthService {
     /**
      * Autenticación principal del sistema.
      */
-    public LoginResponse login(LoginRequest req) {
+    public LoginResponse login(LoginRequest req, String clientIp) {
         log.info("Intentando login para usuario: {}", req.getUsername());
+        loginRateLimiter.checkAttempt(clientIp, req.getUsername());
         try {
             Authentication auth = authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(req.getUsername(), req.getPassword()));
@@ -122,25 +129,36 @@ public class AuthService {
             return generateTokensForUser(principal.getUsername(), roles);
 
         } catch (Exception e) {
+            if (e instanceof BadCredentialsException) {
+                loginRateLimiter.recordFailure(req.getUsername());
+            }
             log.error("Error en login para usuario {}: {}", req.getUsername(), e.getMessage());
             throw e;
         }
     }
 
     /**
-     * Renovación de token.
+     * Renovación de token. Solo acepta refresh tokens (no de acceso, confirmación ni recuperación)
+     * y emite los roles con el mismo prefijo {@code ROLE_} que el login.
      */
     public LoginResponse refresh(String refreshToken) {
-        if (!jwtTokenProvider.validateToken(refreshToken)) {
-            throw new IllegalArgumentException("Invalid refresh token");
-        }
-
-        String username = jwtTokenProvider.getUsername(refreshToken);
+        JwtTokenProvider.VerifiedToken verified = jwtTokenProvider.parseAndVerify(refreshToken)
+            .filter(token -> "refresh".equals(token.type()))
+            .filter(token -> !tokenRevocationStore.isRevoked(token.tokenId(), token.expiresAt()))
+            .orElseThrow(() -> new IllegalArgumentException("Invalid refresh token"));
+        String username = verified.username();
         User user = userRepository.findByUsername(username)
             .orElseThrow(() -> new IllegalArgumentException("User not found"));
 
+        // Usuarios baneados o con cierre de sesión forzado posterior al token no pueden renovar
+        if (user.isBanned() || (user.getTokensValidAfter() != null && verified.issuedAt() != null
+                && !verified.issuedAt().isAfter(user.getTokensValidAfter().truncatedTo(ChronoUnit.SECONDS)))) {
+            throw new IllegalArgumentException("Invalid refresh token");
+        }
+
+        // Igual que las authorities de CustomUserDetailsService, para que hasRole() siga funcionando
         Set<String> roles = user.getRoles().stream()
-            .map(Role::getName)
+            .map(role -> "ROLE_" + role.getName())
             .collect(java.util.stream.Collectors.toSet());
 
         String access = jwtTokenProvider.createAccessToken(username, roles);
@@ -149,6 +167,17 @@ public class AuthService {
         return new LoginResponse(access, expires, refreshToken);
     }
 
+    /**
+     * Cierre de sesión: revoca el access token y el refresh token hasta que caduquen.
+     * Los tokens que no superan la verificación se ignoran.
+     */
+    public void logout(String accessToken, String refreshToken) {
+        for (String token : new String[]{accessToken, refreshToken}) {
+            jwtTokenProvider.parseAndVerify(token).ifPresent(verified ->
+                tokenRevocationStore.revoke(verified.tokenId(), verified.expiresAt(), "logout"));
+        }
+    }
+
     /**
      * Buscar usuario por email (mantenido para compatibilidad).
      */
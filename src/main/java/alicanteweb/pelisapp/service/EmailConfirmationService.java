@@ -63,15 +63,15 @@ public class EmailConfirmationService {
     @Transactional
     public EmailConfirmationResult confirmAccount(String token) {
         try {
-            // Validar token
-            if (!jwtTokenProvider.validateToken(token)) {
+            // Validar token y extraer su información
+            Optional<JwtTokenProvider.VerifiedToken> verified = jwtTokenProvider.parseAndVerify(token);
+            if (verified.isEmpty()) {
                 log.warn("Token de confirmación inválido");
                 return EmailConfirmationResult.failure("Token de confirmación inválido o expirado");
             }
 
-            // Extraer información del token
-            String username = jwtTokenProvider.getUsername(token);
-            String tokenEmail = jwtTokenProvider.getEmailFromToken(token);
+            String username = verified.get().username();
+            String tokenEmail = verified.get().email();
 
             Optional<User> userOpt = userRepository.findByUsername(username);
             if (userOpt.isEmpty()) {
@@ -1,61 +1,47 @@
 package alicanteweb.pelisapp.service;
 
-import alicanteweb.pelisapp.service.image.ImageDownloader;
-import alicanteweb.pelisapp.service.image.ImageStorage;
+import alicanteweb.pelisapp.service.image.ImageFetchQueue;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.io.IOException;
-import java.io.InputStream;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
 
 /**
  * Servicio principal para manejo de imágenes.
- * Refactorizado usando ImageDownloader e ImageStorage para cumplir SRP.
- * Actúa como fachada coordinando descarga y almacenamiento.
+ * Fachada sobre {@link ImageFetchQueue}: las imágenes se guardan una sola vez por contenido,
+ * así descargar dos veces la misma imagen no crea copias nuevas.
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ImageService {
 
-    private final ImageDownloader imageDownloader;
-    private final ImageStorage imageStorage;
+    private final ImageFetchQueue imageFetchQueue;
 
     /**
      * Descarga una imagen desde una URL remota y la guarda localmente.
      *
      * @param imageUrl URL de la imagen remota
-     * @param prefix prefijo para el nombre del archivo (ej: "movie", "profile")
      * @param subfolder subcarpeta donde guardar (ej: "posters", "profiles")
-     * @return ruta relativa del archivo guardado localmente, o null si falla
+     * @return ruta pública del archivo guardado localmente, o null si falla
      */
-    public String downloadAndSave(String imageUrl, String prefix, String subfolder) {
+    public String downloadAndSave(String imageUrl, String subfolder) {
         if (imageUrl == null || imageUrl.isBlank()) {
             log.warn("⚠️ URL de imagen vacía, no se puede descargar");
             return null;
         }
 
         try {
-            log.info("🔄 Descargando y guardando imagen: {} -> {}/{}", imageUrl, subfolder, prefix);
-
-            // Generar nombre único para el archivo
-            String filename = imageDownloader.generateUniqueFilename(prefix, imageUrl);
-
-            // Descargar imagen
-            try (InputStream imageStream = imageDownloader.downloadImage(imageUrl)) {
-                // Guardar localmente
-                String relativePath = imageStorage.saveImage(imageStream, filename, subfolder);
-
-                log.info("✅ Imagen descargada y guardada: {} -> {}", imageUrl, relativePath);
-                return relativePath;
-            }
-
-        } catch (IOException e) {
-            log.error("❌ Error descargando y guardando imagen desde {}: {}", imageUrl, e.getMessage());
-            return null;
-        } catch (Exception e) {
-            log.error("❌ Error inesperado procesando imagen desde {}: {}", imageUrl, e.getMessage());
+            log.info("🔄 Descargando y guardando imagen: {} -> {}", imageUrl, subfolder);
+            String storedPath = imageFetchQueue.fetch(imageUrl, subfolder, false).join();
+            log.info("✅ Imagen descargada y guardada: {} -> {}", imageUrl, storedPath);
+            return storedPath;
+
+        } catch (CompletionException | CancellationException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            log.error("❌ Error descargando y guardando imagen desde {}: {}", imageUrl, cause.getMessage());
             return null;
         }
     }
@@ -1,20 +1,30 @@
 package alicanteweb.pelisapp.service;
 
+import alicanteweb.pelisapp.service.image.ImageFetchQueue;
+import alicanteweb.pelisapp.service.image.ImagePathUpdater;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
-import java.net.URI;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
 
 /**
  * Servicio para almacenar imágenes localmente desde TMDB.
@@ -27,123 +37,47 @@ public class ImageStorageService {
     @Value("${app.images.storage-path:./data/images}")
     private String storageBasePath;
 
-    @Value("${app.images.serve-base:/images}")
-    private String serveBasePath;
-
-    private final HttpClient httpClient = HttpClient.newHttpClient();
+    private final ImageFetchQueue imageFetchQueue;
 
     /**
-     * Descarga una imagen desde una URL y la guarda localmente.
+     * Descarga una imagen desde una URL y la guarda localmente, esperando al resultado.
+     * Pasa por {@link ImageFetchQueue}, así comparte límite por host, reintentos y deduplicación
+     * con las descargas en segundo plano. Las importaciones deben usar {@link ImagePathUpdater}.
      * @param imageUrl URL completa de la imagen (por ejemplo, <a href="https://image.tmdb.org/t/p/w500/abc.jpg">https://image.tmdb.org/t/p/w500/abc.jpg</a>)
      * @param subfolder subcarpeta donde guardar (ej: "posters", "backdrops")
-     * @param filename nombre del archivo sin extensión
-     * @return ruta relativa donde se guardó la imagen, o null si falló
+     * @return ruta pública del blob guardado, o null si falló
      */
-    public String downloadAndStoreImage(String imageUrl, String subfolder, String filename) {
-        if (imageUrl == null || imageUrl.isBlank()) {
-            return null;
-        }
-
-        try {
-            // Crear directorios si no existen
-            Path storageDir = Paths.get(storageBasePath, subfolder);
-            Files.createDirectories(storageDir);
-
-            // Determinar extensión de la imagen
-            String extension = getImageExtension(imageUrl);
-            String fullFilename = filename + extension;
-
-            Path targetPath = storageDir.resolve(fullFilename);
-
-            // Si ya existe, no descargar de nuevo
-            if (Files.exists(targetPath)) {
-                String relativePath = serveBasePath + "/" + subfolder + "/" + fullFilename;
-                log.debug("Image already exists: {}", relativePath);
-                return relativePath;
-            }
-
-            // Descargar imagen
-            HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(imageUrl))
-                .header("User-Agent", "PelisApp/1.0")
-                .build();
-
-            HttpResponse<InputStream> response = httpClient.send(request,
-                HttpResponse.BodyHandlers.ofInputStream());
-
-            if (response.statusCode() == 200) {
-                Files.copy(response.body(), targetPath, StandardCopyOption.REPLACE_EXISTING);
-                String relativePath = serveBasePath + "/" + subfolder + "/" + fullFilename;
-                log.info("Downloaded image: {} -> {}", imageUrl, relativePath);
-                return relativePath;
-            } else {
-                log.warn("Failed to download image {}: HTTP {}", imageUrl, response.statusCode());
-                return null;
-            }
-
-        } catch (IOException | InterruptedException e) {
-            log.error("Error downloading image {}: {}", imageUrl, e.getMessage());
-            return null;
-        }
-    }
-
-    private String getImageExtension(String url) {
-        if (url.contains(".jpg") || url.contains(".jpeg")) return ".jpg";
-        if (url.contains(".png")) return ".png";
-        if (url.contains(".webp")) return ".webp";
-        return ".jpg"; // default
+    public String downloadAndStoreImage(String imageUrl, String subfolder) {
+        return awaitDownload(imageUrl, subfolder, false);
     }
 
     /**
      * Fuerza la redescarga de una imagen, incluso si ya existe localmente.
      * @param imageUrl URL completa de la imagen
      * @param subfolder subcarpeta donde guardar
-     * @param filename nombre del archivo sin extensión
-     * @return ruta relativa donde se guardó la imagen, o null si falló
+     * @return ruta pública del blob guardado, o null si falló
      */
-    public String forceDownloadAndStoreImage(String imageUrl, String subfolder, String filename) {
+    public String forceDownloadAndStoreImage(String imageUrl, String subfolder) {
+        return awaitDownload(imageUrl, subfolder, true);
+    }
+
+    private String awaitDownload(String imageUrl, String subfolder, boolean force) {
         if (imageUrl == null || imageUrl.isBlank()) {
             return null;
         }
-
         try {
-            // Crear directorios si no existen
-            Path storageDir = Paths.get(storageBasePath, subfolder);
-            Files.createDirectories(storageDir);
-
-            // Determinar extensión de la imagen
-            String extension = getImageExtension(imageUrl);
-            String fullFilename = filename + extension;
-
-            Path targetPath = storageDir.resolve(fullFilename);
-
-            // Descargar imagen (forzando sobreescritura)
-            HttpRequest request = HttpRequest.newBuilder()
-                .uri(URI.create(imageUrl))
-                .header("User-Agent", "PelisApp/1.0")
-                .build();
-
-            HttpResponse<InputStream> response = httpClient.send(request,
-                HttpResponse.BodyHandlers.ofInputStream());
-
-            if (response.statusCode() == 200) {
-                Files.copy(response.body(), targetPath, StandardCopyOption.REPLACE_EXISTING);
-                String relativePath = serveBasePath + "/" + subfolder + "/" + fullFilename;
-                log.info("Force downloaded image: {} -> {}", imageUrl, relativePath);
-                return relativePath;
-            } else {
-                log.warn("Failed to force download image {}: HTTP {}", imageUrl, response.statusCode());
-                return null;
-            }
-
-        } catch (IOException | InterruptedException e) {
-            log.error("Error force downloading image {}: {}", imageUrl, e.getMessage());
+            return imageFetchQueue.fetch(imageUrl, subfolder, force).join();
+        } catch (CompletionException | CancellationException e) {
+            log.error("Error downloading image {}: {}", imageUrl, e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
             return null;
         }
     }
 
     /**
      * Elimina archivos duplicados en la subcarpeta indicada (por hash de contenido).
+     * Solo queda trabajo con las imágenes antiguas de nombre aleatorio de la raíz de la subcarpeta:
+     * las descargas nuevas ya se guardan una vez por hash en {@code subcarpeta/ab/<sha256>}. Solo se
+     * calcula el hash de archivos con el mismo tamaño que otro, y leyéndolos en streaming.
      * Devuelve el número de archivos eliminados.
      */
     public int deleteDuplicates(String subfolder) {
@@ -154,19 +88,28 @@ public class ImageStorageService {
                 log.warn("No existe la carpeta de imágenes: {}", storageDir);
                 return 0;
             }
-            java.util.Map<String, Path> hashToFile = new java.util.HashMap<>();
-            java.util.Set<Path> duplicates = new java.util.HashSet<>();
-            try (java.util.stream.Stream<Path> stream = Files.list(storageDir)) {
+            Map<Long, List<Path>> bySize = new HashMap<>();
+            try (Stream<Path> stream = Files.list(storageDir)) {
                 for (Path file : stream.filter(Files::isRegularFile).toList()) {
-                    try (InputStream in = Files.newInputStream(file)) {
-                        byte[] content = in.readAllBytes();
-                        String hash = java.util.Base64.getEncoder().encodeToString(java.security.MessageDigest.getInstance("SHA-256").digest(content));
-                        if (hashToFile.containsKey(hash)) {
+                    try {
+                        bySize.computeIfAbsent(Files.size(file), size -> new ArrayList<>()).add(file);
+                    } catch (IOException e) {
+                        log.warn("Error leyendo archivo {}: {}", file, e.getMessage());
+                    }
+                }
+            }
+            Set<Path> duplicates = new HashSet<>();
+            for (List<Path> sameSize : bySize.values()) {
+                if (sameSize.size() < 2) {
+                    continue;
+                }
+                Set<String> seen = new HashSet<>();
+                for (Path file : sameSize) {
+                    try {
+                        if (!seen.add(sha256(file))) {
                             duplicates.add(file);
-                        } else {
-                            hashToFile.put(hash, file);
                         }
-                    } catch (Exception e) {
+                    } catch (IOException e) {
                         log.warn("Error leyendo archivo {}: {}", file, e.getMessage());
                     }
                 }
@@ -186,4 +129,13 @@ public class ImageStorageService {
         }
         return deleted;
     }
+
+    private static String sha256(Path file) throws IOException {
+        try (DigestInputStream in = new DigestInputStream(Files.newInputStream(file), MessageDigest.getInstance("SHA-256"))) {
+            in.transferTo(OutputStream.nullOutputStream());
+            return HexFormat.of().formatHex(in.getMessageDigest().digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 }
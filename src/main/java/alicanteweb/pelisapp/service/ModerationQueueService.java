@@ -0,0 +1,253 @@
+package alicanteweb.pelisapp.service;
+
+import alicanteweb.pelisapp.dto.ModerationQueueItem;
+import alicanteweb.pelisapp.entity.CommentModeration;
+import alicanteweb.pelisapp.entity.ModerationStatusCounter;
+import alicanteweb.pelisapp.entity.User;
+import alicanteweb.pelisapp.repository.CommentModerationRepository;
+import alicanteweb.pelisapp.repository.ModerationStatusCounterRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Cola de moderación del panel de administración y contadores por estado.
+ *
+ * <p>La cola se pagina por clave ({@code created_at}, {@code id}) en lugar de con OFFSET, así
+ * cualquier página cuesta lo mismo aunque haya miles de elementos en revisión manual. Las
+ * acciones en bloque deciden todos los ids con un único UPDATE dentro de una transacción.</p>
+ *
+ * <p>Las estadísticas salen de {@code moderation_status_counter}, que se actualiza en cada
+ * transición de estado. Se reconstruye desde {@code comment_moderation} al arrancar si está
+ * vacía y de forma periódica, para corregir derivas (p. ej. reseñas borradas en cascada).</p>
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ModerationQueueService {
+
+    public static final int MAX_PAGE_SIZE = 200;
+    public static final int MAX_BULK_IDS = 500;
+
+    // Límites de fecha cuando el filtro viene vacío, para que la consulta siempre use el rango del índice
+    private static final Instant QUEUE_MIN_INSTANT = Instant.parse("1970-01-01T00:00:00Z");
+    private static final Instant QUEUE_MAX_INSTANT = Instant.parse("9999-01-01T00:00:00Z");
+
+    private final CommentModerationRepository commentModerationRepository;
+    private final ModerationStatusCounterRepository counterRepository;
+
+    /**
+     * Página de la cola. {@code cursor} es el {@link QueuePage#nextCursor()} de la página anterior o {@code null}.
+     */
+    @Transactional(readOnly = true)
+    public QueuePage findQueue(CommentModeration.ModerationStatus status, Double minScore, Double maxScore,
+                               Instant from, Instant to, String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        Cursor after = Cursor.decode(cursor);
+
+        Instant lower = from != null ? from : QUEUE_MIN_INSTANT;
+        Instant upper = to != null ? to : QUEUE_MAX_INSTANT;
+
+        List<ModerationQueueItem> items = after == null
+                ? commentModerationRepository.findQueueFirstPage(
+                        status, minScore, maxScore, lower, upper, PageRequest.ofSize(pageSize + 1))
+                : commentModerationRepository.findQueueNextPage(
+                        status, minScore, maxScore, lower, upper, after.createdAt(), after.id(),
+                        PageRequest.ofSize(pageSize + 1));
+
+        boolean hasMore = items.size() > pageSize;
+        if (hasMore) {
+            items = new ArrayList<>(items.subList(0, pageSize));
+        }
+        String nextCursor = hasMore
+                ? new Cursor(items.get(pageSize - 1).getCreatedAt(), items.get(pageSize - 1).getId()).encode()
+                : null;
+        return new QueuePage(items, nextCursor, hasMore);
+    }
+
+    /**
+     * Aprueba o rechaza varias moderaciones a la vez. Bloquea las filas, aplica un único UPDATE
+     * y ajusta los contadores con los estados de origen. Devuelve cuántas cambiaron.
+     */
+    @Transactional
+    public int decideAll(List<Long> ids, CommentModeration.ModerationStatus target, User reviewer) {
+        if (target != CommentModeration.ModerationStatus.APPROVED && target != CommentModeration.ModerationStatus.REJECTED) {
+            throw new IllegalArgumentException("Solo se puede aprobar o rechazar");
+        }
+        Set<Long> distinctIds = new LinkedHashSet<>(ids);
+        if (distinctIds.isEmpty()) {
+            return 0;
+        }
+        if (distinctIds.size() > MAX_BULK_IDS) {
+            throw new IllegalArgumentException("Como máximo " + MAX_BULK_IDS + " moderaciones por petición");
+        }
+
+        Map<CommentModeration.ModerationStatus, Long> leaving = new EnumMap<>(CommentModeration.ModerationStatus.class);
+        for (CommentModeration moderation : commentModerationRepository.lockAllById(distinctIds)) {
+            if (moderation.getStatus() != target) {
+                leaving.merge(moderation.getStatus(), 1L, Long::sum);
+            }
+        }
+
+        int updated = commentModerationRepository.decideAll(distinctIds, target, Instant.now(), reviewer);
+        leaving.forEach((from, count) -> counterRepository.adjust(from, -count));
+        counterRepository.adjust(target, updated);
+
+        log.info("🛡️ {} moderaciones marcadas como {} por {}", updated, target,
+                reviewer != null ? reviewer.getUsername() : "sistema");
+        return updated;
+    }
+
+    /**
+     * Resuelve la moderación PENDING de una reseña, si sigue en la generación {@code generation},
+     * y ajusta los contadores.
+     * Va en su propia transacción porque se puede llamar desde un {@code afterCommit}.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public int resolvePending(Long reviewId, int generation, CommentModeration.ModerationStatus status, Double score,
+                              String reason, boolean aiProcessed) {
+        int updated = commentModerationRepository.resolvePending(reviewId, generation, status, score, reason,
+                aiProcessed, Instant.now());
+        if (updated > 0) {
+            recordTransition(CommentModeration.ModerationStatus.PENDING, status);
+        }
+        return updated;
+    }
+
+    /**
+     * Hasta {@code limit} moderaciones PENDING creadas antes de {@code before}, las más antiguas primero.
+     */
+    @Transactional(readOnly = true)
+    public List<PendingModeration> findStalePending(Instant before, int limit) {
+        List<PendingModeration> pending = new ArrayList<>();
+        for (Object[] row : commentModerationRepository.findStalePending(before, PageRequest.of(0, limit))) {
+            pending.add(new PendingModeration((Long) row[0], ((Number) row[1]).intValue(), (String) row[2]));
+        }
+        return pending;
+    }
+
+    /**
+     * Registra una moderación nueva; se une a la transacción que la persiste.
+     */
+    @Transactional
+    public void recordCreated(CommentModeration.ModerationStatus status) {
+        counterRepository.adjust(status, 1);
+    }
+
+    /**
+     * Registra un cambio de estado; se une a la transacción que lo persiste.
+     */
+    @Transactional
+    public void recordTransition(CommentModeration.ModerationStatus from, CommentModeration.ModerationStatus to) {
+        if (from == to) {
+            return;
+        }
+        if (from != null) {
+            counterRepository.adjust(from, -1);
+        }
+        counterRepository.adjust(to, 1);
+    }
+
+    /**
+     * Totales por estado leídos de la tabla de contadores.
+     */
+    @Transactional(readOnly = true)
+    public Map<CommentModeration.ModerationStatus, Long> getCounts() {
+        Map<CommentModeration.ModerationStatus, Long> counts = new EnumMap<>(CommentModeration.ModerationStatus.class);
+        for (CommentModeration.ModerationStatus status : CommentModeration.ModerationStatus.values()) {
+            counts.put(status, 0L);
+        }
+        counterRepository.findAll().forEach(counter -> counts.put(counter.getStatus(), counter.getTotal()));
+        return counts;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initCounters() {
+        if (counterRepository.count() < CommentModeration.ModerationStatus.values().length) {
+            rebuildCounters();
+        }
+    }
+
+    /**
+     * Recalcula los contadores con un COUNT agrupado. Se ejecuta en horas de poco tráfico.
+     *
+     * <p>Primero bloquea las filas de contadores: las transacciones que ya han hecho su {@code adjust}
+     * terminan antes del COUNT (que las ve) y las que aún no lo han hecho esperan a este commit y
+     * suman su delta sobre el total nuevo. Así no se pisa ningún ajuste en curso.</p>
+     */
+    @Scheduled(cron = "${app.moderation.counters.reconcile-cron:0 30 4 * * *}")
+    @Transactional
+    public void rebuildCounters() {
+        Map<CommentModeration.ModerationStatus, ModerationStatusCounter> counters =
+                new EnumMap<>(CommentModeration.ModerationStatus.class);
+        counterRepository.lockAll().forEach(counter -> counters.put(counter.getStatus(), counter));
+
+        Map<CommentModeration.ModerationStatus, Long> counts = new EnumMap<>(CommentModeration.ModerationStatus.class);
+        for (CommentModeration.ModerationStatus status : CommentModeration.ModerationStatus.values()) {
+            counts.put(status, 0L);
+        }
+        for (Object[] row : commentModerationRepository.countGroupedByStatus()) {
+            counts.put((CommentModeration.ModerationStatus) row[0], (Long) row[1]);
+        }
+        counts.forEach((status, total) -> {
+            ModerationStatusCounter counter = counters.get(status);
+            if (counter != null) {
+                counter.setTotal(total);
+            } else {
+                counterRepository.save(new ModerationStatusCounter(status, total));
+            }
+        });
+        log.info("🔢 Contadores de moderación recalculados: {}", counts);
+    }
+
+    /**
+     * Página de la cola con el cursor para pedir la siguiente.
+     */
+    public record QueuePage(List<ModerationQueueItem> items, String nextCursor, boolean hasMore) {}
+
+    /**
+     * Posición en la cola: created_at e id del último elemento devuelto, codificados en base64url.
+     */
+    private record Cursor(Instant createdAt, Long id) {
+
+        String encode() {
+            String raw = createdAt.toString() + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String cursor) {
+            if (cursor == null || cursor.isBlank()) {
+                return null;
+            }
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = raw.indexOf('|');
+                return new Cursor(Instant.parse(raw.substring(0, separator)), Long.parseLong(raw.substring(separator + 1)));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Cursor de paginación inválido");
+            }
+        }
+    }
+
+    /**
+     * Moderación pendiente de una reseña: generación y texto con los que volver a encolarla.
+     */
+    public record PendingModeration(Long reviewId, int generation, String text) {
+    }
+}
@@ -2,25 +2,29 @@ package alicanteweb.pelisapp.service;
 
 import alicanteweb.pelisapp.entity.CommentModeration;
 import alicanteweb.pelisapp.entity.Review;
-import alicanteweb.pelisapp.repository.CommentModerationRepository;
-import alicanteweb.pelisapp.service.moderation.ContentAnalyzer;
+import alicanteweb.pelisapp.service.moderation.ModerationContext;
+import alicanteweb.pelisapp.service.moderation.ModerationPipeline;
+import alicanteweb.pelisapp.service.moderation.ModerationScheduler;
 import alicanteweb.pelisapp.service.moderation.OllamaClient;
+import alicanteweb.pelisapp.service.moderation.StageDecision;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import jakarta.annotation.PostConstruct;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Servicio de moderación refactorizado usando principios SOLID.
  * Responsabilidades separadas:
- * - ContentAnalyzer: análisis de contenido con reglas
- * - OllamaClient: comunicación con IA
+ * - ModerationPipeline: decisión por niveles (caché, diccionario, clasificador, IA, reglas)
+ * - ModerationScheduler: cola y concurrencia de la moderación asíncrona
  * - ModerationService: coordinación y persistencia
  */
 @Service
@@ -28,10 +32,10 @@ import java.util.concurrent.CompletableFuture;
 @Slf4j
 public class ModerationService {
 
-    private final CommentModerationRepository commentModerationRepository;
-    private final ContentAnalyzer contentAnalyzer;
+    private final ModerationQueueService moderationQueueService;
     private final OllamaClient ollamaClient;
-    private final ModeratingAI moderatingAI;
+    private final ModerationPipeline moderationPipeline;
+    private final ModerationScheduler moderationScheduler;
 
     @Value("${app.moderation.toxicity.threshold:0.7}")
     private double toxicityThreshold;
@@ -42,8 +46,14 @@ public class ModerationService {
     @Value("${app.moderation.fallback.enabled:true}")
     private boolean fallbackEnabled;
 
-    @Value("${app.moderation.ia.threshold:0.7}")
-    private double iaToxicityThreshold;
+    @Value("${app.moderation.requeue.stale-after:10m}")
+    private Duration requeueStaleAfter;
+
+    @Value("${app.moderation.requeue.batch-size:50}")
+    private int requeueBatchSize;
+
+    // Reseñas con un trabajo de moderación encolado o en curso (y cuántos), para no reencolarlas
+    private final Map<Long, Integer> inFlight = new ConcurrentHashMap<>();
 
     @PostConstruct
     public void init() {
@@ -54,51 +64,160 @@ public class ModerationService {
     }
 
     /**
-     * Moderar una reseña de manera asíncrona.
+     * Crea la fila de moderación inicial de una reseña nueva (sin persistirla).
+     * Las reseñas sin texto o con la moderación deshabilitada se aprueban directamente;
+     * el resto queda en PENDING hasta que {@link #scheduleModeration} decida.
      */
-    @Async
-    @Transactional
-    public CompletableFuture<CommentModeration> moderateReviewAsync(Review review) {
+    public CommentModeration createInitialModeration(Review review) {
+        String text = review.getText();
         if (!moderationEnabled) {
-            log.debug("Moderación deshabilitada, aprobando reseña ID: {}", review.getId());
-            return CompletableFuture.completedFuture(createApprovedModeration(review));
+            return createApprovedModeration(review, "Moderación deshabilitada");
         }
+        if (text == null || text.isBlank()) {
+            return createApprovedModeration(review, "Valoración sin texto");
+        }
+        return createPendingModeration(review);
+    }
 
-        log.info("🛡️ Iniciando moderación para reseña ID: {} - Usuario: {}",
-                review.getId(), review.getUser().getUsername());
+    /**
+     * Vuelve a abrir la moderación de una reseña editada o apelada reutilizando su fila.
+     * Debe llamarse dentro de la transacción que guarda la reseña (ajusta los contadores).
+     * Devuelve el nuevo estado (PENDING salvo que no haga falta moderar).
+     */
+    public CommentModeration.ModerationStatus reopenModeration(Review review) {
+        CommentModeration initial = createInitialModeration(review);
+        CommentModeration moderation = review.getModeration();
+        if (moderation == null) {
+            review.setModeration(initial);
+            moderationQueueService.recordCreated(initial.getStatus());
+            return initial.getStatus();
+        }
+        moderationQueueService.recordTransition(moderation.getStatus(), initial.getStatus());
+        moderation.setStatus(initial.getStatus());
+        moderation.setToxicityScore(initial.getToxicityScore());
+        moderation.setModerationReason(initial.getModerationReason());
+        moderation.setAiProcessed(initial.getAiProcessed());
+        moderation.setCreatedAt(initial.getCreatedAt());
+        moderation.setReviewedAt(initial.getReviewedAt());
+        moderation.setReviewedBy(null);
+        // Los veredictos aún en curso para el texto anterior dejan de valer
+        moderation.setGeneration(moderation.getGeneration() != null ? moderation.getGeneration() + 1 : 1);
+        return moderation.getStatus();
+    }
 
-        CommentModeration moderation = createPendingModeration(review);
+    /**
+     * Encola la moderación de una reseña en el carril indicado del {@link ModerationScheduler}.
+     * No es transaccional a propósito: la llamada a Ollama se hace sin conexión a BD
+     * y el veredicto se escribe después con un único UPDATE sobre la fila PENDING, solo si sigue
+     * en la generación {@code generation} (la del texto que se ha moderado).
+     *
+     * <p>Si el carril está lleno la reseña se modera al momento con los niveles locales del pipeline
+     * (sin LLM), que responden en microsegundos, en lugar de acumular trabajo que Ollama no puede absorber.
+     * Las apelaciones se saltan los atajos locales y un nuevo rechazo pasa a revisión manual.</p>
+     */
+    public CompletableFuture<CommentModeration.ModerationStatus> scheduleModeration(
+            Long reviewId, int generation, String text, ModerationScheduler.Lane lane) {
+        CompletableFuture<CommentModeration.ModerationStatus> future = new CompletableFuture<>();
+        inFlight.merge(reviewId, 1, Integer::sum);
+        future.whenComplete((status, error) ->
+                inFlight.computeIfPresent(reviewId, (id, count) -> count > 1 ? count - 1 : null));
+
+        boolean queued = moderationScheduler.trySubmit(lane, () -> {
+            try {
+                log.info("🛡️ Iniciando moderación para reseña ID: {} ({})", reviewId, lane);
+                ModerationContext.Mode mode = lane == ModerationScheduler.Lane.APPEAL
+                        ? ModerationContext.Mode.APPEAL
+                        : ModerationContext.Mode.STANDARD;
+                ModerationVerdict verdict = evaluate(text, reviewId, mode);
+                if (lane == ModerationScheduler.Lane.APPEAL) {
+                    verdict = escalateAppeal(verdict);
+                }
+                future.complete(resolve(reviewId, generation, verdict));
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+        });
+
+        if (!queued) {
+            log.warn("🚦 Cola de moderación saturada ({}), reseña ID {} moderada sin LLM", lane, reviewId);
+            try {
+                future.complete(resolve(reviewId, generation, evaluate(text, reviewId, ModerationContext.Mode.OFFLINE)));
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+        }
+        return future;
+    }
 
-        try {
-            // Intentar moderación con Ollama
-            OllamaClient.OllamaAnalysisResult result = ollamaClient.analyzeContent(review.getText());
+    /**
+     * Vuelve a encolar las moderaciones que llevan más de {@code app.moderation.requeue.stale-after}
+     * en PENDING sin trabajo en curso: las descartadas al parar el planificador o perdidas entre el
+     * commit y el encolado se quedarían pendientes para siempre. Al arrancar recoge las del proceso anterior.
+     */
+    @Scheduled(initialDelayString = "${app.moderation.requeue.initial-delay-ms:60000}",
+               fixedDelayString = "${app.moderation.requeue.interval-ms:300000}")
+    public void requeueStalePending() {
+        if (!moderationEnabled) {
+            return;
+        }
+        int requeued = 0;
+        for (ModerationQueueService.PendingModeration pending : moderationQueueService.findStalePending(
+                Instant.now().minus(requeueStaleAfter), requeueBatchSize)) {
+            if (inFlight.containsKey(pending.reviewId()) || pending.text() == null || pending.text().isBlank()) {
+                continue;
+            }
+            ModerationScheduler.Lane lane = pending.generation() > 0
+                    ? ModerationScheduler.Lane.EDIT : ModerationScheduler.Lane.NEW;
+            scheduleModeration(pending.reviewId(), pending.generation(), pending.text(), lane)
+                    .exceptionally(ex -> {
+                        log.warn("⚠️ Error reencolando la moderación de la reseña {}: {}", pending.reviewId(), ex.getMessage());
+                        return null;
+                    });
+            requeued++;
+        }
+        if (requeued > 0) {
+            log.info("🔁 {} moderaciones PENDING sin trabajo en cola vuelven a encolarse", requeued);
+        }
+    }
 
-            moderation.setToxicityScore(result.toxicityScore());
-            moderation.setModerationReason(result.reason());
-            moderation.setAiProcessed(true);
+    /**
+     * Escribe el veredicto sobre la fila PENDING.
+     */
+    private CommentModeration.ModerationStatus resolve(Long reviewId, int generation, ModerationVerdict verdict) {
+        int updated = moderationQueueService.resolvePending(
+                reviewId, generation, verdict.status(), verdict.toxicityScore(), verdict.reason(), verdict.aiProcessed());
 
-            applyModerationDecision(moderation, result.toxicityScore(), review.getId());
+        if (updated == 0) {
+            log.debug("La moderación de la reseña {} ya no estaba pendiente o se reabrió (generación {}), se descarta el veredicto",
+                    reviewId, generation);
+        }
+        return verdict.status();
+    }
 
-        } catch (Exception e) {
-            log.warn("⚠️ Error en Ollama, usando fallback - Reseña ID: {}, Error: {}",
-                    review.getId(), e.getMessage());
+    /**
+     * Calcula el veredicto de moderación recorriendo el pipeline por niveles.
+     */
+    private ModerationVerdict evaluate(String text, Long reviewId, ModerationContext.Mode mode) {
+        ModerationPipeline.PipelineResult result = moderationPipeline.run(text, mode);
+        logDecision(result, reviewId);
+        return new ModerationVerdict(result.outcome().toStatus(), result.toxicityScore(),
+                result.reason(), result.aiProcessed());
+    }
 
-            if (fallbackEnabled) {
-                applyFallbackModeration(moderation, review.getText(), review.getId());
-            } else {
-                log.error("❌ Fallback deshabilitado y Ollama falló - Rechazando por seguridad");
-                moderation.setStatus(CommentModeration.ModerationStatus.REJECTED);
-                moderation.setModerationReason("Error en sistema de moderación");
-            }
+    /**
+     * Una apelación no se rechaza dos veces de forma automática: si vuelve a salir REJECTED la decide un moderador.
+     */
+    private ModerationVerdict escalateAppeal(ModerationVerdict verdict) {
+        if (verdict.status() != CommentModeration.ModerationStatus.REJECTED) {
+            return verdict;
         }
-
-        moderation.setReviewedAt(Instant.now());
-        CommentModeration savedModeration = commentModerationRepository.save(moderation);
-        return CompletableFuture.completedFuture(savedModeration);
+        return new ModerationVerdict(CommentModeration.ModerationStatus.MANUAL_REVIEW,
+                verdict.toxicityScore(), "Apelación: " + verdict.reason(), verdict.aiProcessed());
     }
 
     /**
      * Moderación síncrona para bloquear contenido antes de publicar.
+     * Usa el mismo pipeline que la moderación asíncrona y lanza excepción si el texto se rechaza.
      */
     public ModerationResult moderateContentSync(String text) {
         if (!moderationEnabled) {
@@ -106,39 +225,24 @@ public class ModerationService {
             return new ModerationResult(0.0, "Moderación deshabilitada", true);
         }
 
-        try {
-            // Intentar con Ollama primero
-            OllamaClient.OllamaAnalysisResult result = ollamaClient.analyzeContent(text);
-
-            if (result.toxicityScore() >= toxicityThreshold) {
-                throw new ContentModerationException(
-                    String.format("Contenido inapropiado detectado (puntuación: %.2f). %s",
-                            result.toxicityScore(), result.reason()));
-            }
-
-            return new ModerationResult(result.toxicityScore(), result.reason(), true);
+        ModerationPipeline.PipelineResult result = moderationPipeline.run(text, ModerationContext.Mode.STANDARD);
+        double score = result.toxicityScore() != null ? result.toxicityScore() : 1.0;
 
-        } catch (OllamaClient.OllamaException e) {
-            log.warn("Ollama no disponible, usando IA local ModeratingAI para moderación síncrona");
-
-            // --- INTEGRACIÓN DE IA LOCAL ---
-            double iaScore = moderatingAI.analyzeText(text);
-            if (iaScore < iaToxicityThreshold) {
-                throw new ContentModerationException(
-                    String.format("Contenido inapropiado detectado por IA local (puntuación: %.2f).", iaScore));
-            }
-            return new ModerationResult(iaScore, "Moderación por IA local (ModeratingAI)", false);
+        if (result.outcome() == StageDecision.Outcome.REJECT) {
+            throw new ContentModerationException(
+                String.format("Contenido inapropiado detectado (puntuación: %.2f). %s", score, result.reason()));
         }
+        return new ModerationResult(score, result.reason(), result.aiProcessed());
     }
 
     // Métodos privados de apoyo
 
-    private CommentModeration createApprovedModeration(Review review) {
+    private CommentModeration createApprovedModeration(Review review, String reason) {
         CommentModeration moderation = new CommentModeration();
         moderation.setReview(review);
         moderation.setStatus(CommentModeration.ModerationStatus.APPROVED);
         moderation.setToxicityScore(0.0);
-        moderation.setModerationReason("Moderación deshabilitada");
+        moderation.setModerationReason(reason);
         moderation.setAiProcessed(false);
         moderation.setCreatedAt(Instant.now());
         moderation.setReviewedAt(Instant.now());
@@ -153,60 +257,28 @@ public class ModerationService {
         return moderation;
     }
 
-    private void applyModerationDecision(CommentModeration moderation, double toxicityScore, Long reviewId) {
-        if (toxicityScore >= toxicityThreshold) {
-            moderation.setStatus(CommentModeration.ModerationStatus.REJECTED);
-            log.warn("❌ Reseña rechazada por IA - ID: {}, Puntuación: {}", reviewId, String.format("%.2f", toxicityScore));
-        } else if (toxicityScore >= 0.5) {
-            moderation.setStatus(CommentModeration.ModerationStatus.MANUAL_REVIEW);
-            log.info("⚠️ Reseña marcada para revisión manual - ID: {}, Puntuación: {}", reviewId, String.format("%.2f", toxicityScore));
-        } else {
-            moderation.setStatus(CommentModeration.ModerationStatus.APPROVED);
-            log.info("✅ Reseña aprobada por IA - ID: {}, Puntuación: {}", reviewId, String.format("%.2f", toxicityScore));
-        }
-    }
-
-    private void applyFallbackModeration(CommentModeration moderation, String text, Long reviewId) {
-        ContentAnalyzer.ContentAnalysisResult result = contentAnalyzer.analyze(text);
-
-        moderation.setToxicityScore(result.toxicityScore());
-        moderation.setModerationReason("Fallback: " + buildFallbackReason(result));
-        moderation.setAiProcessed(false);
-
-        if (result.toxicityScore() >= toxicityThreshold) {
-            moderation.setStatus(CommentModeration.ModerationStatus.REJECTED);
-            log.warn("❌ Reseña rechazada por Fallback - ID: {}, Puntuación: {}", reviewId, String.format("%.2f", result.toxicityScore()));
-        } else if (result.toxicityScore() >= 0.4) {
-            moderation.setStatus(CommentModeration.ModerationStatus.MANUAL_REVIEW);
-            log.info("⚠️ Reseña marcada para revisión manual por Fallback - ID: {}", reviewId);
-        } else {
-            moderation.setStatus(CommentModeration.ModerationStatus.APPROVED);
-            log.info("✅ Reseña aprobada por Fallback - ID: {}", reviewId);
+    private void logDecision(ModerationPipeline.PipelineResult result, Long reviewId) {
+        String score = result.toxicityScore() != null ? String.format("%.2f", result.toxicityScore()) : "-";
+        switch (result.outcome()) {
+            case REJECT -> log.warn("❌ Reseña rechazada por {} - ID: {}, Puntuación: {}", result.stage(), reviewId, score);
+            case MANUAL_REVIEW -> log.info("⚠️ Reseña marcada para revisión manual por {} - ID: {}, Puntuación: {}", result.stage(), reviewId, score);
+            default -> log.info("✅ Reseña aprobada por {} - ID: {}, Puntuación: {}", result.stage(), reviewId, score);
         }
     }
 
-    private String buildFallbackReason(ContentAnalyzer.ContentAnalysisResult result) {
-        return result.badWordCount() == 0
-                ? "Contenido limpio según reglas estrictas"
-                : String.format("CONTENIDO INAPROPIADO detectado - %d problemas: %s",
-                        result.badWordCount(), result.detectedWords());
-    }
-
     /**
      * Verifica si Ollama está disponible para moderación.
      * Método de conveniencia para el controlador de administración.
      */
     public boolean isOllamaAvailable() {
-        try {
-            ollamaClient.analyzeContent("test");
-            return true;
-        } catch (Exception e) {
-            return false;
-        }
+        return !ollamaClient.isCircuitOpen() && ollamaClient.probe();
     }
 
     // Records y excepciones
 
+    private record ModerationVerdict(CommentModeration.ModerationStatus status, Double toxicityScore,
+                                     String reason, boolean aiProcessed) {}
+
     public record ModerationResult(double toxicityScore, String reason, boolean aiProcessed) {
         // Método de compatibilidad
         public boolean ollamaUsed() {
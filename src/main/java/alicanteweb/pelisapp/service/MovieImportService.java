@@ -8,6 +8,7 @@ import alicanteweb.pelisapp.repository.ActorRepository;
 import alicanteweb.pelisapp.repository.CategoryRepository;
 import alicanteweb.pelisapp.repository.DirectorRepository;
 import alicanteweb.pelisapp.repository.MovieRepository;
+import alicanteweb.pelisapp.service.image.ImagePathUpdater;
 import alicanteweb.pelisapp.tmdb.TMDBClient;
 import com.fasterxml.jackson.databind.JsonNode;
 import org.springframework.beans.factory.annotation.Value;
@@ -33,7 +34,7 @@ public class MovieImportService {
     private final ActorRepository actorRepository;
     private final DirectorRepository directorRepository;
     private final CategoryRepository categoryRepository;
-    private final ImageService imageService;
+    private final ImagePathUpdater imagePathUpdater;
     private final String tmdbImageBaseUrl;
 
     public MovieImportService(TMDBClient tmdbClient,
@@ -41,14 +42,14 @@ public class MovieImportService {
                               ActorRepository actorRepository,
                               DirectorRepository directorRepository,
                               CategoryRepository categoryRepository,
-                              ImageService imageService,
+                              ImagePathUpdater imagePathUpdater,
                               @Value("${app.tmdb.image-base-url:https://image.tmdb.org/t/p/w500}") String tmdbImageBaseUrl) {
         this.tmdbClient = tmdbClient;
         this.movieRepository = movieRepository;
         this.actorRepository = actorRepository;
         this.directorRepository = directorRepository;
         this.categoryRepository = categoryRepository;
-        this.imageService = imageService;
+        this.imagePathUpdater = imagePathUpdater;
         this.tmdbImageBaseUrl = tmdbImageBaseUrl;
     }
 
@@ -147,19 +148,13 @@ public class MovieImportService {
             }
         }
 
-        // Poster: preferimos descargar y almacenar localmente si ImageService disponible
+        // Poster: guardamos la ruta de TMDB y la copia local se descarga en segundo plano
         if ((movie.getPosterPath() == null || movie.getPosterPath().isBlank()) && details.hasNonNull("poster_path")) {
             String poster = details.path("poster_path").asText(null);
             if (poster != null && !poster.isBlank()) {
-                // ImageService.downloadAndSave espera URL completa; TMDBClient/Controller suelen construirla
                 String imageUrl = poster.startsWith("http") ? poster : tmdbImageBaseUrl + poster;
-
-                String stored = imageService.downloadAndSave(imageUrl, "movie_" + movie.getTmdbId(), "posters");
-                if (stored != null) {
-                    movie.setPosterLocalPath(stored);
-                } else {
-                    movie.setPosterPath(imageUrl);
-                }
+                movie.setPosterPath(poster);
+                imagePathUpdater.scheduleDownload(ImagePathUpdater.Owner.MOVIE_POSTER, movie.getTmdbId(), imageUrl, false);
                 changed = true;
             }
         }
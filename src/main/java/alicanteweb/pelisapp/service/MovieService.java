@@ -1,5 +1,6 @@
 package alicanteweb.pelisapp.service;
 
+import alicanteweb.pelisapp.constants.AppConstants;
 import alicanteweb.pelisapp.dto.CastDTO;
 import alicanteweb.pelisapp.dto.CrewDTO;
 import alicanteweb.pelisapp.dto.MovieDetailsDTO;
@@ -12,6 +13,8 @@ import alicanteweb.pelisapp.repository.ActorRepository;
 import alicanteweb.pelisapp.repository.DirectorRepository;
 import alicanteweb.pelisapp.repository.MovieRepository;
 import alicanteweb.pelisapp.repository.CommentRepository;
+import alicanteweb.pelisapp.service.image.ImageVariantService;
+import alicanteweb.pelisapp.service.image.LazyImageFetcher;
 import alicanteweb.pelisapp.tmdb.TMDBClient;
 import com.fasterxml.jackson.databind.JsonNode;
 import lombok.RequiredArgsConstructor;
@@ -39,6 +42,8 @@ public class MovieService {
     private final ActorRepository actorRepository;
     private final DirectorRepository directorRepository;
     private final ImageStorageService imageStorageService;
+    private final ImageVariantService imageVariantService;
+    private final LazyImageFetcher lazyImageFetcher;
 
     public MovieDetailsDTO getCombinedByMovieId(Long id) {
         Optional<Movie> opt = movieRepository.findByIdWithCastAndDirectors(id);
@@ -100,7 +105,7 @@ public class MovieService {
         castDto.setCharacter("Reparto Principal"); // Mejorable en futuras versiones
         castDto.setProfilePath(actor.getProfilePath());
         castDto.setProfileLocalPath(actor.getProfileLocalPath());
-        castDto.setProfileUrl(getImageUrl(actor.getProfileLocalPath(), actor.getProfilePath()));
+        castDto.setProfileUrl(getImageUrl(actor.getProfileLocalPath(), actor.getProfilePath(), AppConstants.PROFILES_SUBFOLDER, ImageVariantService.Width.W92));
         return castDto;
     }
 
@@ -127,7 +132,7 @@ public class MovieService {
         directorDto.setDepartment("Directing");
         directorDto.setProfilePath(director.getProfilePath());
         directorDto.setProfileLocalPath(director.getProfileLocalPath());
-        directorDto.setProfileUrl(getImageUrl(director.getProfileLocalPath(), director.getProfilePath()));
+        directorDto.setProfileUrl(getImageUrl(director.getProfileLocalPath(), director.getProfilePath(), AppConstants.PROFILES_SUBFOLDER, ImageVariantService.Width.W92));
         return directorDto;
     }
 
@@ -172,7 +177,7 @@ public class MovieService {
             castDto.setName(c.path("name").asText());
             castDto.setCharacter(c.path("character").asText());
             castDto.setProfilePath(c.path("profile_path").asText(null));
-            castDto.setProfileUrl(getImageUrl(null, castDto.getProfilePath()));
+            castDto.setProfileUrl(getImageUrl(null, castDto.getProfilePath(), AppConstants.PROFILES_SUBFOLDER, ImageVariantService.Width.W92));
             castMembers.add(castDto);
         }
     }
@@ -189,7 +194,7 @@ public class MovieService {
                 directorDto.setJob(job);
                 directorDto.setDepartment(c.path("department").asText());
                 directorDto.setProfilePath(c.path("profile_path").asText(null));
-                directorDto.setProfileUrl(getImageUrl(null, directorDto.getProfilePath()));
+                directorDto.setProfileUrl(getImageUrl(null, directorDto.getProfilePath(), AppConstants.PROFILES_SUBFOLDER, ImageVariantService.Width.W92));
                 directors.add(directorDto);
             }
         }
@@ -215,17 +220,23 @@ public class MovieService {
     }
 
     /**
-     * Determina qué URL usar para mostrar la imagen
+     * Determina qué URL usar para mostrar la imagen, en el ancho indicado
      */
-    private String getImageUrl(String localPath, String remotePath) {
-        // Priorizar imagen local
+    private String getImageUrl(String localPath, String remotePath, String subfolder, ImageVariantService.Width width) {
+        // Priorizar imagen local (miniatura generada bajo demanda)
         if (localPath != null && !localPath.isEmpty()) {
-            return "/images/" + localPath;
+            return imageVariantService.variantUrl(localPath, width);
         }
 
-        // Fallback a imagen remota de TMDB
+        // Sin copia local: ruta que la descarga la primera vez que se pide (si está activado)
+        String lazyUrl = lazyImageFetcher.lazyUrl(subfolder, remotePath);
+        if (lazyUrl != null) {
+            return imageVariantService.variantUrl(lazyUrl, width);
+        }
+
+        // Fallback a imagen remota de TMDB en el mismo tamaño
         if (remotePath != null && !remotePath.isEmpty()) {
-            return tmdbClient.buildImageUrl(remotePath);
+            return tmdbClient.buildImageUrl(remotePath, width.key());
         }
 
         // Sin imagen disponible
@@ -243,6 +254,8 @@ public class MovieService {
             dto.setDescription(movie.getDescription());
             dto.setPosterPath(movie.getPosterPath());
             dto.setPosterLocalPath(movie.getPosterLocalPath());
+            dto.setPosterUrl(getImageUrl(movie.getPosterLocalPath(), movie.getPosterPath(), AppConstants.POSTERS_SUBFOLDER, ImageVariantService.Width.W342));
+            dto.setPosterThumbUrl(getImageUrl(movie.getPosterLocalPath(), movie.getPosterPath(), AppConstants.POSTERS_SUBFOLDER, ImageVariantService.Width.W185));
             dto.setReleaseDate(movie.getReleaseDate());
             dto.setRuntimeMinutes(movie.getRuntimeMinutes());
             List<String> categories = movie.getCategories().stream().map(CategoryEntity::getName).toList();
@@ -262,6 +275,8 @@ public class MovieService {
             dto.setDescription(movie.getDescription());
             dto.setPosterPath(movie.getPosterPath());
             dto.setPosterLocalPath(movie.getPosterLocalPath());
+            dto.setPosterUrl(getImageUrl(movie.getPosterLocalPath(), movie.getPosterPath(), AppConstants.POSTERS_SUBFOLDER, ImageVariantService.Width.W342));
+            dto.setPosterThumbUrl(getImageUrl(movie.getPosterLocalPath(), movie.getPosterPath(), AppConstants.POSTERS_SUBFOLDER, ImageVariantService.Width.W185));
             dto.setReleaseDate(movie.getReleaseDate());
             dto.setRuntimeMinutes(movie.getRuntimeMinutes());
             List<String> categories = movie.getCategories().stream().map(CategoryEntity::getName).toList();
@@ -1,6 +1,7 @@
 package alicanteweb.pelisapp.service;
 
 import alicanteweb.pelisapp.constants.AppConstants;
+import alicanteweb.pelisapp.entity.CommentModeration;
 import alicanteweb.pelisapp.entity.Movie;
 import alicanteweb.pelisapp.entity.Review;
 import alicanteweb.pelisapp.entity.ReviewLike;
@@ -9,12 +10,15 @@ import alicanteweb.pelisapp.repository.MovieRepository;
 import alicanteweb.pelisapp.repository.ReviewLikeRepository;
 import alicanteweb.pelisapp.repository.ReviewRepository;
 import alicanteweb.pelisapp.repository.UserRepository;
+import alicanteweb.pelisapp.service.moderation.ModerationScheduler;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.Instant;
 
@@ -32,8 +36,15 @@ public class ReviewService {
     private final UserRepository userRepository;
     private final MovieRepository movieRepository;
     private final ModerationService moderationService;
+    private final ModerationQueueService moderationQueueService;
     private final UserService userService;
 
+    /**
+     * Publica una reseña sin esperar a la moderación.
+     * La reseña se guarda junto a su fila {@link CommentModeration} en estado PENDING y,
+     * una vez confirmada la transacción, se modera en segundo plano. La reseña solo es
+     * visible para el resto de usuarios cuando la moderación la marca como APPROVED.
+     */
     @Transactional
     public Review createReview(Long userId, Long movieId, String text, int stars) {
         validateReviewInput(stars, text);
@@ -41,53 +52,75 @@ public class ReviewService {
         User user = findUserById(userId);
         Movie movie = findMovieById(movieId);
 
-        // *** MODERACIÓN SÍNCRONA ANTES DE GUARDAR ***
-        // Solo moderar si hay texto para analizar
-        if (text != null && !text.trim().isEmpty()) {
-            try {
-                log.debug("🛡️ Verificando contenido - Usuario: {}, Película: {}",
-                        user.getUsername(), movie.getTitle());
+        Review review = buildReview(user, movie, text, stars);
+        review.setModeration(moderationService.createInitialModeration(review));
+        Review savedReview = reviewRepository.save(review);
+        moderationQueueService.recordCreated(savedReview.getModeration().getStatus());
 
-                // Esto BLOQUEARÁ si el contenido es inapropiado
-                ModerationService.ModerationResult moderationResult = moderationService.moderateContentSync(text);
+        // La llamada a la IA se lanza tras el commit: no se retiene la conexión mientras tanto
+        if (savedReview.getModeration().getStatus() == CommentModeration.ModerationStatus.PENDING) {
+            scheduleModerationAfterCommit(savedReview.getId(), generationOf(savedReview), text, ModerationScheduler.Lane.NEW);
+        }
 
-                log.debug("✅ Contenido aprobado - Usuario: {}, Puntuación: {}",
-                        user.getUsername(), String.format("%.2f", moderationResult.toxicityScore()));
+        // Actualizar logros del usuario de forma asíncrona
+        userService.onUserPostedReview(user.getId());
 
-            } catch (ModerationService.ContentModerationException e) {
-                log.warn("❌ Contenido rechazado - Usuario: {}, Razón: {}",
-                        user.getUsername(), e.getMessage());
+        log.info("📝 Reseña registrada - Usuario: {}, Película: {}, Estrellas: {}, Moderación: {}",
+                user.getUsername(), movie.getTitle(), stars, savedReview.getModeration().getStatus());
 
-                // LANZAR EXCEPCIÓN PARA BLOQUEAR LA PUBLICACIÓN
-                throw new IllegalArgumentException("Tu comentario contiene contenido inapropiado y no puede ser publicado. " + e.getMessage());
-            }
-        } else {
-            log.debug("📝 Reseña sin texto - Usuario: {}, Solo estrellas: {}",
-                    user.getUsername(), stars);
-        }
+        return savedReview;
+    }
 
-        // Solo si pasa la moderación, crear y guardar la reseña
-        Review review = buildReview(user, movie, text, stars);
-        Review savedReview = reviewRepository.save(review);
+    /**
+     * Edita el texto y la puntuación de una reseña propia. La reseña vuelve a PENDING y se modera
+     * en el carril de ediciones, por delante de las reseñas nuevas.
+     */
+    @Transactional
+    public Review editReview(Long userId, Long reviewId, String text, int stars) {
+        validateReviewInput(stars, text);
 
-        // Moderación asíncrona adicional para estadísticas (opcional)
-        moderationService.moderateReviewAsync(savedReview)
-            .thenAccept(moderation -> log.debug("📊 Moderación asíncrona completada - ID: {}, Estado: {}",
-                        savedReview.getId(), moderation.getStatus()))
-            .exceptionally(ex -> {
-                log.warn("⚠️ Error en moderación asíncrona: {}", ex.getMessage());
-                return null;
-            });
+        Review review = findReviewById(reviewId);
+        validateOwnership(userId, review, "Solo puedes editar tus propias reseñas");
 
-        // Actualizar logros del usuario de forma asíncrona
-        userService.onUserPostedReview(user.getId());
+        review.setText(text);
+        review.setStars(stars);
+        CommentModeration.ModerationStatus status = moderationService.reopenModeration(review);
+        Review savedReview = reviewRepository.save(review);
 
-        log.info("✅ Reseña publicada - Usuario: {}, Película: {}, Estrellas: {}",
-                user.getUsername(), movie.getTitle(), stars);
+        if (status == CommentModeration.ModerationStatus.PENDING) {
+            scheduleModerationAfterCommit(reviewId, generationOf(savedReview), text, ModerationScheduler.Lane.EDIT);
+        }
 
+        log.info("✏️ Reseña editada - ID: {}, Estrellas: {}, Moderación: {}", reviewId, stars, status);
         return savedReview;
     }
 
+    /**
+     * Apela una reseña rechazada o en revisión manual: se vuelve a moderar con prioridad máxima.
+     */
+    @Transactional
+    public CommentModeration.ModerationStatus appealModeration(Long userId, Long reviewId) {
+        Review review = findReviewById(reviewId);
+        validateOwnership(userId, review, "Solo puedes apelar tus propias reseñas");
+
+        CommentModeration moderation = review.getModeration();
+        if (moderation == null
+                || (moderation.getStatus() != CommentModeration.ModerationStatus.REJECTED
+                    && moderation.getStatus() != CommentModeration.ModerationStatus.MANUAL_REVIEW)) {
+            throw new IllegalArgumentException("Solo se pueden apelar reseñas rechazadas o en revisión");
+        }
+
+        CommentModeration.ModerationStatus status = moderationService.reopenModeration(review);
+        reviewRepository.save(review);
+
+        if (status == CommentModeration.ModerationStatus.PENDING) {
+            scheduleModerationAfterCommit(reviewId, generationOf(review), review.getText(), ModerationScheduler.Lane.APPEAL);
+        }
+
+        log.info("📣 Apelación registrada - Reseña ID: {}", reviewId);
+        return status;
+    }
+
     @Transactional
     public void likeReview(Long likerUserId, Long reviewId) {
         Review review = findReviewById(reviewId);
@@ -110,6 +143,17 @@ public class ReviewService {
                 liker.getUsername(), reviewId, review.getLikesCount());
     }
 
+    /**
+     * Estado de moderación de una reseña; las anteriores al flujo de moderación cuentan como aprobadas.
+     */
+    @Transactional(readOnly = true)
+    public CommentModeration.ModerationStatus getModerationStatus(Long reviewId) {
+        Review review = findReviewById(reviewId);
+        return review.getModeration() != null
+                ? review.getModeration().getStatus()
+                : CommentModeration.ModerationStatus.APPROVED;
+    }
+
     public Page<Review> getReviewsByUsername(String username, Pageable pageable) {
         User user = userRepository.findByUsername(username).orElse(null);
         if (user == null) return Page.empty();
@@ -178,6 +222,45 @@ public class ReviewService {
         return review;
     }
 
+    /**
+     * Programa la moderación asíncrona para cuando la transacción actual haga commit.
+     * {@code generation} identifica el texto moderado: si la reseña se edita antes de que llegue el
+     * veredicto, este ya no se aplica.
+     */
+    private void scheduleModerationAfterCommit(Long reviewId, int generation, String text, ModerationScheduler.Lane lane) {
+        Runnable moderate = () -> moderationService.scheduleModeration(reviewId, generation, text, lane)
+                .exceptionally(ex -> {
+                    log.warn("⚠️ Error en moderación asíncrona - Reseña ID: {}: {}", reviewId, ex.getMessage());
+                    return null;
+                });
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    moderate.run();
+                }
+            });
+        } else {
+            moderate.run();
+        }
+    }
+
+    private static int generationOf(Review review) {
+        Integer generation = review.getModeration().getGeneration();
+        return generation != null ? generation : 0;
+    }
+
+    /**
+     * Valida que la reseña pertenezca al usuario.
+     */
+    private void validateOwnership(Long userId, Review review, String message) {
+        if (!review.getUser().getId().equals(userId)) {
+            log.warn("Usuario {} intentó modificar la reseña {} de otro usuario", userId, review.getId());
+            throw new IllegalArgumentException(message);
+        }
+    }
+
     /**
      * Valida que se pueda dar like a la reseña.
      */
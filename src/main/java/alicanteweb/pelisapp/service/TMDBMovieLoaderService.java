@@ -9,6 +9,7 @@ import alicanteweb.pelisapp.repository.ActorRepository;
 import alicanteweb.pelisapp.repository.CategoryRepository;
 import alicanteweb.pelisapp.repository.DirectorRepository;
 import alicanteweb.pelisapp.repository.MovieRepository;
+import alicanteweb.pelisapp.service.image.ImagePathUpdater;
 import alicanteweb.pelisapp.tmdb.TMDBClient;
 import com.fasterxml.jackson.databind.JsonNode;
 import lombok.RequiredArgsConstructor;
@@ -20,6 +21,7 @@ import java.time.LocalDate;
 import java.util.HashSet;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Servicio para cargar películas desde TMDB API
@@ -46,6 +48,7 @@ public class TMDBMovieLoaderService {
     private final ActorRepository actorRepository;
     private final DirectorRepository directorRepository;
     private final ImageStorageService imageStorageService;
+    private final ImagePathUpdater imagePathUpdater;
 
     /**
      * Carga películas populares desde TMDB
@@ -223,17 +226,12 @@ public class TMDBMovieLoaderService {
             if (!posterPath.isBlank()) {
                 movie.setPosterPath(posterPath);
 
-                // Intentar descargar imagen local
+                // Descarga en segundo plano: la ruta local se guarda al terminar, sin frenar la importación
                 try {
                     String fullUrl = tmdbClient.buildImageUrl(posterPath);
-                    String filename = AppConstants.MOVIE_FILE_PREFIX + movie.getTmdbId();
-                    String localPath = imageStorageService.downloadAndStoreImage(fullUrl, AppConstants.POSTERS_SUBFOLDER, filename);
-                    if (localPath != null) {
-                        movie.setPosterLocalPath(localPath);
-                        log.debug("Imagen descargada para {}: {}", movie.getTitle(), localPath);
-                    }
+                    imagePathUpdater.scheduleDownload(ImagePathUpdater.Owner.MOVIE_POSTER, movie.getTmdbId(), fullUrl, false);
                 } catch (Exception e) {
-                    log.debug("No se pudo descargar imagen para {}: {}", movie.getTitle(), e.getMessage());
+                    log.debug("No se pudo encolar la imagen para {}: {}", movie.getTitle(), e.getMessage());
                 }
             }
 
@@ -423,18 +421,12 @@ public class TMDBMovieLoaderService {
                     if (!profilePath.isBlank() && !"/".equals(profilePath) && !"null".equals(profilePath)) {
                         actor.setProfilePath(profilePath);
 
-                        // Intentar descargar foto del perfil
+                        // Descargar foto del perfil en segundo plano
                         try {
                             String fullUrl = tmdbClient.buildImageUrl(profilePath);
-                            String filename = AppConstants.ACTOR_FILE_PREFIX + tmdbId;
-                            String localPath = imageStorageService.downloadAndStoreImage(
-                                fullUrl, AppConstants.PROFILES_SUBFOLDER, filename);
-                            if (localPath != null) {
-                                actor.setProfileLocalPath(localPath);
-                                log.debug("✓ Foto descargada para actor {}: {}", name, localPath);
-                            }
+                            imagePathUpdater.scheduleDownload(ImagePathUpdater.Owner.ACTOR_PROFILE, tmdbId, fullUrl, false);
                         } catch (Exception e) {
-                            log.debug("⚠ No se pudo descargar foto para actor {}: {}", name, e.getMessage());
+                            log.debug("⚠ No se pudo encolar la foto para actor {}: {}", name, e.getMessage());
                         }
                     }
 
@@ -459,18 +451,12 @@ public class TMDBMovieLoaderService {
                     if (!profilePath.isBlank() && !"/".equals(profilePath) && !"null".equals(profilePath)) {
                         director.setProfilePath(profilePath);
 
-                        // Intentar descargar foto del perfil
+                        // Descargar foto del perfil en segundo plano
                         try {
                             String fullUrl = tmdbClient.buildImageUrl(profilePath);
-                            String filename = AppConstants.DIRECTOR_FILE_PREFIX + tmdbId;
-                            String localPath = imageStorageService.downloadAndStoreImage(
-                                fullUrl, AppConstants.PROFILES_SUBFOLDER, filename);
-                            if (localPath != null) {
-                                director.setProfileLocalPath(localPath);
-                                log.debug("✓ Foto descargada para director {}: {}", name, localPath);
-                            }
+                            imagePathUpdater.scheduleDownload(ImagePathUpdater.Owner.DIRECTOR_PROFILE, tmdbId, fullUrl, false);
                         } catch (Exception e) {
-                            log.debug("⚠ No se pudo descargar foto para director {}: {}", name, e.getMessage());
+                            log.debug("⚠ No se pudo encolar la foto para director {}: {}", name, e.getMessage());
                         }
                     }
 
@@ -481,11 +467,14 @@ public class TMDBMovieLoaderService {
     }
 
     /**
-     * Redescarga imágenes SOLO de actores y directores que no tengan imagen local
+     * Encola la redescarga de imágenes SOLO de actores y directores que no tengan imagen local.
+     * Es una acción explícita del administrador, así que descarga también en modo bajo demanda.
+     * Devuelve cuántas descargas se han encolado; las rutas se guardan al terminar cada una.
      */
-    @Transactional
+    @Transactional(readOnly = true)
     public int redownloadCastDirectorImages() {
         int total = 0;
+        Set<String> scheduled = new HashSet<>();
         for (Movie movie : movieRepository.findAll()) {
             // Reparto
             if (movie.getActors() != null) {
@@ -494,13 +483,11 @@ public class TMDBMovieLoaderService {
                         && (actor.getProfileLocalPath() == null || actor.getProfileLocalPath().isBlank())) {
                         try {
                             String fullUrl = tmdbClient.buildImageUrl(actor.getProfilePath());
-                            String filename = AppConstants.ACTOR_FILE_PREFIX + actor.getTmdbId();
-                            String localPath = imageStorageService.downloadAndStoreImage(
-                                fullUrl, AppConstants.PROFILES_SUBFOLDER, filename);
-                            if (localPath != null) {
-                                actor.setProfileLocalPath(localPath);
-                                actorRepository.save(actor);
-                                total++;
+                            if (fullUrl != null && scheduled.add(ImagePathUpdater.Owner.ACTOR_PROFILE + ":" + actor.getTmdbId())) {
+                                if (wasScheduled(imagePathUpdater.scheduleDownload(
+                                        ImagePathUpdater.Owner.ACTOR_PROFILE, actor.getTmdbId(), fullUrl, true))) {
+                                    total++;
+                                }
                             }
                         } catch (Exception e) {
                             log.warn("Error redescargando imagen de actor {}: {}", actor.getName(), e.getMessage());
@@ -515,13 +502,11 @@ public class TMDBMovieLoaderService {
                         && (director.getProfileLocalPath() == null || director.getProfileLocalPath().isBlank())) {
                         try {
                             String fullUrl = tmdbClient.buildImageUrl(director.getProfilePath());
-                            String filename = AppConstants.DIRECTOR_FILE_PREFIX + director.getTmdbId();
-                            String localPath = imageStorageService.downloadAndStoreImage(
-                                fullUrl, AppConstants.PROFILES_SUBFOLDER, filename);
-                            if (localPath != null) {
-                                director.setProfileLocalPath(localPath);
-                                directorRepository.save(director);
-                                total++;
+                            if (fullUrl != null && scheduled.add(ImagePathUpdater.Owner.DIRECTOR_PROFILE + ":" + director.getTmdbId())) {
+                                if (wasScheduled(imagePathUpdater.scheduleDownload(
+                                        ImagePathUpdater.Owner.DIRECTOR_PROFILE, director.getTmdbId(), fullUrl, true))) {
+                                    total++;
+                                }
                             }
                         } catch (Exception e) {
                             log.warn("Error redescargando imagen de director {}: {}", director.getName(), e.getMessage());
@@ -530,10 +515,18 @@ public class TMDBMovieLoaderService {
                 }
             }
         }
-        log.info("✅ Redescarga de imágenes de reparto/director SOLO faltantes completada: {} imágenes", total);
+        log.info("✅ Redescarga de imágenes de reparto/director SOLO faltantes encolada: {} imágenes", total);
         return total;
     }
 
+    /**
+     * Si la descarga se ha encolado de verdad: no cuenta las omitidas (futuro con null) ni las
+     * rechazadas al momento (URL no válida).
+     */
+    private static boolean wasScheduled(CompletableFuture<String> download) {
+        return !download.isDone() || (!download.isCompletedExceptionally() && download.getNow(null) != null);
+    }
+
     /**
      * Elimina fotos duplicadas de carátulas, directores y actores
      * Devuelve el número de archivos eliminados
@@ -46,7 +46,7 @@ public class UserService {
         User user = userRepository.findByUsername(username)
             .orElseThrow(() -> new IllegalArgumentException("Usuario no encontrado: " + username));
 
-        List<Review> reviews = reviewRepository.findAllByUser_Id(user.getId());
+        List<Review> reviews = reviewRepository.findVisibleByUserId(user.getId());
         boolean isAdmin = hasAdminRole(authentication);
 
         model.addAttribute("usuario", user);
@@ -105,7 +105,7 @@ public class UserService {
         User user = userRepository.findById(userId)
             .orElseThrow(() -> new IllegalArgumentException("Usuario no encontrado: " + userId));
 
-        List<Long> reviewIds = reviewRepository.findAllByUser_Id(userId).stream().map(Review::getId).toList();
+        List<Long> reviewIds = reviewRepository.findVisibleByUserId(userId).stream().map(Review::getId).toList();
         if (reviewIds.isEmpty()) return;
 
         long totalLikes = reviewLikeRepository.countByReview_IdIn(reviewIds);
@@ -136,7 +136,7 @@ public class UserService {
         }
 
         // Check for viral review
-        List<Review> userReviews = reviewRepository.findAllByUser_Id(userId);
+        List<Review> userReviews = reviewRepository.findVisibleByUserId(userId);
         boolean hasViralReview = userReviews.stream()
             .anyMatch(review -> review.getLikesCount() >= AppConstants.VIRAL_REVIEW_LIKES_THRESHOLD);
 
@@ -0,0 +1,96 @@
+package alicanteweb.pelisapp.service.image;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * Escribe el cuerpo de la respuesta en un archivo y calcula su SHA-256 a la vez,
+ * así el hash sale de la misma pasada que la descarga y no hay que volver a leer el archivo.
+ * Si la descarga falla el archivo se borra.
+ */
+final class HashingFileSubscriber implements HttpResponse.BodySubscriber<HashingFileSubscriber.Result> {
+
+    record Result(Path file, String sha256, long size) {}
+
+    private final Path file;
+    private final FileChannel channel;
+    private final MessageDigest digest;
+    private final CompletableFuture<Result> result = new CompletableFuture<>();
+    private Flow.Subscription subscription;
+    private long size;
+
+    HashingFileSubscriber(Path file) throws IOException {
+        this.file = file;
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> buffers) {
+        try {
+            for (ByteBuffer buffer : buffers) {
+                digest.update(buffer.duplicate());
+                size += buffer.remaining();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            subscription.request(1);
+        } catch (IOException e) {
+            subscription.cancel();
+            abort(e);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        abort(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        try {
+            channel.close();
+            result.complete(new Result(file, HexFormat.of().formatHex(digest.digest()), size));
+        } catch (IOException e) {
+            abort(e);
+        }
+    }
+
+    @Override
+    public CompletionStage<Result> getBody() {
+        return result;
+    }
+
+    private void abort(Throwable error) {
+        try {
+            channel.close();
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // El temporal huérfano no afecta a nada: no coincide con ningún blob
+        }
+        result.completeExceptionally(error);
+    }
+}
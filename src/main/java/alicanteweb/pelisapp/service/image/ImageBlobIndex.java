@@ -0,0 +1,65 @@
+package alicanteweb.pelisapp.service.image;
+
+import alicanteweb.pelisapp.entity.StoredImage;
+import alicanteweb.pelisapp.repository.StoredImageRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Índice ruta de TMDB → blob del almacén por contenido ({@code stored_image}).
+ * Las consultas pasan por una caché en memoria; los misses van a la BD y no se cachean.
+ */
+@Component
+@Slf4j
+public class ImageBlobIndex {
+
+    private final StoredImageRepository repository;
+    private final Cache<String, String> blobPaths;
+
+    public ImageBlobIndex(StoredImageRepository repository,
+                          @Value("${app.images.index.cache-size:50000}") long cacheSize) {
+        this.repository = repository;
+        this.blobPaths = Caffeine.newBuilder().maximumSize(cacheSize).build();
+    }
+
+    /**
+     * Blob (ruta relativa al directorio de imágenes) ya guardado para la ruta de origen.
+     */
+    public Optional<String> find(String sourcePath) {
+        return Optional.ofNullable(blobPaths.get(sourcePath,
+                path -> repository.findBySourcePath(path).map(StoredImage::getBlobPath).orElse(null)));
+    }
+
+    /**
+     * Ruta de origen de un blob, para volver a descargarlo si se ha borrado del disco.
+     */
+    public Optional<String> findSource(String blobPath) {
+        return repository.findFirstByBlobPath(blobPath).map(StoredImage::getSourcePath);
+    }
+
+    /**
+     * Apunta (o actualiza) el blob de una ruta de origen.
+     */
+    public void record(String sourcePath, String sha256, String blobPath, long sizeBytes) {
+        blobPaths.put(sourcePath, blobPath);
+        try {
+            StoredImage image = repository.findBySourcePath(sourcePath).orElseGet(StoredImage::new);
+            image.setSourcePath(sourcePath);
+            image.setSha256(sha256);
+            image.setBlobPath(blobPath);
+            image.setSizeBytes(sizeBytes);
+            image.setStoredAt(Instant.now());
+            repository.save(image);
+        } catch (DataIntegrityViolationException e) {
+            // Otra descarga de la misma ruta se ha adelantado; el blob es el mismo
+            log.debug("Índice de imagen ya registrado para {}", sourcePath);
+        }
+    }
+}
@@ -0,0 +1,350 @@
+package alicanteweb.pelisapp.service.image;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cola de descargas de imágenes remotas (TMDB) con {@link HttpClient#sendAsync}.
+ *
+ * <p>Ningún hilo se queda bloqueado esperando a la red: cada host tiene un máximo de descargas
+ * simultáneas y el resto espera en su cola. Varias peticiones de la misma URL comparten la
+ * descarga en curso. Los fallos de red, 429 y 5xx se reintentan con backoff exponencial y jitter
+ * completo, liberando el hueco del host mientras se espera.</p>
+ *
+ * <p>Las imágenes se guardan por contenido en {@code subcarpeta/ab/<sha256>.ext}: el hash se calcula
+ * mientras se escribe el temporal y, si ese blob ya existe, el temporal se descarta. Así una
+ * reimportación no duplica archivos y deduplicar cuesta solo los bytes nuevos. {@link ImageBlobIndex}
+ * recuerda qué blob corresponde a cada ruta de TMDB para no volver a descargarla.</p>
+ */
+@Component
+@Slf4j
+public class ImageFetchQueue {
+
+    private static final String USER_AGENT = "PelisApp/1.0";
+
+    private final HttpClient httpClient;
+    private final ImageBlobIndex blobIndex;
+    private final ImageStoreQuotaManager quotaManager;
+    private final Path storagePath;
+    private final String serveBase;
+    private final int perHostConcurrency;
+    private final int maxPending;
+    private final int maxAttempts;
+    private final Duration backoff;
+    private final Duration timeout;
+
+    private final ConcurrentHashMap<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, HostLane> lanes = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder deduplicated = new LongAdder();
+    private final LongAdder alreadyStored = new LongAdder();
+    private final LongAdder downloaded = new LongAdder();
+    private final LongAdder storedNew = new LongAdder();
+    private final LongAdder storedDuplicate = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder bytesDeduplicated = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public ImageFetchQueue(ImageBlobIndex blobIndex,
+                           ImageStoreQuotaManager quotaManager,
+                           @Value("${app.images.storage-path:./data/images}") String storagePath,
+                           @Value("${app.images.serve-base:/images}") String serveBase,
+                           @Value("${app.images.fetch.per-host-concurrency:6}") int perHostConcurrency,
+                           @Value("${app.images.fetch.max-pending:10000}") int maxPending,
+                           @Value("${app.images.fetch.max-attempts:3}") int maxAttempts,
+                           @Value("${app.images.fetch.backoff:500ms}") Duration backoff,
+                           @Value("${app.images.fetch.timeout:20s}") Duration timeout) {
+        this.blobIndex = blobIndex;
+        this.quotaManager = quotaManager;
+        this.storagePath = Path.of(storagePath).toAbsolutePath().normalize();
+        this.serveBase = serveBase.endsWith("/") ? serveBase.substring(0, serveBase.length() - 1) : serveBase;
+        this.perHostConcurrency = Math.max(1, perHostConcurrency);
+        this.maxPending = maxPending;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoff = backoff;
+        this.timeout = timeout;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /**
+     * Descarga {@code imageUrl} al almacén de {@code subfolder} sin bloquear al llamante.
+     * El futuro se completa con la ruta pública ({@code /images/posters/ab/abcd...jpg}) o con la excepción
+     * del último intento. Si la ruta de TMDB ya tiene blob en disco y no se fuerza, se completa al momento.
+     */
+    public CompletableFuture<String> fetch(String imageUrl, String subfolder, boolean force) {
+        if (imageUrl == null || imageUrl.isBlank()) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("URL de imagen no puede estar vacía"));
+        }
+        URI uri;
+        Path folder = storagePath.resolve(subfolder).normalize();
+        try {
+            uri = URI.create(imageUrl);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (!folder.startsWith(storagePath) || uri.getPath() == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Imagen no válida: " + imageUrl));
+        }
+        String sourcePath = uri.getPath();
+        if (!force) {
+            String stored = blobIndex.find(sourcePath)
+                    .filter(blobPath -> Files.exists(storagePath.resolve(blobPath)))
+                    .orElse(null);
+            if (stored != null) {
+                alreadyStored.increment();
+                return CompletableFuture.completedFuture(serveBase + "/" + stored);
+            }
+        }
+
+        CompletableFuture<String> created = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(imageUrl, created);
+        if (existing != null) {
+            deduplicated.increment();
+            return existing;
+        }
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            inFlight.remove(imageUrl, created);
+            rejected.increment();
+            created.completeExceptionally(new RejectedExecutionException("Cola de descargas de imágenes llena"));
+            return created;
+        }
+        created.whenComplete((path, error) -> {
+            inFlight.remove(imageUrl, created);
+            pending.decrementAndGet();
+        });
+
+        submitted.increment();
+        lanes.computeIfAbsent(hostOf(uri), host -> new HostLane())
+                .submit(new FetchTask(uri, sourcePath, subfolder, folder, created, 1));
+        return created;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pending", pending.get());
+        stats.put("submitted", submitted.sum());
+        stats.put("deduplicated", deduplicated.sum());
+        stats.put("already_stored", alreadyStored.sum());
+        stats.put("downloaded", downloaded.sum());
+        stats.put("stored_new", storedNew.sum());
+        stats.put("stored_duplicate", storedDuplicate.sum());
+        stats.put("bytes_written", bytesWritten.sum());
+        stats.put("bytes_deduplicated", bytesDeduplicated.sum());
+        stats.put("retried", retried.sum());
+        stats.put("failed", failed.sum());
+        stats.put("rejected", rejected.sum());
+        Map<String, Object> hosts = new LinkedHashMap<>();
+        lanes.forEach((host, lane) -> hosts.put(host, lane.snapshot()));
+        stats.put("hosts", hosts);
+        return stats;
+    }
+
+    private void download(HostLane lane, FetchTask task) {
+        try {
+            Files.createDirectories(task.folder());
+        } catch (IOException e) {
+            lane.release();
+            fail(task, e);
+            return;
+        }
+
+        HttpRequest request = HttpRequest.newBuilder(task.uri())
+                .timeout(timeout)
+                .header("User-Agent", USER_AGENT)
+                .GET()
+                .build();
+
+        // Solo las respuestas 200 se escriben a disco; el resto se descarta sin crear temporal
+        HttpResponse.BodyHandler<HashingFileSubscriber.Result> handler = info -> {
+            if (info.statusCode() != 200) {
+                return HttpResponse.BodySubscribers.replacing(null);
+            }
+            try {
+                return new HashingFileSubscriber(Files.createTempFile(task.folder(), ".fetch-", ".tmp"));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+
+        httpClient.sendAsync(request, handler)
+                .whenComplete((response, error) -> {
+                    lane.release();
+                    complete(lane, task, response, error);
+                });
+    }
+
+    private void complete(HostLane lane, FetchTask task, HttpResponse<HashingFileSubscriber.Result> response,
+                          Throwable error) {
+        if (error == null && response.statusCode() == 200 && response.body() != null) {
+            try {
+                String blobPath = store(task, response.body());
+                downloaded.increment();
+                log.debug("✅ Imagen descargada: {} -> {}", task.uri(), blobPath);
+                task.result().complete(serveBase + "/" + blobPath);
+            } catch (IOException | RuntimeException e) {
+                deleteQuietly(response.body().file());
+                fail(task, e);
+            }
+            return;
+        }
+
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        boolean retryable = cause != null || response.statusCode() == 429 || response.statusCode() >= 500;
+        Throwable failure = cause != null ? cause : new IOException("HTTP " + response.statusCode());
+
+        if (retryable && task.attempt() < maxAttempts) {
+            retried.increment();
+            long delayMs = jitteredDelay(task.attempt());
+            log.debug("🔄 Reintentando {} en {} ms (intento {}): {}", task.uri(), delayMs, task.attempt() + 1, failure.getMessage());
+            CompletableFuture.delayedExecutor(delayMs, TimeUnit.MILLISECONDS)
+                    .execute(() -> lane.submit(task.nextAttempt()));
+            return;
+        }
+        fail(task, failure);
+    }
+
+    /**
+     * Mueve el temporal a su blob (o lo descarta si ese contenido ya está guardado) y lo apunta en el
+     * índice y en la cuota, para que cuente en el presupuesto antes de que nadie lo pida.
+     */
+    private String store(FetchTask task, HashingFileSubscriber.Result body) throws IOException {
+        String sha256 = body.sha256();
+        String blobPath = task.subfolder() + "/" + sha256.substring(0, 2) + "/" + sha256 + extensionOf(task.sourcePath());
+        Path target = storagePath.resolve(blobPath);
+
+        if (Files.exists(target)) {
+            deleteQuietly(body.file());
+            storedDuplicate.increment();
+            bytesDeduplicated.add(body.size());
+        } else {
+            Files.createDirectories(target.getParent());
+            moveIntoPlace(body.file(), target);
+            storedNew.increment();
+            bytesWritten.add(body.size());
+        }
+        blobIndex.record(task.sourcePath(), sha256, blobPath, body.size());
+        quotaManager.record(blobPath, body.size());
+        return blobPath;
+    }
+
+    private void fail(FetchTask task, Throwable failure) {
+        failed.increment();
+        log.warn("❌ No se pudo descargar la imagen {} tras {} intento(s): {}", task.uri(), task.attempt(), failure.getMessage());
+        task.result().completeExceptionally(failure);
+    }
+
+    /**
+     * Full jitter: espera aleatoria entre 0 y {@code backoff * 2^(intento-1)}, para que los reintentos
+     * de una ráfaga fallida no vuelvan a llegar todos a la vez.
+     */
+    private long jitteredDelay(int attempt) {
+        long ceiling = backoff.toMillis() << Math.min(attempt - 1, 10);
+        return ThreadLocalRandom.current().nextLong(Math.max(1, ceiling) + 1);
+    }
+
+    private static void moveIntoPlace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.debug("No se pudo borrar el temporal {}: {}", path, e.getMessage());
+        }
+    }
+
+    private static String hostOf(URI uri) {
+        return uri.getHost() != null ? uri.getHost().toLowerCase(Locale.ROOT) : "";
+    }
+
+    /**
+     * Extensión a partir de la ruta de origen, igual que la usaba ImageStorageService.
+     */
+    static String extensionOf(String url) {
+        if (url.contains(".jpg") || url.contains(".jpeg")) return ".jpg";
+        if (url.contains(".png")) return ".png";
+        if (url.contains(".webp")) return ".webp";
+        return ".jpg";
+    }
+
+    private record FetchTask(URI uri, String sourcePath, String subfolder, Path folder,
+                             CompletableFuture<String> result, int attempt) {
+        FetchTask nextAttempt() {
+            return new FetchTask(uri, sourcePath, subfolder, folder, result, attempt + 1);
+        }
+    }
+
+    /**
+     * Descargas activas y en espera de un host.
+     */
+    private final class HostLane {
+        private final Deque<FetchTask> waiting = new ArrayDeque<>();
+        private int active;
+
+        void submit(FetchTask task) {
+            synchronized (this) {
+                if (active >= perHostConcurrency) {
+                    waiting.addLast(task);
+                    return;
+                }
+                active++;
+            }
+            download(this, task);
+        }
+
+        void release() {
+            FetchTask next;
+            synchronized (this) {
+                next = waiting.pollFirst();
+                if (next == null) {
+                    active--;
+                    return;
+                }
+            }
+            download(this, next);
+        }
+
+        synchronized Map<String, Integer> snapshot() {
+            return Map.of("active", active, "waiting", waiting.size());
+        }
+    }
+}
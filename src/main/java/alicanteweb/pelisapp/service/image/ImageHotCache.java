@@ -0,0 +1,122 @@
+package alicanteweb.pelisapp.service.image;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caché en memoria fuera del heap (ByteBuffer directos) para las imágenes más pedidas.
+ *
+ * <p>Acotada por bytes. La expulsión es W-TinyLFU de Caffeine, y además un archivo solo entra
+ * en memoria la segunda vez que se pide en poco tiempo: un recorrido de imágenes que se ven una vez
+ * no reserva buffers ni desplaza a los pósters de la portada. Las imágenes que no están en memoria
+ * se siguen sirviendo desde disco.</p>
+ */
+@Component
+@Slf4j
+public class ImageHotCache {
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final Cache<String, ByteBuffer> buffers;
+    // Peticiones recientes de archivos que aún no están en memoria (puerta de admisión)
+    private final Cache<String, Boolean> seenOnce;
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder bytesServed = new LongAdder();
+
+    public ImageHotCache(@Value("${app.images.hot.max-bytes:67108864}") long maxBytes,
+                         @Value("${app.images.hot.max-entry-bytes:1048576}") long maxEntryBytes) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxEntryBytes;
+        this.buffers = Caffeine.newBuilder()
+                .maximumWeight(Math.max(0, maxBytes))
+                .weigher((String key, ByteBuffer buffer) -> buffer.capacity())
+                .recordStats()
+                .build();
+        this.seenOnce = Caffeine.newBuilder().maximumSize(10_000).build();
+    }
+
+    /**
+     * Escribe {@code file} desde memoria si está (o entra ahora) en la caché.
+     *
+     * @return false si hay que servirlo desde disco
+     */
+    public boolean serve(Path file, BasicFileAttributes attributes, OutputStream out) throws IOException {
+        if (maxBytes <= 0 || attributes.size() > maxEntryBytes) {
+            return false;
+        }
+        // Tamaño y fecha en la clave: un archivo reescrito no sirve el contenido anterior
+        String key = file + "|" + attributes.size() + "|" + attributes.lastModifiedTime().toMillis();
+        ByteBuffer buffer = buffers.getIfPresent(key);
+        if (buffer == null) {
+            if (seenOnce.asMap().remove(key) == null) {
+                seenOnce.put(key, Boolean.TRUE);
+                return false;
+            }
+            buffer = load(file, attributes.size());
+            if (buffer == null) {
+                return false;
+            }
+            buffers.put(key, buffer);
+            admitted.increment();
+        }
+
+        ByteBuffer view = buffer.duplicate();
+        WritableByteChannel channel = Channels.newChannel(out);
+        while (view.hasRemaining()) {
+            channel.write(view);
+        }
+        bytesServed.add(buffer.capacity());
+        return true;
+    }
+
+    public Map<String, Object> getStats() {
+        CacheStats stats = buffers.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("entries", buffers.estimatedSize());
+        result.put("cached_bytes", buffers.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L));
+        result.put("max_bytes", maxBytes);
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("hit_rate", stats.hitRate());
+        result.put("admitted", admitted.sum());
+        result.put("evicted", stats.evictionCount());
+        result.put("bytes_served", bytesServed.sum());
+        return result;
+    }
+
+    private static ByteBuffer load(Path file, long size) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) size);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // leer hasta llenar el buffer
+            }
+        } catch (IOException e) {
+            log.debug("No se pudo cargar {} en memoria: {}", file, e.getMessage());
+            return null;
+        }
+        if (buffer.hasRemaining()) {
+            // El archivo ha encogido mientras se leía
+            return null;
+        }
+        return buffer.flip().asReadOnlyBuffer();
+    }
+}
@@ -0,0 +1,155 @@
+package alicanteweb.pelisapp.service.image;
+
+import alicanteweb.pelisapp.constants.AppConstants;
+import alicanteweb.pelisapp.entity.Actor;
+import alicanteweb.pelisapp.entity.Director;
+import alicanteweb.pelisapp.entity.Movie;
+import alicanteweb.pelisapp.repository.ActorRepository;
+import alicanteweb.pelisapp.repository.DirectorRepository;
+import alicanteweb.pelisapp.repository.MovieRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Descarga en segundo plano las imágenes de películas, actores y directores y guarda
+ * {@code posterLocalPath}/{@code profileLocalPath} por lotes.
+ *
+ * <p>Las importaciones solo encolan la descarga en {@link ImageFetchQueue} y siguen; la ruta local
+ * se apunta cuando la descarga termina y la transacción de la importación ya ha hecho commit (la fila
+ * existe). Un proceso periódico aplica las rutas pendientes con una consulta por tipo y un único
+ * flush, en lugar de un UPDATE con su propia transacción por imagen.</p>
+ *
+ * <p>Con {@code app.images.fetch-on-miss} las descargas no forzadas se omiten: la imagen se trae
+ * la primera vez que alguien la pide (ver {@link LazyImageFetcher}).</p>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ImagePathUpdater {
+
+    private final ImageFetchQueue imageFetchQueue;
+    private final MovieRepository movieRepository;
+    private final ActorRepository actorRepository;
+    private final DirectorRepository directorRepository;
+
+    private final ConcurrentLinkedQueue<PathUpdate> updates = new ConcurrentLinkedQueue<>();
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+
+    @Value("${app.images.fetch.flush-max:500}")
+    private int flushMax;
+
+    @Value("${app.images.fetch-on-miss:false}")
+    private boolean fetchOnMiss;
+
+    /**
+     * Tipo de imagen: decide subcarpeta del almacén y qué columna se actualiza.
+     */
+    public enum Owner {
+        MOVIE_POSTER(AppConstants.POSTERS_SUBFOLDER),
+        ACTOR_PROFILE(AppConstants.PROFILES_SUBFOLDER),
+        DIRECTOR_PROFILE(AppConstants.PROFILES_SUBFOLDER);
+
+        private final String subfolder;
+
+        Owner(String subfolder) {
+            this.subfolder = subfolder;
+        }
+    }
+
+    /**
+     * Encola la descarga de la imagen de {@code tmdbId} y apunta su ruta local al terminar.
+     * Dentro de una transacción la ruta se aplica solo si esta hace commit. En modo bajo demanda
+     * solo se descarga si {@code force}; si no, el futuro se completa con null.
+     */
+    public CompletableFuture<String> scheduleDownload(Owner owner, Long tmdbId, String imageUrl, boolean force) {
+        if (fetchOnMiss && !force) {
+            skipped.increment();
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<String> download = imageFetchQueue.fetch(imageUrl, owner.subfolder, force);
+        Runnable assignWhenDone = () -> download.thenAccept(path -> updates.add(new PathUpdate(owner, tmdbId, path)));
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    assignWhenDone.run();
+                }
+            });
+        } else {
+            assignWhenDone.run();
+        }
+        return download;
+    }
+
+    public int getPendingUpdates() {
+        return updates.size();
+    }
+
+    public long getAppliedUpdates() {
+        return applied.sum();
+    }
+
+    public long getSkippedDownloads() {
+        return skipped.sum();
+    }
+
+    /**
+     * Aplica las rutas pendientes: una consulta por tipo y un flush con los UPDATE agrupados.
+     */
+    @Scheduled(fixedDelayString = "${app.images.fetch.flush-interval-ms:1000}")
+    @Transactional
+    public void flush() {
+        Map<Owner, Map<Long, String>> batch = new EnumMap<>(Owner.class);
+        PathUpdate update;
+        int drained = 0;
+        while (drained < flushMax && (update = updates.poll()) != null) {
+            batch.computeIfAbsent(update.owner(), o -> new HashMap<>()).put(update.tmdbId(), update.localPath());
+            drained++;
+        }
+        if (drained == 0) {
+            return;
+        }
+
+        int changed = 0;
+        Map<Long, String> posters = batch.get(Owner.MOVIE_POSTER);
+        if (posters != null) {
+            for (Movie movie : movieRepository.findByTmdbIdIn(posters.keySet())) {
+                movie.setPosterLocalPath(posters.get(movie.getTmdbId()));
+                changed++;
+            }
+        }
+        Map<Long, String> actorProfiles = batch.get(Owner.ACTOR_PROFILE);
+        if (actorProfiles != null) {
+            for (Actor actor : actorRepository.findByTmdbIdIn(actorProfiles.keySet())) {
+                actor.setProfileLocalPath(actorProfiles.get(actor.getTmdbId()));
+                changed++;
+            }
+        }
+        Map<Long, String> directorProfiles = batch.get(Owner.DIRECTOR_PROFILE);
+        if (directorProfiles != null) {
+            for (Director director : directorRepository.findByTmdbIdIn(directorProfiles.keySet())) {
+                director.setProfileLocalPath(directorProfiles.get(director.getTmdbId()));
+                changed++;
+            }
+        }
+        applied.add(changed);
+        log.debug("🖼️ Rutas locales de imagen actualizadas: {} de {} pendientes", changed, drained);
+    }
+
+    private record PathUpdate(Owner owner, Long tmdbId, String localPath) {}
+}
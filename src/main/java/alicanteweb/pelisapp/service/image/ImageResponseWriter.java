@@ -0,0 +1,187 @@
+package alicanteweb.pelisapp.service.image;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Escribe imágenes locales en la respuesta con validación HTTP y sin copias en el heap.
+ *
+ * <p>Los blobs del almacén por contenido ({@code <sha256>.ext}) llevan el hash en la URL: su ETag
+ * es ese hash, se cachean un año con {@code immutable} y un {@code If-None-Match} se contesta con
+ * 304 sin tocar el disco. El resto de archivos (nombres antiguos) usan un ETag del contenido que se
+ * calcula una vez por versión del archivo, y {@code Last-Modified}.</p>
+ *
+ * <p>El cuerpo sale de {@link ImageHotCache} si la imagen es de las más pedidas; si no, con
+ * sendfile de Tomcat cuando el conector lo soporta o con {@link FileChannel#transferTo}.</p>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ImageResponseWriter {
+
+    private static final Pattern CONTENT_HASH = Pattern.compile("[0-9a-f]{64}");
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+    private static final CacheControl REVALIDATE = CacheControl.maxAge(Duration.ofHours(1)).cachePublic();
+    private static final CacheControl SHORT = CacheControl.maxAge(Duration.ofMinutes(1)).cachePublic();
+
+    private final ImageHotCache imageHotCache;
+
+    // ETag de archivos sin hash en el nombre, por ruta + tamaño + fecha de modificación
+    private final Cache<String, String> contentTags = Caffeine.newBuilder().maximumSize(20_000).build();
+
+    /**
+     * Cómo se cachea una respuesta.
+     */
+    public enum Caching {
+        /** URL con hash de contenido: nunca cambia. */
+        IMMUTABLE,
+        /** Nombre sin hash: se revalida con ETag/Last-Modified. */
+        REVALIDATE,
+        /** Respuesta provisional (p. ej. original servido en lugar de una miniatura). */
+        SHORT
+    }
+
+    /**
+     * Hash de contenido incluido en el nombre del archivo, o null si el nombre no es un blob.
+     */
+    public static String contentHashOf(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        String base = dot > 0 ? fileName.substring(0, dot) : fileName;
+        return CONTENT_HASH.matcher(base).matches() ? base : null;
+    }
+
+    /**
+     * Contesta 304 si el cliente ya tiene la versión {@code etag}, sin mirar el archivo.
+     * Si no coincide no escribe ninguna cabecera: quien sirva después el cuerpo (quizá otro archivo,
+     * como el original en lugar de la miniatura) pone su propio ETag y caché.
+     */
+    public boolean notModified(HttpServletRequest request, HttpServletResponse response, String etag, Caching caching) {
+        // Sin respuesta, ServletWebRequest solo evalúa las condiciones
+        if (!new ServletWebRequest(request).checkNotModified(quote(etag))) {
+            return false;
+        }
+        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        response.setHeader(HttpHeaders.ETAG, quote(etag));
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl(caching).getHeaderValue());
+        return true;
+    }
+
+    /**
+     * Escribe {@code file} o un 304 si el cliente lo tiene. {@code etag} null = calcularlo del contenido.
+     */
+    public void write(HttpServletRequest request, HttpServletResponse response, Path file, String etag,
+                      Caching caching) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        long lastModified = attributes.lastModifiedTime().toMillis();
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl(caching).getHeaderValue());
+        ServletWebRequest webRequest = new ServletWebRequest(request, response);
+        boolean notModified = caching == Caching.SHORT
+                ? webRequest.checkNotModified(lastModified)
+                : webRequest.checkNotModified(quote(etag != null ? etag : contentTag(file, attributes)), lastModified);
+        if (notModified) {
+            return;
+        }
+
+        response.setContentType(contentTypeOf(file).toString());
+        response.setContentLengthLong(attributes.size());
+        if ("HEAD".equals(request.getMethod())) {
+            return;
+        }
+
+        if (imageHotCache.serve(file, attributes, response.getOutputStream())) {
+            return;
+        }
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat envía el archivo con sendfile cuando el servlet termina, sin pasar por el heap
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, attributes.size());
+            return;
+        }
+        transfer(file, response.getOutputStream());
+    }
+
+    public static MediaType contentTypeOf(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".webp")) {
+            return MediaType.parseMediaType("image/webp");
+        }
+        return MediaTypeFactory.getMediaType(name).orElse(MediaType.APPLICATION_OCTET_STREAM);
+    }
+
+    private static void transfer(Path file, OutputStream out) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = 0;
+            long size = channel.size();
+            while (position < size) {
+                position += channel.transferTo(position, size - position, target);
+            }
+        }
+    }
+
+    private String contentTag(Path file, BasicFileAttributes attributes) {
+        String key = file + "|" + attributes.size() + "|" + attributes.lastModifiedTime().toMillis();
+        return contentTags.get(key, k -> {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+                while (channel.read(buffer) > 0) {
+                    buffer.flip();
+                    digest.update(buffer);
+                    buffer.clear();
+                }
+                return HexFormat.of().formatHex(digest.digest());
+            } catch (IOException | NoSuchAlgorithmException e) {
+                log.debug("No se pudo calcular el ETag de {}: {}", file, e.getMessage());
+                return attributes.size() + "-" + attributes.lastModifiedTime().toMillis();
+            }
+        });
+    }
+
+    private static CacheControl cacheControl(Caching caching) {
+        return switch (caching) {
+            case IMMUTABLE -> IMMUTABLE;
+            case REVALIDATE -> REVALIDATE;
+            case SHORT -> SHORT;
+        };
+    }
+
+    private static String quote(String etag) {
+        return "\"" + etag + "\"";
+    }
+}
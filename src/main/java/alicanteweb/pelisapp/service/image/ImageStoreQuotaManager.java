@@ -0,0 +1,317 @@
+package alicanteweb.pelisapp.service.image;
+
+import alicanteweb.pelisapp.constants.AppConstants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Presupuesto de disco por subcarpeta del almacén de imágenes (pósters y perfiles).
+ *
+ * <p>Lleva en memoria el tamaño y el último acceso de cada archivo, en orden LRU, y lo guarda en
+ * {@code .quota-index} para no perder los accesos al reiniciar. Servir una imagen solo apunta el
+ * acceso en un mapa concurrente; el trabajo (aplicar accesos, reescanear, borrar) lo hace una tarea
+ * periódica. Solo se borran blobs por contenido ({@code <sha256>.ext}), que se vuelven a descargar
+ * de TMDB si alguien los pide; los archivos con nombres antiguos cuentan pero no se borran. Las
+ * miniaturas tienen su propio límite ({@code app.images.variants.max-cache-bytes}).</p>
+ */
+@Component
+@Slf4j
+public class ImageStoreQuotaManager {
+
+    static final String CHECKPOINT_FILE = ".quota-index";
+
+    private final Path storagePath;
+    private final Path checkpoint;
+    private final Map<String, Long> budgets = new LinkedHashMap<>();
+    private final long rescanIntervalMs;
+
+    // Accesos pendientes de aplicar: ruta relativa → segundo del acceso
+    private final ConcurrentHashMap<String, Long> pendingAccesses = new ConcurrentHashMap<>();
+    // Bytes de blobs nuevos que aún no están en el LRU, por subcarpeta
+    private final ConcurrentHashMap<String, Long> pendingBytes = new ConcurrentHashMap<>();
+    private final AtomicBoolean earlyMaintenance = new AtomicBoolean();
+
+    // Por subcarpeta, archivos en orden de último acceso (el primero es el más antiguo)
+    private final Map<String, LinkedHashMap<String, FileEntry>> folders = new HashMap<>();
+    private final Map<String, Long> usedBytes = new ConcurrentHashMap<>();
+
+    private final LongAdder evictedFiles = new LongAdder();
+    private final LongAdder evictedBytes = new LongAdder();
+    private long lastRescanMs;
+    private boolean dirty;
+
+    public ImageStoreQuotaManager(@Value("${app.images.storage-path:./data/images}") String storagePath,
+                                  @Value("${app.images.quota.posters-bytes:2147483648}") long postersBytes,
+                                  @Value("${app.images.quota.profiles-bytes:1073741824}") long profilesBytes,
+                                  @Value("${app.images.quota.rescan-interval:1h}") Duration rescanInterval) {
+        this.storagePath = Path.of(storagePath).toAbsolutePath().normalize();
+        this.checkpoint = this.storagePath.resolve(CHECKPOINT_FILE);
+        this.budgets.put(AppConstants.POSTERS_SUBFOLDER, postersBytes);
+        this.budgets.put(AppConstants.PROFILES_SUBFOLDER, profilesBytes);
+        this.rescanIntervalMs = rescanInterval.toMillis();
+        budgets.keySet().forEach(folder -> {
+            folders.put(folder, new LinkedHashMap<>(256, 0.75f, true));
+            usedBytes.put(folder, 0L);
+        });
+    }
+
+    /**
+     * Apunta un acceso a {@code relative} (p. ej. {@code posters/ab/abcd.jpg}). No toca el disco, así
+     * que solo debe llamarse después de servir el archivo: con rutas que elige el cliente el mapa de
+     * accesos pendientes crecería sin límite.
+     */
+    public void touch(String relative) {
+        if (relative != null && budgets.containsKey(folderOf(relative))) {
+            pendingAccesses.put(relative, System.currentTimeMillis() / 1000);
+        }
+    }
+
+    /**
+     * Apunta un blob recién escrito (ImageFetchQueue) con su tamaño. Si con lo pendiente la subcarpeta
+     * pasa de su presupuesto, adelanta el mantenimiento en segundo plano en lugar de esperar a la
+     * siguiente pasada: una importación masiva no puede llenar el disco entre dos pasadas.
+     */
+    public void record(String relative, long size) {
+        if (relative == null) {
+            return;
+        }
+        String folder = folderOf(relative);
+        Long budget = budgets.get(folder);
+        if (budget == null) {
+            return;
+        }
+        pendingAccesses.put(relative, System.currentTimeMillis() / 1000);
+        long pending = pendingBytes.merge(folder, size, Long::sum);
+        if (budget > 0 && usedBytes.getOrDefault(folder, 0L) + pending > budget
+                && earlyMaintenance.compareAndSet(false, true)) {
+            CompletableFuture.runAsync(this::maintain);
+        }
+    }
+
+    /**
+     * Aplica accesos, reescanea si toca, borra lo que sobra de cada presupuesto y guarda el índice.
+     */
+    @Scheduled(initialDelayString = "${app.images.quota.initial-delay-ms:30000}",
+            fixedDelayString = "${app.images.quota.interval-ms:60000}")
+    public synchronized void maintain() {
+        earlyMaintenance.set(false);
+        try {
+            if (lastRescanMs == 0) {
+                loadCheckpoint();
+            }
+            if (System.currentTimeMillis() - lastRescanMs >= rescanIntervalMs) {
+                rescan();
+            }
+            applyAccesses();
+            budgets.forEach(this::enforce);
+            if (dirty) {
+                writeCheckpoint();
+            }
+        } catch (Exception e) {
+            log.warn("⚠️ Error manteniendo la cuota de imágenes: {}", e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        budgets.forEach((folder, budget) -> {
+            Map<String, Object> folderStats = new LinkedHashMap<>();
+            folderStats.put("used_bytes", usedBytes.getOrDefault(folder, 0L));
+            folderStats.put("budget_bytes", budget);
+            stats.put(folder, folderStats);
+        });
+        stats.put("pending_accesses", pendingAccesses.size());
+        stats.put("pending_bytes", pendingBytes.values().stream().mapToLong(Long::longValue).sum());
+        stats.put("evicted_files", evictedFiles.sum());
+        stats.put("evicted_bytes", evictedBytes.sum());
+        return stats;
+    }
+
+    private void applyAccesses() {
+        pendingBytes.clear();
+        Iterator<Map.Entry<String, Long>> it = pendingAccesses.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Long> access = it.next();
+            it.remove();
+            LinkedHashMap<String, FileEntry> files = folders.get(folderOf(access.getKey()));
+            FileEntry entry = files.get(access.getKey()); // get() lo mueve al final del LRU
+            if (entry == null) {
+                // Archivo nuevo (descargado después del último escaneo)
+                Path file = storagePath.resolve(access.getKey()).normalize();
+                if (!file.startsWith(storagePath) || !Files.isRegularFile(file)) {
+                    continue;
+                }
+                try {
+                    add(files, access.getKey(), Files.size(file), access.getValue());
+                } catch (IOException e) {
+                    continue;
+                }
+            } else {
+                entry.lastAccess = access.getValue();
+            }
+            dirty = true;
+        }
+    }
+
+    private void enforce(String folder, long budget) {
+        long used = usedBytes.get(folder);
+        if (budget <= 0 || used <= budget) {
+            return;
+        }
+        LinkedHashMap<String, FileEntry> files = folders.get(folder);
+        Iterator<Map.Entry<String, FileEntry>> it = files.entrySet().iterator();
+        int removed = 0;
+        long freed = 0;
+        while (used > budget && it.hasNext()) {
+            Map.Entry<String, FileEntry> candidate = it.next();
+            String name = Path.of(candidate.getKey()).getFileName().toString();
+            if (ImageResponseWriter.contentHashOf(name) == null || pendingAccesses.containsKey(candidate.getKey())) {
+                continue;
+            }
+            try {
+                Files.deleteIfExists(storagePath.resolve(candidate.getKey()));
+            } catch (IOException e) {
+                log.debug("No se pudo borrar {}: {}", candidate.getKey(), e.getMessage());
+                continue;
+            }
+            it.remove();
+            used -= candidate.getValue().size;
+            freed += candidate.getValue().size;
+            removed++;
+        }
+        usedBytes.put(folder, used);
+        if (removed > 0) {
+            dirty = true;
+            evictedFiles.add(removed);
+            evictedBytes.add(freed);
+            log.info("🧹 Cuota de {}: {} imágenes menos usadas borradas ({} bytes), en uso {} de {}",
+                    folder, removed, freed, used, budget);
+        }
+    }
+
+    /**
+     * Recorre el disco: añade archivos nuevos (último acceso = fecha de modificación) y quita los que
+     * ya no existen. Conserva los accesos conocidos.
+     */
+    private void rescan() throws IOException {
+        for (String folder : budgets.keySet()) {
+            Path root = storagePath.resolve(folder);
+            Map<String, FileEntry> previous = folders.get(folder);
+            List<ScannedFile> found = new ArrayList<>();
+            if (Files.isDirectory(root)) {
+                try (Stream<Path> paths = Files.walk(root)) {
+                    for (Path path : (Iterable<Path>) paths::iterator) {
+                        try {
+                            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                            if (!attrs.isRegularFile()) {
+                                continue;
+                            }
+                            String relative = storagePath.relativize(path).toString().replace('\\', '/');
+                            FileEntry known = previous.get(relative);
+                            long lastAccess = known != null ? known.lastAccess
+                                    : attrs.lastModifiedTime().toMillis() / 1000;
+                            found.add(new ScannedFile(relative, attrs.size(), lastAccess));
+                        } catch (NoSuchFileException e) {
+                            // borrado mientras se recorría
+                        }
+                    }
+                }
+            }
+            found.sort(Comparator.comparingLong(ScannedFile::lastAccess));
+            LinkedHashMap<String, FileEntry> files = new LinkedHashMap<>(Math.max(256, found.size() * 2), 0.75f, true);
+            usedBytes.put(folder, 0L);
+            folders.put(folder, files);
+            for (ScannedFile f : found) {
+                add(files, f.relative(), f.size(), f.lastAccess());
+            }
+        }
+        lastRescanMs = System.currentTimeMillis();
+        dirty = true;
+        log.debug("Almacén de imágenes reescaneado: {}", usedBytes);
+    }
+
+    private void loadCheckpoint() {
+        if (!Files.isRegularFile(checkpoint)) {
+            return;
+        }
+        try (Stream<String> lines = Files.lines(checkpoint, StandardCharsets.UTF_8)) {
+            // Líneas "ruta \t tamaño \t último acceso", de más antiguo a más reciente
+            lines.forEach(line -> {
+                String[] parts = line.split("\t");
+                LinkedHashMap<String, FileEntry> files = parts.length == 3 ? folders.get(folderOf(parts[0])) : null;
+                if (files != null) {
+                    try {
+                        add(files, parts[0], Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+                    } catch (NumberFormatException ignored) {
+                        // línea corrupta
+                    }
+                }
+            });
+            log.info("📂 Índice de cuota de imágenes cargado: {}", usedBytes);
+        } catch (IOException e) {
+            log.warn("⚠️ No se pudo leer {}: {}", checkpoint, e.getMessage());
+        }
+    }
+
+    private void writeCheckpoint() throws IOException {
+        Files.createDirectories(storagePath);
+        Path tmp = checkpoint.resolveSibling(CHECKPOINT_FILE + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for (LinkedHashMap<String, FileEntry> files : folders.values()) {
+                for (Map.Entry<String, FileEntry> e : files.entrySet()) {
+                    writer.write(e.getKey() + "\t" + e.getValue().size + "\t" + e.getValue().lastAccess);
+                    writer.newLine();
+                }
+            }
+        }
+        Files.move(tmp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        dirty = false;
+    }
+
+    private void add(LinkedHashMap<String, FileEntry> files, String relative, long size, long lastAccess) {
+        FileEntry previous = files.put(relative, new FileEntry(size, lastAccess));
+        String folder = folderOf(relative);
+        usedBytes.merge(folder, size - (previous != null ? previous.size : 0), Long::sum);
+    }
+
+    private static String folderOf(String relative) {
+        int slash = relative.indexOf('/');
+        return slash > 0 ? relative.substring(0, slash) : "";
+    }
+
+    private record ScannedFile(String relative, long size, long lastAccess) {}
+
+    private static final class FileEntry {
+        private final long size;
+        private long lastAccess;
+
+        private FileEntry(long size, long lastAccess) {
+            this.size = size;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
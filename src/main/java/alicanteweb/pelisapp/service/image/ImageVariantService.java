@@ -0,0 +1,346 @@
+package alicanteweb.pelisapp.service.image;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Miniaturas de pósters y fotos de perfil (w92, w185, w342) generadas bajo demanda.
+ *
+ * <p>La primera petición de una variante la genera en {@code imageResizeExecutor}, un pool pequeño
+ * con cola acotada: una ráfaga con la caché fría no puede decodificar cientos de imágenes a la vez.
+ * Si el pool está lleno o tarda demasiado se devuelve vacío y el llamante sirve el original.
+ * La decodificación usa submuestreo, así un w500 nunca se carga entero para sacar un w92.</p>
+ *
+ * <p>Las variantes se guardan en {@code variants/wNNN/...} con la misma ruta que el original y
+ * forman una caché LRU en disco acotada por bytes; al arrancar se reconstruye por fecha de acceso.</p>
+ */
+@Service
+@Slf4j
+public class ImageVariantService {
+
+    public static final String VARIANTS_FOLDER = "variants";
+
+    private static final long TOUCH_INTERVAL_MS = TimeUnit.MINUTES.toMillis(10);
+
+    /**
+     * Anchos disponibles, los mismos nombres que usa TMDB.
+     */
+    public enum Width {
+        W92(92), W185(185), W342(342);
+
+        private final int pixels;
+
+        Width(int pixels) {
+            this.pixels = pixels;
+        }
+
+        public int pixels() {
+            return pixels;
+        }
+
+        public String key() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+        public static Optional<Width> parse(String value) {
+            for (Width width : values()) {
+                if (width.key().equalsIgnoreCase(value)) {
+                    return Optional.of(width);
+                }
+            }
+            return Optional.empty();
+        }
+    }
+
+    private final Path storagePath;
+    private final Path variantsPath;
+    private final String serveBase;
+    private final Executor resizeExecutor;
+    private final long maxCacheBytes;
+    private final long maxSourcePixels;
+    private final Duration generationTimeout;
+
+    private final ConcurrentHashMap<Path, CompletableFuture<Path>> generating = new ConcurrentHashMap<>();
+    // Orden de acceso: el primero es el menos usado
+    private final LinkedHashMap<Path, Long> lru = new LinkedHashMap<>(256, 0.75f, true);
+    private long cachedBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder generated = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+
+    public ImageVariantService(@Value("${app.images.storage-path:./data/images}") String storagePath,
+                               @Value("${app.images.serve-base:/images}") String serveBase,
+                               @Qualifier("imageResizeExecutor") Executor resizeExecutor,
+                               @Value("${app.images.variants.max-cache-bytes:268435456}") long maxCacheBytes,
+                               @Value("${app.images.variants.max-source-pixels:16000000}") long maxSourcePixels,
+                               @Value("${app.images.variants.timeout:5s}") Duration generationTimeout) {
+        this.storagePath = Path.of(storagePath).toAbsolutePath().normalize();
+        this.variantsPath = this.storagePath.resolve(VARIANTS_FOLDER);
+        this.serveBase = serveBase.endsWith("/") ? serveBase.substring(0, serveBase.length() - 1) : serveBase;
+        this.resizeExecutor = resizeExecutor;
+        this.maxCacheBytes = maxCacheBytes;
+        this.maxSourcePixels = maxSourcePixels;
+        this.generationTimeout = generationTimeout;
+        loadExistingVariants();
+    }
+
+    /**
+     * URL pública de la variante para una ruta local guardada en BD ({@code /images/posters/ab/x.jpg}
+     * o {@code posters/x.jpg}). Devuelve null si no hay ruta local.
+     */
+    public String variantUrl(String localPath, Width width) {
+        String relative = relativeOriginal(localPath);
+        return relative != null ? serveBase + "/" + width.key() + "/" + relative : null;
+    }
+
+    /**
+     * Ruta del original dentro del almacén para una ruta local guardada en BD.
+     */
+    public String relativeOriginal(String localPath) {
+        if (localPath == null || localPath.isBlank()) {
+            return null;
+        }
+        String relative = localPath.startsWith(serveBase + "/") ? localPath.substring(serveBase.length() + 1) : localPath;
+        while (relative.startsWith("/")) {
+            relative = relative.substring(1);
+        }
+        return relative.isEmpty() ? null : relative;
+    }
+
+    /**
+     * Archivo de la variante, generándolo si hace falta. Vacío si el original no existe, no se puede
+     * redimensionar o el pool está saturado; en ese caso conviene servir el original.
+     */
+    public Optional<Path> resolve(String relativeOriginal, Width width) {
+        Path original = storagePath.resolve(relativeOriginal).normalize();
+        if (!original.startsWith(storagePath) || original.startsWith(variantsPath) || !Files.isRegularFile(original)) {
+            return Optional.empty();
+        }
+        Path variant = variantsPath.resolve(width.key()).resolve(storagePath.relativize(original)).normalize();
+
+        if (Files.isRegularFile(variant)) {
+            hits.increment();
+            touch(variant);
+            return Optional.of(variant);
+        }
+
+        CompletableFuture<Path> created = new CompletableFuture<>();
+        CompletableFuture<Path> running = generating.putIfAbsent(variant, created);
+        if (running == null) {
+            running = created;
+            try {
+                resizeExecutor.execute(() -> {
+                    try {
+                        created.complete(generate(original, variant, width));
+                    } catch (Throwable e) {
+                        created.completeExceptionally(e);
+                    } finally {
+                        generating.remove(variant, created);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                generating.remove(variant, created);
+                fallbacks.increment();
+                log.debug("Pool de miniaturas saturado, se sirve el original de {}", relativeOriginal);
+                return Optional.empty();
+            }
+        }
+
+        try {
+            return Optional.of(running.get(generationTimeout.toMillis(), TimeUnit.MILLISECONDS));
+        } catch (TimeoutException e) {
+            fallbacks.increment();
+            return Optional.empty();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        } catch (ExecutionException e) {
+            fallbacks.increment();
+            log.warn("⚠️ No se pudo generar la miniatura {} de {}: {}", width.key(), relativeOriginal, e.getCause().getMessage());
+            return Optional.empty();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (lru) {
+            stats.put("cached_variants", lru.size());
+            stats.put("cached_bytes", cachedBytes);
+        }
+        stats.put("max_cache_bytes", maxCacheBytes);
+        stats.put("hits", hits.sum());
+        stats.put("generated", generated.sum());
+        stats.put("evicted", evicted.sum());
+        stats.put("fallbacks", fallbacks.sum());
+        return stats;
+    }
+
+    private Path generate(Path original, Path variant, Width width) throws IOException {
+        BufferedImage source = readSubsampled(original, width.pixels());
+        int targetWidth = Math.min(width.pixels(), source.getWidth());
+        int targetHeight = Math.max(1, (int) Math.round((double) source.getHeight() * targetWidth / source.getWidth()));
+
+        boolean png = original.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".png");
+        BufferedImage scaled = new BufferedImage(targetWidth, targetHeight,
+                png ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, targetWidth, targetHeight, null);
+        } finally {
+            graphics.dispose();
+        }
+
+        Files.createDirectories(variant.getParent());
+        Path temp = Files.createTempFile(variant.getParent(), ".variant-", ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                if (!ImageIO.write(scaled, png ? "png" : "jpg", out)) {
+                    throw new IOException("Formato de salida no soportado");
+                }
+            }
+            try {
+                Files.move(temp, variant, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, variant, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        generated.increment();
+        add(variant, Files.size(variant));
+        return variant;
+    }
+
+    /**
+     * Decodifica con submuestreo entero: lee 1 de cada N píxeles para quedarse por encima del ancho
+     * pedido sin pasar nunca por el tamaño completo. Rechaza imágenes con demasiados píxeles.
+     */
+    private BufferedImage readSubsampled(Path original, int targetWidth) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(original.toFile())) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("Formato de imagen no soportado");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int sourceWidth = reader.getWidth(0);
+                int sourceHeight = reader.getHeight(0);
+                if ((long) sourceWidth * sourceHeight > maxSourcePixels) {
+                    throw new IOException("Imagen demasiado grande: " + sourceWidth + "x" + sourceHeight);
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, sourceWidth / (targetWidth * 2));
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private void touch(Path variant) {
+        synchronized (lru) {
+            lru.get(variant);
+        }
+        // La fecha en disco solo sirve para reconstruir el orden al arrancar: basta con refrescarla de vez en cuando
+        long now = System.currentTimeMillis();
+        try {
+            if (now - Files.getLastModifiedTime(variant).toMillis() > TOUCH_INTERVAL_MS) {
+                Files.setLastModifiedTime(variant, FileTime.fromMillis(now));
+            }
+        } catch (IOException e) {
+            log.debug("No se pudo actualizar la fecha de {}", variant);
+        }
+    }
+
+    private void add(Path variant, long size) {
+        synchronized (lru) {
+            Long previous = lru.put(variant, size);
+            cachedBytes += size - (previous != null ? previous : 0);
+            Iterator<Map.Entry<Path, Long>> oldest = lru.entrySet().iterator();
+            while (cachedBytes > maxCacheBytes && oldest.hasNext()) {
+                Map.Entry<Path, Long> entry = oldest.next();
+                if (entry.getKey().equals(variant)) {
+                    continue;
+                }
+                oldest.remove();
+                cachedBytes -= entry.getValue();
+                evicted.increment();
+                try {
+                    Files.deleteIfExists(entry.getKey());
+                } catch (IOException e) {
+                    log.debug("No se pudo borrar la miniatura {}: {}", entry.getKey(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Reconstruye el orden LRU a partir de la fecha de modificación, que {@link #touch} actualiza en cada acceso.
+     */
+    private void loadExistingVariants() {
+        if (!Files.isDirectory(variantsPath)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(variantsPath)) {
+            List<Path> variants = files.filter(Files::isRegularFile)
+                    .filter(path -> !path.getFileName().toString().endsWith(".tmp"))
+                    .sorted(Comparator.comparing(ImageVariantService::lastModified))
+                    .toList();
+            for (Path variant : variants) {
+                add(variant, Files.size(variant));
+            }
+            log.info("🖼️ Caché de miniaturas: {} archivos, {} bytes", variants.size(), cachedBytes);
+        } catch (IOException e) {
+            log.warn("⚠️ No se pudo leer la caché de miniaturas: {}", e.getMessage());
+        }
+    }
+
+    private static FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package alicanteweb.pelisapp.service.image;
+
+import alicanteweb.pelisapp.constants.AppConstants;
+import alicanteweb.pelisapp.tmdb.TMDBClient;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Descarga de imágenes bajo demanda ({@code app.images.fetch-on-miss}).
+ *
+ * <p>Las importaciones ya no descargan pósters ni fotos: la web apunta a
+ * {@code /images/tmdb/posters/abc.jpg} y la primera petición lanza la descarga del original de TMDB en
+ * segundo plano y redirige al original remoto; el hilo de Tomcat no espera a TMDB. Las peticiones
+ * simultáneas de la misma imagen comparten una sola descarga (la de {@link ImageFetchQueue}); las
+ * siguientes salen del índice sin red. Solo ocupa disco lo que alguien ha visto.</p>
+ *
+ * <p>También recupera blobs borrados por {@link ImageStoreQuotaManager}: la URL
+ * {@code /images/posters/ab/<sha256>.jpg} sigue siendo válida porque el índice sabe de qué ruta de
+ * TMDB salió.</p>
+ */
+@Component
+@Slf4j
+public class LazyImageFetcher {
+
+    public static final String LAZY_FOLDER = "tmdb";
+
+    private static final Set<String> SUBFOLDERS = Set.of(AppConstants.POSTERS_SUBFOLDER, AppConstants.PROFILES_SUBFOLDER);
+    private static final Pattern TMDB_FILE = Pattern.compile("[A-Za-z0-9_-]+\\.(jpg|jpeg|png|webp|svg)");
+
+    private final ImageFetchQueue imageFetchQueue;
+    private final ImageBlobIndex imageBlobIndex;
+    private final TMDBClient tmdbClient;
+    private final String serveBase;
+    private final boolean enabled;
+
+    // Imágenes que TMDB no ha devuelto hace poco, o blobs que no están en el índice: no se vuelven
+    // a pedir en cada visita
+    private final Cache<String, Boolean> recentFailures = Caffeine.newBuilder()
+            .maximumSize(10_000).expireAfterWrite(Duration.ofMinutes(10)).build();
+
+    private final LongAdder resolved = new LongAdder();
+    private final LongAdder refetched = new LongAdder();
+    private final LongAdder deferred = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public LazyImageFetcher(ImageFetchQueue imageFetchQueue,
+                            ImageBlobIndex imageBlobIndex,
+                            TMDBClient tmdbClient,
+                            @Value("${app.images.serve-base:/images}") String serveBase,
+                            @Value("${app.images.fetch-on-miss:false}") boolean enabled) {
+        this.imageFetchQueue = imageFetchQueue;
+        this.imageBlobIndex = imageBlobIndex;
+        this.tmdbClient = tmdbClient;
+        this.serveBase = serveBase.endsWith("/") ? serveBase.substring(0, serveBase.length() - 1) : serveBase;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * URL local perezosa de una ruta de TMDB ({@code /abc.jpg} → {@code /images/tmdb/posters/abc.jpg}),
+     * o null si el modo está desactivado o la ruta no es de TMDB.
+     */
+    public String lazyUrl(String subfolder, String remotePath) {
+        if (!enabled || remotePath == null || remotePath.startsWith("http")) {
+            return null;
+        }
+        String file = remotePath.startsWith("/") ? remotePath.substring(1) : remotePath;
+        return accepts(subfolder, file) ? serveBase + "/" + LAZY_FOLDER + "/" + subfolder + "/" + file : null;
+    }
+
+    /**
+     * Si {@code subfolder}/{@code file} es una imagen de TMDB que se puede pedir bajo demanda.
+     */
+    public boolean accepts(String subfolder, String file) {
+        return enabled && SUBFOLDERS.contains(subfolder) && file != null && TMDB_FILE.matcher(file).matches();
+    }
+
+    /**
+     * Blob local (ruta relativa al directorio de imágenes) de la imagen si ya está guardado. Si falta
+     * se lanza la descarga en segundo plano y devuelve vacío al momento: el llamante redirige a TMDB
+     * y la próxima petición ya lo encuentra.
+     */
+    public Optional<String> resolve(String subfolder, String file) {
+        if (!accepts(subfolder, file) || recentFailures.getIfPresent(file) != null) {
+            return Optional.empty();
+        }
+        Optional<String> blob = storedNow(start(remoteUrl(file, null), subfolder, file));
+        blob.ifPresent(b -> resolved.increment());
+        return blob;
+    }
+
+    /**
+     * Vuelve a descargar en segundo plano un blob del almacén que ya no está en disco
+     * ({@code posters/ab/<sha256>.jpg}) y devuelve la URL de TMDB de la que salió, para redirigir
+     * mientras tanto. Vacío si el blob no está en el índice.
+     */
+    public Optional<String> refetch(String blobPath) {
+        int slash = blobPath.indexOf('/');
+        if (slash <= 0 || !SUBFOLDERS.contains(blobPath.substring(0, slash))
+                || recentFailures.getIfPresent(blobPath) != null) {
+            return Optional.empty();
+        }
+        Optional<String> source = imageBlobIndex.findSource(blobPath);
+        if (source.isEmpty()) {
+            // Hash desconocido: se recuerda para no repetir la consulta en cada petición
+            recentFailures.put(blobPath, Boolean.TRUE);
+            return Optional.empty();
+        }
+        // La ruta de origen no guarda el host: se toma el de la URL de imágenes configurada
+        String url = URI.create(remoteUrl("x.jpg", null)).resolve(source.get()).toString();
+        start(url, blobPath.substring(0, slash), blobPath);
+        refetched.increment();
+        return Optional.of(url);
+    }
+
+    /**
+     * Lanza (o se une a) la descarga; los fallos se recuerdan para no repetirla en cada visita.
+     */
+    private CompletableFuture<String> start(String url, String subfolder, String failureKey) {
+        CompletableFuture<String> download = imageFetchQueue.fetch(url, subfolder, false);
+        download.whenComplete((publicPath, error) -> {
+            if (error != null) {
+                failures.increment();
+                recentFailures.put(failureKey, Boolean.TRUE);
+                log.warn("⚠️ No se pudo descargar bajo demanda {}: {}", url, error.getMessage());
+            }
+        });
+        return download;
+    }
+
+    /**
+     * Blob de una descarga que ya ha terminado (estaba en el índice); vacío si sigue en curso.
+     */
+    private Optional<String> storedNow(CompletableFuture<String> download) {
+        if (!download.isDone() || download.isCompletedExceptionally()) {
+            deferred.increment();
+            return Optional.empty();
+        }
+        String publicPath = download.join();
+        return Optional.of(publicPath.startsWith(serveBase + "/")
+                ? publicPath.substring(serveBase.length() + 1) : publicPath);
+    }
+
+    /**
+     * URL de TMDB de la imagen; {@code size} null = tamaño configurado para descargas.
+     */
+    public String remoteUrl(String file, String size) {
+        String path = "/" + file;
+        return size != null ? tmdbClient.buildImageUrl(path, size) : tmdbClient.buildImageUrl(path);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("resolved", resolved.sum());
+        stats.put("refetched", refetched.sum());
+        stats.put("deferred", deferred.sum());
+        stats.put("failures", failures.sum());
+        return stats;
+    }
+}
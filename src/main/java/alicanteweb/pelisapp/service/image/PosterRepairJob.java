@@ -0,0 +1,310 @@
+package alicanteweb.pelisapp.service.image;
+
+import alicanteweb.pelisapp.dto.PosterRepairCandidate;
+import alicanteweb.pelisapp.repository.MovieRepository;
+import alicanteweb.pelisapp.tmdb.TMDBClient;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reparación de carátulas: recorre las películas por id (paginación por clave), comprueba con un
+ * {@code stat} que la carátula local existe y no está vacía, y vuelve a descargar las que faltan en
+ * paralelo con un máximo de descargas simultáneas. Con la descarga bajo demanda activa
+ * ({@link LazyImageFetcher}) las películas sin carátula local se saltan: se descargarán cuando alguien
+ * las vea. Tampoco se reparan los blobs por contenido que faltan pero siguen en el índice: los borra a
+ * propósito {@link ImageStoreQuotaManager} y se recuperan al pedirlos; descargarlos aquí desharía la
+ * cuota en cada pasada. Solo se reparan las rutas rotas de verdad.
+ *
+ * <p>Al terminar cada lote guarda el último id procesado en un archivo de checkpoint, así que un
+ * reinicio o una parada continúan donde se quedaron. El progreso y la velocidad se consultan con
+ * {@link #getStatus()} desde el panel de administración.</p>
+ */
+@Component
+@Slf4j
+public class PosterRepairJob {
+
+    private final MovieRepository movieRepository;
+    private final ImagePathUpdater imagePathUpdater;
+    private final ImageVariantService imageVariantService;
+    private final TMDBClient tmdbClient;
+    private final LazyImageFetcher lazyImageFetcher;
+    private final ImageBlobIndex imageBlobIndex;
+    private final Executor executor;
+    private final Path storagePath;
+    private final Path checkpointFile;
+    private final int batchSize;
+    private final int concurrency;
+
+    private final LongAdder scanned = new LongAdder();
+    private final LongAdder missing = new LongAdder();
+    private final LongAdder skippedLazy = new LongAdder();
+    private final LongAdder skippedEvicted = new LongAdder();
+    private final LongAdder repaired = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    private volatile String state = "idle";
+    private volatile boolean stopRequested;
+    private volatile long lastId;
+    private volatile long maxId;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile Semaphore permits;
+
+    public PosterRepairJob(MovieRepository movieRepository,
+                           ImagePathUpdater imagePathUpdater,
+                           ImageVariantService imageVariantService,
+                           TMDBClient tmdbClient,
+                           LazyImageFetcher lazyImageFetcher,
+                           ImageBlobIndex imageBlobIndex,
+                           @Qualifier("bulkLoaderExecutor") Executor executor,
+                           @Value("${app.images.storage-path:./data/images}") String storagePath,
+                           @Value("${app.images.repair.checkpoint-file:./data/poster-repair.checkpoint}") String checkpointFile,
+                           @Value("${app.images.repair.batch-size:200}") int batchSize,
+                           @Value("${app.images.repair.concurrency:8}") int concurrency) {
+        this.movieRepository = movieRepository;
+        this.imagePathUpdater = imagePathUpdater;
+        this.imageVariantService = imageVariantService;
+        this.tmdbClient = tmdbClient;
+        this.lazyImageFetcher = lazyImageFetcher;
+        this.imageBlobIndex = imageBlobIndex;
+        this.executor = executor;
+        this.storagePath = Path.of(storagePath).toAbsolutePath().normalize();
+        this.checkpointFile = Path.of(checkpointFile).toAbsolutePath().normalize();
+        this.batchSize = Math.max(1, batchSize);
+        this.concurrency = Math.max(1, concurrency);
+    }
+
+    /**
+     * Arranca el trabajo si no está en marcha. Con {@code restart} empieza desde el principio;
+     * si no, desde el último checkpoint.
+     */
+    public synchronized Map<String, Object> start(boolean restart) {
+        if ("running".equals(state) || "stopping".equals(state)) {
+            return getStatus();
+        }
+        long afterId = restart ? 0 : readCheckpoint();
+        scanned.reset();
+        missing.reset();
+        skippedLazy.reset();
+        skippedEvicted.reset();
+        repaired.reset();
+        failed.reset();
+        stopRequested = false;
+        lastId = afterId;
+        maxId = movieRepository.findMaxId();
+        startedAt = Instant.now();
+        finishedAt = null;
+        permits = new Semaphore(concurrency);
+        state = "running";
+        log.info("🖼️ Reparación de carátulas iniciada desde el id {} (máximo {})", afterId, maxId);
+        try {
+            executor.execute(() -> run(afterId));
+        } catch (RuntimeException e) {
+            state = "failed";
+            throw e;
+        }
+        return getStatus();
+    }
+
+    /**
+     * Pide parar al terminar el lote actual; el checkpoint permite continuar después.
+     */
+    public synchronized Map<String, Object> stop() {
+        if ("running".equals(state)) {
+            stopRequested = true;
+            state = "stopping";
+        }
+        return getStatus();
+    }
+
+    public Map<String, Object> getStatus() {
+        Instant start = startedAt;
+        Instant end = finishedAt != null ? finishedAt : Instant.now();
+        double elapsed = start != null ? Math.max(0.001, Duration.between(start, end).toMillis() / 1000.0) : 0;
+        Semaphore currentPermits = permits;
+
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("state", state);
+        status.put("last_id", lastId);
+        status.put("max_id", maxId);
+        status.put("progress_percent", maxId > 0 ? Math.min(100.0, Math.round(lastId * 1000.0 / maxId) / 10.0) : 0.0);
+        status.put("scanned", scanned.sum());
+        status.put("missing", missing.sum());
+        status.put("skipped_lazy", skippedLazy.sum());
+        status.put("skipped_evicted", skippedEvicted.sum());
+        status.put("repaired", repaired.sum());
+        status.put("failed", failed.sum());
+        status.put("in_flight", currentPermits != null ? concurrency - currentPermits.availablePermits() : 0);
+        status.put("concurrency", concurrency);
+        status.put("scanned_per_second", elapsed > 0 ? Math.round(scanned.sum() / elapsed * 10) / 10.0 : 0.0);
+        status.put("repaired_per_second", elapsed > 0 ? Math.round(repaired.sum() / elapsed * 10) / 10.0 : 0.0);
+        status.put("started_at", start);
+        status.put("finished_at", finishedAt);
+        status.put("checkpoint_id", readCheckpoint());
+        return status;
+    }
+
+    private void run(long afterId) {
+        long cursor = afterId;
+        try {
+            while (!stopRequested) {
+                List<PosterRepairCandidate> page = movieRepository.findPosterRepairPage(cursor, PageRequest.ofSize(batchSize));
+                if (page.isEmpty()) {
+                    break;
+                }
+                List<CompletableFuture<?>> downloads = new ArrayList<>();
+                for (PosterRepairCandidate candidate : page) {
+                    scanned.increment();
+                    if (lazyImageFetcher.isEnabled() && isBlank(candidate.getPosterLocalPath())) {
+                        // Nunca se descargó: en modo bajo demanda llega con la primera visita
+                        skippedLazy.increment();
+                        continue;
+                    }
+                    if (hasValidFile(candidate.getPosterLocalPath())) {
+                        continue;
+                    }
+                    if (isRefetchableBlob(candidate.getPosterLocalPath())) {
+                        // Borrado por la cuota: se vuelve a descargar cuando alguien lo pida
+                        skippedEvicted.increment();
+                        continue;
+                    }
+                    missing.increment();
+                    CompletableFuture<?> download = repair(candidate);
+                    if (download != null) {
+                        downloads.add(download);
+                    }
+                }
+                // El checkpoint solo avanza cuando todo el lote ha terminado
+                CompletableFuture.allOf(downloads.toArray(CompletableFuture[]::new))
+                        .handle((ok, error) -> null)
+                        .join();
+                cursor = page.get(page.size() - 1).getId();
+                lastId = cursor;
+                writeCheckpoint(cursor);
+            }
+            if (stopRequested) {
+                state = "stopped";
+                log.info("⏸️ Reparación de carátulas detenida en el id {}", cursor);
+            } else {
+                // Recorrido completo: la próxima ejecución empieza desde el principio
+                writeCheckpoint(0);
+                state = "finished";
+                log.info("✅ Reparación de carátulas terminada: {} revisadas, {} reparadas, {} fallidas",
+                        scanned.sum(), repaired.sum(), failed.sum());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            state = "stopped";
+        } catch (Exception e) {
+            state = "failed";
+            log.error("❌ Error en la reparación de carátulas (id {}): {}", cursor, e.getMessage());
+        } finally {
+            finishedAt = Instant.now();
+        }
+    }
+
+    private CompletableFuture<?> repair(PosterRepairCandidate candidate) throws InterruptedException {
+        String url = tmdbClient.buildImageUrl(candidate.getPosterPath());
+        if (url == null) {
+            failed.increment();
+            return null;
+        }
+        permits.acquire();
+        try {
+            return imagePathUpdater.scheduleDownload(ImagePathUpdater.Owner.MOVIE_POSTER, candidate.getTmdbId(), url, true)
+                    .whenComplete((path, error) -> {
+                        permits.release();
+                        if (error == null) {
+                            repaired.increment();
+                        } else {
+                            failed.increment();
+                            log.debug("No se pudo reparar la carátula de la película {}: {}", candidate.getId(), error.getMessage());
+                        }
+                    });
+        } catch (RuntimeException e) {
+            permits.release();
+            failed.increment();
+            return null;
+        }
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    private boolean hasValidFile(String localPath) {
+        String relative = imageVariantService.relativeOriginal(localPath);
+        if (relative == null) {
+            return false;
+        }
+        Path file = storagePath.resolve(relative).normalize();
+        try {
+            return file.startsWith(storagePath) && Files.size(file) > 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Blob por contenido ({@code posters/ab/<sha256>.jpg}) cuyo origen sigue en el índice, así que
+     * {@link LazyImageFetcher#refetch} lo recupera con la misma URL.
+     */
+    private boolean isRefetchableBlob(String localPath) {
+        String relative = imageVariantService.relativeOriginal(localPath);
+        if (relative == null || ImageResponseWriter.contentHashOf(Path.of(relative).getFileName().toString()) == null) {
+            return false;
+        }
+        return imageBlobIndex.findSource(relative).isPresent();
+    }
+
+    private long readCheckpoint() {
+        if (!Files.isRegularFile(checkpointFile)) {
+            return 0;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(checkpointFile)) {
+            properties.load(in);
+            return Long.parseLong(properties.getProperty("lastId", "0"));
+        } catch (IOException | NumberFormatException e) {
+            log.warn("⚠️ Checkpoint de reparación de carátulas ilegible ({}), se empieza desde el principio", e.getMessage());
+            return 0;
+        }
+    }
+
+    private void writeCheckpoint(long id) {
+        Properties properties = new Properties();
+        properties.setProperty("lastId", Long.toString(id));
+        properties.setProperty("updatedAt", Instant.now().toString());
+        try {
+            Files.createDirectories(checkpointFile.getParent());
+            Path tmp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                properties.store(out, "Reparacion de caratulas");
+            }
+            Files.move(tmp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("⚠️ No se pudo guardar el checkpoint de reparación de carátulas: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package alicanteweb.pelisapp.service.moderation;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Clasificador local: decide cuando la puntuación cae fuera de su zona de duda.
+ * Sus veredictos no cuentan como procesados por IA para no reentrenarse con ellos.
+ */
+@Component
+@RequiredArgsConstructor
+public class ClassifierStage implements ModerationStage {
+
+    private final ToxicityClassifier toxicityClassifier;
+
+    @Override
+    public String name() {
+        return "classifier";
+    }
+
+    @Override
+    public boolean appliesTo(ModerationContext context) {
+        return context.mode() != ModerationContext.Mode.APPEAL && toxicityClassifier.isReady();
+    }
+
+    @Override
+    public StageDecision evaluate(ModerationContext context) {
+        return toxicityClassifier.classify(context.text())
+                .map(verdict -> new StageDecision(
+                        verdict.toxic() ? StageDecision.Outcome.REJECT : StageDecision.Outcome.APPROVE,
+                        verdict.toxicityScore(),
+                        String.format("Clasificador local (p=%.2f)", verdict.toxicityScore()),
+                        false))
+                .orElse(StageDecision.defer());
+    }
+}
@@ -1,9 +1,20 @@
 package alicanteweb.pelisapp.service.moderation;
 
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * Analizador de contenido para detectar palabras y patrones inapropiados.
@@ -20,9 +31,8 @@ public class ContentAnalyzer {
         "pendejo", "pendeja", "mamada", "mamadas", "verga", "pinche", "chinga",
         "perra", "perro", "zorra", "zorro", "rata", "basura",
 
-        // Variaciones con caracteres especiales
-        "p*ta", "p@ta", "est*pido", "est@pido", "idi*ta", "idi@ta", "m1erda",
-        "j0der", "c0ño", "ton+o", "t0nto",
+        // Variaciones con caracteres especiales ("@", "0", "1", "+" ya se pliegan a letras)
+        "p*ta", "est*pido", "idi*ta",
 
         // Inglés básico
         "fuck", "fucking", "shit", "damn", "bitch", "asshole", "motherfucker",
@@ -39,33 +49,80 @@ public class ContentAnalyzer {
         "puta", "fuck", "maric", "hijoputa", "motherfucker"
     );
 
+    // Raíces: coinciden con cualquier palabra que empiece por ellas
+    private static final Set<String> STEM_TERMS = Set.of(
+        "maric", "gilipoll", "hijoput"
+    );
+
+    private static final double HIGH_SEVERITY_MULTIPLIER = 1.5;
+    private static final double DEFAULT_SEVERITY_MULTIPLIER = 1.0;
+
+    private static final ProhibitedTermMatcher DEFAULT_MATCHER = new ProhibitedTermMatcher(defaultTerms(), STEM_TERMS);
+
+    /**
+     * Diccionario adicional opcional: un término por línea, "#" para comentarios y
+     * sufijos ";high" para términos de severidad alta y ";stem" para raíces.
+     */
+    @Value("${app.moderation.dictionary.path:}")
+    private String dictionaryPath;
+
+    private volatile ProhibitedTermMatcher matcher = DEFAULT_MATCHER;
+
+    @PostConstruct
+    public void loadDictionary() {
+        if (dictionaryPath == null || dictionaryPath.isBlank()) {
+            return;
+        }
+        try (Stream<String> lines = Files.lines(Path.of(dictionaryPath), StandardCharsets.UTF_8)) {
+            Map<String, Double> terms = defaultTerms();
+            Set<String> stems = new HashSet<>(STEM_TERMS);
+            lines.map(String::trim)
+                 .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                 .forEach(line -> {
+                     String[] parts = line.split(";");
+                     String term = parts[0].trim();
+                     boolean high = false;
+                     for (int i = 1; i < parts.length; i++) {
+                         String flag = parts[i].trim();
+                         high |= flag.equals("high");
+                         if (flag.equals("stem")) {
+                             stems.add(term);
+                         }
+                     }
+                     terms.merge(term, high ? HIGH_SEVERITY_MULTIPLIER : severityOf(term), Math::max);
+                 });
+            matcher = new ProhibitedTermMatcher(terms, stems);
+            log.info("📚 Diccionario de moderación cargado: {} términos ({})", matcher.termCount(), dictionaryPath);
+        } catch (IOException e) {
+            log.warn("No se pudo cargar el diccionario de moderación {}: {}", dictionaryPath, e.getMessage());
+        }
+    }
+
     /**
      * Analiza el texto en busca de contenido inapropiado.
      */
     public ContentAnalysisResult analyze(String text) {
         if (text == null || text.isBlank()) {
-            return new ContentAnalysisResult(0, "", 1.0, 0.0);
+            return new ContentAnalysisResult(0, "", 1.0, 0.0, SuspiciousPatternScanner.SuspiciousSignals.NONE);
         }
 
-        String normalizedText = normalizeText(text);
+        ProhibitedTermMatcher current = matcher;
+        MatchCollector collector = new MatchCollector();
+        current.scan(text, collector);
 
-        int badWordCount = 0;
+        int badWordCount = collector.count;
         StringBuilder detectedWords = new StringBuilder();
-        double severityMultiplier = 1.0;
+        double severityMultiplier = DEFAULT_SEVERITY_MULTIPLIER;
 
-        for (String badWord : PROHIBITED_WORDS) {
-            if (normalizedText.contains(badWord)) {
-                badWordCount++;
-                appendDetectedWord(detectedWords, badWord);
-
-                if (HIGH_SEVERITY_WORDS.stream().anyMatch(badWord::contains)) {
-                    severityMultiplier = 1.5;
-                }
-            }
+        for (int i = 0; i < collector.count; i++) {
+            int term = collector.terms[i];
+            appendDetectedWord(detectedWords, current.term(term));
+            severityMultiplier = Math.max(severityMultiplier, current.severity(term));
         }
 
         // Detectar patrones sospechosos
-        if (hasSuspiciousPatterns(normalizedText, text)) {
+        SuspiciousPatternScanner.SuspiciousSignals signals = SuspiciousPatternScanner.scan(text);
+        if (signals.any()) {
             badWordCount++;
             appendDetectedWord(detectedWords, "patrón sospechoso");
         }
@@ -76,27 +133,27 @@ public class ContentAnalyzer {
             badWordCount,
             detectedWords.toString(),
             severityMultiplier,
-            toxicityScore
+            toxicityScore,
+            signals
         );
     }
 
-    /**
-     * Normaliza el texto eliminando caracteres especiales y espacios extra.
-     */
-    private String normalizeText(String text) {
-        return text.toLowerCase()
-                .replaceAll("[^a-záéíóúñüç0-9\\s]", "") // Eliminar caracteres especiales
-                .replaceAll("\\s+", " "); // Normalizar espacios
+    private static Map<String, Double> defaultTerms() {
+        Map<String, Double> terms = new LinkedHashMap<>();
+        for (String word : PROHIBITED_WORDS) {
+            terms.put(word, severityOf(word));
+        }
+        for (String stem : STEM_TERMS) {
+            terms.put(stem, severityOf(stem));
+        }
+        return terms;
     }
 
-    /**
-     * Detecta patrones sospechosos en el texto.
-     */
-    private boolean hasSuspiciousPatterns(String normalizedText, String originalText) {
-        return normalizedText.matches(".*\\b\\w*[4@]\\w*\\b.*") || // Palabras con números/símbolos
-               normalizedText.matches(".*\\b\\w{1,2}\\*+\\w*\\b.*") || // Palabras censuradas con *
-               originalText.length() < 3 || // Comentarios muy cortos sospechosos
-               (originalText.toUpperCase().equals(originalText) && originalText.length() > 10); // Todo en mayúsculas
+    private static double severityOf(String term) {
+        String lower = term.toLowerCase();
+        return HIGH_SEVERITY_WORDS.stream().anyMatch(lower::contains)
+                ? HIGH_SEVERITY_MULTIPLIER
+                : DEFAULT_SEVERITY_MULTIPLIER;
     }
 
     /**
@@ -117,6 +174,27 @@ public class ContentAnalyzer {
         return Math.min(1.0, baseToxicity * severityMultiplier);
     }
 
+    /**
+     * Acumula los términos distintos encontrados; los aciertos son pocos, así que basta una búsqueda lineal.
+     */
+    private static final class MatchCollector implements ProhibitedTermMatcher.MatchHandler {
+        private int[] terms = new int[8];
+        private int count;
+
+        @Override
+        public void onMatch(int termIndex) {
+            for (int i = 0; i < count; i++) {
+                if (terms[i] == termIndex) {
+                    return;
+                }
+            }
+            if (count == terms.length) {
+                terms = Arrays.copyOf(terms, count * 2);
+            }
+            terms[count++] = termIndex;
+        }
+    }
+
     /**
      * Resultado del análisis de contenido.
      */
@@ -124,6 +202,7 @@ public class ContentAnalyzer {
         int badWordCount,
         String detectedWords,
         double severityMultiplier,
-        double toxicityScore
+        double toxicityScore,
+        SuspiciousPatternScanner.SuspiciousSignals signals
     ) {}
 }
@@ -0,0 +1,41 @@
+package alicanteweb.pelisapp.service.moderation;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rechaza sin consultar a nadie más los textos en los que el autómata de términos prohibidos
+ * encuentra insultos claros. No aprueba nunca: que no haya términos del diccionario no
+ * significa que el texto sea limpio.
+ */
+@Component
+@RequiredArgsConstructor
+public class DictionaryStage implements ModerationStage {
+
+    private final ContentAnalyzer contentAnalyzer;
+
+    @Value("${app.moderation.pipeline.dictionary-reject-score:0.8}")
+    private double rejectScore;
+
+    @Override
+    public String name() {
+        return "dictionary";
+    }
+
+    @Override
+    public boolean appliesTo(ModerationContext context) {
+        return context.mode() != ModerationContext.Mode.APPEAL;
+    }
+
+    @Override
+    public StageDecision evaluate(ModerationContext context) {
+        ContentAnalyzer.ContentAnalysisResult analysis = context.contentAnalysis(contentAnalyzer);
+        int termHits = analysis.badWordCount() - (analysis.signals().any() ? 1 : 0);
+        if (termHits > 0 && analysis.toxicityScore() >= rejectScore) {
+            return new StageDecision(StageDecision.Outcome.REJECT, analysis.toxicityScore(),
+                    "Términos prohibidos: " + analysis.detectedWords(), false);
+        }
+        return StageDecision.defer();
+    }
+}
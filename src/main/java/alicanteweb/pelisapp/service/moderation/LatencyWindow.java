@@ -0,0 +1,51 @@
+package alicanteweb.pelisapp.service.moderation;
+
+import java.util.Arrays;
+
+/**
+ * Ventana circular con las últimas latencias (en nanosegundos) para calcular percentiles baratos.
+ */
+final class LatencyWindow {
+
+    private final long[] samples;
+    private int next;
+    private int size;
+
+    LatencyWindow(int capacity) {
+        this.samples = new long[capacity];
+    }
+
+    synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        size = Math.min(size + 1, samples.length);
+    }
+
+    synchronized void clear() {
+        next = 0;
+        size = 0;
+    }
+
+    /**
+     * Percentil {@code p} (0..1) de la ventana, o 0 si aún no hay muestras.
+     */
+    synchronized long percentile(double p) {
+        if (size == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        return sorted[Math.max(0, Math.min(size - 1, (int) Math.ceil(p * size) - 1))];
+    }
+
+    synchronized long average() {
+        if (size == 0) {
+            return 0;
+        }
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            total += samples[i];
+        }
+        return total / size;
+    }
+}
@@ -0,0 +1,48 @@
+package alicanteweb.pelisapp.service.moderation;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Consulta a Ollama (por lotes y tras el cortocircuito) y guarda el veredicto en la caché.
+ * Si Ollama falla, pasa el texto al respaldo por reglas.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LlmStage implements ModerationStage {
+
+    private final OllamaBatchModerator batchModerator;
+    private final ModerationVerdictCache verdictCache;
+    private final ModerationThresholds thresholds;
+
+    @Override
+    public String name() {
+        return "llm";
+    }
+
+    @Override
+    public boolean appliesTo(ModerationContext context) {
+        return context.mode() != ModerationContext.Mode.OFFLINE;
+    }
+
+    @Override
+    public StageDecision evaluate(ModerationContext context) {
+        OllamaClient.OllamaAnalysisResult result;
+        try {
+            result = batchModerator.analyze(context.text());
+        } catch (OllamaClient.OllamaException e) {
+            context.setLlmError(e.getMessage());
+            return StageDecision.defer();
+        }
+
+        ModerationVerdictCache.ContentFingerprint fingerprint = context.fingerprint() != null
+                ? context.fingerprint()
+                : verdictCache.fingerprint(context.text());
+        verdictCache.store(fingerprint, result.toxicityScore(), result.reason());
+
+        return new StageDecision(thresholds.outcomeFor(result.toxicityScore(), ModerationThresholds.AI_MANUAL_REVIEW),
+                result.toxicityScore(), result.reason(), true);
+    }
+}
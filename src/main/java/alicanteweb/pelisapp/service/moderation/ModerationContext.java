@@ -0,0 +1,64 @@
+package alicanteweb.pelisapp.service.moderation;
+
+/**
+ * Estado de una petición mientras recorre el pipeline. Los niveles comparten aquí lo que ya
+ * han calculado (huella del texto, análisis por reglas) para no repetirlo.
+ */
+public final class ModerationContext {
+
+    /**
+     * Modo de la petición.
+     * <ul>
+     *   <li>STANDARD: todos los niveles.</li>
+     *   <li>APPEAL: sin atajos (caché, diccionario, clasificador); decide el LLM.</li>
+     *   <li>OFFLINE: sin LLM, para cuando la cola de moderación está saturada.</li>
+     * </ul>
+     */
+    public enum Mode { STANDARD, APPEAL, OFFLINE }
+
+    private final String text;
+    private final Mode mode;
+
+    private ModerationVerdictCache.ContentFingerprint fingerprint;
+    private ContentAnalyzer.ContentAnalysisResult contentAnalysis;
+    private String llmError;
+
+    public ModerationContext(String text, Mode mode) {
+        this.text = text;
+        this.mode = mode;
+    }
+
+    public String text() {
+        return text;
+    }
+
+    public Mode mode() {
+        return mode;
+    }
+
+    public ModerationVerdictCache.ContentFingerprint fingerprint() {
+        return fingerprint;
+    }
+
+    void setFingerprint(ModerationVerdictCache.ContentFingerprint fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Análisis por reglas del texto, calculado la primera vez que algún nivel lo pide.
+     */
+    public ContentAnalyzer.ContentAnalysisResult contentAnalysis(ContentAnalyzer analyzer) {
+        if (contentAnalysis == null) {
+            contentAnalysis = analyzer.analyze(text);
+        }
+        return contentAnalysis;
+    }
+
+    public String llmError() {
+        return llmError;
+    }
+
+    void setLlmError(String llmError) {
+        this.llmError = llmError;
+    }
+}
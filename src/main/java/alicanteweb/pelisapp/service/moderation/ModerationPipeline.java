@@ -0,0 +1,122 @@
+package alicanteweb.pelisapp.service.moderation;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pipeline de moderación por niveles con salida temprana:
+ * normalización → caché de veredictos → diccionario → clasificador local → LLM → reglas.
+ *
+ * <p>Cada nivel aprueba o rechaza si está seguro, o pasa el texto al siguiente. Los niveles
+ * baratos van primero, así el LLM solo recibe lo que nadie ha podido decidir. Todas las
+ * puntuaciones usan el convenio 0.0 = limpio, 1.0 = tóxico. Por cada nivel se mide cuántas
+ * peticiones decide y cuánto tarda, para ver qué parte del tráfico absorbe cada uno.</p>
+ */
+@Component
+@Slf4j
+public class ModerationPipeline {
+
+    private static final int LATENCY_WINDOW = 256;
+
+    private final List<ModerationStage> stages;
+    private final Map<String, StageMetrics> metrics = new LinkedHashMap<>();
+    private final LongAdder runs = new LongAdder();
+
+    public ModerationPipeline(NormalizationStage normalization,
+                              VerdictCacheStage verdictCache,
+                              DictionaryStage dictionary,
+                              ClassifierStage classifier,
+                              LlmStage llm,
+                              RulesFallbackStage rulesFallback) {
+        this.stages = List.of(normalization, verdictCache, dictionary, classifier, llm, rulesFallback);
+        for (ModerationStage stage : stages) {
+            metrics.put(stage.name(), new StageMetrics());
+        }
+    }
+
+    /**
+     * Recorre los niveles hasta que uno decide. El último nivel siempre decide.
+     */
+    public PipelineResult run(String text, ModerationContext.Mode mode) {
+        runs.increment();
+        ModerationContext context = new ModerationContext(text, mode);
+
+        for (ModerationStage stage : stages) {
+            StageMetrics stageMetrics = metrics.get(stage.name());
+            if (!stage.appliesTo(context)) {
+                stageMetrics.skipped.increment();
+                continue;
+            }
+
+            long start = System.nanoTime();
+            StageDecision decision = stage.evaluate(context);
+            stageMetrics.latencies.record(System.nanoTime() - start);
+            stageMetrics.record(decision.outcome());
+
+            if (decision.isFinal()) {
+                if (context.llmError() != null) {
+                    log.warn("⚠️ Error en Ollama, decidido por {}: {}", stage.name(), context.llmError());
+                }
+                return new PipelineResult(decision.outcome(), decision.toxicityScore(), decision.reason(),
+                        decision.aiProcessed(), stage.name());
+            }
+        }
+        throw new IllegalStateException("El último nivel del pipeline de moderación debe decidir siempre");
+    }
+
+    public Map<String, Object> getStats() {
+        long total = runs.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("runs", total);
+        metrics.forEach((name, stageMetrics) -> {
+            long decided = stageMetrics.decided();
+            Map<String, Object> stageStats = new LinkedHashMap<>();
+            stageStats.put("evaluated", stageMetrics.evaluated.sum());
+            stageStats.put("skipped", stageMetrics.skipped.sum());
+            stageStats.put("approved", stageMetrics.approved.sum());
+            stageStats.put("rejected", stageMetrics.rejected.sum());
+            stageStats.put("manual_review", stageMetrics.manualReview.sum());
+            stageStats.put("deferred", stageMetrics.deferred.sum());
+            stageStats.put("hit_rate", total == 0 ? 0.0 : (double) decided / total);
+            stageStats.put("avg_micros", stageMetrics.latencies.average() / 1000.0);
+            stageStats.put("p95_micros", stageMetrics.latencies.percentile(0.95) / 1000.0);
+            stats.put(name, stageStats);
+        });
+        return stats;
+    }
+
+    /**
+     * Resultado final: decisión, puntuación normalizada (0.0 limpio, 1.0 tóxico) y nivel que decidió.
+     */
+    public record PipelineResult(StageDecision.Outcome outcome, Double toxicityScore, String reason,
+                                 boolean aiProcessed, String stage) {}
+
+    private static final class StageMetrics {
+        private final LongAdder evaluated = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+        private final LongAdder approved = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder manualReview = new LongAdder();
+        private final LongAdder deferred = new LongAdder();
+        private final LatencyWindow latencies = new LatencyWindow(LATENCY_WINDOW);
+
+        void record(StageDecision.Outcome outcome) {
+            evaluated.increment();
+            switch (outcome) {
+                case APPROVE -> approved.increment();
+                case REJECT -> rejected.increment();
+                case MANUAL_REVIEW -> manualReview.increment();
+                case DEFER -> deferred.increment();
+            }
+        }
+
+        long decided() {
+            return approved.sum() + rejected.sum() + manualReview.sum();
+        }
+    }
+}
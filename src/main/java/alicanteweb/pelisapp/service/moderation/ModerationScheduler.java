@@ -0,0 +1,169 @@
+package alicanteweb.pelisapp.service.moderation;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Planificador propio para la moderación con IA.
+ *
+ * <p>Un número fijo de hilos ({@code concurrency}, ajustado a lo que aguanta Ollama) consume una
+ * cola con prioridad: las apelaciones pasan antes que las ediciones y estas antes que las reseñas
+ * nuevas. Cada carril tiene su propia capacidad, así una avalancha de reseñas nuevas no deja sin
+ * sitio a las apelaciones. Si el carril está lleno {@link #trySubmit} devuelve {@code false} y el
+ * llamante decide qué hacer (normalmente moderar solo con reglas).</p>
+ */
+@Component
+@Slf4j
+public class ModerationScheduler {
+
+    /**
+     * Carriles de prioridad, de más a menos urgente.
+     */
+    public enum Lane { APPEAL, EDIT, NEW }
+
+    private static final int LATENCY_WINDOW = 256;
+
+    @Value("${app.moderation.scheduler.concurrency:8}")
+    private int concurrency;
+
+    @Value("${app.moderation.scheduler.queue-capacity:200}")
+    private int newLaneCapacity;
+
+    @Value("${app.moderation.scheduler.priority-queue-capacity:50}")
+    private int priorityLaneCapacity;
+
+    private final PriorityBlockingQueue<Job> queue = new PriorityBlockingQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicInteger busyWorkers = new AtomicInteger();
+    private final Map<Lane, LaneMetrics> metrics = new EnumMap<>(Lane.class);
+    private final List<Thread> workers = new ArrayList<>();
+
+    private volatile boolean running;
+
+    public ModerationScheduler() {
+        for (Lane lane : Lane.values()) {
+            metrics.put(lane, new LaneMetrics());
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        for (int i = 0; i < concurrency; i++) {
+            Thread worker = new Thread(this::workLoop, "Moderation-" + (i + 1));
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        log.info("🛡️ Planificador de moderación: {} hilos, cola {} (+{} por carril prioritario)",
+                concurrency, newLaneCapacity, priorityLaneCapacity);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        workers.forEach(Thread::interrupt);
+        if (!queue.isEmpty()) {
+            log.warn("⚠️ Se descartan {} moderaciones en cola; las reseñas siguen en PENDING hasta el próximo reencolado", queue.size());
+            queue.clear();
+        }
+    }
+
+    /**
+     * Encola la tarea en su carril. Devuelve {@code false} sin encolar si el carril está lleno.
+     */
+    public boolean trySubmit(Lane lane, Runnable task) {
+        LaneMetrics laneMetrics = metrics.get(lane);
+        int capacity = lane == Lane.NEW ? newLaneCapacity : priorityLaneCapacity;
+        if (!running) {
+            laneMetrics.shed.increment();
+            return false;
+        }
+        if (laneMetrics.depth.incrementAndGet() > capacity) {
+            laneMetrics.depth.decrementAndGet();
+            laneMetrics.shed.increment();
+            return false;
+        }
+        laneMetrics.submitted.increment();
+        queue.add(new Job(lane, sequence.incrementAndGet(), System.nanoTime(), task));
+        return true;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("concurrency", concurrency);
+        stats.put("busy_workers", busyWorkers.get());
+        stats.put("queue_depth", queue.size());
+        for (Lane lane : Lane.values()) {
+            LaneMetrics laneMetrics = metrics.get(lane);
+            Map<String, Object> laneStats = new LinkedHashMap<>();
+            laneStats.put("depth", laneMetrics.depth.get());
+            laneStats.put("submitted", laneMetrics.submitted.sum());
+            laneStats.put("shed", laneMetrics.shed.sum());
+            laneStats.put("avg_wait_ms", laneMetrics.waitTimes.average() / 1_000_000);
+            laneStats.put("p95_wait_ms", laneMetrics.waitTimes.percentile(0.95) / 1_000_000);
+            laneStats.put("avg_service_ms", laneMetrics.serviceTimes.average() / 1_000_000);
+            laneStats.put("p95_service_ms", laneMetrics.serviceTimes.percentile(0.95) / 1_000_000);
+            stats.put(lane.name().toLowerCase(), laneStats);
+        }
+        return stats;
+    }
+
+    // Métodos privados de apoyo
+
+    private void workLoop() {
+        while (running) {
+            Job job;
+            try {
+                job = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            LaneMetrics laneMetrics = metrics.get(job.lane());
+            laneMetrics.depth.decrementAndGet();
+            long startedAt = System.nanoTime();
+            laneMetrics.waitTimes.record(startedAt - job.enqueuedAt());
+
+            busyWorkers.incrementAndGet();
+            try {
+                job.task().run();
+            } catch (Exception e) {
+                log.error("❌ Error en tarea de moderación ({}): {}", job.lane(), e.getMessage());
+            } finally {
+                busyWorkers.decrementAndGet();
+                laneMetrics.serviceTimes.record(System.nanoTime() - startedAt);
+            }
+        }
+    }
+
+    private record Job(Lane lane, long sequence, long enqueuedAt, Runnable task) implements Comparable<Job> {
+        @Override
+        public int compareTo(Job other) {
+            int byLane = Integer.compare(lane.ordinal(), other.lane.ordinal());
+            return byLane != 0 ? byLane : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private static final class LaneMetrics {
+        private final AtomicInteger depth = new AtomicInteger();
+        private final LongAdder submitted = new LongAdder();
+        private final LongAdder shed = new LongAdder();
+        private final LatencyWindow waitTimes = new LatencyWindow(LATENCY_WINDOW);
+        private final LatencyWindow serviceTimes = new LatencyWindow(LATENCY_WINDOW);
+    }
+}
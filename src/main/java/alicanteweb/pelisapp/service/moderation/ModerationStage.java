@@ -0,0 +1,22 @@
+package alicanteweb.pelisapp.service.moderation;
+
+/**
+ * Nivel del pipeline de moderación. Cada nivel decide con seguridad (aprobar, rechazar o
+ * revisión manual) o pasa el texto al siguiente con {@link StageDecision#defer()}.
+ */
+public interface ModerationStage {
+
+    /**
+     * Nombre corto del nivel para logs y métricas.
+     */
+    String name();
+
+    /**
+     * Indica si el nivel participa en esta petición (p. ej. las apelaciones se saltan los atajos).
+     */
+    default boolean appliesTo(ModerationContext context) {
+        return true;
+    }
+
+    StageDecision evaluate(ModerationContext context);
+}
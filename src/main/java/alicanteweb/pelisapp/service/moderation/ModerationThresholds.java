@@ -0,0 +1,38 @@
+package alicanteweb.pelisapp.service.moderation;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Umbrales compartidos por los niveles que convierten una puntuación en decisión.
+ */
+@Component
+public class ModerationThresholds {
+
+    /** Umbral de revisión manual para veredictos del LLM. */
+    public static final double AI_MANUAL_REVIEW = 0.5;
+
+    /** Umbral de revisión manual para el análisis por reglas, más conservador. */
+    public static final double RULES_MANUAL_REVIEW = 0.4;
+
+    @Value("${app.moderation.toxicity.threshold:0.7}")
+    private double toxicityThreshold;
+
+    public double toxicityThreshold() {
+        return toxicityThreshold;
+    }
+
+    /**
+     * Rechazo a partir del umbral de toxicidad, revisión manual a partir de {@code manualReviewThreshold}
+     * y aprobación por debajo.
+     */
+    public StageDecision.Outcome outcomeFor(double toxicityScore, double manualReviewThreshold) {
+        if (toxicityScore >= toxicityThreshold) {
+            return StageDecision.Outcome.REJECT;
+        }
+        if (toxicityScore >= manualReviewThreshold) {
+            return StageDecision.Outcome.MANUAL_REVIEW;
+        }
+        return StageDecision.Outcome.APPROVE;
+    }
+}
@@ -0,0 +1,375 @@
+package alicanteweb.pelisapp.service.moderation;
+
+import alicanteweb.pelisapp.entity.ModerationVerdictEntry;
+import alicanteweb.pelisapp.repository.ModerationVerdictEntryRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caché de veredictos de la IA compartida por la moderación síncrona y la asíncrona.
+ *
+ * <p>La clave es el SHA-256 del texto normalizado (mismo plegado que el autómata de términos,
+ * sin signos y con letras repetidas colapsadas), así que "Obra maestra!!" y "obra maestra"
+ * comparten veredicto. Además se guarda un SimHash de 64 bits indexado por bandas (LSH) para
+ * reutilizar el veredicto de textos casi idénticos, típico de avalanchas de spam.</p>
+ *
+ * <p>La memoria está acotada (tamaño máximo y TTL) y cada veredicto se persiste en
+ * {@code moderation_verdict_cache} para sobrevivir a reinicios. Los textos que tampoco están en BD
+ * se recuerdan un rato ({@code app.moderation.cache.negative-ttl}) para no consultarla en cada fallo.</p>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ModerationVerdictCache {
+
+    private static final int SIMHASH_BANDS = 8;
+    private static final int SHINGLE_LENGTH = 3;
+    private static final int SIMHASH_BAND_BITS = 64 / SIMHASH_BANDS;
+
+    /** Marca "no está en BD" dentro de la misma caché; caduca a los {@code negativeTtl}. */
+    private static final CachedVerdict NOT_PERSISTED = new CachedVerdict(null, 0L, 0, 0.0, null, Instant.EPOCH);
+
+    private final ModerationVerdictEntryRepository verdictRepository;
+
+    @Value("${app.moderation.cache.max-size:10000}")
+    private int maxSize;
+
+    @Value("${app.moderation.cache.ttl:7d}")
+    private Duration ttl;
+
+    @Value("${app.moderation.cache.negative-ttl:60s}")
+    private Duration negativeTtl;
+
+    /**
+     * Distancia de Hamming máxima entre SimHash para considerar dos textos casi duplicados.
+     * Con 8 bandas el índice garantiza encontrar cualquier candidato hasta distancia 7.
+     */
+    @Value("${app.moderation.cache.near-duplicate-distance:7}")
+    private int nearDuplicateDistance;
+
+    /** Por debajo de este número de palabras solo se usa la coincidencia exacta. */
+    @Value("${app.moderation.cache.near-duplicate-min-tokens:6}")
+    private int nearDuplicateMinTokens;
+
+    private Cache<String, CachedVerdict> verdicts;
+    private final Map<Long, Set<String>> simHashBands = new ConcurrentHashMap<>();
+
+    private final LongAdder exactHits = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder nearDuplicateHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        verdicts = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, CachedVerdict>() {
+                    @Override
+                    public long expireAfterCreate(String hash, CachedVerdict verdict, long currentTime) {
+                        return (verdict == NOT_PERSISTED ? negativeTtl : ttl).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String hash, CachedVerdict verdict, long currentTime,
+                                                  long currentDuration) {
+                        return expireAfterCreate(hash, verdict, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String hash, CachedVerdict verdict, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .removalListener((String hash, CachedVerdict verdict, RemovalCause cause) -> {
+                    if (verdict != null && verdict != NOT_PERSISTED && cause != RemovalCause.REPLACED) {
+                        unindex(verdict);
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Precarga en memoria los veredictos persistidos más recientes.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            Instant cutoff = Instant.now().minus(ttl);
+            verdictRepository.findByCreatedAtAfterOrderByCreatedAtDesc(cutoff, PageRequest.of(0, maxSize))
+                    .forEach(entry -> remember(toCachedVerdict(entry)));
+            log.info("🗃️ Caché de veredictos de moderación precargada: {} entradas", verdicts.estimatedSize());
+        } catch (Exception e) {
+            log.warn("No se pudo precargar la caché de veredictos: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.moderation.cache.cleanup-interval-ms:3600000}")
+    public void purgeExpired() {
+        try {
+            int deleted = verdictRepository.deleteExpired(Instant.now().minus(ttl));
+            if (deleted > 0) {
+                log.debug("Caché de veredictos: {} entradas caducadas eliminadas", deleted);
+            }
+        } catch (Exception e) {
+            log.warn("Error purgando la caché de veredictos: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Calcula la huella de un texto (hash exacto, SimHash y número de palabras).
+     */
+    public ContentFingerprint fingerprint(String text) {
+        String normalized = normalize(text);
+        String[] tokens = normalized.isEmpty() ? new String[0] : normalized.split(" ");
+        return new ContentFingerprint(sha256(normalized), simHash(normalized), tokens.length);
+    }
+
+    /**
+     * Busca un veredicto: primero coincidencia exacta (memoria y BD), después casi duplicados en memoria.
+     */
+    public Optional<VerdictHit> lookup(ContentFingerprint fingerprint) {
+        CachedVerdict exact = verdicts.getIfPresent(fingerprint.contentHash());
+        if (exact == NOT_PERSISTED) {
+            negativeHits.increment();
+            exact = null;
+        } else if (exact == null) {
+            exact = loadPersisted(fingerprint.contentHash());
+        }
+        if (exact != null) {
+            exactHits.increment();
+            return Optional.of(new VerdictHit(exact.toxicityScore(), exact.reason(), false));
+        }
+
+        CachedVerdict near = findNearDuplicate(fingerprint);
+        if (near != null) {
+            nearDuplicateHits.increment();
+            return Optional.of(new VerdictHit(near.toxicityScore(), near.reason(), true));
+        }
+
+        misses.increment();
+        return Optional.empty();
+    }
+
+    /**
+     * Guarda un veredicto de la IA en memoria y en BD.
+     */
+    public void store(ContentFingerprint fingerprint, double toxicityScore, String reason) {
+        CachedVerdict verdict = new CachedVerdict(fingerprint.contentHash(), fingerprint.simHash(),
+                fingerprint.tokenCount(), toxicityScore, reason, Instant.now());
+        remember(verdict);
+
+        try {
+            ModerationVerdictEntry entry = new ModerationVerdictEntry();
+            entry.setContentHash(verdict.contentHash());
+            entry.setSimHash(verdict.simHash());
+            entry.setTokenCount(verdict.tokenCount());
+            entry.setToxicityScore(toxicityScore);
+            entry.setReason(reason != null && reason.length() > 1000 ? reason.substring(0, 1000) : reason);
+            entry.setCreatedAt(verdict.createdAt());
+            verdictRepository.save(entry);
+        } catch (Exception e) {
+            log.warn("No se pudo persistir el veredicto de moderación: {}", e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", verdicts.estimatedSize());
+        stats.put("exact_hits", exactHits.sum());
+        stats.put("negative_hits", negativeHits.sum());
+        stats.put("near_duplicate_hits", nearDuplicateHits.sum());
+        stats.put("misses", misses.sum());
+        return stats;
+    }
+
+    // Métodos privados de apoyo
+
+    private CachedVerdict loadPersisted(String contentHash) {
+        try {
+            return verdictRepository.findById(contentHash)
+                    .filter(entry -> entry.getCreatedAt().isAfter(Instant.now().minus(ttl)))
+                    .map(this::toCachedVerdict)
+                    .map(verdict -> {
+                        remember(verdict);
+                        return verdict;
+                    })
+                    .orElseGet(() -> {
+                        // putIfAbsent: no pisar un veredicto guardado mientras se consultaba la BD
+                        verdicts.asMap().putIfAbsent(contentHash, NOT_PERSISTED);
+                        return null;
+                    });
+        } catch (Exception e) {
+            log.debug("Error leyendo veredicto persistido: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private CachedVerdict findNearDuplicate(ContentFingerprint fingerprint) {
+        if (fingerprint.tokenCount() < nearDuplicateMinTokens) {
+            return null;
+        }
+        CachedVerdict best = null;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int band = 0; band < SIMHASH_BANDS; band++) {
+            Set<String> candidates = simHashBands.get(bandKey(fingerprint.simHash(), band));
+            if (candidates == null) {
+                continue;
+            }
+            for (String hash : candidates) {
+                CachedVerdict candidate = verdicts.getIfPresent(hash);
+                if (candidate == null || candidate.tokenCount() < nearDuplicateMinTokens) {
+                    continue;
+                }
+                int distance = Long.bitCount(candidate.simHash() ^ fingerprint.simHash());
+                if (distance <= nearDuplicateDistance && distance < bestDistance) {
+                    best = candidate;
+                    bestDistance = distance;
+                }
+            }
+        }
+        return best;
+    }
+
+    private void remember(CachedVerdict verdict) {
+        verdicts.put(verdict.contentHash(), verdict);
+        if (verdict.tokenCount() >= nearDuplicateMinTokens) {
+            for (int band = 0; band < SIMHASH_BANDS; band++) {
+                simHashBands.computeIfAbsent(bandKey(verdict.simHash(), band), k -> ConcurrentHashMap.newKeySet())
+                        .add(verdict.contentHash());
+            }
+        }
+    }
+
+    private void unindex(CachedVerdict verdict) {
+        for (int band = 0; band < SIMHASH_BANDS; band++) {
+            long key = bandKey(verdict.simHash(), band);
+            simHashBands.computeIfPresent(key, (k, hashes) -> {
+                hashes.remove(verdict.contentHash());
+                return hashes.isEmpty() ? null : hashes;
+            });
+        }
+    }
+
+    private CachedVerdict toCachedVerdict(ModerationVerdictEntry entry) {
+        return new CachedVerdict(entry.getContentHash(), entry.getSimHash(), entry.getTokenCount(),
+                entry.getToxicityScore(), entry.getReason(), entry.getCreatedAt());
+    }
+
+    private static long bandKey(long simHash, int band) {
+        long bits = (simHash >>> (band * SIMHASH_BAND_BITS)) & ((1L << SIMHASH_BAND_BITS) - 1);
+        return ((long) band << SIMHASH_BAND_BITS) | bits;
+    }
+
+    /**
+     * Normaliza con el plegado del autómata y colapsa letras repetidas 3 o más veces ("buenaaa" → "buena").
+     */
+    static String normalize(String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        char[] buffer = new char[text.length()];
+        int length = ProhibitedTermMatcher.fold(text, buffer);
+        int out = 0;
+        int i = 0;
+        while (i < length) {
+            char c = buffer[i];
+            int run = 1;
+            while (i + run < length && buffer[i + run] == c) {
+                run++;
+            }
+            int keep = run >= 3 ? 1 : run;
+            for (int k = 0; k < keep; k++) {
+                buffer[out++] = c;
+            }
+            i += run;
+        }
+        return new String(buffer, 0, out);
+    }
+
+    /**
+     * SimHash de 64 bits sobre trigramas de caracteres; en reseñas cortas es más estable que usar palabras.
+     */
+    static long simHash(String normalized) {
+        int[] weights = new int[64];
+        for (int i = 0; i + SHINGLE_LENGTH <= normalized.length(); i++) {
+            accumulate(weights, hash64(normalized, i, i + SHINGLE_LENGTH));
+        }
+        long result = 0L;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) {
+                result |= 1L << bit;
+            }
+        }
+        return result;
+    }
+
+    private static void accumulate(int[] weights, long hash) {
+        for (int bit = 0; bit < 64; bit++) {
+            weights[bit] += ((hash >>> bit) & 1L) != 0 ? 1 : -1;
+        }
+    }
+
+    /**
+     * FNV-1a de 64 bits con el mezclador final de MurmurHash3 para repartir bien los bits.
+     */
+    private static long hash64(String value, int start, int end) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = start; i < end; i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    /**
+     * Huella de un texto normalizado.
+     */
+    public record ContentFingerprint(String contentHash, long simHash, int tokenCount) {}
+
+    /**
+     * Veredicto encontrado en caché; {@code nearDuplicate} indica que procede de un texto casi idéntico.
+     */
+    public record VerdictHit(double toxicityScore, String reason, boolean nearDuplicate) {}
+
+    private record CachedVerdict(String contentHash, long simHash, int tokenCount,
+                                 double toxicityScore, String reason, Instant createdAt) {}
+}
@@ -0,0 +1,30 @@
+package alicanteweb.pelisapp.service.moderation;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Primer nivel: normaliza el texto y calcula su huella para los niveles siguientes.
+ * Aprueba directamente lo que tras normalizar no contiene ninguna letra ni número.
+ */
+@Component
+@RequiredArgsConstructor
+public class NormalizationStage implements ModerationStage {
+
+    private final ModerationVerdictCache verdictCache;
+
+    @Override
+    public String name() {
+        return "normalization";
+    }
+
+    @Override
+    public StageDecision evaluate(ModerationContext context) {
+        String text = context.text();
+        if (text == null || text.chars().noneMatch(Character::isLetterOrDigit)) {
+            return new StageDecision(StageDecision.Outcome.APPROVE, 0.0, "Valoración sin texto", false);
+        }
+        context.setFingerprint(verdictCache.fingerprint(text));
+        return StageDecision.defer();
+    }
+}
@@ -0,0 +1,286 @@
+package alicanteweb.pelisapp.service.moderation;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cola de micro-lotes para la moderación con Ollama.
+ *
+ * <p>Agrupa los textos pendientes durante como mucho {@code max-wait-ms} o hasta {@code max-size}
+ * elementos y los envía en un único prompt que pide un array JSON de puntuaciones. Cada resultado
+ * se devuelve a su propio {@link CompletableFuture}. En un Ollama solo con CPU el coste de procesar
+ * el prompt se paga una vez por lote en lugar de una vez por reseña.</p>
+ *
+ * <p>El agrupador no forma un lote hasta que hay un envío libre ({@code concurrency}): mientras Ollama
+ * está ocupado los textos esperan en la cola y el siguiente lote sale lleno (hasta {@code max-size}).
+ * La cola tiene capacidad limitada ({@code queue-capacity}); si está llena el texto se rechaza al
+ * momento y el llamante aplica su fallback. Los textos cuyo llamante ya se ha cansado de esperar se
+ * quitan de la cola y no se envían.</p>
+ */
+@Component
+@Slf4j
+public class OllamaBatchModerator {
+
+    private final OllamaClient ollamaClient;
+    private final Executor batchExecutor;
+
+    @Value("${app.moderation.batch.enabled:true}")
+    private boolean batchingEnabled;
+
+    @Value("${app.moderation.batch.max-size:8}")
+    private int maxBatchSize;
+
+    @Value("${app.moderation.batch.max-wait-ms:50}")
+    private long maxWaitMs;
+
+    @Value("${app.moderation.batch.concurrency:1}")
+    private int concurrency = 1;
+
+    @Value("${app.moderation.batch.queue-capacity:256}")
+    private int queueCapacity = 256;
+
+    @Value("${app.moderation.ollama.timeout:30}")
+    private long timeoutSeconds;
+
+    private BlockingQueue<PendingAnalysis> queue = new LinkedBlockingQueue<>(1);
+    private Semaphore senders;
+    private final LongAdder batchesSent = new LongAdder();
+    private final LongAdder itemsSent = new LongAdder();
+    private final LongAdder itemsRetried = new LongAdder();
+    private final LongAdder itemsRejected = new LongAdder();
+    private final LongAdder itemsExpired = new LongAdder();
+
+    private volatile boolean running;
+    private Thread collector;
+
+    public OllamaBatchModerator(OllamaClient ollamaClient,
+                                @Qualifier("moderationBatchExecutor") Executor batchExecutor) {
+        this.ollamaClient = ollamaClient;
+        this.batchExecutor = batchExecutor;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!batchingEnabled) {
+            log.info("📦 Moderación por lotes deshabilitada");
+            return;
+        }
+        queue = new LinkedBlockingQueue<>(Math.max(1, queueCapacity));
+        senders = new Semaphore(Math.max(1, concurrency));
+        running = true;
+        collector = new Thread(this::collectLoop, "OllamaBatch-collector");
+        collector.setDaemon(true);
+        collector.start();
+        log.info("📦 Moderación por lotes activa: hasta {} textos o {} ms por lote, {} envíos simultáneos, cola de {}",
+                maxBatchSize, maxWaitMs, concurrency, queueCapacity);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (collector != null) {
+            collector.interrupt();
+        }
+        List<PendingAnalysis> abandoned = new ArrayList<>();
+        queue.drainTo(abandoned);
+        abandoned.forEach(p -> p.future().completeExceptionally(
+                new OllamaClient.OllamaException("Moderación por lotes detenida")));
+    }
+
+    /**
+     * Encola un texto y devuelve el futuro con su resultado. Con el circuito de Ollama abierto o la
+     * cola llena falla al momento, sin esperar la ventana del lote. Cancelar el futuro quita el texto
+     * del lote si aún no se ha enviado.
+     */
+    public CompletableFuture<OllamaClient.OllamaAnalysisResult> submit(String text) {
+        if (ollamaClient.isCircuitOpen()) {
+            return CompletableFuture.failedFuture(new OllamaClient.OllamaUnavailableException());
+        }
+        if (!running) {
+            try {
+                return CompletableFuture.completedFuture(ollamaClient.analyzeContent(text));
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        CompletableFuture<OllamaClient.OllamaAnalysisResult> future = new CompletableFuture<>();
+        if (!queue.offer(new PendingAnalysis(text, future))) {
+            itemsRejected.increment();
+            return CompletableFuture.failedFuture(
+                    new OllamaClient.OllamaException("Cola de moderación por lotes llena"));
+        }
+        return future;
+    }
+
+    /**
+     * Versión bloqueante de {@link #submit(String)}. Cualquier fallo se traduce a {@link OllamaClient.OllamaException}
+     * para que el llamante pueda aplicar su fallback.
+     */
+    public OllamaClient.OllamaAnalysisResult analyze(String text) {
+        CompletableFuture<OllamaClient.OllamaAnalysisResult> future = submit(text);
+        try {
+            return future.get(timeoutSeconds, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof OllamaClient.OllamaException ollamaException) {
+                throw ollamaException;
+            }
+            throw new OllamaClient.OllamaException("Error en análisis por lotes", cause);
+        } catch (TimeoutException e) {
+            // Nadie va a leer el resultado: se saca de la cola para no gastar Ollama en él
+            if (future.cancel(false) && queue.removeIf(pending -> pending.future() == future)) {
+                itemsExpired.increment();
+            }
+            throw new OllamaClient.OllamaException("Tiempo de espera agotado en la cola de moderación", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OllamaClient.OllamaException("Moderación interrumpida", e);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long batches = batchesSent.sum();
+        long items = itemsSent.sum();
+        stats.put("enabled", running);
+        stats.put("queued", queue.size());
+        stats.put("batches_sent", batches);
+        stats.put("items_sent", items);
+        stats.put("items_retried_individually", itemsRetried.sum());
+        stats.put("items_rejected_queue_full", itemsRejected.sum());
+        stats.put("items_expired", itemsExpired.sum());
+        stats.put("queue_capacity", queueCapacity);
+        stats.put("avg_batch_size", batches == 0 ? 0.0 : (double) items / batches);
+        return stats;
+    }
+
+    // Métodos privados de apoyo
+
+    private void collectLoop() {
+        while (running) {
+            try {
+                // Se espera a tener un envío libre antes de formar el lote: mientras tanto la cola crece
+                senders.acquire();
+                List<PendingAnalysis> batch;
+                try {
+                    batch = collectBatch();
+                } catch (InterruptedException e) {
+                    senders.release();
+                    throw e;
+                }
+                send(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Error en el agrupador de moderación: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Primer texto vivo de la cola más los que lleguen en {@code max-wait-ms}, hasta {@code max-size}.
+     * Los que ya estaban esperando entran sin esperar la ventana.
+     */
+    private List<PendingAnalysis> collectBatch() throws InterruptedException {
+        List<PendingAnalysis> batch = new ArrayList<>(maxBatchSize);
+        PendingAnalysis first = queue.take();
+        while (first.future().isDone()) {
+            first = queue.take();
+        }
+        batch.add(first);
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        while (batch.size() < maxBatchSize) {
+            long remaining = deadline - System.nanoTime();
+            PendingAnalysis next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+            if (next == null) {
+                break;
+            }
+            if (!next.future().isDone()) {
+                batch.add(next);
+            }
+        }
+        return batch;
+    }
+
+    private void send(List<PendingAnalysis> batch) {
+        try {
+            batchExecutor.execute(() -> {
+                try {
+                    dispatch(batch);
+                } finally {
+                    senders.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            senders.release();
+            batch.forEach(p -> p.future().completeExceptionally(
+                    new OllamaClient.OllamaException("Ejecutor de lotes de moderación saturado", e)));
+        }
+    }
+
+    private void dispatch(List<PendingAnalysis> batch) {
+        // Los que han caducado mientras esperaban envío ya no se mandan
+        batch.removeIf(p -> p.future().isDone());
+        if (batch.isEmpty()) {
+            return;
+        }
+        batchesSent.increment();
+        itemsSent.add(batch.size());
+
+        if (batch.size() == 1) {
+            analyzeIndividually(batch.get(0));
+            return;
+        }
+
+        List<OllamaClient.OllamaAnalysisResult> results;
+        try {
+            results = ollamaClient.analyzeBatch(batch.stream().map(PendingAnalysis::text).toList());
+        } catch (Exception e) {
+            log.warn("⚠️ Lote de {} textos fallido: {}", batch.size(), e.getMessage());
+            batch.forEach(p -> p.future().completeExceptionally(e));
+            return;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            OllamaClient.OllamaAnalysisResult result = results.get(i);
+            if (result != null) {
+                batch.get(i).future().complete(result);
+            } else {
+                // El modelo omitió este elemento: se reintenta con el prompt individual
+                itemsRetried.increment();
+                analyzeIndividually(batch.get(i));
+            }
+        }
+    }
+
+    private void analyzeIndividually(PendingAnalysis pending) {
+        try {
+            pending.future().complete(ollamaClient.analyzeContent(pending.text()));
+        } catch (Exception e) {
+            pending.future().completeExceptionally(e);
+        }
+    }
+
+    private record PendingAnalysis(String text, CompletableFuture<OllamaClient.OllamaAnalysisResult> future) {}
+}
@@ -0,0 +1,183 @@
+package alicanteweb.pelisapp.service.moderation;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Cortocircuito para las llamadas a Ollama con timeout adaptativo.
+ *
+ * <ul>
+ *   <li>CLOSED: las peticiones pasan. Tras {@code failure-threshold} fallos de transporte seguidos se abre.</li>
+ *   <li>OPEN: las peticiones se rechazan al instante, sin tocar la red, y el llamante usa el fallback.</li>
+ *   <li>HALF_OPEN: pasado el tiempo de espera, una sonda barata ({@code /api/tags}) decide si se
+ *       vuelve a CLOSED o a OPEN con espera exponencial.</li>
+ * </ul>
+ *
+ * <p>El timeout de cada petición se calcula a partir del p95 de las latencias observadas,
+ * acotado entre un mínimo y el máximo configurado en {@code app.moderation.ollama.timeout}. Las
+ * peticiones que agotan el timeout también cuentan (con lo que tardaron), así el timeout crece si
+ * Ollama se vuelve más lento; al abrirse o cerrarse el circuito se vacía el histórico y las primeras
+ * peticiones usan el máximo.</p>
+ */
+@Component
+@Slf4j
+public class OllamaCircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /** Tipo de llamada: los lotes tardan más que un texto suelto y llevan su propio histórico. */
+    public enum CallKind { SINGLE, BATCH }
+
+    private static final int LATENCY_WINDOW = 128;
+    private static final double TIMEOUT_MULTIPLIER = 2.0;
+
+    @Value("${app.moderation.ollama.circuit.failure-threshold:3}")
+    private int failureThreshold;
+
+    @Value("${app.moderation.ollama.circuit.open-duration:10s}")
+    private Duration baseOpenDuration;
+
+    @Value("${app.moderation.ollama.circuit.max-open-duration:5m}")
+    private Duration maxOpenDuration;
+
+    @Value("${app.moderation.ollama.min-timeout:2s}")
+    private Duration minTimeout;
+
+    @Value("${app.moderation.ollama.timeout:30}")
+    private long maxTimeoutSeconds;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private final AtomicLong openUntilNanos = new AtomicLong();
+    private final AtomicInteger consecutiveOpenings = new AtomicInteger();
+    private final AtomicLong rejectedCalls = new AtomicLong();
+
+    private final LatencyWindow singleLatencies = new LatencyWindow(LATENCY_WINDOW);
+    private final LatencyWindow batchLatencies = new LatencyWindow(LATENCY_WINDOW);
+
+    /**
+     * Indica si se puede llamar a Ollama. En OPEN/HALF_OPEN devuelve {@code false} sin coste.
+     */
+    public boolean allowRequest() {
+        if (state.get() == State.CLOSED) {
+            return true;
+        }
+        rejectedCalls.incrementAndGet();
+        return false;
+    }
+
+    public boolean isOpen() {
+        return state.get() != State.CLOSED;
+    }
+
+    /**
+     * Registra una llamada correcta y su latencia.
+     */
+    public void onSuccess(CallKind kind, long latencyNanos) {
+        consecutiveFailures.set(0);
+        latencies(kind).record(latencyNanos);
+    }
+
+    /**
+     * Registra una petición que agotó su timeout: cuenta como fallo y su duración entra en el
+     * histórico para que el siguiente timeout no vuelva a ser igual de corto.
+     */
+    public void onTimeout(CallKind kind, long elapsedNanos) {
+        latencies(kind).record(Math.max(elapsedNanos, currentTimeout(kind).toNanos()));
+        onFailure();
+    }
+
+    /**
+     * Registra un fallo de transporte (conexión, timeout, 5xx).
+     */
+    public void onFailure() {
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold && state.get() == State.CLOSED) {
+            open();
+        }
+    }
+
+    /**
+     * Si el circuito está abierto y ya ha pasado la espera, lo pasa a HALF_OPEN y devuelve {@code true}
+     * para que el llamante lance la sonda.
+     */
+    public boolean tryStartProbe() {
+        return state.get() == State.OPEN
+                && System.nanoTime() - openUntilNanos.get() >= 0
+                && state.compareAndSet(State.OPEN, State.HALF_OPEN);
+    }
+
+    /**
+     * Resultado de la sonda lanzada tras {@link #tryStartProbe()}.
+     */
+    public void onProbeResult(boolean healthy) {
+        if (healthy) {
+            consecutiveFailures.set(0);
+            consecutiveOpenings.set(0);
+            clearLatencies();
+            state.set(State.CLOSED);
+            log.info("🟢 Ollama responde de nuevo, circuito cerrado");
+        } else {
+            open();
+        }
+    }
+
+    /**
+     * Timeout para la próxima petición: p95 observado × 2, acotado a [mínimo, máximo].
+     */
+    public Duration currentTimeout(CallKind kind) {
+        Duration max = Duration.ofSeconds(maxTimeoutSeconds);
+        long p95 = latencies(kind).percentile(0.95);
+        if (p95 <= 0) {
+            return max;
+        }
+        Duration adaptive = Duration.ofNanos((long) (p95 * TIMEOUT_MULTIPLIER));
+        if (adaptive.compareTo(minTimeout) < 0) {
+            return minTimeout;
+        }
+        return adaptive.compareTo(max) > 0 ? max : adaptive;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("state", state.get().name());
+        stats.put("consecutive_failures", consecutiveFailures.get());
+        stats.put("rejected_calls", rejectedCalls.get());
+        stats.put("p95_single_ms", singleLatencies.percentile(0.95) / 1_000_000);
+        stats.put("p95_batch_ms", batchLatencies.percentile(0.95) / 1_000_000);
+        stats.put("timeout_single_ms", currentTimeout(CallKind.SINGLE).toMillis());
+        stats.put("timeout_batch_ms", currentTimeout(CallKind.BATCH).toMillis());
+        return stats;
+    }
+
+    // Métodos privados de apoyo
+
+    private void open() {
+        int openings = Math.min(consecutiveOpenings.getAndIncrement(), 10);
+        Duration wait = baseOpenDuration.multipliedBy(1L << openings);
+        if (wait.compareTo(maxOpenDuration) > 0) {
+            wait = maxOpenDuration;
+        }
+        openUntilNanos.set(System.nanoTime() + wait.toNanos());
+        // Las latencias de antes del corte ya no valen: al volver se empieza con el timeout máximo
+        clearLatencies();
+        state.set(State.OPEN);
+        log.warn("🔴 Ollama no disponible, circuito abierto durante {} s (se usará el fallback)", wait.toSeconds());
+    }
+
+    private void clearLatencies() {
+        singleLatencies.clear();
+        batchLatencies.clear();
+    }
+
+    private LatencyWindow latencies(CallKind kind) {
+        return kind == CallKind.BATCH ? batchLatencies : singleLatencies;
+    }
+}
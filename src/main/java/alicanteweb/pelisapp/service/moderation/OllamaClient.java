@@ -1,28 +1,44 @@
 package alicanteweb.pelisapp.service.moderation;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * Cliente para interactuar con Ollama AI para análisis de contenido tóxico.
  * Aplica principio de responsabilidad única (SRP).
+ *
+ * <p>Todas las llamadas pasan por {@link OllamaCircuitBreaker}: con el circuito abierto se lanza
+ * {@link OllamaUnavailableException} sin tocar la red, y el timeout de lectura de cada petición
+ * se adapta a la latencia real del modelo. Se usa el {@link HttpClient} del JDK porque permite
+ * fijar el timeout por petición, cosa que el {@code RestTemplate} compartido no admite.</p>
  */
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class OllamaClient {
 
-    private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper;
+    private final OllamaCircuitBreaker circuitBreaker;
 
     @Value("${app.moderation.ollama.url:http://localhost:11434}")
     private String ollamaUrl;
@@ -30,25 +46,129 @@ public class OllamaClient {
     @Value("${app.moderation.ollama.model:llama3}")
     private String ollamaModel;
 
+    @Value("${app.moderation.ollama.connect-timeout-ms:2000}")
+    private long connectTimeoutMs;
+
+    @Value("${app.moderation.ollama.probe-timeout-ms:1500}")
+    private long probeTimeoutMs;
+
+    private HttpClient httpClient;
+
+    @PostConstruct
+    public void init() {
+        httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+            .build();
+    }
+
     /**
      * Analiza texto con Ollama usando un prompt especializado para detección de contenido tóxico.
      */
     public OllamaAnalysisResult analyzeContent(String text) {
-        try {
-            String prompt = buildModerationPrompt(text);
-            HttpEntity<Map<String, Object>> request = createOllamaRequest(prompt);
+        String prompt = buildModerationPrompt(text);
+        log.debug("📤 Enviando solicitud a Ollama: {}/api/generate", ollamaUrl);
 
-            log.debug("📤 Enviando solicitud a Ollama: {}/api/generate", ollamaUrl);
+        String body = generate(createOllamaRequest(prompt), OllamaCircuitBreaker.CallKind.SINGLE);
+        return parseOllamaResponse(body);
+    }
 
-            ResponseEntity<String> response = restTemplate.postForEntity(
-                ollamaUrl + "/api/generate", request, String.class);
+    /**
+     * Analiza varios textos en una sola petición a Ollama.
+     * Devuelve un resultado por texto y en el mismo orden; las posiciones que el modelo
+     * no haya devuelto quedan a {@code null} para que el llamante las reintente por separado.
+     */
+    public List<OllamaAnalysisResult> analyzeBatch(List<String> texts) {
+        String prompt;
+        try {
+            prompt = buildBatchModerationPrompt(texts);
+        } catch (JsonProcessingException e) {
+            throw new OllamaException("Error serializando el lote para Ollama", e);
+        }
+        log.debug("📤 Enviando lote de {} textos a Ollama: {}/api/generate", texts.size(), ollamaUrl);
 
-            return handleOllamaResponse(response);
+        String body = generate(createOllamaRequest(prompt, 120 * texts.size()), OllamaCircuitBreaker.CallKind.BATCH);
+        return parseBatchResponse(body, texts.size());
+    }
 
+    /**
+     * Comprobación barata de salud: lista los modelos ({@code GET /api/tags}) sin generar nada.
+     */
+    public boolean probe() {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(ollamaUrl + "/api/tags"))
+                .timeout(Duration.ofMillis(probeTimeoutMs))
+                .GET()
+                .build();
+            return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
         } catch (Exception e) {
+            log.debug("Sonda de Ollama fallida: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Mientras el circuito está abierto, lanza la sonda cuando vence la espera.
+     */
+    @Scheduled(fixedDelayString = "${app.moderation.ollama.circuit.probe-interval-ms:1000}")
+    public void probeIfOpen() {
+        if (circuitBreaker.tryStartProbe()) {
+            circuitBreaker.onProbeResult(probe());
+        }
+    }
+
+    public boolean isCircuitOpen() {
+        return circuitBreaker.isOpen();
+    }
+
+    /**
+     * Envía la petición a {@code /api/generate} con el timeout adaptativo y devuelve el cuerpo.
+     * Solo los fallos de transporte (conexión, timeout, 5xx) cuentan para el cortocircuito.
+     */
+    private String generate(Map<String, Object> requestBody, OllamaCircuitBreaker.CallKind kind) {
+        if (!circuitBreaker.allowRequest()) {
+            throw new OllamaUnavailableException();
+        }
+
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(ollamaUrl + "/api/generate"))
+                .timeout(circuitBreaker.currentTimeout(kind))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(requestBody)))
+                .build();
+        } catch (JsonProcessingException e) {
+            throw new OllamaException("Error serializando la petición a Ollama", e);
+        }
+
+        long start = System.nanoTime();
+        HttpResponse<String> response;
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OllamaException("Petición a Ollama interrumpida", e);
+        } catch (HttpTimeoutException e) {
+            circuitBreaker.onTimeout(kind, System.nanoTime() - start);
+            log.error("Timeout esperando a Ollama: {}", e.getMessage());
+            throw new OllamaException("Error en análisis con Ollama", e);
+        } catch (IOException e) {
+            circuitBreaker.onFailure();
             log.error("Error conectando con Ollama: {}", e.getMessage());
             throw new OllamaException("Error en análisis con Ollama", e);
         }
+
+        if (response.statusCode() >= 500) {
+            circuitBreaker.onFailure();
+            throw new OllamaException("Respuesta inválida de Ollama: " + response.statusCode());
+        }
+        circuitBreaker.onSuccess(kind, System.nanoTime() - start);
+        if (response.statusCode() != 200 || response.body() == null) {
+            throw new OllamaException("Respuesta inválida de Ollama: " + response.statusCode());
+        }
+        return response.body();
     }
 
     /**
@@ -78,9 +198,37 @@ public class OllamaClient {
     }
 
     /**
-     * Crea la petición HTTP para Ollama.
+     * Construye el prompt de moderación por lotes. Los textos van serializados como un array JSON
+     * en una sola línea, así las comillas o saltos de línea de una reseña no rompen el prompt.
      */
-    private HttpEntity<Map<String, Object>> createOllamaRequest(String prompt) {
+    private String buildBatchModerationPrompt(List<String> texts) throws JsonProcessingException {
+        List<Map<String, Object>> items = new ArrayList<>(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            items.add(Map.of("id", i, "text", texts.get(i)));
+        }
+        return String.format(
+            """
+            Eres un moderador de contenido experto. Analiza CADA una de las siguientes reseñas de películas y determina si contiene:
+            - Lenguaje tóxico, ofensivo, abusivo o de odio
+            - Insultos, amenazas o acoso
+            - Contenido inapropiado para un sitio de películas
+
+            Reseñas a analizar (array JSON, el campo "id" identifica cada una):
+            %s
+
+            Responde EXACTAMENTE con un objeto JSON con un resultado por reseña, en este formato:
+            {"results": [{"id": 0, "toxicity_score": [número entre 0.0 y 1.0], "reason": "[explicación breve]"}]}
+            """, objectMapper.writeValueAsString(items));
+    }
+
+    /**
+     * Crea el cuerpo de la petición para Ollama.
+     */
+    private Map<String, Object> createOllamaRequest(String prompt) {
+        return createOllamaRequest(prompt, 200);
+    }
+
+    private Map<String, Object> createOllamaRequest(String prompt, int maxTokens) {
         Map<String, Object> requestBody = new HashMap<>();
         requestBody.put("model", ollamaModel);
         requestBody.put("prompt", prompt);
@@ -88,24 +236,10 @@ public class OllamaClient {
         requestBody.put("options", Map.of(
             "temperature", 0.1,
             "top_p", 0.9,
-            "max_tokens", 200
+            // Límite de tokens generados: Ollama ignora en silencio "max_tokens"
+            "num_predict", maxTokens
         ));
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-
-        return new HttpEntity<>(requestBody, headers);
-    }
-
-    /**
-     * Maneja la respuesta de Ollama y extrae el resultado.
-     */
-    private OllamaAnalysisResult handleOllamaResponse(ResponseEntity<String> response) {
-        if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-            return parseOllamaResponse(response.getBody());
-        } else {
-            throw new OllamaException("Respuesta inválida de Ollama: " + response.getStatusCode());
-        }
+        return requestBody;
     }
 
     /**
@@ -139,6 +273,40 @@ public class OllamaClient {
         }
     }
 
+    /**
+     * Parsea la respuesta por lotes y reparte cada resultado a su posición por "id".
+     */
+    private List<OllamaAnalysisResult> parseBatchResponse(String responseBody, int expected) {
+        try {
+            String content = objectMapper.readTree(responseBody).path("response").asText();
+            log.debug("📥 Respuesta de Ollama (lote): {}", content);
+
+            int start = content.indexOf('{');
+            int end = content.lastIndexOf('}');
+            if (start < 0 || end < start) {
+                throw new OllamaException("Respuesta por lotes sin JSON");
+            }
+            JsonNode results = objectMapper.readTree(content.substring(start, end + 1)).path("results");
+
+            List<OllamaAnalysisResult> parsed = new ArrayList<>(Collections.nCopies(expected, null));
+            for (JsonNode item : results) {
+                int id = item.path("id").asInt(-1);
+                if (id >= 0 && id < expected && item.has("toxicity_score")) {
+                    parsed.set(id, new OllamaAnalysisResult(
+                        item.path("toxicity_score").asDouble(0.0),
+                        item.path("reason").asText("Sin razón especificada")));
+                }
+            }
+            return parsed;
+
+        } catch (OllamaException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("❌ Error parseando respuesta por lotes de Ollama: {}", e.getMessage());
+            throw new OllamaException("Error procesando respuesta por lotes de Ollama", e);
+        }
+    }
+
     /**
      * Resultado del análisis de Ollama.
      */
@@ -156,4 +324,13 @@ public class OllamaClient {
             super(message, cause);
         }
     }
+
+    /**
+     * Ollama se considera caído (circuito abierto): se lanza sin hacer ninguna petición.
+     */
+    public static class OllamaUnavailableException extends OllamaException {
+        public OllamaUnavailableException() {
+            super("Ollama no disponible (circuito abierto)");
+        }
+    }
 }
@@ -0,0 +1,305 @@
+package alicanteweb.pelisapp.service.moderation;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Autómata Aho–Corasick precompilado para buscar términos prohibidos en un solo recorrido.
+ *
+ * <p>El texto se pliega carácter a carácter (minúsculas, sin tildes, leetspeak → letras, signos y
+ * espacios → un único espacio) y después se recorre el autómata, por lo que el
+ * coste es O(longitud del texto) con independencia del tamaño del diccionario. Los términos
+ * se pliegan igual al compilar, así que "imbécil" e "imbecil" son el mismo término.</p>
+ *
+ * <p>Las coincidencias respetan límites de palabra: deben empezar al inicio de una palabra y
+ * terminar al final de una (se admite el plural "s"/"es"). Así "rata" no salta en "pirata". Los
+ * signos separan palabras, de modo que "idiota,imbécil" son dos palabras y "hijo-de-puta" se lee
+ * como "hijo de puta". Los términos marcados como raíz solo exigen el inicio de palabra: "maric"
+ * cubre "marica", "maricón" o "mariconazo".</p>
+ *
+ * <p>Es inmutable y seguro para uso concurrente.</p>
+ */
+public final class ProhibitedTermMatcher {
+
+    /** Carácter que el plegado descarta (marcas combinantes y caracteres invisibles de formato). */
+    static final char DROP = '\0';
+
+    private static final int ROOT = 0;
+
+    private final String[] terms;
+    private final double[] severities;
+    private final int[] termLengths;
+    private final boolean[] stemTerms;
+
+    // Aristas en formato CSR: las de cada estado están ordenadas por carácter
+    private final int[] edgeStart;
+    private final char[] edgeChar;
+    private final int[] edgeTarget;
+
+    private final int[] fail;
+    // Término que termina en el estado (-1 si ninguno) y siguiente estado con salida por la cadena de fallos
+    private final int[] outputTerm;
+    private final int[] outputLink;
+
+    /**
+     * Compila el autómata sin términos raíz.
+     */
+    public ProhibitedTermMatcher(Map<String, Double> termSeverities) {
+        this(termSeverities, Set.of());
+    }
+
+    /**
+     * Compila el autómata. Las claves son los términos y los valores su multiplicador de severidad;
+     * si dos términos se pliegan igual se conserva la severidad mayor. Los términos de {@code stems}
+     * coinciden también como prefijo de una palabra.
+     */
+    public ProhibitedTermMatcher(Map<String, Double> termSeverities, Set<String> stems) {
+        Set<String> foldedStems = new HashSet<>();
+        for (String stem : stems) {
+            foldedStems.add(foldTerm(stem));
+        }
+
+        Map<String, Double> folded = new HashMap<>();
+        List<String> order = new ArrayList<>();
+        for (Map.Entry<String, Double> entry : termSeverities.entrySet()) {
+            String term = foldTerm(entry.getKey());
+            if (term.isEmpty()) {
+                continue;
+            }
+            Double previous = folded.get(term);
+            if (previous == null) {
+                order.add(term);
+                folded.put(term, entry.getValue());
+            } else if (entry.getValue() > previous) {
+                folded.put(term, entry.getValue());
+            }
+        }
+
+        this.terms = order.toArray(new String[0]);
+        this.severities = new double[terms.length];
+        this.termLengths = new int[terms.length];
+        this.stemTerms = new boolean[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            severities[i] = folded.get(terms[i]);
+            termLengths[i] = terms[i].length();
+            stemTerms[i] = foldedStems.contains(terms[i]);
+        }
+
+        // 1) Trie con mapas temporales
+        List<Map<Character, Integer>> children = new ArrayList<>();
+        List<Integer> terminal = new ArrayList<>();
+        children.add(new HashMap<>());
+        terminal.add(-1);
+        for (int t = 0; t < terms.length; t++) {
+            int state = ROOT;
+            for (int i = 0; i < terms[t].length(); i++) {
+                char c = terms[t].charAt(i);
+                Integer next = children.get(state).get(c);
+                if (next == null) {
+                    next = children.size();
+                    children.add(new HashMap<>());
+                    terminal.add(-1);
+                    children.get(state).put(c, next);
+                }
+                state = next;
+            }
+            terminal.set(state, t);
+        }
+
+        // 2) Compactar a CSR
+        int states = children.size();
+        this.edgeStart = new int[states + 1];
+        int edges = 0;
+        for (int s = 0; s < states; s++) {
+            edgeStart[s] = edges;
+            edges += children.get(s).size();
+        }
+        edgeStart[states] = edges;
+        this.edgeChar = new char[edges];
+        this.edgeTarget = new int[edges];
+        for (int s = 0; s < states; s++) {
+            Character[] keys = children.get(s).keySet().toArray(new Character[0]);
+            Arrays.sort(keys);
+            int base = edgeStart[s];
+            for (int k = 0; k < keys.length; k++) {
+                edgeChar[base + k] = keys[k];
+                edgeTarget[base + k] = children.get(s).get(keys[k]);
+            }
+        }
+
+        this.outputTerm = new int[states];
+        for (int s = 0; s < states; s++) {
+            outputTerm[s] = terminal.get(s);
+        }
+
+        // 3) Enlaces de fallo y de salida por BFS
+        this.fail = new int[states];
+        this.outputLink = new int[states];
+        Arrays.fill(outputLink, -1);
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int e = edgeStart[ROOT]; e < edgeStart[ROOT + 1]; e++) {
+            fail[edgeTarget[e]] = ROOT;
+            queue.add(edgeTarget[e]);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int e = edgeStart[state]; e < edgeStart[state + 1]; e++) {
+                int child = edgeTarget[e];
+                char c = edgeChar[e];
+                int f = fail[state];
+                int target;
+                while ((target = transition(f, c)) < 0 && f != ROOT) {
+                    f = fail[f];
+                }
+                fail[child] = target >= 0 ? target : ROOT;
+                int failState = fail[child];
+                outputLink[child] = outputTerm[failState] >= 0 ? failState : outputLink[failState];
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * Recorre el texto y notifica cada coincidencia (puede repetirse el mismo término).
+     */
+    public void scan(CharSequence text, MatchHandler handler) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        char[] buffer = new char[text.length()];
+        int length = fold(text, buffer);
+
+        int state = ROOT;
+        for (int i = 0; i < length; i++) {
+            char c = buffer[i];
+            int next;
+            while ((next = transition(state, c)) < 0 && state != ROOT) {
+                state = fail[state];
+            }
+            state = next >= 0 ? next : ROOT;
+
+            int out = outputTerm[state] >= 0 ? state : outputLink[state];
+            while (out >= 0) {
+                int term = outputTerm[out];
+                if (isWordMatch(buffer, length, i, termLengths[term], stemTerms[term])) {
+                    handler.onMatch(term);
+                }
+                out = outputLink[out];
+            }
+        }
+    }
+
+    public int termCount() {
+        return terms.length;
+    }
+
+    public String term(int index) {
+        return terms[index];
+    }
+
+    public double severity(int index) {
+        return severities[index];
+    }
+
+    /**
+     * Pliega un carácter: minúsculas, sin tildes y leetspeak a letras.
+     * Devuelve ' ' para espacios y signos (separan palabras) y {@link #DROP} para caracteres invisibles.
+     */
+    static char foldChar(char c) {
+        if (Character.isWhitespace(c)) {
+            return ' ';
+        }
+        char lower = Character.toLowerCase(c);
+        return switch (lower) {
+            case 'á', 'à', 'â', 'ä', '4', '@' -> 'a';
+            case 'é', 'è', 'ê', 'ë', '3' -> 'e';
+            case 'í', 'ì', 'î', 'ï', '1' -> 'i';
+            case 'ó', 'ò', 'ô', 'ö', '0' -> 'o';
+            case 'ú', 'ù', 'û', 'ü' -> 'u';
+            case '5', '$' -> 's';
+            case '7', '+' -> 't';
+            case '*' -> '*'; // se conserva: forma parte de términos censurados como "p*ta"
+            default -> Character.isLetterOrDigit(lower) ? lower : separator(lower);
+        };
+    }
+
+    private static char separator(char c) {
+        // Un espacio de ancho cero o una tilde combinante dentro de una palabra no la parten
+        int type = Character.getType(c);
+        return type == Character.FORMAT || type == Character.NON_SPACING_MARK ? DROP : ' ';
+    }
+
+    /**
+     * Pliega el texto en el búfer colapsando espacios. Devuelve la longitud útil.
+     */
+    static int fold(CharSequence text, char[] buffer) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = foldChar(text.charAt(i));
+            if (c == DROP || (c == ' ' && (length == 0 || buffer[length - 1] == ' '))) {
+                continue;
+            }
+            buffer[length++] = c;
+        }
+        if (length > 0 && buffer[length - 1] == ' ') {
+            length--;
+        }
+        return length;
+    }
+
+    private static String foldTerm(String term) {
+        char[] buffer = new char[term.length()];
+        return new String(buffer, 0, fold(term, buffer));
+    }
+
+    private int transition(int state, char c) {
+        int lo = edgeStart[state];
+        int hi = edgeStart[state + 1] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            char midChar = edgeChar[mid];
+            if (midChar < c) {
+                lo = mid + 1;
+            } else if (midChar > c) {
+                hi = mid - 1;
+            } else {
+                return edgeTarget[mid];
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isWordMatch(char[] buffer, int length, int end, int termLength, boolean stem) {
+        int start = end - termLength + 1;
+        if (start > 0 && buffer[start - 1] != ' ') {
+            return false;
+        }
+        if (stem) {
+            return true;
+        }
+        int after = end + 1;
+        if (after >= length || buffer[after] == ' ') {
+            return true;
+        }
+        // Plurales: "idiotas", "perras", "cabrones"
+        if (buffer[after] == 's') {
+            return after + 1 >= length || buffer[after + 1] == ' ';
+        }
+        return buffer[after] == 'e' && after + 1 < length && buffer[after + 1] == 's'
+                && (after + 2 >= length || buffer[after + 2] == ' ');
+    }
+
+    /**
+     * Receptor de coincidencias; recibe el índice del término.
+     */
+    @FunctionalInterface
+    public interface MatchHandler {
+        void onMatch(int termIndex);
+    }
+}
@@ -0,0 +1,39 @@
+package alicanteweb.pelisapp.service.moderation;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Último nivel: siempre decide. Usa el análisis por reglas o, con el fallback deshabilitado,
+ * rechaza por seguridad.
+ */
+@Component
+@RequiredArgsConstructor
+public class RulesFallbackStage implements ModerationStage {
+
+    private final ContentAnalyzer contentAnalyzer;
+    private final ModerationThresholds thresholds;
+
+    @Value("${app.moderation.fallback.enabled:true}")
+    private boolean fallbackEnabled;
+
+    @Override
+    public String name() {
+        return "rules_fallback";
+    }
+
+    @Override
+    public StageDecision evaluate(ModerationContext context) {
+        if (!fallbackEnabled) {
+            return new StageDecision(StageDecision.Outcome.REJECT, null, "Error en sistema de moderación", false);
+        }
+        ContentAnalyzer.ContentAnalysisResult result = context.contentAnalysis(contentAnalyzer);
+        String reason = result.badWordCount() == 0
+                ? "Contenido limpio según reglas estrictas"
+                : String.format("CONTENIDO INAPROPIADO detectado - %d problemas: %s",
+                        result.badWordCount(), result.detectedWords());
+        return new StageDecision(thresholds.outcomeFor(result.toxicityScore(), ModerationThresholds.RULES_MANUAL_REVIEW),
+                result.toxicityScore(), "Fallback: " + reason, false);
+    }
+}
@@ -0,0 +1,37 @@
+package alicanteweb.pelisapp.service.moderation;
+
+import alicanteweb.pelisapp.entity.CommentModeration;
+
+/**
+ * Decisión de un nivel del pipeline. Todas las puntuaciones siguen el mismo convenio:
+ * 0.0 es contenido limpio y 1.0 contenido tóxico.
+ */
+public record StageDecision(Outcome outcome, Double toxicityScore, String reason, boolean aiProcessed) {
+
+    public enum Outcome {
+        APPROVE(CommentModeration.ModerationStatus.APPROVED),
+        REJECT(CommentModeration.ModerationStatus.REJECTED),
+        MANUAL_REVIEW(CommentModeration.ModerationStatus.MANUAL_REVIEW),
+        DEFER(null);
+
+        private final CommentModeration.ModerationStatus status;
+
+        Outcome(CommentModeration.ModerationStatus status) {
+            this.status = status;
+        }
+
+        public CommentModeration.ModerationStatus toStatus() {
+            return status;
+        }
+    }
+
+    private static final StageDecision DEFER = new StageDecision(Outcome.DEFER, null, null, false);
+
+    public static StageDecision defer() {
+        return DEFER;
+    }
+
+    public boolean isFinal() {
+        return outcome != Outcome.DEFER;
+    }
+}
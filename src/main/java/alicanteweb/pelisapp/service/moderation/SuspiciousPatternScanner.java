@@ -0,0 +1,138 @@
+package alicanteweb.pelisapp.service.moderation;
+
+/**
+ * Escáner de patrones sospechosos escrito a mano: sustituye a las expresiones regulares
+ * de {@link ContentAnalyzer} por un único recorrido carácter a carácter.
+ *
+ * <p>Detecta en la misma pasada:</p>
+ * <ul>
+ *   <li>Palabras con sustituciones leet: una @ o $ junto a letras, o cifras 4, 3, 1, 0, 5, 7
+ *       con letras a ambos lados ("p3rdedor"). Los números sueltos como "2024" y las cifras
+ *       al principio o al final ("1080p", "mp3", "4K") no cuentan.</li>
+ *   <li>Palabras censuradas con asteriscos ("p*ta", "m**rda").</li>
+ *   <li>Texto gritado: sin minúsculas y más de 10 caracteres.</li>
+ *   <li>Comentarios demasiado cortos (menos de 3 caracteres).</li>
+ * </ul>
+ *
+ * <p>No hay retroceso: el coste es lineal en la longitud del texto en el peor caso.</p>
+ */
+public final class SuspiciousPatternScanner {
+
+    private static final int MIN_TEXT_LENGTH = 3;
+    private static final int SHOUTING_MIN_LENGTH = 10;
+
+    private SuspiciousPatternScanner() {
+        // Clase de utilidad
+    }
+
+    /**
+     * Recorre el texto una vez y devuelve las señales encontradas.
+     */
+    public static SuspiciousSignals scan(String text) {
+        if (text == null) {
+            return SuspiciousSignals.NONE;
+        }
+
+        int length = text.length();
+        int leetWords = 0;
+        int censoredWords = 0;
+        int upperLetters = 0;
+        int lowerLetters = 0;
+
+        boolean inWord = false;
+        boolean wordHasLetter = false;
+        boolean wordHasLeet = false;
+        boolean wordHasLeetSymbol = false;
+        boolean wordHasStar = false;
+        boolean afterLetter = false;
+        boolean leetRunAfterLetter = false;
+        int lettersBeforeStar = 0;
+
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            boolean letter = Character.isLetter(c);
+            boolean leet = isLeetChar(c);
+            boolean partOfWord = letter || leet || c == '*' || Character.isDigit(c);
+
+            if (!partOfWord) {
+                if (inWord) {
+                    if (wordHasLeet || (wordHasLetter && wordHasLeetSymbol)) leetWords++;
+                    if (wordHasStar && lettersBeforeStar > 0) censoredWords++;
+                }
+                inWord = false;
+                continue;
+            }
+
+            if (!inWord) {
+                inWord = true;
+                wordHasLetter = false;
+                wordHasLeet = false;
+                wordHasLeetSymbol = false;
+                wordHasStar = false;
+                afterLetter = false;
+                leetRunAfterLetter = false;
+                lettersBeforeStar = 0;
+            }
+
+            if (letter) {
+                // Cerrar una racha de sustituciones que empezó tras una letra: letra-cifra-letra
+                if (leetRunAfterLetter) wordHasLeet = true;
+                afterLetter = true;
+                leetRunAfterLetter = false;
+                wordHasLetter = true;
+                if (!wordHasStar) lettersBeforeStar++;
+                if (Character.isUpperCase(c)) {
+                    upperLetters++;
+                } else if (Character.isLowerCase(c)) {
+                    lowerLetters++;
+                }
+            } else if (leet) {
+                if (c == '@' || c == '$') wordHasLeetSymbol = true;
+                leetRunAfterLetter = afterLetter || leetRunAfterLetter;
+                afterLetter = false;
+            } else {
+                if (c == '*') wordHasStar = true;
+                afterLetter = false;
+                leetRunAfterLetter = false;
+            }
+        }
+        if (inWord) {
+            if (wordHasLeet || (wordHasLetter && wordHasLeetSymbol)) leetWords++;
+            if (wordHasStar && lettersBeforeStar > 0) censoredWords++;
+        }
+
+        boolean tooShort = length < MIN_TEXT_LENGTH;
+        boolean shouting = length > SHOUTING_MIN_LENGTH && upperLetters > 0 && lowerLetters == 0;
+        int letters = upperLetters + lowerLetters;
+        double uppercaseRatio = letters == 0 ? 0.0 : (double) upperLetters / letters;
+
+        return new SuspiciousSignals(leetWords, censoredWords, uppercaseRatio, tooShort, shouting);
+    }
+
+    private static boolean isLeetChar(char c) {
+        return switch (c) {
+            case '4', '@', '3', '1', '0', '5', '$', '7' -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Señales individuales del escáner; sirven también como características para clasificadores.
+     */
+    public record SuspiciousSignals(
+        int leetWords,
+        int censoredWords,
+        double uppercaseRatio,
+        boolean tooShort,
+        boolean shouting
+    ) {
+        public static final SuspiciousSignals NONE = new SuspiciousSignals(0, 0, 0.0, false, false);
+
+        /**
+         * Indica si alguna señal se ha activado.
+         */
+        public boolean any() {
+            return leetWords > 0 || censoredWords > 0 || tooShort || shouting;
+        }
+    }
+}
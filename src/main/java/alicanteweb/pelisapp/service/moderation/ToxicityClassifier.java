@@ -0,0 +1,114 @@
+package alicanteweb.pelisapp.service.moderation;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Clasificador local de toxicidad: nivel intermedio entre las reglas y el LLM.
+ *
+ * <p>Carga un {@link ToxicityModel} entrenado offline con {@link ToxicityModelTrainer} y puntúa
+ * cada reseña en microsegundos. Solo devuelve veredicto cuando la puntuación cae fuera de la
+ * zona de duda calibrada; en ese caso no hace falta consultar a Ollama. Sin modelo cargado
+ * no decide nada y todo sigue hacia el LLM.</p>
+ */
+@Component
+@Slf4j
+public class ToxicityClassifier {
+
+    @Value("${app.moderation.classifier.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.moderation.classifier.model-path:data/toxicity-model.bin}")
+    private String modelPath;
+
+    private volatile ToxicityModel model;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder escalated = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+
+    @PostConstruct
+    public void loadModel() {
+        if (!enabled) {
+            log.info("🧮 Clasificador local deshabilitado");
+            return;
+        }
+        Path path = Path.of(modelPath);
+        if (!Files.isRegularFile(path)) {
+            log.info("🧮 Sin modelo de clasificador en {}, todas las reseñas irán al LLM", path.toAbsolutePath());
+            return;
+        }
+        try (InputStream in = Files.newInputStream(path)) {
+            ToxicityModel loaded = ToxicityModel.read(in);
+            model = loaded;
+            log.info("🧮 Clasificador local cargado: {} pesos, aceptar < {}, rechazar > {}",
+                    loaded.nonZeroWeights(), String.format("%.3f", loaded.acceptBelow()),
+                    String.format("%.3f", loaded.rejectAbove()));
+        } catch (IOException e) {
+            log.error("❌ No se pudo cargar el modelo de clasificador {}: {}", path, e.getMessage());
+        }
+    }
+
+    public boolean isReady() {
+        return enabled && model != null;
+    }
+
+    /**
+     * Puntúa el texto y devuelve un veredicto solo si el modelo está seguro.
+     */
+    public Optional<ClassifierVerdict> classify(String text) {
+        ToxicityModel current = model;
+        if (!enabled || current == null) {
+            return Optional.empty();
+        }
+        long start = System.nanoTime();
+        double score = current.score(text);
+        totalNanos.add(System.nanoTime() - start);
+
+        if (score < current.acceptBelow()) {
+            accepted.increment();
+            return Optional.of(new ClassifierVerdict(score, false));
+        }
+        if (score > current.rejectAbove()) {
+            rejected.increment();
+            return Optional.of(new ClassifierVerdict(score, true));
+        }
+        escalated.increment();
+        return Optional.empty();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        ToxicityModel current = model;
+        long total = accepted.sum() + rejected.sum() + escalated.sum();
+        stats.put("ready", isReady());
+        stats.put("model_path", modelPath);
+        if (current != null) {
+            stats.put("accept_below", current.acceptBelow());
+            stats.put("reject_above", current.rejectAbove());
+        }
+        stats.put("accepted", accepted.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("escalated", escalated.sum());
+        stats.put("decided_ratio", total == 0 ? 0.0 : (double) (accepted.sum() + rejected.sum()) / total);
+        stats.put("avg_micros", total == 0 ? 0.0 : totalNanos.sum() / 1000.0 / total);
+        return stats;
+    }
+
+    /**
+     * Veredicto seguro del clasificador; {@code toxicityScore} va de 0.0 (limpio) a 1.0 (tóxico).
+     */
+    public record ClassifierVerdict(double toxicityScore, boolean toxic) {}
+}
@@ -0,0 +1,254 @@
+package alicanteweb.pelisapp.service.moderation;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Modelo de regresión logística sobre n-gramas con hashing (feature hashing).
+ *
+ * <p>Las características salen del texto plegado igual que en {@link ProhibitedTermMatcher}
+ * (minúsculas, sin tildes, leetspeak → letras): palabras, pares de palabras consecutivas y
+ * trigramas de caracteres dentro de cada palabra, estos últimos para cubrir faltas y variantes.
+ * Cada n-grama se proyecta con un hash a una de {@code dims} posiciones con signo ±1, así el
+ * modelo ocupa lo mismo tenga el vocabulario que tenga.</p>
+ *
+ * <p>Además de los pesos guarda dos umbrales calibrados en el entrenamiento: por debajo de
+ * {@code acceptBelow} el texto se da por limpio, por encima de {@code rejectAbove} por tóxico,
+ * y entre ambos el modelo no está seguro y se debe consultar al LLM.</p>
+ *
+ * <p>Formato binario (big-endian): magic "PTXM", versión, dims, sesgo, umbrales, número de pesos
+ * distintos de cero y, por cada uno, el salto desde el índice anterior en varint y el peso en float.</p>
+ */
+public final class ToxicityModel {
+
+    private static final int MAGIC = 0x5054584D; // "PTXM"
+    private static final int VERSION = 1;
+    // 2^24 pesos (64 MB): muy por encima de lo que usa el entrenador, y acota lo que reserva un archivo corrupto
+    private static final int MAX_DIMS = 1 << 24;
+
+    private static final int SEED_WORD = 0x9E3779B1;
+    private static final int SEED_BIGRAM = 0x85EBCA77;
+    private static final int SEED_TRIGRAM = 0xC2B2AE3D;
+
+    private final int dims;
+    private final float bias;
+    private final float[] weights;
+    private final double acceptBelow;
+    private final double rejectAbove;
+
+    ToxicityModel(int dims, float bias, float[] weights, double acceptBelow, double rejectAbove) {
+        if (Integer.bitCount(dims) != 1 || weights.length != dims) {
+            throw new IllegalArgumentException("dims debe ser potencia de dos y coincidir con los pesos");
+        }
+        this.dims = dims;
+        this.bias = bias;
+        this.weights = weights;
+        this.acceptBelow = acceptBelow;
+        this.rejectAbove = rejectAbove;
+    }
+
+    /**
+     * Probabilidad de que el texto sea tóxico (0.0 limpio, 1.0 tóxico).
+     */
+    public double score(String text) {
+        return sigmoid(margin(features(text, dims)));
+    }
+
+    public int dims() {
+        return dims;
+    }
+
+    public double acceptBelow() {
+        return acceptBelow;
+    }
+
+    public double rejectAbove() {
+        return rejectAbove;
+    }
+
+    public int nonZeroWeights() {
+        int count = 0;
+        for (float w : weights) {
+            if (w != 0f) count++;
+        }
+        return count;
+    }
+
+    ToxicityModel withThresholds(double newAcceptBelow, double newRejectAbove) {
+        return new ToxicityModel(dims, bias, weights, newAcceptBelow, newRejectAbove);
+    }
+
+    double margin(int[] features) {
+        if (features.length == 0) {
+            return bias;
+        }
+        double sum = 0.0;
+        for (int feature : features) {
+            sum += feature >= 0 ? weights[feature] : -weights[~feature];
+        }
+        return bias + sum / Math.sqrt(features.length);
+    }
+
+    static double sigmoid(double x) {
+        return 1.0 / (1.0 + Math.exp(-x));
+    }
+
+    // Serialización
+
+    public void write(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(dims);
+        data.writeFloat(bias);
+        data.writeFloat((float) acceptBelow);
+        data.writeFloat((float) rejectAbove);
+        data.writeInt(nonZeroWeights());
+        int previous = -1;
+        for (int i = 0; i < dims; i++) {
+            if (weights[i] != 0f) {
+                writeVarInt(data, i - previous);
+                data.writeFloat(weights[i]);
+                previous = i;
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * Lee un modelo escrito con {@link #write}. Un archivo truncado o corrupto lanza siempre
+     * {@link IOException}, para que quien lo carga pueda seguir sin modelo.
+     */
+    public static ToxicityModel read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("No es un modelo de toxicidad");
+        }
+        int version = data.readInt();
+        if (version != VERSION) {
+            throw new IOException("Versión de modelo no soportada: " + version);
+        }
+        int dims = data.readInt();
+        if (dims <= 0 || dims > MAX_DIMS || Integer.bitCount(dims) != 1) {
+            throw new IOException("Dimensiones de modelo no válidas: " + dims);
+        }
+        float bias = data.readFloat();
+        double acceptBelow = data.readFloat();
+        double rejectAbove = data.readFloat();
+        int nonZero = data.readInt();
+        if (nonZero < 0 || nonZero > dims) {
+            throw new IOException("Número de pesos no válido: " + nonZero);
+        }
+        float[] weights = new float[dims];
+        long index = -1;
+        for (int i = 0; i < nonZero; i++) {
+            int step = readVarInt(data);
+            index += step;
+            if (step <= 0 || index >= dims) {
+                throw new IOException("Índice de peso fuera de rango en la posición " + i);
+            }
+            weights[(int) index] = data.readFloat();
+        }
+        return new ToxicityModel(dims, bias, weights, acceptBelow, rejectAbove);
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            if (shift > 28) {
+                throw new IOException("Varint demasiado largo");
+            }
+            b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    // Extracción de características
+
+    /**
+     * Índices de las características del texto. Un valor negativo {@code ~i} indica la posición
+     * {@code i} con signo -1.
+     */
+    static int[] features(String text, int dims) {
+        if (text == null || text.isEmpty()) {
+            return new int[0];
+        }
+        char[] buffer = new char[text.length()];
+        int length = ProhibitedTermMatcher.fold(text, buffer);
+
+        int mask = dims - 1;
+        int[] out = new int[Math.max(4, length * 3)];
+        int count = 0;
+
+        int wordStart = 0;
+        int previousWordHash = 0;
+        boolean hasPreviousWord = false;
+        for (int i = 0; i <= length; i++) {
+            if (i < length && buffer[i] != ' ') {
+                continue;
+            }
+            if (i > wordStart) {
+                int wordHash = hash(buffer, wordStart, i, SEED_WORD);
+                if (count + 2 + (i - wordStart) > out.length) {
+                    out = Arrays.copyOf(out, out.length * 2 + i - wordStart);
+                }
+                out[count++] = toFeature(wordHash, mask);
+                if (hasPreviousWord) {
+                    out[count++] = toFeature(mix(previousWordHash * 31 + wordHash, SEED_BIGRAM), mask);
+                }
+                // Trigramas de la palabra con bordes: "^pu", "put", "uta", "ta$"
+                for (int start = wordStart - 1; start + 3 <= i + 1; start++) {
+                    int h = SEED_TRIGRAM;
+                    for (int k = start; k < start + 3; k++) {
+                        char c = k < wordStart ? '^' : k >= i ? '$' : buffer[k];
+                        h = (h ^ c) * 0x01000193;
+                    }
+                    out[count++] = toFeature(mix(h, SEED_TRIGRAM), mask);
+                }
+                previousWordHash = wordHash;
+                hasPreviousWord = true;
+            }
+            wordStart = i + 1;
+        }
+        return Arrays.copyOf(out, count);
+    }
+
+    private static int hash(char[] buffer, int from, int to, int seed) {
+        int h = seed;
+        for (int i = from; i < to; i++) {
+            h = (h ^ buffer[i]) * 0x01000193;
+        }
+        return mix(h, seed);
+    }
+
+    private static int mix(int h, int seed) {
+        h ^= seed;
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static int toFeature(int hash, int mask) {
+        int index = hash & mask;
+        return hash < 0 ? ~index : index;
+    }
+}
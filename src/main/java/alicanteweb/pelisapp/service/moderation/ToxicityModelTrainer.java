@@ -0,0 +1,201 @@
+package alicanteweb.pelisapp.service.moderation;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Entrenamiento offline de {@link ToxicityModel} a partir de decisiones de moderación ya tomadas.
+ *
+ * <p>Regresión logística con descenso de gradiente estocástico (AdaGrad), regularización L2 y
+ * clases equilibradas, porque las reseñas tóxicas son minoría. Una parte de los ejemplos se
+ * reserva para calibrar los umbrales de decisión: se eligen los más amplios que mantienen la
+ * precisión objetivo en las decisiones automáticas, y el resto se escala al LLM.</p>
+ *
+ * <p>Se entrena con una exportación TSV ({@code etiqueta<TAB>texto}, etiqueta 1 = tóxico,
+ * 0 = limpio), como la que genera {@code GET /api/admin/moderation/training-export}, desde la
+ * herramienta de línea de comandos de las fuentes de test:</p>
+ * <pre>
+ * mvn -Ptrain-toxicity-model test-compile exec:java -Dexport=moderation.tsv -Dmodel=data/toxicity-model.bin
+ * </pre>
+ */
+public final class ToxicityModelTrainer {
+
+    private ToxicityModelTrainer() {
+        // Clase de utilidad
+    }
+
+    /**
+     * Ejemplo etiquetado: {@code toxic} es la decisión final (REJECTED) frente a APPROVED.
+     */
+    public record Sample(String text, boolean toxic) {}
+
+    /**
+     * Parámetros de entrenamiento.
+     */
+    public record Options(int dims, int epochs, double learningRate, double l2,
+                          double holdoutFraction, double targetPrecision, long seed) {
+        public static final Options DEFAULTS = new Options(1 << 18, 12, 0.5, 1e-6, 0.2, 0.98, 42L);
+    }
+
+    /**
+     * Resultado del entrenamiento con métricas sobre la parte reservada.
+     */
+    public record TrainingReport(ToxicityModel model, int trainSamples, int holdoutSamples,
+                                 double holdoutAccuracy, double autoDecidedFraction, double autoDecidedAccuracy) {}
+
+    public static TrainingReport train(List<Sample> samples, Options options) {
+        if (samples.isEmpty()) {
+            throw new IllegalArgumentException("No hay ejemplos para entrenar");
+        }
+        List<Sample> shuffled = new ArrayList<>(samples);
+        Random random = new Random(options.seed());
+        Collections.shuffle(shuffled, random);
+
+        int holdoutSize = (int) Math.round(shuffled.size() * options.holdoutFraction());
+        List<Sample> holdout = shuffled.subList(0, holdoutSize);
+        List<Sample> training = shuffled.subList(holdoutSize, shuffled.size());
+        if (training.isEmpty()) {
+            training = holdout;
+        }
+
+        int dims = options.dims();
+        int[][] features = new int[training.size()][];
+        boolean[] labels = new boolean[training.size()];
+        int positives = 0;
+        for (int i = 0; i < training.size(); i++) {
+            features[i] = ToxicityModel.features(training.get(i).text(), dims);
+            labels[i] = training.get(i).toxic();
+            if (labels[i]) positives++;
+        }
+        int negatives = training.size() - positives;
+        // Pesos de clase: cada clase aporta lo mismo al gradiente total
+        double positiveWeight = positives == 0 ? 1.0 : training.size() / (2.0 * positives);
+        double negativeWeight = negatives == 0 ? 1.0 : training.size() / (2.0 * negatives);
+
+        float[] weights = new float[dims];
+        float[] gradSquares = new float[dims];
+        double bias = 0.0;
+        double biasGradSquares = 0.0;
+        int[] order = new int[training.size()];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+
+        for (int epoch = 0; epoch < options.epochs(); epoch++) {
+            shuffle(order, random);
+            for (int idx : order) {
+                int[] x = features[idx];
+                double scale = x.length == 0 ? 0.0 : 1.0 / Math.sqrt(x.length);
+                double margin = bias;
+                for (int f : x) {
+                    margin += (f >= 0 ? weights[f] : -weights[~f]) * scale;
+                }
+                double error = ToxicityModel.sigmoid(margin) - (labels[idx] ? 1.0 : 0.0);
+                error *= labels[idx] ? positiveWeight : negativeWeight;
+
+                biasGradSquares += error * error;
+                bias -= options.learningRate() * error / Math.sqrt(biasGradSquares + 1e-8);
+
+                for (int f : x) {
+                    int i = f >= 0 ? f : ~f;
+                    double g = error * scale * (f >= 0 ? 1.0 : -1.0) + options.l2() * weights[i];
+                    gradSquares[i] += (float) (g * g);
+                    weights[i] -= (float) (options.learningRate() * g / Math.sqrt(gradSquares[i] + 1e-8));
+                }
+            }
+        }
+
+        ToxicityModel model = new ToxicityModel(dims, (float) bias, weights, 0.5, 0.5);
+        return calibrate(model, holdout.isEmpty() ? training : holdout, training.size(), holdout.size(),
+                options.targetPrecision());
+    }
+
+    /**
+     * Elige los umbrales de aceptación y rechazo sobre la parte reservada.
+     */
+    private static TrainingReport calibrate(ToxicityModel model, List<Sample> holdout, int trainSize,
+                                            int holdoutSize, double targetPrecision) {
+        int n = holdout.size();
+        double[] scores = new double[n];
+        boolean[] toxic = new boolean[n];
+        Integer[] byScore = new Integer[n];
+        int correct = 0;
+        for (int i = 0; i < n; i++) {
+            scores[i] = model.score(holdout.get(i).text());
+            toxic[i] = holdout.get(i).toxic();
+            byScore[i] = i;
+            if ((scores[i] >= 0.5) == toxic[i]) correct++;
+        }
+        Arrays.sort(byScore, (a, b) -> Double.compare(scores[a], scores[b]));
+
+        // Aceptar: prefijo más largo (scores bajos) con proporción de limpios >= objetivo
+        double acceptBelow = 0.0;
+        int clean = 0;
+        for (int k = 0; k < n; k++) {
+            int i = byScore[k];
+            if (!toxic[i]) clean++;
+            if ((double) clean / (k + 1) >= targetPrecision && (k + 1 == n || scores[byScore[k + 1]] > scores[i])) {
+                acceptBelow = Math.min(0.5, k + 1 == n ? scores[i] : (scores[i] + scores[byScore[k + 1]]) / 2);
+            }
+        }
+
+        // Rechazar: sufijo más largo (scores altos) con proporción de tóxicos >= objetivo
+        double rejectAbove = 1.0;
+        int bad = 0;
+        for (int k = n - 1; k >= 0; k--) {
+            int i = byScore[k];
+            if (toxic[i]) bad++;
+            if ((double) bad / (n - k) >= targetPrecision && (k == 0 || scores[byScore[k - 1]] < scores[i])) {
+                rejectAbove = Math.max(0.5, k == 0 ? scores[i] : (scores[i] + scores[byScore[k - 1]]) / 2);
+            }
+        }
+
+        int decided = 0;
+        int decidedCorrect = 0;
+        for (int i = 0; i < n; i++) {
+            if (scores[i] < acceptBelow || scores[i] > rejectAbove) {
+                decided++;
+                if ((scores[i] > rejectAbove) == toxic[i]) decidedCorrect++;
+            }
+        }
+
+        return new TrainingReport(model.withThresholds(acceptBelow, rejectAbove), trainSize, holdoutSize,
+                n == 0 ? 0.0 : (double) correct / n,
+                n == 0 ? 0.0 : (double) decided / n,
+                decided == 0 ? 0.0 : (double) decidedCorrect / decided);
+    }
+
+    private static void shuffle(int[] array, Random random) {
+        for (int i = array.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = array[i];
+            array[i] = array[j];
+            array[j] = tmp;
+        }
+    }
+
+    /**
+     * Lee una exportación TSV: {@code etiqueta<TAB>texto}. Ignora líneas vacías y comentarios (#).
+     */
+    public static List<Sample> readTsv(Path path) throws IOException {
+        List<Sample> samples = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                if (line.isBlank() || line.startsWith("#") || tab < 0) {
+                    continue;
+                }
+                String label = line.substring(0, tab).trim();
+                samples.add(new Sample(line.substring(tab + 1), "1".equals(label)));
+            }
+        }
+        return samples;
+    }
+}
@@ -0,0 +1,44 @@
+package alicanteweb.pelisapp.service.moderation;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+/**
+ * Reutiliza veredictos del LLM para textos ya vistos (mismo hash normalizado o casi duplicado).
+ * Un casi duplicado solo se reutiliza si era tóxico o si las reglas no encuentran nada en el texto nuevo,
+ * para que añadir un insulto a un texto aprobado no herede la aprobación.
+ */
+@Component
+@RequiredArgsConstructor
+public class VerdictCacheStage implements ModerationStage {
+
+    private final ModerationVerdictCache verdictCache;
+    private final ContentAnalyzer contentAnalyzer;
+    private final ModerationThresholds thresholds;
+
+    @Override
+    public String name() {
+        return "verdict_cache";
+    }
+
+    @Override
+    public boolean appliesTo(ModerationContext context) {
+        return context.mode() != ModerationContext.Mode.APPEAL && context.fingerprint() != null;
+    }
+
+    @Override
+    public StageDecision evaluate(ModerationContext context) {
+        Optional<ModerationVerdictCache.VerdictHit> hit = verdictCache.lookup(context.fingerprint())
+                .filter(cached -> !cached.nearDuplicate()
+                        || cached.toxicityScore() >= thresholds.toxicityThreshold()
+                        || context.contentAnalysis(contentAnalyzer).badWordCount() == 0);
+        if (hit.isEmpty()) {
+            return StageDecision.defer();
+        }
+        double score = hit.get().toxicityScore();
+        return new StageDecision(thresholds.outcomeFor(score, ModerationThresholds.AI_MANUAL_REVIEW),
+                score, hit.get().reason(), true);
+    }
+}
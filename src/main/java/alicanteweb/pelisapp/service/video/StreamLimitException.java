@@ -0,0 +1,18 @@
+package alicanteweb.pelisapp.service.video;
+
+/**
+ * No se admite otra conexión de vídeo: límite del usuario ({@link #isPerUser()}) o límite total.
+ */
+public class StreamLimitException extends RuntimeException {
+
+    private final boolean perUser;
+
+    public StreamLimitException(boolean perUser, String message) {
+        super(message);
+        this.perUser = perUser;
+    }
+
+    public boolean isPerUser() {
+        return perUser;
+    }
+}
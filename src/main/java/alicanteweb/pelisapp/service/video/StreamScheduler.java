@@ -0,0 +1,234 @@
+package alicanteweb.pelisapp.service.video;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.InterruptedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reparte el ancho de banda de salida entre las conexiones de vídeo.
+ *
+ * <p>Limita las conexiones simultáneas (en total y por usuario) y regula cada conexión con un token
+ * bucket propio más uno global compartido. La reproducción ({@link Kind#PLAYBACK}) tiene más ritmo y
+ * puede gastar todo el cubo global; las descargas completas ({@link Kind#BULK}) van más despacio y
+ * solo usan el global mientras quede una reserva, así unas pocas descargas no dejan sin ancho de banda
+ * a quien está viendo una película.</p>
+ */
+@Component
+@Slf4j
+public class StreamScheduler {
+
+    /**
+     * Tipo de conexión: reproducción en el navegador o descarga del archivo.
+     */
+    public enum Kind {
+        PLAYBACK, BULK
+    }
+
+    private final int maxStreams;
+    private final int maxStreamsPerUser;
+    private final long playbackBytesPerSecond;
+    private final long playbackBurstBytes;
+    private final long bulkBytesPerSecond;
+    private final TokenBucket global;
+    private final double bulkReserveBytes;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final Map<Kind, AtomicInteger> activeByKind = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, AtomicInteger> activeByUser = new ConcurrentHashMap<>();
+
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder throttledNanos = new LongAdder();
+    private final LongAdder rejectedGlobal = new LongAdder();
+    private final LongAdder rejectedPerUser = new LongAdder();
+    private final RateWindow rate = new RateWindow();
+
+    public StreamScheduler(@Value("${app.video.streams.max:50}") int maxStreams,
+                           @Value("${app.video.streams.max-per-user:4}") int maxStreamsPerUser,
+                           @Value("${app.video.bandwidth.playback-bytes-per-second:4194304}") long playbackBytesPerSecond,
+                           @Value("${app.video.bandwidth.playback-burst-bytes:8388608}") long playbackBurstBytes,
+                           @Value("${app.video.bandwidth.bulk-bytes-per-second:2097152}") long bulkBytesPerSecond,
+                           @Value("${app.video.bandwidth.global-bytes-per-second:104857600}") long globalBytesPerSecond,
+                           @Value("${app.video.bandwidth.bulk-reserve-fraction:0.25}") double bulkReserveFraction) {
+        this.maxStreams = maxStreams;
+        this.maxStreamsPerUser = maxStreamsPerUser;
+        this.playbackBytesPerSecond = playbackBytesPerSecond;
+        this.playbackBurstBytes = playbackBurstBytes;
+        this.bulkBytesPerSecond = bulkBytesPerSecond;
+        // Un segundo de ráfaga en el cubo global; las descargas no bajan de la reserva
+        this.global = globalBytesPerSecond > 0 ? new TokenBucket(globalBytesPerSecond, globalBytesPerSecond) : null;
+        this.bulkReserveBytes = Math.max(0, Math.min(1, bulkReserveFraction)) * globalBytesPerSecond;
+        for (Kind kind : Kind.values()) {
+            activeByKind.put(kind, new AtomicInteger());
+        }
+    }
+
+    /**
+     * Abre una conexión de {@code user}. Hay que cerrarla al terminar (try-with-resources).
+     *
+     * @throws StreamLimitException si se supera el límite total o el del usuario
+     */
+    public Stream open(String user, Kind kind) {
+        int userCount = activeByUser.compute(user, (u, count) -> {
+            AtomicInteger streams = count != null ? count : new AtomicInteger();
+            streams.incrementAndGet();
+            return streams;
+        }).get();
+        if (maxStreamsPerUser > 0 && userCount > maxStreamsPerUser) {
+            releaseUser(user);
+            rejectedPerUser.increment();
+            log.debug("Conexión de vídeo rechazada para {}: {} abiertas", user, userCount - 1);
+            throw new StreamLimitException(true, "Demasiadas reproducciones simultáneas para este usuario");
+        }
+        if (active.incrementAndGet() > maxStreams && maxStreams > 0) {
+            active.decrementAndGet();
+            releaseUser(user);
+            rejectedGlobal.increment();
+            log.debug("Conexión de vídeo rechazada para {}: límite total de {}", user, maxStreams);
+            throw new StreamLimitException(false, "Servidor de vídeo al máximo de conexiones");
+        }
+        activeByKind.get(kind).incrementAndGet();
+
+        long perConnection = kind == Kind.PLAYBACK ? playbackBytesPerSecond : bulkBytesPerSecond;
+        long burst = kind == Kind.PLAYBACK ? Math.max(playbackBurstBytes, perConnection) : perConnection;
+        TokenBucket own = perConnection > 0 ? new TokenBucket(perConnection, burst) : null;
+        return new Stream(user, kind, own);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("active_streams", active.get());
+        stats.put("active_playback", activeByKind.get(Kind.PLAYBACK).get());
+        stats.put("active_bulk", activeByKind.get(Kind.BULK).get());
+        stats.put("active_users", activeByUser.size());
+        stats.put("bytes_per_second", rate.perSecond());
+        stats.put("bytes_sent", bytesSent.sum());
+        stats.put("throttled_ms", TimeUnit.NANOSECONDS.toMillis(throttledNanos.sum()));
+        stats.put("rejected_global", rejectedGlobal.sum());
+        stats.put("rejected_per_user", rejectedPerUser.sum());
+        stats.put("max_streams", maxStreams);
+        stats.put("max_streams_per_user", maxStreamsPerUser);
+        return stats;
+    }
+
+    private void releaseUser(String user) {
+        activeByUser.computeIfPresent(user, (u, count) -> count.decrementAndGet() <= 0 ? null : count);
+    }
+
+    /**
+     * Conexión abierta: regula cada bloque antes de escribirlo y libera su plaza al cerrarse. Solo sin
+     * límites de ancho de banda ni de conexiones puede ir por sendfile: la plaza se libera al volver
+     * el controlador y con sendfile los bytes aún no se habrían enviado.
+     */
+    public final class Stream implements VideoRangeWriter.Throttle, AutoCloseable {
+
+        private final String user;
+        private final Kind kind;
+        private final TokenBucket own;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Stream(String user, Kind kind, TokenBucket own) {
+            this.user = user;
+            this.kind = kind;
+            this.own = own;
+        }
+
+        @Override
+        public void beforeWrite(long bytes) throws InterruptedIOException {
+            long wait = own != null ? own.consume(bytes, 0) : 0;
+            if (global != null) {
+                wait = Math.max(wait, global.consume(bytes, kind == Kind.PLAYBACK ? 0 : bulkReserveBytes));
+            }
+            if (wait > 0) {
+                throttledNanos.add(wait);
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Envío de vídeo interrumpido");
+                }
+            }
+            bytesSent.add(bytes);
+            rate.add(bytes);
+        }
+
+        @Override
+        public boolean writesInline() {
+            return own != null || global != null || maxStreams > 0 || maxStreamsPerUser > 0;
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                active.decrementAndGet();
+                activeByKind.get(kind).decrementAndGet();
+                releaseUser(user);
+            }
+        }
+    }
+
+    /**
+     * Token bucket de bytes con recarga continua. {@link #consume} descuenta siempre (puede quedar en
+     * deuda) y devuelve los nanosegundos que hay que esperar para que el saldo vuelva a {@code floor}.
+     */
+    static final class TokenBucket {
+        private final double capacity;
+        private final double tokensPerNano;
+        private double tokens;
+        private long lastRefill;
+
+        TokenBucket(long bytesPerSecond, long capacity) {
+            this.capacity = capacity;
+            this.tokensPerNano = bytesPerSecond / (double) TimeUnit.SECONDS.toNanos(1);
+            this.tokens = capacity;
+            this.lastRefill = System.nanoTime();
+        }
+
+        synchronized long consume(long bytes, double floor) {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+            lastRefill = now;
+            tokens -= bytes;
+            return tokens >= floor ? 0 : (long) Math.ceil((floor - tokens) / tokensPerNano);
+        }
+    }
+
+    /**
+     * Bytes enviados en los últimos segundos, en una ventana circular de un segundo por casilla.
+     */
+    static final class RateWindow {
+        private static final int SECONDS = 10;
+        private final AtomicLongArray bytes = new AtomicLongArray(SECONDS);
+        private final AtomicLongArray stamps = new AtomicLongArray(SECONDS);
+
+        void add(long count) {
+            long second = System.currentTimeMillis() / 1000;
+            int slot = (int) (second % SECONDS);
+            long stamp = stamps.get(slot);
+            if (stamp != second && stamps.compareAndSet(slot, stamp, second)) {
+                bytes.set(slot, 0);
+            }
+            bytes.addAndGet(slot, count);
+        }
+
+        long perSecond() {
+            long now = System.currentTimeMillis() / 1000;
+            long total = 0;
+            for (int i = 0; i < SECONDS; i++) {
+                if (now - stamps.get(i) < SECONDS) {
+                    total += bytes.get(i);
+                }
+            }
+            return total / SECONDS;
+        }
+    }
+}
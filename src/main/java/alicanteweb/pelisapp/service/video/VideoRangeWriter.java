@@ -0,0 +1,303 @@
+package alicanteweb.pelisapp.service.video;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Escribe archivos de vídeo con peticiones de rango HTTP sin cargarlos en el heap.
+ *
+ * <p>Admite rangos {@code a-b}, {@code a-} y sufijos {@code -n}, varios rangos en una respuesta
+ * {@code multipart/byteranges}, {@code If-Range} (ETag o fecha) y las respuestas 206/416. Cada región
+ * se envía con {@link FileChannel#transferTo} por bloques, o con sendfile de Tomcat cuando es un único
+ * rango y el conector lo soporta: buscar en un archivo de 4 GB solo mueve los bytes pedidos.</p>
+ *
+ * <p>Con un {@link Throttle} que regula (ver {@link StreamScheduler}) se envía en bloques más pequeños
+ * y se pide permiso antes de cada uno; sendfile no se usa porque no se podría regular. Si el
+ * {@code Throttle} solo cuenta bytes y no retiene nada hasta el final ({@link Throttle#writesInline()}
+ * falso), se usa sendfile igualmente.</p>
+ */
+@Component
+@Slf4j
+public class VideoRangeWriter {
+
+    static final int MAX_RANGES = 16;
+    private static final long CHUNK_BYTES = 1024 * 1024;
+    private static final long THROTTLED_CHUNK_BYTES = 256 * 1024;
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * Regulación del envío: se llama antes de escribir cada bloque y puede esperar.
+     */
+    public interface Throttle {
+        Throttle NONE = new Throttle() {
+            @Override
+            public void beforeWrite(long bytes) {
+            }
+
+            @Override
+            public boolean writesInline() {
+                return false;
+            }
+        };
+
+        void beforeWrite(long bytes) throws IOException;
+
+        /**
+         * {@code false} si {@link #beforeWrite} nunca espera y no hay nada que liberar al terminar el
+         * envío: entonces se avisa una sola vez con toda la región y se puede enviar con sendfile, que
+         * Tomcat hace después de que el controlador haya vuelto.
+         */
+        default boolean writesInline() {
+            return true;
+        }
+    }
+
+    /**
+     * Rango de bytes inclusivo.
+     */
+    record ByteRange(long start, long end) {
+        long length() {
+            return end - start + 1;
+        }
+    }
+
+    /**
+     * Escribe {@code file} completo o los rangos pedidos en {@code Range}.
+     *
+     * @param disposition {@code inline} o {@code attachment}
+     */
+    public void write(HttpServletRequest request, HttpServletResponse response, Path file,
+                      String contentType, String disposition) throws IOException {
+        write(request, response, file, contentType, disposition, Throttle.NONE);
+    }
+
+    /**
+     * Igual que {@link #write(HttpServletRequest, HttpServletResponse, Path, String, String)} regulando
+     * cada bloque con {@code throttle}.
+     */
+    public void write(HttpServletRequest request, HttpServletResponse response, Path file,
+                      String contentType, String disposition, Throttle throttle) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        String etag = "\"" + Long.toHexString(size) + "-" + Long.toHexString(lastModified) + "\"";
+
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                disposition + "; filename=\"" + file.getFileName().toString().replace("\"", "") + "\"");
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return;
+        }
+
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        List<ByteRange> ranges = null;
+        if (rangeHeader != null && ifRangeMatches(request.getHeader(HttpHeaders.IF_RANGE), etag, lastModified)) {
+            ranges = parseRanges(rangeHeader, size);
+        }
+
+        if (ranges != null && ranges.isEmpty()) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return;
+        }
+        boolean head = "HEAD".equals(request.getMethod());
+        if (ranges == null) {
+            response.setContentType(contentType);
+            response.setContentLengthLong(size);
+            if (!head) {
+                send(request, response, file, new ByteRange(0, size - 1), size, throttle);
+            }
+            return;
+        }
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        if (ranges.size() == 1) {
+            ByteRange range = ranges.get(0);
+            log.debug("📊 Sirviendo rango: bytes {}-{}/{}", range.start(), range.end(), size);
+            response.setContentType(contentType);
+            response.setContentLengthLong(range.length());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, contentRange(range, size));
+            if (!head) {
+                send(request, response, file, range, size, throttle);
+            }
+            return;
+        }
+
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        List<byte[]> partHeaders = new ArrayList<>(ranges.size());
+        long length = 0;
+        for (ByteRange range : ranges) {
+            byte[] partHeader = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + contentRange(range, size) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(partHeader);
+            length += partHeader.length + range.length();
+        }
+        byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        length += closing.length;
+
+        log.debug("📊 Sirviendo {} rangos de {} ({} bytes)", ranges.size(), file.getFileName(), length);
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(length);
+        if (head) {
+            return;
+        }
+        OutputStream out = response.getOutputStream();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (int i = 0; i < ranges.size(); i++) {
+                out.write(partHeaders.get(i));
+                transfer(channel, ranges.get(i), out, throttle);
+            }
+        }
+        out.write(closing);
+    }
+
+    /**
+     * Rangos de {@code Range} ajustados al tamaño, ordenados y fusionados si se solapan.
+     * Devuelve null si la cabecera no es válida o pide demasiados rangos (se sirve el archivo entero)
+     * y una lista vacía si ningún rango se puede satisfacer (416).
+     */
+    static List<ByteRange> parseRanges(String header, long size) {
+        if (!header.startsWith("bytes=")) {
+            return null;
+        }
+        String[] specs = header.substring("bytes=".length()).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+        List<ByteRange> ranges = new ArrayList<>(specs.length);
+        try {
+            for (String raw : specs) {
+                String spec = raw.trim();
+                int dash = spec.indexOf('-');
+                if (dash < 0) {
+                    return null;
+                }
+                String first = spec.substring(0, dash).trim();
+                String last = spec.substring(dash + 1).trim();
+                long start;
+                long end;
+                if (first.isEmpty()) {
+                    // Sufijo: los últimos n bytes
+                    long suffix = Long.parseLong(last);
+                    if (suffix < 0) {
+                        return null;
+                    }
+                    if (suffix == 0 || size == 0) {
+                        continue;
+                    }
+                    start = Math.max(0, size - suffix);
+                    end = size - 1;
+                } else {
+                    start = Long.parseLong(first);
+                    end = last.isEmpty() ? size - 1 : Long.parseLong(last);
+                    if (start < 0 || end < start) {
+                        return null;
+                    }
+                    if (start >= size) {
+                        continue;
+                    }
+                    end = Math.min(end, size - 1);
+                }
+                ranges.add(new ByteRange(start, end));
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        ranges.sort(Comparator.comparingLong(ByteRange::start));
+        List<ByteRange> merged = new ArrayList<>(ranges.size());
+        for (ByteRange range : ranges) {
+            ByteRange previous = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (previous != null && range.start() <= previous.end() + 1) {
+                merged.set(merged.size() - 1, new ByteRange(previous.start(), Math.max(previous.end(), range.end())));
+            } else {
+                merged.add(range);
+            }
+        }
+        return merged;
+    }
+
+    private static boolean ifRangeMatches(String ifRange, String etag, long lastModified) {
+        if (ifRange == null || ifRange.isBlank()) {
+            return true;
+        }
+        String value = ifRange.trim();
+        if (value.startsWith("\"") || value.startsWith("W/")) {
+            // If-Range exige comparación fuerte
+            return value.equals(etag);
+        }
+        try {
+            long date = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            return date / 1000 == lastModified / 1000;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private static String contentRange(ByteRange range, long size) {
+        return "bytes " + range.start() + "-" + range.end() + "/" + size;
+    }
+
+    private void send(HttpServletRequest request, HttpServletResponse response, Path file,
+                      ByteRange range, long size, Throttle throttle) throws IOException {
+        if (size == 0) {
+            return;
+        }
+        if (!throttle.writesInline() && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // Tomcat envía la región con sendfile al terminar el servlet
+            throttle.beforeWrite(range.length());
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, range.start());
+            request.setAttribute(SENDFILE_END, range.end() + 1);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            transfer(channel, range, response.getOutputStream(), throttle);
+        }
+    }
+
+    private static void transfer(FileChannel channel, ByteRange range, OutputStream out, Throttle throttle)
+            throws IOException {
+        WritableByteChannel target = Channels.newChannel(out);
+        long chunk = !throttle.writesInline() ? CHUNK_BYTES : THROTTLED_CHUNK_BYTES;
+        long position = range.start();
+        long end = range.end() + 1;
+        while (position < end) {
+            long length = Math.min(chunk, end - position);
+            throttle.beforeWrite(length);
+            long sent = channel.transferTo(position, length, target);
+            if (sent <= 0 && position >= channel.size()) {
+                throw new IOException("El archivo ha encogido mientras se enviaba");
+            }
+            position += sent;
+        }
+    }
+}
@@ -231,11 +231,19 @@ public class TMDBClient {
 
     /** Devuelve la URL completa del poster con el tamaño elegido (cached) */
     public String buildImageUrl(String posterPath) {
+        ensureConfigurationLoaded();
+        return buildImageUrl(posterPath, (posterSize != null && !posterSize.isBlank()) ? posterSize : "w500");
+    }
+
+    /**
+     * Igual que {@link #buildImageUrl(String)} pero con un tamaño concreto de TMDB (w92, w185, w342...).
+     */
+    public String buildImageUrl(String posterPath, String size) {
         if (posterPath == null || posterPath.isBlank()) return null;
+        if (posterPath.startsWith("http")) return posterPath;
         ensureConfigurationLoaded();
         String clean = posterPath.startsWith("/") ? posterPath : ("/" + posterPath);
         String base = (imagesBaseUrl != null && !imagesBaseUrl.isBlank()) ? imagesBaseUrl : "https://image.tmdb.org/t/p";
-        String size = (posterSize != null && !posterSize.isBlank()) ? posterSize : "w500";
         String full = base + "/" + size + clean;
         log.debug("buildImageUrl posterPath={} -> {}", posterPath, full);
         return full;
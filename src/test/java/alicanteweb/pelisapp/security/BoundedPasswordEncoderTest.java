@@ -0,0 +1,135 @@
+package alicanteweb.pelisapp.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedPasswordEncoderTest {
+
+    @Test
+    void verifiesAndDelegatesUpgrade() {
+        ThreadPoolExecutor executor = pool(1, 1);
+        try {
+            BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(new BCryptPasswordEncoder(6), executor, 5000);
+            String hash = encoder.encode("secreto");
+
+            assertTrue(encoder.matches("secreto", hash));
+            assertFalse(encoder.matches("otro", hash));
+            assertTrue(new BoundedPasswordEncoder(new BCryptPasswordEncoder(8), executor, 5000).upgradeEncoding(hash));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void rejectsImmediatelyWhenPoolIsSaturated() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ThreadPoolExecutor executor = pool(1, 1);
+        try {
+            // Ocupa el único hilo y el único hueco de la cola
+            executor.execute(() -> await(release));
+            executor.execute(() -> await(release));
+
+            BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(new BlockingEncoder(), executor, 5000);
+            LoginThrottledException ex = assertThrows(LoginThrottledException.class, () -> encoder.matches("a", "b"));
+            assertTrue(ex.getRetryAfterSeconds() >= 1);
+            assertEquals(1, encoder.getRejectedCount());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void timesOutWhenQueuedTooLong() {
+        CountDownLatch release = new CountDownLatch(1);
+        ThreadPoolExecutor executor = pool(1, 4);
+        try {
+            executor.execute(() -> await(release));
+
+            BoundedPasswordEncoder encoder = new BoundedPasswordEncoder(new BlockingEncoder(), executor, 50);
+            assertThrows(LoginThrottledException.class, () -> encoder.matches("a", "b"));
+            assertEquals(1, encoder.getTimedOutCount());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void timeoutFreesTheQueueSlotAndInterruptsTheWorker() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ThreadPoolExecutor executor = pool(1, 4);
+        try {
+            executor.execute(() -> await(release));
+
+            BoundedPasswordEncoder queued = new BoundedPasswordEncoder(new BlockingEncoder(), executor, 50);
+            assertThrows(LoginThrottledException.class, () -> queued.matches("a", "b"));
+            assertTrue(executor.getQueue().isEmpty());
+            release.countDown();
+
+            CountDownLatch interrupted = new CountDownLatch(1);
+            BoundedPasswordEncoder running = new BoundedPasswordEncoder(new HangingEncoder(interrupted), executor, 50);
+            assertThrows(LoginThrottledException.class, () -> running.matches("a", "b"));
+            assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    private static ThreadPoolExecutor pool(int threads, int queueCapacity) {
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class BlockingEncoder implements PasswordEncoder {
+        @Override
+        public String encode(CharSequence rawPassword) {
+            return rawPassword.toString();
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return rawPassword.toString().equals(encodedPassword);
+        }
+    }
+
+    private static final class HangingEncoder implements PasswordEncoder {
+        private final CountDownLatch interrupted;
+
+        HangingEncoder(CountDownLatch interrupted) {
+            this.interrupted = interrupted;
+        }
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            return rawPassword.toString();
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            try {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package alicanteweb.pelisapp.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClientIpResolverTest {
+
+    private final ClientIpResolver resolver = new ClientIpResolver(List.of("127.0.0.1", "::1", "10.0.0.0/8"));
+
+    @Test
+    void ignoresForwardedHeadersFromUntrustedPeers() {
+        MockHttpServletRequest request = request("203.0.113.7", "198.51.100.1");
+        request.addHeader("X-Real-IP", "198.51.100.2");
+
+        assertEquals("203.0.113.7", resolver.resolve(request));
+    }
+
+    @Test
+    void takesTheFirstUntrustedHopFromTheRight() {
+        // El cliente pone lo que quiere a la izquierda; nuestro proxy añade la IP real al final
+        assertEquals("203.0.113.7", resolver.resolve(request("127.0.0.1", "1.2.3.4, 203.0.113.7, 10.1.2.3")));
+        assertEquals("203.0.113.7", resolver.resolve(request("0:0:0:0:0:0:0:1", "203.0.113.7")));
+        assertEquals("10.0.0.5", resolver.resolve(request("10.0.0.9", "10.0.0.5, 10.0.0.6")));
+
+        MockHttpServletRequest realIp = request("127.0.0.1", null);
+        realIp.addHeader("X-Real-IP", "203.0.113.8");
+        assertEquals("203.0.113.8", resolver.resolve(realIp));
+    }
+
+    @Test
+    void neverTrustsHostNames() {
+        assertFalse(resolver.isTrusted("localhost"));
+        assertFalse(resolver.isTrusted("abc"));
+        assertTrue(resolver.isTrusted("10.255.0.1"));
+        assertFalse(resolver.isTrusted("11.0.0.1"));
+    }
+
+    private static MockHttpServletRequest request(String remoteAddr, String forwardedFor) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/video/1/movie.mp4");
+        request.setRemoteAddr(remoteAddr);
+        if (forwardedFor != null) {
+            request.addHeader("X-Forwarded-For", forwardedFor);
+        }
+        return request;
+    }
+}
@@ -0,0 +1,58 @@
+package alicanteweb.pelisapp.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+
+import java.security.Key;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coste de autenticar una petición: las tres verificaciones que hacía el filtro JWT frente a
+ * {@link JwtTokenProvider#parseAndVerify} con y sin la caché de tokens verificados.
+ * Ejecutar con: mvn -Pbenchmarks test-compile exec:exec -Dbenchmark=JwtTokenProvider
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtTokenProviderBenchmark {
+
+    private static final String SECRET = "changeit_0123456789_changeit_0123456789";
+
+    private Key key;
+    private JwtTokenProvider cached;
+    private JwtTokenProvider uncached;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        key = Keys.hmacShaKeyFor(SECRET.getBytes());
+        cached = new JwtTokenProvider(SECRET, 3_600_000, 86_400_000, 10_000, Duration.ofMinutes(5));
+        uncached = new JwtTokenProvider(SECRET, 3_600_000, 86_400_000, 0, Duration.ofMinutes(5));
+        token = cached.createAccessToken("usuario", Set.of("ROLE_USER", "ROLE_ADMIN"));
+    }
+
+    @Benchmark
+    public Object legacyTripleParse() {
+        boolean valid = Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token) != null;
+        String username = Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody().getSubject();
+        Claims claims = Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token).getBody();
+        return valid ? username + claims.get("roles") : null;
+    }
+
+    @Benchmark
+    public Object parseAndVerifyUncached() {
+        return uncached.parseAndVerify(token).orElseThrow();
+    }
+
+    @Benchmark
+    public Object parseAndVerifyCached() {
+        return cached.parseAndVerify(token).orElseThrow();
+    }
+}
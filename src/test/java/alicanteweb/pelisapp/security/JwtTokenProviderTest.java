@@ -0,0 +1,50 @@
+package alicanteweb.pelisapp.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtTokenProviderTest {
+
+    private static final String SECRET = "changeit_0123456789_changeit_0123456789";
+
+    private final JwtTokenProvider provider =
+            new JwtTokenProvider(SECRET, 60_000, 120_000, 100, Duration.ofMinutes(5));
+
+    @Test
+    void verifiedTokenCarriesClaimsAndIsServedFromCache() {
+        String token = provider.createAccessToken("ana", Set.of("ROLE_USER", "ROLE_ADMIN"));
+
+        JwtTokenProvider.VerifiedToken first = provider.parseAndVerify(token).orElseThrow();
+        assertEquals("ana", first.username());
+        assertEquals(Set.of("ROLE_USER", "ROLE_ADMIN"), first.roles());
+        assertEquals("access", first.type());
+        assertSame(first, provider.parseAndVerify(token).orElseThrow());
+    }
+
+    @Test
+    void tamperedAndForeignTokensAreRejectedEvenAfterAValidOneIsCached() {
+        String token = provider.createAccessToken("ana", Set.of("ROLE_USER"));
+        assertTrue(provider.parseAndVerify(token).isPresent());
+
+        String[] parts = token.split("\\.");
+        String forgedPayload = parts[1].substring(0, parts[1].length() - 2) + (parts[1].endsWith("A") ? "BB" : "AA");
+        assertTrue(provider.parseAndVerify(parts[0] + "." + forgedPayload + "." + parts[2]).isEmpty());
+
+        JwtTokenProvider other = new JwtTokenProvider("otro_secreto_0123456789_0123456789_xyz", 60_000, 120_000,
+                100, Duration.ofMinutes(5));
+        assertTrue(provider.parseAndVerify(other.createAccessToken("ana", Set.of("ROLE_ADMIN"))).isEmpty());
+        assertTrue(provider.parseAndVerify("no-es-un-token").isEmpty());
+    }
+
+    @Test
+    void expiredTokenIsNotAccepted() {
+        JwtTokenProvider shortLived = new JwtTokenProvider(SECRET, -1_000, 120_000, 100, Duration.ofMinutes(5));
+        String token = shortLived.createAccessToken("ana", Set.of("ROLE_USER"));
+        assertTrue(shortLived.parseAndVerify(token).isEmpty());
+        assertFalse(shortLived.validateToken(token));
+    }
+}
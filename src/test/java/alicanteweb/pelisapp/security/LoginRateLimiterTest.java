@@ -0,0 +1,35 @@
+package alicanteweb.pelisapp.security;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoginRateLimiterTest {
+
+    @Test
+    void onlyFailedPasswordsSpendTheUsernameBucket() {
+        LoginRateLimiter limiter = new LoginRateLimiter();
+        ReflectionTestUtils.setField(limiter, "ipCapacity", 100);
+        ReflectionTestUtils.setField(limiter, "ipRefillPerMinute", 1.0);
+        ReflectionTestUtils.setField(limiter, "usernameCapacity", 3);
+        ReflectionTestUtils.setField(limiter, "usernameRefillPerMinute", 1.0);
+        limiter.init();
+
+        // El dueño entra muchas veces seguidas sin bloquearse
+        for (int i = 0; i < 10; i++) {
+            limiter.checkAttempt("203.0.113.1", "ana");
+        }
+
+        // Tres contraseñas incorrectas desde IPs distintas agotan la cuenta, no a otros usuarios
+        for (int i = 0; i < 3; i++) {
+            limiter.checkAttempt("198.51.100." + i, "Ana");
+            limiter.recordFailure("Ana");
+        }
+        LoginThrottledException e = assertThrows(LoginThrottledException.class,
+                () -> limiter.checkAttempt("198.51.100.9", "ana"));
+        assertTrue(e.getRetryAfterSeconds() > 0);
+        limiter.checkAttempt("198.51.100.9", "luis");
+        assertEquals(1, limiter.getThrottledCount());
+    }
+}
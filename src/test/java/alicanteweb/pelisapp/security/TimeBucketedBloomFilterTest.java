@@ -0,0 +1,56 @@
+package alicanteweb.pelisapp.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimeBucketedBloomFilterTest {
+
+    private static final long HOUR = Duration.ofHours(1).toMillis();
+
+    @Test
+    void noFalseNegativesAndFalsePositiveRateNearTarget() {
+        TimeBucketedBloomFilter filter = new TimeBucketedBloomFilter(HOUR, 10_000, 0.01);
+        Instant expiresAt = Instant.now().plus(Duration.ofHours(3));
+
+        List<String> revoked = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            String jti = UUID.randomUUID().toString();
+            revoked.add(jti);
+            filter.add(jti, expiresAt);
+        }
+        revoked.forEach(jti -> assertTrue(filter.mightContain(jti, expiresAt)));
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain(UUID.randomUUID().toString(), expiresAt)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 2_000, "Falsos positivos: " + falsePositives);
+    }
+
+    @Test
+    void lookupsOnlyTouchTheExpiryBucketAndExpiredBucketsAreDropped() {
+        TimeBucketedBloomFilter filter = new TimeBucketedBloomFilter(HOUR, 100, 0.01);
+        Instant now = Instant.now();
+        Instant soon = now.plus(Duration.ofMinutes(5));
+        Instant later = now.plus(Duration.ofDays(2));
+        filter.add("a", soon);
+        filter.add("b", later);
+
+        assertTrue(filter.mightContain("a", soon));
+        assertFalse(filter.mightContain("a", later));
+        assertEquals(2, filter.bucketCount());
+
+        assertEquals(1, filter.dropExpired(now.plus(Duration.ofHours(2))));
+        assertFalse(filter.mightContain("a", soon));
+        assertTrue(filter.mightContain("b", later));
+    }
+}
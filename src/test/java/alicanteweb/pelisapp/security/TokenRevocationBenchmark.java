@@ -0,0 +1,41 @@
+package alicanteweb.pelisapp.security;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coste de comprobar la revocación de un token no revocado (el caso habitual) con 50.000 jti revocados.
+ * Ejecutar con: mvn -Pbenchmarks test-compile exec:exec -Dbenchmark=TokenRevocation
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TokenRevocationBenchmark {
+
+    private TimeBucketedBloomFilter filter;
+    private String jti;
+    private Instant expiresAt;
+
+    @Setup
+    public void setUp() {
+        filter = new TimeBucketedBloomFilter(Duration.ofHours(1).toMillis(), 10_000, 0.01);
+        Instant now = Instant.now();
+        for (int i = 0; i < 50_000; i++) {
+            filter.add(UUID.randomUUID().toString(), now.plus(Duration.ofMinutes(i % (24 * 60))));
+        }
+        jti = UUID.randomUUID().toString();
+        expiresAt = now.plus(Duration.ofHours(12));
+    }
+
+    @Benchmark
+    public boolean notRevoked() {
+        return filter.mightContain(jti, expiresAt);
+    }
+}
@@ -0,0 +1,189 @@
+package alicanteweb.pelisapp.service.image;
+
+import alicanteweb.pelisapp.entity.StoredImage;
+import alicanteweb.pelisapp.repository.StoredImageRepository;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageFetchQueueTest {
+
+    @TempDir
+    Path storage;
+
+    private HttpServer server;
+    private final Map<String, String> index = new ConcurrentHashMap<>();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger maxActive = new AtomicInteger();
+    private final AtomicInteger flakyCalls = new AtomicInteger();
+    private final AtomicInteger slowCalls = new AtomicInteger();
+    private final CountDownLatch releaseSlow = new CountDownLatch(1);
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/img/", exchange -> {
+            int now = active.incrementAndGet();
+            maxActive.accumulateAndGet(now, Math::max);
+            try {
+                Thread.sleep(30);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                // Antes de responder: en cuanto llega la respuesta el cliente ya puede lanzar la siguiente
+                active.decrementAndGet();
+            }
+            respond(exchange, 200, exchange.getRequestURI().getPath());
+        });
+        server.createContext("/flaky.jpg", exchange ->
+                respond(exchange, flakyCalls.incrementAndGet() < 3 ? 503 : 200, "ok"));
+        server.createContext("/slow.jpg", exchange -> {
+            slowCalls.incrementAndGet();
+            try {
+                releaseSlow.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, 200, "slow");
+        });
+        server.createContext("/same-a.jpg", exchange -> respond(exchange, 200, "mismo póster"));
+        server.createContext("/same-b.jpg", exchange -> respond(exchange, 200, "mismo póster"));
+        server.createContext("/missing.jpg", exchange -> respond(exchange, 404, ""));
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        releaseSlow.countDown();
+        server.stop(0);
+    }
+
+    @Test
+    void capsConcurrentDownloadsPerHost() throws Exception {
+        ImageFetchQueue queue = queue(2, 3);
+        List<CompletableFuture<String>> downloads = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            downloads.add(queue.fetch(url("/img/" + i + ".jpg"), "posters", false));
+        }
+        CompletableFuture.allOf(downloads.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+
+        assertTrue(maxActive.get() <= 2, "Máximo simultáneo: " + maxActive.get());
+        String stored = downloads.get(3).join();
+        assertEquals("/img/3.jpg", Files.readString(storage.resolve(stored.substring("/images/".length()))));
+    }
+
+    @Test
+    void storesIdenticalContentOnceUnderItsHash() throws Exception {
+        ImageFetchQueue queue = queue(4, 3);
+        String first = queue.fetch(url("/same-a.jpg"), "posters", false).get(5, TimeUnit.SECONDS);
+        String second = queue.fetch(url("/same-b.jpg"), "posters", false).get(5, TimeUnit.SECONDS);
+
+        String sha256 = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                .digest("mismo póster".getBytes(StandardCharsets.UTF_8)));
+        assertEquals("/images/posters/" + sha256.substring(0, 2) + "/" + sha256 + ".jpg", first);
+        assertEquals(first, second);
+        try (var files = Files.walk(storage.resolve("posters"))) {
+            assertEquals(1, files.filter(Files::isRegularFile).count());
+        }
+        assertEquals(1L, queue.getStats().get("stored_duplicate"));
+        assertEquals(first, index.get("/same-b.jpg"));
+    }
+
+    @Test
+    void sharesInFlightDownloadOfSameUrl() throws Exception {
+        ImageFetchQueue queue = queue(4, 3);
+        CompletableFuture<String> first = queue.fetch(url("/slow.jpg"), "posters", false);
+        CompletableFuture<String> second = queue.fetch(url("/slow.jpg"), "posters", false);
+        assertSame(first, second);
+
+        releaseSlow.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        assertEquals(1, slowCalls.get());
+        // Ya en disco: no se vuelve a pedir
+        assertEquals(first.join(), queue.fetch(url("/slow.jpg"), "posters", false).join());
+        assertEquals(1, slowCalls.get());
+    }
+
+    @Test
+    void retriesServerErrorsAndGivesUpOnClientErrors() throws Exception {
+        ImageFetchQueue queue = queue(4, 3);
+
+        assertTrue(queue.fetch(url("/flaky.jpg"), "posters", false).get(5, TimeUnit.SECONDS).startsWith("/images/posters/"));
+        assertEquals(3, flakyCalls.get());
+
+        CompletableFuture<String> missing = queue.fetch(url("/missing.jpg"), "posters", false);
+        assertThrows(Exception.class, () -> missing.get(5, TimeUnit.SECONDS));
+        assertFalse(index.containsKey("/missing.jpg"));
+        try (var files = Files.walk(storage.resolve("posters"))) {
+            assertTrue(files.noneMatch(p -> p.getFileName().toString().endsWith(".tmp")));
+        }
+    }
+
+    private ImageFetchQueue queue(int perHost, int attempts) {
+        return new ImageFetchQueue(new ImageBlobIndex(inMemoryRepository(), 1000),
+                new ImageStoreQuotaManager(storage.toString(), 0, 0, Duration.ofHours(1)), storage.toString(), "/images",
+                perHost, 100, attempts, Duration.ofMillis(10), Duration.ofSeconds(5));
+    }
+
+    /**
+     * Repositorio en memoria para el índice: solo findBySourcePath y save.
+     */
+    private StoredImageRepository inMemoryRepository() {
+        Map<String, StoredImage> rows = new ConcurrentHashMap<>();
+        return (StoredImageRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{StoredImageRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "findBySourcePath" -> Optional.ofNullable(rows.get((String) args[0]));
+                    case "save" -> {
+                        StoredImage image = (StoredImage) args[0];
+                        rows.put(image.getSourcePath(), image);
+                        index.put(image.getSourcePath(), "/images/" + image.getBlobPath());
+                        yield image;
+                    }
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+        exchange.close();
+    }
+}
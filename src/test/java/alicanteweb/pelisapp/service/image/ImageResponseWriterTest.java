@@ -0,0 +1,112 @@
+package alicanteweb.pelisapp.service.image;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageResponseWriterTest {
+
+    private static final String HASH = "ab".repeat(32);
+
+    @TempDir
+    Path storage;
+
+    private final ImageHotCache hotCache = new ImageHotCache(1024, 16);
+    private final ImageResponseWriter writer = new ImageResponseWriter(hotCache);
+
+    @Test
+    void answersHashedRevalidationWithoutTouchingTheFile() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/images/posters/ab/" + HASH + ".jpg");
+        request.addHeader("If-None-Match", "\"" + HASH + "\"");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // El archivo ni siquiera existe: el 304 sale solo del nombre
+        assertTrue(writer.notModified(request, response, HASH, ImageResponseWriter.Caching.IMMUTABLE));
+        assertEquals(304, response.getStatus());
+        assertTrue(response.getHeader("Cache-Control").contains("immutable"));
+        assertEquals("\"" + HASH + "\"", response.getHeader("ETag"));
+    }
+
+    @Test
+    void leavesNoVariantHeadersWhenRevalidationMisses() throws Exception {
+        Path original = storage.resolve(HASH + ".jpg");
+        Files.write(original, new byte[]{1, 2});
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/images/w185/" + HASH + ".jpg");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertFalse(writer.notModified(request, response, HASH + "-w185", ImageResponseWriter.Caching.IMMUTABLE));
+        assertNull(response.getHeader("ETag"));
+        assertNull(response.getHeader("Cache-Control"));
+
+        // Sin miniatura se sirve el original: no debe llevar el ETag de la miniatura
+        writer.write(request, response, original, null, ImageResponseWriter.Caching.SHORT);
+        assertNull(response.getHeader("ETag"));
+        assertFalse(response.getHeader("Cache-Control").contains("immutable"));
+    }
+
+    @Test
+    void writesBodyWithContentTypeAndStrongEtag() throws Exception {
+        Path file = storage.resolve(HASH + ".png");
+        Files.write(file, new byte[]{1, 2, 3, 4});
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/images/" + HASH + ".png");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        writer.write(request, response, file, HASH, ImageResponseWriter.Caching.IMMUTABLE);
+
+        assertEquals(200, response.getStatus());
+        assertEquals("image/png", response.getContentType());
+        assertEquals("\"" + HASH + "\"", response.getHeader("ETag"));
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, response.getContentAsByteArray());
+        assertEquals(ImageResponseWriter.contentHashOf(HASH + ".png"), HASH);
+        assertNull(ImageResponseWriter.contentHashOf("movie_1.jpg"));
+    }
+
+    @Test
+    void revalidatesLegacyFilesByContentEtagAndDate() throws Exception {
+        Path file = storage.resolve("movie_1.jpg");
+        Files.write(file, new byte[]{9, 9, 9});
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        writer.write(new MockHttpServletRequest("GET", "/images/movie_1.jpg"), first, file, null,
+                ImageResponseWriter.Caching.REVALIDATE);
+        String etag = first.getHeader("ETag");
+        assertNotNull(etag);
+        assertFalse(first.getHeader("Cache-Control").contains("immutable"));
+
+        MockHttpServletRequest byEtag = new MockHttpServletRequest("GET", "/images/movie_1.jpg");
+        byEtag.addHeader("If-None-Match", etag);
+        MockHttpServletResponse second = new MockHttpServletResponse();
+        writer.write(byEtag, second, file, null, ImageResponseWriter.Caching.REVALIDATE);
+        assertEquals(304, second.getStatus());
+        assertEquals(0, second.getContentAsByteArray().length);
+
+        MockHttpServletRequest byDate = new MockHttpServletRequest("GET", "/images/movie_1.jpg");
+        byDate.addHeader("If-Modified-Since", Files.getLastModifiedTime(file).toMillis() + 1000);
+        MockHttpServletResponse third = new MockHttpServletResponse();
+        writer.write(byDate, third, file, null, ImageResponseWriter.Caching.SHORT);
+        assertEquals(304, third.getStatus());
+    }
+
+    @Test
+    void servesRepeatedImagesFromMemoryAfterSecondRequest() throws Exception {
+        Path file = storage.resolve(HASH + ".jpg");
+        Files.write(file, new byte[]{5, 6, 7});
+
+        for (int i = 0; i < 3; i++) {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            writer.write(new MockHttpServletRequest("GET", "/images/" + HASH + ".jpg"), response, file, HASH,
+                    ImageResponseWriter.Caching.IMMUTABLE);
+            assertArrayEquals(new byte[]{5, 6, 7}, response.getContentAsByteArray());
+        }
+
+        // 1a petición: desde disco; 2a: entra en memoria; 3a: acierto
+        assertEquals(1L, hotCache.getStats().get("admitted"));
+        assertEquals(1L, hotCache.getStats().get("hits"));
+        assertEquals(6L, hotCache.getStats().get("bytes_served"));
+    }
+}
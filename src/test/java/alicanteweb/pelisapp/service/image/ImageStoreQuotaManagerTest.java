@@ -0,0 +1,93 @@
+package alicanteweb.pelisapp.service.image;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageStoreQuotaManagerTest {
+
+    @TempDir
+    Path storage;
+
+    @Test
+    void evictsLeastRecentlyUsedBlobsAndKeepsLegacyFiles() throws Exception {
+        String old = blob('1', 1000, 100);
+        String touched = blob('2', 1000, 200);
+        String recent = blob('3', 1000, 300);
+        Path legacy = write("posters/movie_1.jpg", 1000, 50);
+
+        ImageStoreQuotaManager manager = new ImageStoreQuotaManager(storage.toString(), 2500, 0, Duration.ofHours(1));
+        manager.touch(touched);
+        manager.maintain();
+
+        // 4000 bytes con presupuesto de 2500: se borran los blobs menos usados, nunca el archivo antiguo
+        assertTrue(Files.exists(legacy));
+        assertFalse(Files.exists(storage.resolve(old)));
+        assertFalse(Files.exists(storage.resolve(recent)));
+        assertTrue(Files.exists(storage.resolve(touched)));
+        assertEquals(2000L, posters(manager).get("used_bytes"));
+        assertEquals(2L, manager.getStats().get("evicted_files"));
+    }
+
+    @Test
+    void restoresAccessOrderFromCheckpoint() throws Exception {
+        String first = blob('a', 1000, 100);
+        String second = blob('b', 1000, 200);
+
+        ImageStoreQuotaManager manager = new ImageStoreQuotaManager(storage.toString(), 0, 0, Duration.ofHours(1));
+        manager.touch(first);
+        manager.maintain();
+        assertTrue(Files.exists(storage.resolve(ImageStoreQuotaManager.CHECKPOINT_FILE)));
+
+        // Tras reiniciar, el acceso a "first" sigue contando aunque su fecha de modificación sea anterior
+        ImageStoreQuotaManager restarted = new ImageStoreQuotaManager(storage.toString(), 1500, 0, Duration.ofHours(1));
+        restarted.maintain();
+        assertTrue(Files.exists(storage.resolve(first)));
+        assertFalse(Files.exists(storage.resolve(second)));
+    }
+
+    @Test
+    void recordedBlobsOverTheBudgetTriggerMaintenanceRightAway() throws Exception {
+        ImageStoreQuotaManager manager = new ImageStoreQuotaManager(storage.toString(), 2500, 0, Duration.ofHours(1));
+        manager.maintain();
+
+        // Tres descargas seguidas pasan del presupuesto sin esperar a la siguiente pasada
+        manager.record(blob('4', 1000, 100), 1000);
+        manager.record(blob('5', 1000, 200), 1000);
+        manager.record(blob('6', 1000, 300), 1000);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((Long) manager.getStats().get("evicted_files") == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1L, manager.getStats().get("evicted_files"));
+        assertEquals(2000L, posters(manager).get("used_bytes"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> posters(ImageStoreQuotaManager manager) {
+        return (Map<String, Object>) manager.getStats().get("posters");
+    }
+
+    private String blob(char hex, int size, long mtimeSeconds) throws Exception {
+        String hash = String.valueOf(hex).repeat(64);
+        String relative = "posters/" + hash.substring(0, 2) + "/" + hash + ".jpg";
+        write(relative, size, mtimeSeconds);
+        return relative;
+    }
+
+    private Path write(String relative, int size, long mtimeSeconds) throws Exception {
+        Path file = storage.resolve(relative);
+        Files.createDirectories(file.getParent());
+        Files.write(file, new byte[size]);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(mtimeSeconds * 1000));
+        return file;
+    }
+}
@@ -0,0 +1,94 @@
+package alicanteweb.pelisapp.service.image;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageVariantServiceTest {
+
+    @TempDir
+    Path storage;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void generatesVariantOnceAndReusesIt() throws Exception {
+        writePoster("posters/ab/poster.jpg", 500, 750);
+        ImageVariantService service = service(Long.MAX_VALUE);
+
+        Path variant = service.resolve("posters/ab/poster.jpg", ImageVariantService.Width.W92).orElseThrow();
+        BufferedImage thumb = ImageIO.read(variant.toFile());
+        assertEquals(92, thumb.getWidth());
+        assertEquals(138, thumb.getHeight());
+        assertEquals(storage.resolve("variants/w92/posters/ab/poster.jpg"), variant);
+
+        assertEquals(Optional.of(variant), service.resolve("posters/ab/poster.jpg", ImageVariantService.Width.W92));
+        assertEquals(1L, service.getStats().get("generated"));
+        assertEquals(1L, service.getStats().get("hits"));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedVariantsOverBudget() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            writePoster("posters/p" + i + ".jpg", 400, 600);
+        }
+        ImageVariantService probe = service(Long.MAX_VALUE);
+        long size = Files.size(probe.resolve("posters/p0.jpg", ImageVariantService.Width.W185).orElseThrow());
+
+        // Espacio para dos miniaturas: la tercera expulsa a la menos usada (p1)
+        ImageVariantService service = service(size * 2 + size / 2);
+        service.resolve("posters/p1.jpg", ImageVariantService.Width.W185).orElseThrow();
+        service.resolve("posters/p0.jpg", ImageVariantService.Width.W185).orElseThrow();
+        service.resolve("posters/p2.jpg", ImageVariantService.Width.W185).orElseThrow();
+
+        assertTrue(Files.exists(storage.resolve("variants/w185/posters/p0.jpg")));
+        assertFalse(Files.exists(storage.resolve("variants/w185/posters/p1.jpg")));
+        assertTrue(Files.exists(storage.resolve("variants/w185/posters/p2.jpg")));
+    }
+
+    @Test
+    void rejectsPathsOutsideTheStoreAndMapsLocalPaths() {
+        ImageVariantService service = service(Long.MAX_VALUE);
+
+        assertTrue(service.resolve("../secret.jpg", ImageVariantService.Width.W92).isEmpty());
+        assertTrue(service.resolve("posters/missing.jpg", ImageVariantService.Width.W92).isEmpty());
+        assertEquals("/images/w185/posters/ab/x.jpg",
+                service.variantUrl("/images/posters/ab/x.jpg", ImageVariantService.Width.W185));
+        assertEquals("/images/w92/profiles/actor_1.jpg",
+                service.variantUrl("profiles/actor_1.jpg", ImageVariantService.Width.W92));
+        assertNull(service.variantUrl(null, ImageVariantService.Width.W92));
+    }
+
+    private ImageVariantService service(long maxCacheBytes) {
+        return new ImageVariantService(storage.toString(), "/images", executor, maxCacheBytes,
+                16_000_000, Duration.ofSeconds(10));
+    }
+
+    private void writePoster(String relative, int width, int height) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, (x * 255 / width) << 16 | (y * 255 / height) << 8);
+            }
+        }
+        Path file = storage.resolve(relative);
+        Files.createDirectories(file.getParent());
+        ImageIO.write(image, "jpg", file.toFile());
+    }
+}
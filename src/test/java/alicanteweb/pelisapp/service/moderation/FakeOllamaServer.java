@@ -0,0 +1,152 @@
+package alicanteweb.pelisapp.service.moderation;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sustituto local de Ollama para pruebas: implementa {@code /api/generate} (prompt individual y por lotes)
+ * y {@code /api/tags}. La latencia por petición y por texto y la tasa de fallos son configurables.
+ * Un texto se considera tóxico si contiene alguna de las palabras de {@link #TOXIC_MARKERS}.
+ */
+public class FakeOllamaServer implements AutoCloseable {
+
+    static final String[] TOXIC_MARKERS = {"idiota", "imbecil", "mierda", "basura", "spam"};
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final Random random = new Random(1);
+    private final AtomicInteger generateRequests = new AtomicInteger();
+    private final AtomicInteger analyzedTexts = new AtomicInteger();
+
+    private volatile long requestLatencyMs;
+    private volatile long perTextLatencyMs;
+    private volatile double failureRate;
+
+    public FakeOllamaServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/generate", this::handleGenerate);
+        server.createContext("/api/tags", exchange -> respond(exchange, 200, "{\"models\":[{\"name\":\"llama3\"}]}"));
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public FakeOllamaServer withLatency(long requestLatencyMs, long perTextLatencyMs) {
+        this.requestLatencyMs = requestLatencyMs;
+        this.perTextLatencyMs = perTextLatencyMs;
+        return this;
+    }
+
+    public FakeOllamaServer withFailureRate(double failureRate) {
+        this.failureRate = failureRate;
+        return this;
+    }
+
+    public int generateRequests() {
+        return generateRequests.get();
+    }
+
+    public int analyzedTexts() {
+        return analyzedTexts.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    static double expectedScore(String text) {
+        String lower = text.toLowerCase();
+        for (String marker : TOXIC_MARKERS) {
+            if (lower.contains(marker)) {
+                return 0.9;
+            }
+        }
+        return 0.1;
+    }
+
+    private void handleGenerate(HttpExchange exchange) throws IOException {
+        generateRequests.incrementAndGet();
+        JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+        String prompt = request.path("prompt").asText();
+
+        boolean fail;
+        synchronized (random) {
+            fail = random.nextDouble() < failureRate;
+        }
+        if (fail) {
+            respond(exchange, 500, "{\"error\":\"simulated failure\"}");
+            return;
+        }
+
+        String batchLine = prompt.lines().filter(line -> line.startsWith("[{")).findFirst().orElse(null);
+        String answer;
+        int texts;
+        if (batchLine != null) {
+            ArrayNode items = (ArrayNode) objectMapper.readTree(batchLine);
+            ObjectNode body = objectMapper.createObjectNode();
+            ArrayNode results = body.putArray("results");
+            for (JsonNode item : items) {
+                results.addObject()
+                        .put("id", item.path("id").asInt())
+                        .put("toxicity_score", expectedScore(item.path("text").asText()))
+                        .put("reason", "fake");
+            }
+            answer = objectMapper.writeValueAsString(body);
+            texts = items.size();
+        } else {
+            int start = prompt.indexOf("Texto a analizar: \"") + "Texto a analizar: \"".length();
+            int end = prompt.indexOf("\"\n", start);
+            String text = end > start ? prompt.substring(start, end) : prompt;
+            answer = String.format("{\"toxicity_score\": %s, \"is_toxic\": false, \"reason\": \"fake\"}",
+                    expectedScore(text));
+            texts = 1;
+        }
+        analyzedTexts.addAndGet(texts);
+
+        sleep(requestLatencyMs + perTextLatencyMs * texts);
+        ObjectNode response = objectMapper.createObjectNode();
+        response.put("model", "llama3");
+        response.put("response", answer);
+        response.put("done", true);
+        respond(exchange, 200, objectMapper.writeValueAsString(response));
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,476 @@
+package alicanteweb.pelisapp.service.moderation;
+
+import alicanteweb.pelisapp.entity.CommentModeration;
+import alicanteweb.pelisapp.repository.ModerationVerdictEntryRepository;
+import alicanteweb.pelisapp.service.ModerationQueueService;
+import alicanteweb.pelisapp.service.ModerationService;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Banco de pruebas de extremo a extremo: reproduce un corpus de reseñas contra la pila completa de
+ * moderación ({@link ModerationService} → {@link ModerationScheduler} → {@link ModerationPipeline} →
+ * {@link OllamaBatchModerator}) usando {@link FakeOllamaServer} con latencia y tasa de fallos configurables.
+ *
+ * <p>Informa del rendimiento (reseñas/s), percentiles de latencia, crecimiento de la cola, reseñas
+ * desviadas a moderación sin LLM y concordancia de cada nivel con el LLM y con la etiqueta del corpus.
+ * La base de datos se sustituye por repositorios vacíos: se mide la moderación, no MySQL.</p>
+ *
+ * Ejecutar con: mvn -Pmoderation-replay test-compile exec:java [-Dreplay.failure-rate=0.2 -Dreplay.rate=50 ...]
+ *
+ * <ul>
+ *   <li>{@code replay.corpus}: TSV {@code etiqueta<TAB>texto} como el de entrenamiento; si no se indica se genera uno</li>
+ *   <li>{@code replay.size}: reseñas del corpus generado (2000)</li>
+ *   <li>{@code replay.rate}: reseñas por segundo, 0 = sin límite (0)</li>
+ *   <li>{@code replay.latency-ms} / {@code replay.per-text-ms}: latencia de Ollama por petición y por texto (150 / 10)</li>
+ *   <li>{@code replay.failure-rate}: fracción de peticiones a Ollama que devuelven 500 (0.0)</li>
+ *   <li>{@code replay.concurrency} / {@code replay.queue-capacity}: hilos y capacidad del carril NEW (8 / 200)</li>
+ *   <li>{@code replay.batch}: moderación por lotes (true)</li>
+ *   <li>{@code replay.model}: modelo del clasificador local; sin él ese nivel no decide nada</li>
+ * </ul>
+ */
+public final class ModerationReplayBenchmark {
+
+    private static final long SAMPLE_INTERVAL_MS = 100;
+    private static final long COMPLETION_TIMEOUT_SECONDS = 600;
+
+    private static final String[] OPENINGS = {
+        "La película", "El guion", "La dirección", "La banda sonora", "El final", "El reparto", "La fotografía"
+    };
+    private static final String[] PRAISE = {
+        "me ha encantado", "es muy entretenida", "está muy cuidada", "sorprende para bien", "merece la pena"
+    };
+    private static final String[] CRITIQUE = {
+        "se hace larga", "es algo floja", "no termina de convencer", "es previsible", "decae al final"
+    };
+    private static final String[] INSULTS = {"idiota", "imbecil", "mierda", "basura"};
+    private static final String[] TARGETS = {"el director es un", "quien la vea es un", "eres un", "esto es una"};
+
+    private ModerationReplayBenchmark() {}
+
+    public static void main(String[] args) throws Exception {
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME))
+                .setLevel(Level.toLevel(System.getProperty("replay.log-level", "ERROR")));
+
+        String corpusPath = System.getProperty("replay.corpus", "");
+        List<ToxicityModelTrainer.Sample> corpus = corpusPath.isBlank()
+                ? generateCorpus(Integer.getInteger("replay.size", 2000), new Random(42))
+                : ToxicityModelTrainer.readTsv(Path.of(corpusPath));
+        double rate = Double.parseDouble(System.getProperty("replay.rate", "0"));
+
+        try (FakeOllamaServer ollama = new FakeOllamaServer()
+                .withLatency(Long.getLong("replay.latency-ms", 150), Long.getLong("replay.per-text-ms", 10))
+                .withFailureRate(Double.parseDouble(System.getProperty("replay.failure-rate", "0.0")))) {
+            Stack stack = Stack.build(ollama.url());
+            try {
+                System.out.printf("🎬 Reproduciendo %d reseñas (%s) contra Ollama simulado: %s%n", corpus.size(),
+                        rate > 0 ? rate + " reseñas/s" : "sin límite de ritmo", describeConfig());
+                ReplayResult result = replay(stack, corpus, rate);
+                printReport(stack, ollama, corpus, result);
+            } finally {
+                stack.stop();
+            }
+        }
+    }
+
+    // ============= REPRODUCCIÓN =============
+
+    private static ReplayResult replay(Stack stack, List<ToxicityModelTrainer.Sample> corpus, double rate)
+            throws Exception {
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        List<int[]> depthSamples = new ArrayList<>();
+        long startNanos = System.nanoTime();
+        sampler.scheduleAtFixedRate(() -> {
+            int depth = stack.scheduler.getStats().get("queue_depth") instanceof Integer d ? d : 0;
+            synchronized (depthSamples) {
+                depthSamples.add(new int[]{(int) ((System.nanoTime() - startNanos) / 1_000_000), depth});
+            }
+        }, 0, SAMPLE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+
+        ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        AtomicInteger failed = new AtomicInteger();
+        CommentModeration.ModerationStatus[] verdicts = new CommentModeration.ModerationStatus[corpus.size()];
+        List<CompletableFuture<CommentModeration.ModerationStatus>> futures = new ArrayList<>(corpus.size());
+
+        long intervalNanos = rate > 0 ? (long) (1_000_000_000L / rate) : 0;
+        for (int i = 0; i < corpus.size(); i++) {
+            if (intervalNanos > 0) {
+                long due = startNanos + i * intervalNanos;
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+            }
+            int index = i;
+            long submittedAt = System.nanoTime();
+            futures.add(stack.moderationService
+                    .scheduleModeration((long) i, 0, corpus.get(i).text(), ModerationScheduler.Lane.NEW)
+                    .whenComplete((status, error) -> {
+                        latencies.add(System.nanoTime() - submittedAt);
+                        if (error != null) {
+                            failed.incrementAndGet();
+                        } else {
+                            verdicts[index] = status;
+                        }
+                    }));
+        }
+        long submitNanos = System.nanoTime() - startNanos;
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                .handle((ignored, error) -> null)
+                .get(COMPLETION_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        long elapsedNanos = System.nanoTime() - startNanos;
+        sampler.shutdownNow();
+
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+        synchronized (depthSamples) {
+            return new ReplayResult(sorted, failed.get(), verdicts, new ArrayList<>(depthSamples),
+                    submitNanos, elapsedNanos);
+        }
+    }
+
+    // ============= INFORME =============
+
+    private static void printReport(Stack stack, FakeOllamaServer ollama, List<ToxicityModelTrainer.Sample> corpus,
+                                    ReplayResult result) {
+        double seconds = result.elapsedNanos() / 1e9;
+        System.out.println();
+        System.out.println("📊 Rendimiento");
+        System.out.printf("  reseñas: %d, fallidas: %d, tiempo: %.2f s (envío %.2f s)%n",
+                result.latencies().length, result.failed(), seconds, result.submitNanos() / 1e9);
+        System.out.printf("  rendimiento: %.1f reseñas/s%n", result.latencies().length / seconds);
+        System.out.printf("  latencia ms  p50 %.1f | p90 %.1f | p95 %.1f | p99 %.1f | máx %.1f%n",
+                percentileMs(result.latencies(), 0.50), percentileMs(result.latencies(), 0.90),
+                percentileMs(result.latencies(), 0.95), percentileMs(result.latencies(), 0.99),
+                percentileMs(result.latencies(), 1.0));
+
+        System.out.println();
+        System.out.println("📈 Cola de moderación");
+        int maxDepth = result.depthSamples().stream().mapToInt(sample -> sample[1]).max().orElse(0);
+        System.out.printf("  profundidad máxima: %d%n", maxDepth);
+        StringBuilder timeline = new StringBuilder("  profundidad por segundo:");
+        long nextSecond = 0;
+        for (int[] sample : result.depthSamples()) {
+            if (sample[0] >= nextSecond) {
+                timeline.append(' ').append(sample[1]);
+                nextSecond += 1000;
+            }
+        }
+        System.out.println(timeline);
+        @SuppressWarnings("unchecked")
+        Map<String, Object> newLane = (Map<String, Object>) stack.scheduler.getStats().get("new");
+        System.out.printf("  encoladas: %s, desviadas sin LLM: %s, espera p95: %.1f ms, servicio p95: %.1f ms%n",
+                newLane.get("submitted"), newLane.get("shed"), ((Number) newLane.get("p95_wait_ms")).doubleValue(),
+                ((Number) newLane.get("p95_service_ms")).doubleValue());
+
+        System.out.println();
+        System.out.println("🧱 Niveles del pipeline");
+        stack.pipeline.getStats().forEach((name, value) -> {
+            if (value instanceof Map<?, ?> stage) {
+                System.out.printf("  %-14s decididas %5.1f%% | evaluadas %s | p95 %.1f µs%n", name,
+                        ((Number) stage.get("hit_rate")).doubleValue() * 100, stage.get("evaluated"),
+                        ((Number) stage.get("p95_micros")).doubleValue());
+            }
+        });
+        System.out.printf("  Ollama: %d peticiones, %d textos; circuito: %s%n",
+                ollama.generateRequests(), ollama.analyzedTexts(), stack.circuitBreaker.getStats().get("state"));
+
+        System.out.println();
+        System.out.println("🎯 Concordancia (sobre reseñas decididas por cada nivel)");
+        printAgreement(stack, corpus, result.verdicts());
+    }
+
+    /**
+     * Evalúa cada nivel por separado sobre el corpus y compara su decisión con la del LLM simulado
+     * y con la etiqueta. El veredicto final es el que devolvió la moderación asíncrona.
+     */
+    private static void printAgreement(Stack stack, List<ToxicityModelTrainer.Sample> corpus,
+                                       CommentModeration.ModerationStatus[] verdicts) {
+        Map<String, ModerationStage> tiers = new LinkedHashMap<>();
+        tiers.put("dictionary", stack.dictionary);
+        tiers.put("classifier", stack.classifier);
+        tiers.put("rules", stack.rulesFallback);
+
+        Map<String, Agreement> agreements = new LinkedHashMap<>();
+        tiers.keySet().forEach(name -> agreements.put(name, new Agreement()));
+        Agreement llmAgreement = new Agreement();
+        Agreement finalAgreement = new Agreement();
+
+        for (int i = 0; i < corpus.size(); i++) {
+            ToxicityModelTrainer.Sample sample = corpus.get(i);
+            StageDecision.Outcome llm = stack.thresholds.outcomeFor(
+                    FakeOllamaServer.expectedScore(sample.text()), ModerationThresholds.AI_MANUAL_REVIEW);
+            llmAgreement.record(llm, llm, sample.toxic());
+            for (Map.Entry<String, ModerationStage> tier : tiers.entrySet()) {
+                StageDecision decision = tier.getValue()
+                        .evaluate(new ModerationContext(sample.text(), ModerationContext.Mode.OFFLINE));
+                agreements.get(tier.getKey()).record(decision.outcome(), llm, sample.toxic());
+            }
+            if (verdicts[i] != null) {
+                finalAgreement.record(toOutcome(verdicts[i]), llm, sample.toxic());
+            }
+        }
+
+        agreements.forEach((name, agreement) -> agreement.print(name));
+        llmAgreement.print("llm");
+        finalAgreement.print("final");
+    }
+
+    private static StageDecision.Outcome toOutcome(CommentModeration.ModerationStatus status) {
+        return switch (status) {
+            case APPROVED -> StageDecision.Outcome.APPROVE;
+            case REJECTED -> StageDecision.Outcome.REJECT;
+            default -> StageDecision.Outcome.MANUAL_REVIEW;
+        };
+    }
+
+    private static double percentileMs(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0.0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1_000_000.0;
+    }
+
+    private static String describeConfig() {
+        return String.format("latencia %s+%s ms/texto, fallos %s, concurrencia %s, lotes %s",
+                System.getProperty("replay.latency-ms", "150"), System.getProperty("replay.per-text-ms", "10"),
+                System.getProperty("replay.failure-rate", "0.0"), System.getProperty("replay.concurrency", "8"),
+                System.getProperty("replay.batch", "true"));
+    }
+
+    // ============= CORPUS =============
+
+    /**
+     * Corpus sintético etiquetado: reseñas limpias y críticas, insultos directos, variantes ofuscadas
+     * (leetspeak, letras separadas, asteriscos, mayúsculas) y un 20% de reenvíos casi idénticos.
+     */
+    static List<ToxicityModelTrainer.Sample> generateCorpus(int size, Random random) {
+        List<ToxicityModelTrainer.Sample> samples = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            if (!samples.isEmpty() && random.nextInt(5) == 0) {
+                ToxicityModelTrainer.Sample previous = samples.get(random.nextInt(samples.size()));
+                String repeat = random.nextBoolean() ? previous.text() : previous.text() + " la verdad";
+                samples.add(new ToxicityModelTrainer.Sample(repeat, previous.toxic()));
+                continue;
+            }
+            String opening = pick(OPENINGS, random) + " " + pick(random.nextBoolean() ? PRAISE : CRITIQUE, random);
+            if (random.nextInt(4) != 0) {
+                samples.add(new ToxicityModelTrainer.Sample(
+                        opening + " y " + pick(OPENINGS, random).toLowerCase() + " " + pick(PRAISE, random), false));
+                continue;
+            }
+            String insult = switch (random.nextInt(5)) {
+                case 0 -> leet(pick(INSULTS, random));
+                case 1 -> String.join(" ", pick(INSULTS, random).split(""));
+                case 2 -> pick(INSULTS, random).charAt(0) + "*****";
+                case 3 -> pick(INSULTS, random).toUpperCase();
+                default -> pick(INSULTS, random);
+            };
+            samples.add(new ToxicityModelTrainer.Sample(opening + ", " + pick(TARGETS, random) + " " + insult, true));
+        }
+        return samples;
+    }
+
+    private static String leet(String word) {
+        return word.replace('i', '1').replace('a', '4').replace('e', '3').replace('o', '0');
+    }
+
+    private static String pick(String[] options, Random random) {
+        return options[random.nextInt(options.length)];
+    }
+
+    // ============= PILA DE MODERACIÓN =============
+
+    /**
+     * Pila de moderación montada a mano con la misma configuración por defecto que {@code application.properties}.
+     */
+    private record Stack(ModerationService moderationService, ModerationScheduler scheduler, ModerationPipeline pipeline,
+                         OllamaBatchModerator batchModerator, OllamaCircuitBreaker circuitBreaker,
+                         ModerationThresholds thresholds, DictionaryStage dictionary, ClassifierStage classifier,
+                         RulesFallbackStage rulesFallback, ExecutorService batchExecutor,
+                         ScheduledExecutorService prober) {
+
+        static Stack build(String ollamaUrl) {
+            OllamaCircuitBreaker breaker = new OllamaCircuitBreaker();
+            ReflectionTestUtils.setField(breaker, "failureThreshold", 3);
+            ReflectionTestUtils.setField(breaker, "baseOpenDuration", Duration.ofSeconds(10));
+            ReflectionTestUtils.setField(breaker, "maxOpenDuration", Duration.ofMinutes(5));
+            ReflectionTestUtils.setField(breaker, "minTimeout", Duration.ofSeconds(2));
+            ReflectionTestUtils.setField(breaker, "maxTimeoutSeconds", 30L);
+
+            OllamaClient client = new OllamaClient(new ObjectMapper(), breaker);
+            ReflectionTestUtils.setField(client, "ollamaUrl", ollamaUrl);
+            ReflectionTestUtils.setField(client, "ollamaModel", "llama3");
+            ReflectionTestUtils.setField(client, "connectTimeoutMs", 2000L);
+            ReflectionTestUtils.setField(client, "probeTimeoutMs", 1500L);
+            client.init();
+
+            ExecutorService batchExecutor = Executors.newSingleThreadExecutor();
+            OllamaBatchModerator batchModerator = new OllamaBatchModerator(client, batchExecutor);
+            ReflectionTestUtils.setField(batchModerator, "batchingEnabled",
+                    Boolean.parseBoolean(System.getProperty("replay.batch", "true")));
+            ReflectionTestUtils.setField(batchModerator, "maxBatchSize", 8);
+            ReflectionTestUtils.setField(batchModerator, "maxWaitMs", 50L);
+            ReflectionTestUtils.setField(batchModerator, "timeoutSeconds", 30L);
+            batchModerator.start();
+
+            ModerationVerdictCache verdictCache = new ModerationVerdictCache(emptyRepository());
+            ReflectionTestUtils.setField(verdictCache, "maxSize", 10000);
+            ReflectionTestUtils.setField(verdictCache, "ttl", Duration.ofDays(7));
+            ReflectionTestUtils.setField(verdictCache, "negativeTtl", Duration.ofSeconds(60));
+            ReflectionTestUtils.setField(verdictCache, "nearDuplicateDistance", 7);
+            ReflectionTestUtils.setField(verdictCache, "nearDuplicateMinTokens", 6);
+            verdictCache.init();
+
+            ModerationThresholds thresholds = new ModerationThresholds();
+            ReflectionTestUtils.setField(thresholds, "toxicityThreshold", 0.7);
+
+            ContentAnalyzer contentAnalyzer = new ContentAnalyzer();
+            ToxicityClassifier toxicityClassifier = new ToxicityClassifier();
+            String modelPath = System.getProperty("replay.model", "");
+            ReflectionTestUtils.setField(toxicityClassifier, "enabled", !modelPath.isBlank());
+            ReflectionTestUtils.setField(toxicityClassifier, "modelPath", modelPath);
+            toxicityClassifier.loadModel();
+
+            DictionaryStage dictionary = new DictionaryStage(contentAnalyzer);
+            ReflectionTestUtils.setField(dictionary, "rejectScore", 0.8);
+            ClassifierStage classifier = new ClassifierStage(toxicityClassifier);
+            RulesFallbackStage rulesFallback = new RulesFallbackStage(contentAnalyzer, thresholds);
+            ReflectionTestUtils.setField(rulesFallback, "fallbackEnabled", true);
+
+            ModerationPipeline pipeline = new ModerationPipeline(
+                    new NormalizationStage(verdictCache),
+                    new VerdictCacheStage(verdictCache, contentAnalyzer, thresholds),
+                    dictionary, classifier,
+                    new LlmStage(batchModerator, verdictCache, thresholds),
+                    rulesFallback);
+
+            ModerationScheduler scheduler = new ModerationScheduler();
+            ReflectionTestUtils.setField(scheduler, "concurrency", Integer.getInteger("replay.concurrency", 8));
+            ReflectionTestUtils.setField(scheduler, "newLaneCapacity", Integer.getInteger("replay.queue-capacity", 200));
+            ReflectionTestUtils.setField(scheduler, "priorityLaneCapacity", 50);
+            scheduler.start();
+
+            ModerationService moderationService =
+                    new ModerationService(new DiscardingQueueService(), client, pipeline, scheduler);
+            ReflectionTestUtils.setField(moderationService, "toxicityThreshold", 0.7);
+            ReflectionTestUtils.setField(moderationService, "moderationEnabled", true);
+            ReflectionTestUtils.setField(moderationService, "fallbackEnabled", true);
+
+            // En la aplicación lo hace @Scheduled(probe-interval-ms)
+            ScheduledExecutorService prober = Executors.newSingleThreadScheduledExecutor();
+            prober.scheduleWithFixedDelay(client::probeIfOpen, 1, 1, TimeUnit.SECONDS);
+
+            return new Stack(moderationService, scheduler, pipeline, batchModerator, breaker, thresholds,
+                    dictionary, classifier, rulesFallback, batchExecutor, prober);
+        }
+
+        void stop() {
+            prober.shutdownNow();
+            scheduler.stop();
+            batchModerator.stop();
+            batchExecutor.shutdownNow();
+        }
+
+        /**
+         * Repositorio sin datos: búsquedas vacías y escrituras descartadas.
+         */
+        private static ModerationVerdictEntryRepository emptyRepository() {
+            return (ModerationVerdictEntryRepository) Proxy.newProxyInstance(
+                    ModerationReplayBenchmark.class.getClassLoader(),
+                    new Class<?>[]{ModerationVerdictEntryRepository.class},
+                    (proxy, method, methodArgs) -> {
+                        Class<?> type = method.getReturnType();
+                        if (type == Optional.class) {
+                            return Optional.empty();
+                        }
+                        if (List.class.isAssignableFrom(type)) {
+                            return List.of();
+                        }
+                        if (type == int.class || type == long.class) {
+                            return type == int.class ? 0 : 0L;
+                        }
+                        if (type == boolean.class) {
+                            return false;
+                        }
+                        return method.getName().equals("save") ? methodArgs[0] : null;
+                    });
+        }
+    }
+
+    /**
+     * Sustituye la escritura del veredicto en BD: todas las reseñas se dan por pendientes.
+     */
+    private static final class DiscardingQueueService extends ModerationQueueService {
+
+        DiscardingQueueService() {
+            super(null, null);
+        }
+
+        @Override
+        public int resolvePending(Long reviewId, int generation, CommentModeration.ModerationStatus status, Double score,
+                                  String reason, boolean aiProcessed) {
+            return 1;
+        }
+    }
+
+    private record ReplayResult(long[] latencies, int failed, CommentModeration.ModerationStatus[] verdicts,
+                                List<int[]> depthSamples, long submitNanos, long elapsedNanos) {}
+
+    /**
+     * Concordancia de un nivel: decididas, coincidencia con el LLM y aciertos frente a la etiqueta.
+     */
+    private static final class Agreement {
+        private final Map<StageDecision.Outcome, Integer> outcomes = new EnumMap<>(StageDecision.Outcome.class);
+        private int decided;
+        private int matchesLlm;
+        private int labelled;
+        private int correct;
+
+        void record(StageDecision.Outcome outcome, StageDecision.Outcome llm, boolean toxic) {
+            outcomes.merge(outcome, 1, Integer::sum);
+            if (outcome == StageDecision.Outcome.DEFER) {
+                return;
+            }
+            decided++;
+            if (outcome == llm) {
+                matchesLlm++;
+            }
+            if (outcome != StageDecision.Outcome.MANUAL_REVIEW) {
+                labelled++;
+                if ((outcome == StageDecision.Outcome.REJECT) == toxic) {
+                    correct++;
+                }
+            }
+        }
+
+        void print(String name) {
+            System.out.printf("  %-10s decididas %5d | = LLM %5.1f%% | acierto vs etiqueta %5.1f%% | %s%n", name,
+                    decided, decided == 0 ? 0.0 : 100.0 * matchesLlm / decided,
+                    labelled == 0 ? 0.0 : 100.0 * correct / labelled, Arrays.toString(outcomes.entrySet().toArray()));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package alicanteweb.pelisapp.service.moderation;
+
+import alicanteweb.pelisapp.repository.ModerationVerdictEntryRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModerationVerdictCacheTest {
+
+    private final AtomicInteger queries = new AtomicInteger();
+
+    @Test
+    void remembersMissesForTheNegativeTtl() throws Exception {
+        ModerationVerdictCache cache = cache(Duration.ofMillis(200));
+        ModerationVerdictCache.ContentFingerprint fingerprint = cache.fingerprint("Una reseña que nadie ha visto");
+
+        // El segundo fallo no vuelve a la BD
+        assertTrue(cache.lookup(fingerprint).isEmpty());
+        assertTrue(cache.lookup(fingerprint).isEmpty());
+        assertEquals(1, queries.get());
+        assertEquals(1L, cache.getStats().get("negative_hits"));
+
+        // Pasado el TTL corto se consulta otra vez
+        Thread.sleep(300);
+        assertTrue(cache.lookup(fingerprint).isEmpty());
+        assertEquals(2, queries.get());
+
+        // Un veredicto nuevo sustituye a la marca de fallo
+        cache.store(fingerprint, 0.9, "insultos");
+        assertEquals(0.9, cache.lookup(fingerprint).orElseThrow().toxicityScore());
+        assertEquals(2, queries.get());
+    }
+
+    private ModerationVerdictCache cache(Duration negativeTtl) {
+        ModerationVerdictCache cache = new ModerationVerdictCache(countingRepository());
+        ReflectionTestUtils.setField(cache, "maxSize", 100);
+        ReflectionTestUtils.setField(cache, "ttl", Duration.ofDays(7));
+        ReflectionTestUtils.setField(cache, "negativeTtl", negativeTtl);
+        ReflectionTestUtils.setField(cache, "nearDuplicateDistance", 7);
+        ReflectionTestUtils.setField(cache, "nearDuplicateMinTokens", 6);
+        cache.init();
+        return cache;
+    }
+
+    /**
+     * Repositorio vacío que cuenta las búsquedas por hash.
+     */
+    private ModerationVerdictEntryRepository countingRepository() {
+        return (ModerationVerdictEntryRepository) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{ModerationVerdictEntryRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "findById" -> {
+                        queries.incrementAndGet();
+                        yield Optional.empty();
+                    }
+                    case "save" -> args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "countingRepository";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
@@ -0,0 +1,121 @@
+package alicanteweb.pelisapp.service.moderation;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OllamaBatchModeratorTest {
+
+    private FakeOllamaServer ollama;
+    private OllamaClient client;
+    private OllamaBatchModerator moderator;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ollama = new FakeOllamaServer().withLatency(100, 5);
+
+        OllamaCircuitBreaker breaker = new OllamaCircuitBreaker();
+        ReflectionTestUtils.setField(breaker, "failureThreshold", 100);
+        ReflectionTestUtils.setField(breaker, "baseOpenDuration", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(breaker, "maxOpenDuration", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(breaker, "minTimeout", Duration.ofSeconds(2));
+        ReflectionTestUtils.setField(breaker, "maxTimeoutSeconds", 10L);
+
+        client = new OllamaClient(new ObjectMapper(), breaker);
+        ReflectionTestUtils.setField(client, "ollamaUrl", ollama.url());
+        ReflectionTestUtils.setField(client, "ollamaModel", "llama3");
+        ReflectionTestUtils.setField(client, "connectTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(client, "probeTimeoutMs", 1000L);
+        client.init();
+
+        moderator = new OllamaBatchModerator(client, Executors.newSingleThreadExecutor());
+        ReflectionTestUtils.setField(moderator, "batchingEnabled", true);
+        ReflectionTestUtils.setField(moderator, "maxBatchSize", 8);
+        ReflectionTestUtils.setField(moderator, "maxWaitMs", 50L);
+        ReflectionTestUtils.setField(moderator, "timeoutSeconds", 10L);
+        moderator.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        moderator.stop();
+        ollama.close();
+    }
+
+    @Test
+    void burstIsGroupedAndResultsReachTheirOwnFutures() throws Exception {
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            texts.add(i % 4 == 0 ? "Eres un idiota \"" + i + "\"" : "Gran película número " + i);
+        }
+
+        List<CompletableFuture<OllamaClient.OllamaAnalysisResult>> futures = texts.stream()
+                .map(moderator::submit)
+                .toList();
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+
+        for (int i = 0; i < texts.size(); i++) {
+            assertEquals(FakeOllamaServer.expectedScore(texts.get(i)), futures.get(i).get().toxicityScore(), 1e-9,
+                    "Resultado cruzado para el texto " + i);
+        }
+        assertEquals(texts.size(), ollama.analyzedTexts());
+        assertTrue(ollama.generateRequests() <= texts.size() / 4,
+                "Se esperaban lotes, peticiones: " + ollama.generateRequests());
+    }
+
+    @Test
+    void failedBatchFailsEveryFuture() {
+        ollama.withFailureRate(1.0);
+        CompletableFuture<OllamaClient.OllamaAnalysisResult> first = moderator.submit("uno");
+        CompletableFuture<OllamaClient.OllamaAnalysisResult> second = moderator.submit("dos");
+
+        assertThrows(OllamaClient.OllamaException.class, () -> moderator.analyze("tres"));
+        assertTrue(first.handle((r, e) -> e != null).join());
+        assertTrue(second.handle((r, e) -> e != null).join());
+    }
+
+    @Test
+    void fullQueueRejectsAndCancelledTextsAreNotSent() throws Exception {
+        // Un ejecutor que nunca termina el primer lote deja el único envío ocupado
+        OllamaBatchModerator stalled = new OllamaBatchModerator(client, task -> { });
+        ReflectionTestUtils.setField(stalled, "batchingEnabled", true);
+        ReflectionTestUtils.setField(stalled, "maxBatchSize", 8);
+        ReflectionTestUtils.setField(stalled, "maxWaitMs", 10L);
+        ReflectionTestUtils.setField(stalled, "timeoutSeconds", 1L);
+        ReflectionTestUtils.setField(stalled, "concurrency", 1);
+        ReflectionTestUtils.setField(stalled, "queueCapacity", 2);
+        stalled.start();
+        try {
+            stalled.submit("primero");
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!Integer.valueOf(0).equals(stalled.getStats().get("queued")) && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            Thread.sleep(50);
+
+            // El agrupador espera un envío libre: los textos se quedan en la cola
+            assertFalse(stalled.submit("segundo").isDone());
+            // El que caduca sale de la cola y deja su hueco
+            assertThrows(OllamaClient.OllamaException.class, () -> stalled.analyze("tercero"));
+            assertEquals(1L, stalled.getStats().get("items_expired"));
+            assertEquals(1, stalled.getStats().get("queued"));
+
+            assertFalse(stalled.submit("cuarto").isDone());
+            assertTrue(stalled.submit("quinto").isCompletedExceptionally());
+            assertEquals(1L, stalled.getStats().get("items_rejected_queue_full"));
+        } finally {
+            stalled.stop();
+        }
+    }
+}
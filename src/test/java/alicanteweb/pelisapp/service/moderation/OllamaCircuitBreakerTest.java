@@ -0,0 +1,39 @@
+package alicanteweb.pelisapp.service.moderation;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OllamaCircuitBreakerTest {
+
+    @Test
+    void timeoutsWidenTheTimeoutAndOpeningStartsAgainFromTheMaximum() {
+        OllamaCircuitBreaker breaker = new OllamaCircuitBreaker();
+        ReflectionTestUtils.setField(breaker, "failureThreshold", 1000);
+        ReflectionTestUtils.setField(breaker, "baseOpenDuration", Duration.ofSeconds(10));
+        ReflectionTestUtils.setField(breaker, "maxOpenDuration", Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(breaker, "minTimeout", Duration.ofSeconds(2));
+        ReflectionTestUtils.setField(breaker, "maxTimeoutSeconds", 60L);
+        OllamaCircuitBreaker.CallKind kind = OllamaCircuitBreaker.CallKind.SINGLE;
+
+        for (int i = 0; i < 100; i++) {
+            breaker.onSuccess(kind, Duration.ofSeconds(1).toNanos());
+        }
+        Duration fast = breaker.currentTimeout(kind);
+        assertEquals(Duration.ofSeconds(2), fast);
+
+        // Ollama se vuelve lento: cada timeout entra en el histórico y el timeout crece
+        for (int i = 0; i < 20; i++) {
+            breaker.onTimeout(kind, breaker.currentTimeout(kind).toNanos());
+        }
+        assertTrue(breaker.currentTimeout(kind).compareTo(fast) > 0);
+
+        ReflectionTestUtils.setField(breaker, "failureThreshold", 1);
+        breaker.onFailure();
+        assertTrue(breaker.isOpen());
+        assertEquals(Duration.ofSeconds(60), breaker.currentTimeout(kind));
+    }
+}
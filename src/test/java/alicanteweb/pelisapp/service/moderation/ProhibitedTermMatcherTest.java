@@ -0,0 +1,52 @@
+package alicanteweb.pelisapp.service.moderation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProhibitedTermMatcherTest {
+
+    private final ProhibitedTermMatcher matcher = new ProhibitedTermMatcher(terms(), Set.of("maric"));
+
+    @Test
+    void punctuationSeparatesWords() {
+        assertEquals(Set.of("idiota", "imbecil"), matches("Eres un idiota,imbécil."));
+        assertEquals(Set.of("hijo de puta", "puta"), matches("hijo-de-puta"));
+        assertEquals(Set.of(), matches("El pirata se llevó la patata"));
+    }
+
+    @Test
+    void stemsMatchInflectedFormsOnlyAtWordStart() {
+        assertEquals(Set.of("maric"), matches("menudo maricón"));
+        assertEquals(Set.of("maric"), matches("MARICONAZO!!"));
+        assertEquals(Set.of(), matches("amaricado"));
+        // Los términos normales no aceptan sufijos salvo el plural
+        assertEquals(Set.of("idiota"), matches("idiotas"));
+        assertEquals(Set.of(), matches("idiotez"));
+    }
+
+    @Test
+    void invisibleCharactersDoNotSplitWords() {
+        assertEquals(Set.of("idiota"), matches("idi\u200Bota"));
+        assertEquals(Set.of("idiota"), matches("1d10t4"));
+    }
+
+    private Set<String> matches(String text) {
+        Set<String> found = new TreeSet<>();
+        matcher.scan(text, term -> found.add(matcher.term(term)));
+        return found;
+    }
+
+    private static Map<String, Double> terms() {
+        Map<String, Double> terms = new LinkedHashMap<>();
+        for (String term : new String[]{"idiota", "imbécil", "puta", "hijo de puta", "rata", "maric"}) {
+            terms.put(term, 1.0);
+        }
+        return terms;
+    }
+}
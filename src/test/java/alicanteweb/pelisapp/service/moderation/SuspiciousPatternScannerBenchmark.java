@@ -0,0 +1,55 @@
+package alicanteweb.pelisapp.service.moderation;
+
+import alicanteweb.pelisapp.constants.AppConstants;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara el escáner de patrones sospechosos con las expresiones regulares que sustituye,
+ * sobre reseñas de longitud máxima.
+ * Ejecutar con: mvn -Pbenchmarks test-compile exec:exec -Dbenchmark=SuspiciousPatternScanner
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SuspiciousPatternScannerBenchmark {
+
+    @Param({"normal", "leet", "stars"})
+    public String input;
+
+    private String text;
+
+    @Setup
+    public void setUp() {
+        String unit = switch (input) {
+            case "leet" -> "a4";
+            case "stars" -> "ab*";
+            default -> "Una película estupenda con un reparto brillante. ";
+        };
+        StringBuilder sb = new StringBuilder(AppConstants.MAX_REVIEW_TEXT_LENGTH);
+        while (sb.length() + unit.length() <= AppConstants.MAX_REVIEW_TEXT_LENGTH) {
+            sb.append(unit);
+        }
+        text = sb.toString();
+    }
+
+    @Benchmark
+    public boolean legacyRegex() {
+        String normalized = text.toLowerCase()
+                .replaceAll("[^a-záéíóúñüç0-9\\s]", "")
+                .replaceAll("\\s+", " ");
+        return normalized.matches(".*\\b\\w*[4@]\\w*\\b.*") ||
+               normalized.matches(".*\\b\\w{1,2}\\*+\\w*\\b.*") ||
+               text.length() < 3 ||
+               (text.toUpperCase().equals(text) && text.length() > 10);
+    }
+
+    @Benchmark
+    public boolean scanner() {
+        return SuspiciousPatternScanner.scan(text).any();
+    }
+}
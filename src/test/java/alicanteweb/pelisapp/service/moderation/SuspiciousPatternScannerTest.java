@@ -0,0 +1,81 @@
+package alicanteweb.pelisapp.service.moderation;
+
+import alicanteweb.pelisapp.constants.AppConstants;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SuspiciousPatternScannerTest {
+
+    private static final String ADVERSARIAL_ALPHABET = "a4@*A *b1$ \t.\n";
+
+    @Test
+    void detectsEachSignal() {
+        assertEquals(1, SuspiciousPatternScanner.scan("eres un p3rdedor").leetWords());
+        assertEquals(1, SuspiciousPatternScanner.scan("menuda m**rda de peli").censoredWords());
+        assertTrue(SuspiciousPatternScanner.scan("ESTA PELI ES HORRIBLE").shouting());
+        assertTrue(SuspiciousPatternScanner.scan("ok").tooShort());
+        assertFalse(SuspiciousPatternScanner.scan("La vi en 2024 y me encantó, 10 de 10").any());
+    }
+
+    @Test
+    void digitsNeedLettersOnBothSides() {
+        assertEquals(0, SuspiciousPatternScanner.scan("la vi en 1080p y en 4K, la banda sonora en mp3").leetWords());
+        assertEquals(2, SuspiciousPatternScanner.scan("eres un h1jo de p00r").leetWords());
+        assertEquals(1, SuspiciousPatternScanner.scan("menudo gilip0llas").leetWords());
+        assertEquals(1, SuspiciousPatternScanner.scan("vaya m@ricon").leetWords());
+    }
+
+    @Test
+    void fuzzedInputsNeverFail() {
+        Random random = new Random(42);
+        for (int i = 0; i < 5_000; i++) {
+            String text = randomText(random, random.nextInt(AppConstants.MAX_REVIEW_TEXT_LENGTH + 1));
+            SuspiciousPatternScanner.SuspiciousSignals signals = SuspiciousPatternScanner.scan(text);
+            assertTrue(signals.uppercaseRatio() >= 0.0 && signals.uppercaseRatio() <= 1.0);
+            assertTrue(signals.leetWords() >= 0 && signals.censoredWords() >= 0);
+        }
+    }
+
+    @Test
+    void adversarialInputsFinishQuickly() {
+        Random random = new Random(7);
+        List<IntFunction<String>> generators = List.of(
+            n -> repeat("a4", n),
+            n -> repeat("ab*", n),
+            n -> repeat("*", n),
+            n -> repeat("A", n),
+            n -> randomText(random, n)
+        );
+
+        // Un recorrido lineal tarda microsegundos; el límite solo atrapa un retroceso catastrófico
+        int length = AppConstants.MAX_REVIEW_TEXT_LENGTH * 8;
+        for (IntFunction<String> generator : generators) {
+            String text = generator.apply(length);
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> SuspiciousPatternScanner.scan(text));
+        }
+        assertEquals(1, SuspiciousPatternScanner.scan(repeat("a4", length)).leetWords());
+    }
+
+    private static String repeat(String unit, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        while (sb.length() < length) {
+            sb.append(unit);
+        }
+        sb.setLength(length);
+        return sb.toString();
+    }
+
+    private static String randomText(Random random, int length) {
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = ADVERSARIAL_ALPHABET.charAt(random.nextInt(ADVERSARIAL_ALPHABET.length()));
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,42 @@
+package alicanteweb.pelisapp.service.moderation;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Entrenamiento offline de {@link ToxicityModel} desde línea de comandos (no forma parte de la aplicación):
+ * <pre>
+ * mvn -Ptrain-toxicity-model test-compile exec:java -Dexport=moderation.tsv -Dmodel=data/toxicity-model.bin
+ * </pre>
+ */
+public final class ToxicityModelTrainerCli {
+
+    private ToxicityModelTrainerCli() {}
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("Uso: ToxicityModelTrainerCli <exportacion.tsv> <modelo.bin>");
+        }
+        List<ToxicityModelTrainer.Sample> samples = ToxicityModelTrainer.readTsv(Path.of(args[0]));
+        ToxicityModelTrainer.TrainingReport report =
+                ToxicityModelTrainer.train(samples, ToxicityModelTrainer.Options.DEFAULTS);
+
+        Path output = Path.of(args[1]);
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+        try (OutputStream out = Files.newOutputStream(output)) {
+            report.model().write(out);
+        }
+
+        System.out.printf("Ejemplos: %d entrenamiento, %d validación%n", report.trainSamples(), report.holdoutSamples());
+        System.out.printf("Precisión en validación: %.3f%n", report.holdoutAccuracy());
+        System.out.printf("Decididos sin LLM: %.1f%% (precisión %.3f)%n",
+                report.autoDecidedFraction() * 100, report.autoDecidedAccuracy());
+        System.out.printf("Umbrales: aceptar < %.3f, rechazar > %.3f%n",
+                report.model().acceptBelow(), report.model().rejectAbove());
+        System.out.printf("Modelo: %s (%d bytes, %d pesos)%n", output, Files.size(output), report.model().nonZeroWeights());
+    }
+}
@@ -0,0 +1,117 @@
+package alicanteweb.pelisapp.service.moderation;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ToxicityModelTrainerTest {
+
+    private static final String[] OPENINGS = {
+        "La película", "El guion", "La dirección", "La banda sonora", "El final", "El reparto", "La fotografía"
+    };
+    private static final String[] PRAISE = {
+        "me ha encantado", "es muy entretenida", "está muy cuidada", "sorprende para bien", "merece la pena",
+        "es emocionante", "tiene un ritmo perfecto"
+    };
+    private static final String[] CRITIQUE = {
+        "se hace larga", "es algo floja", "no termina de convencer", "es previsible", "decae al final"
+    };
+    private static final String[] INSULTS = {
+        "idiota", "imbécil", "gilipollas", "subnormal", "mierda", "basura de persona", "estúpido", "cabrón"
+    };
+    private static final String[] TARGETS = {
+        "el director es un", "quien la vea es un", "eres un", "los actores son unos", "el que escribió esto es un"
+    };
+
+    @Test
+    void learnsToSeparateCleanAndToxicReviews() {
+        ToxicityModelTrainer.TrainingReport report =
+                ToxicityModelTrainer.train(dataset(2000, new Random(7)), ToxicityModelTrainer.Options.DEFAULTS);
+
+        assertTrue(report.holdoutAccuracy() > 0.95, "Precisión: " + report.holdoutAccuracy());
+        assertTrue(report.autoDecidedFraction() > 0.7, "Decididos sin LLM: " + report.autoDecidedFraction());
+        assertTrue(report.autoDecidedAccuracy() >= 0.97, "Precisión decididos: " + report.autoDecidedAccuracy());
+
+        ToxicityModel model = report.model();
+        assertTrue(model.score("La fotografía es preciosa y el reparto me ha encantado") < model.acceptBelow());
+        // Variante con leetspeak que no aparece tal cual en el entrenamiento
+        assertTrue(model.score("el director es un 1d10ta") > 0.5);
+    }
+
+    @Test
+    void binaryFormatRoundTripsScoresAndThresholds() throws Exception {
+        ToxicityModel model = ToxicityModelTrainer.train(dataset(400, new Random(3)),
+                new ToxicityModelTrainer.Options(1 << 14, 5, 0.5, 1e-6, 0.2, 0.98, 1L)).model();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        model.write(out);
+        ToxicityModel read = ToxicityModel.read(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(model.acceptBelow(), read.acceptBelow(), 1e-6);
+        assertEquals(model.rejectAbove(), read.rejectAbove(), 1e-6);
+        assertEquals(model.nonZeroWeights(), read.nonZeroWeights());
+        for (String text : List.of("Eres un idiota", "Gran película", "", "el final es previsible")) {
+            assertEquals(model.score(text), read.score(text), 1e-6, text);
+        }
+        // Formato disperso: mucho menor que los pesos en denso
+        assertTrue(out.size() < (1 << 14) * 4, "Tamaño: " + out.size());
+    }
+
+    @Test
+    void corruptModelFilesFailWithIOException() throws Exception {
+        ToxicityModel model = ToxicityModelTrainer.train(dataset(200, new Random(5)),
+                new ToxicityModelTrainer.Options(1 << 12, 3, 0.5, 1e-6, 0.2, 0.98, 1L)).model();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        model.write(out);
+        byte[] valid = out.toByteArray();
+
+        // Truncado en cualquier punto
+        for (int length = 0; length < valid.length; length += 7) {
+            byte[] truncated = Arrays.copyOf(valid, length);
+            assertThrows(IOException.class, () -> ToxicityModel.read(new ByteArrayInputStream(truncated)));
+        }
+        // dims (offset 8) y número de pesos (offset 24) fuera de rango
+        for (int value : new int[] {-1, 0, 3, Integer.MAX_VALUE}) {
+            byte[] corrupt = valid.clone();
+            ByteBuffer.wrap(corrupt).putInt(8, value);
+            assertThrows(IOException.class, () -> ToxicityModel.read(new ByteArrayInputStream(corrupt)));
+        }
+        for (int value : new int[] {-1, (1 << 12) + 1}) {
+            byte[] corrupt = valid.clone();
+            ByteBuffer.wrap(corrupt).putInt(24, value);
+            assertThrows(IOException.class, () -> ToxicityModel.read(new ByteArrayInputStream(corrupt)));
+        }
+        // Salto de índice que se sale de dims
+        byte[] corrupt = valid.clone();
+        corrupt[28] = (byte) 0xFF;
+        corrupt[29] = (byte) 0xFF;
+        corrupt[30] = (byte) 0x7F;
+        assertThrows(IOException.class, () -> ToxicityModel.read(new ByteArrayInputStream(corrupt)));
+    }
+
+    private static List<ToxicityModelTrainer.Sample> dataset(int size, Random random) {
+        List<ToxicityModelTrainer.Sample> samples = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            boolean toxic = random.nextInt(4) == 0;
+            String opening = pick(OPENINGS, random) + " " + pick(random.nextBoolean() ? PRAISE : CRITIQUE, random);
+            String text = toxic
+                    ? opening + ", " + pick(TARGETS, random) + " " + pick(INSULTS, random)
+                    : opening + " y " + pick(OPENINGS, random).toLowerCase() + " " + pick(PRAISE, random);
+            samples.add(new ToxicityModelTrainer.Sample(text, toxic));
+        }
+        return samples;
+    }
+
+    private static String pick(String[] options, Random random) {
+        return options[random.nextInt(options.length)];
+    }
+}
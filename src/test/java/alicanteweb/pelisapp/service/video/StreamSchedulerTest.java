@@ -0,0 +1,51 @@
+package alicanteweb.pelisapp.service.video;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamSchedulerTest {
+
+    @Test
+    void capsStreamsPerUserAndInTotal() {
+        StreamScheduler scheduler = new StreamScheduler(3, 2, 0, 0, 0, 0, 0.25);
+
+        StreamScheduler.Stream first = scheduler.open("ip:1", StreamScheduler.Kind.PLAYBACK);
+        StreamScheduler.Stream second = scheduler.open("ip:1", StreamScheduler.Kind.BULK);
+        StreamLimitException perUser = assertThrows(StreamLimitException.class,
+                () -> scheduler.open("ip:1", StreamScheduler.Kind.PLAYBACK));
+        assertTrue(perUser.isPerUser());
+
+        StreamScheduler.Stream third = scheduler.open("ip:2", StreamScheduler.Kind.PLAYBACK);
+        StreamLimitException global = assertThrows(StreamLimitException.class,
+                () -> scheduler.open("ip:3", StreamScheduler.Kind.PLAYBACK));
+        assertFalse(global.isPerUser());
+        assertEquals(3, scheduler.getStats().get("active_streams"));
+
+        // Cerrar dos veces no libera dos plazas
+        first.close();
+        first.close();
+        assertEquals(2, scheduler.getStats().get("active_streams"));
+        scheduler.open("ip:1", StreamScheduler.Kind.PLAYBACK).close();
+        second.close();
+        third.close();
+        assertEquals(0, scheduler.getStats().get("active_streams"));
+        assertEquals(0, scheduler.getStats().get("active_users"));
+    }
+
+    @Test
+    void throttlesBulkDownloadsToTheirRate() throws Exception {
+        // 10 MB/s para descargas: tras el primer segundo de ráfaga, 1 MB más cuesta ~100 ms
+        StreamScheduler scheduler = new StreamScheduler(0, 0, 0, 0, 10_000_000, 0, 0.25);
+        long started = System.nanoTime();
+        try (StreamScheduler.Stream stream = scheduler.open("ip:1", StreamScheduler.Kind.BULK)) {
+            stream.beforeWrite(10_000_000);
+            stream.beforeWrite(1_000_000);
+        }
+        long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+
+        assertTrue(elapsedMs >= 80, "esperado ~100 ms, fue " + elapsedMs);
+        assertTrue((Long) scheduler.getStats().get("throttled_ms") >= 80);
+        assertEquals(11_000_000L, scheduler.getStats().get("bytes_sent"));
+    }
+}
@@ -0,0 +1,130 @@
+package alicanteweb.pelisapp.service.video;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VideoRangeWriterTest {
+
+    @TempDir
+    Path dir;
+
+    private final VideoRangeWriter writer = new VideoRangeWriter();
+
+    @Test
+    void parsesSuffixOpenAndOverlappingRanges() {
+        assertEquals(List.of(new VideoRangeWriter.ByteRange(500, 999)), VideoRangeWriter.parseRanges("bytes=-500", 1000));
+        assertEquals(List.of(new VideoRangeWriter.ByteRange(0, 999)), VideoRangeWriter.parseRanges("bytes=-5000", 1000));
+        assertEquals(List.of(new VideoRangeWriter.ByteRange(900, 999)), VideoRangeWriter.parseRanges("bytes=900-", 1000));
+        assertEquals(List.of(new VideoRangeWriter.ByteRange(0, 20), new VideoRangeWriter.ByteRange(50, 59)),
+                VideoRangeWriter.parseRanges("bytes=50-59, 0-10,5-20", 1000));
+        assertTrue(VideoRangeWriter.parseRanges("bytes=1000-1200", 1000).isEmpty());
+        assertNull(VideoRangeWriter.parseRanges("bytes=abc", 1000));
+        assertNull(VideoRangeWriter.parseRanges("items=0-1", 1000));
+    }
+
+    @Test
+    void writesOnlyTheRequestedRegion() throws Exception {
+        Path file = video();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/movies/stream/1/movie.mp4");
+        request.addHeader("Range", "bytes=-10");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        writer.write(request, response, file, "video/mp4", "inline");
+
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 90-99/100", response.getHeader("Content-Range"));
+        assertEquals("0123456789", response.getContentAsString());
+    }
+
+    @Test
+    void unlimitedStreamsStillUseSendfile() throws Exception {
+        Path file = video();
+        StreamScheduler unlimited = new StreamScheduler(0, 0, 0, 0, 0, 0, 0.25);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/movies/stream/1/movie.mp4");
+        request.addHeader("Range", "bytes=10-19");
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        try (StreamScheduler.Stream stream = unlimited.open("ip:1", StreamScheduler.Kind.PLAYBACK)) {
+            assertFalse(stream.writesInline());
+            writer.write(request, response, file, "video/mp4", "inline", stream);
+        }
+
+        assertEquals(206, response.getStatus());
+        assertEquals(10L, request.getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals(20L, request.getAttribute("org.apache.tomcat.sendfile.end"));
+        assertEquals(0, response.getContentAsByteArray().length);
+        assertEquals(10L, unlimited.getStats().get("bytes_sent"));
+    }
+
+    @Test
+    void connectionCapsKeepTheCopyOnTheRequestThread() throws Exception {
+        Path file = video();
+        // Sin límite de ancho de banda pero con plazas: sendfile las liberaría antes de enviar nada
+        StreamScheduler capped = new StreamScheduler(10, 2, 0, 0, 0, 0, 0.25);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/movies/stream/1/movie.mp4");
+        request.addHeader("Range", "bytes=-10");
+        request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        try (StreamScheduler.Stream stream = capped.open("ip:1", StreamScheduler.Kind.PLAYBACK)) {
+            assertTrue(stream.writesInline());
+            writer.write(request, response, file, "video/mp4", "inline", stream);
+        }
+
+        assertNull(request.getAttribute("org.apache.tomcat.sendfile.filename"));
+        assertEquals("0123456789", response.getContentAsString());
+    }
+
+    @Test
+    void writesMultipartByteranges() throws Exception {
+        Path file = video();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/movies/stream/1/movie.mp4");
+        request.addHeader("Range", "bytes=0-1,10-11");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        writer.write(request, response, file, "video/mp4", "inline");
+
+        assertEquals(206, response.getStatus());
+        assertTrue(response.getContentType().startsWith("multipart/byteranges; boundary="));
+        String body = response.getContentAsString(StandardCharsets.US_ASCII);
+        assertEquals(response.getContentLengthLong(), body.length());
+        assertTrue(body.contains("Content-Range: bytes 0-1/100\r\n\r\n01"));
+        assertTrue(body.contains("Content-Range: bytes 10-11/100\r\n\r\n01"));
+    }
+
+    @Test
+    void answersUnsatisfiableAndStaleIfRange() throws Exception {
+        Path file = video();
+        MockHttpServletRequest outside = new MockHttpServletRequest("GET", "/movies/stream/1/movie.mp4");
+        outside.addHeader("Range", "bytes=200-300");
+        MockHttpServletResponse unsatisfiable = new MockHttpServletResponse();
+        writer.write(outside, unsatisfiable, file, "video/mp4", "inline");
+        assertEquals(416, unsatisfiable.getStatus());
+        assertEquals("bytes */100", unsatisfiable.getHeader("Content-Range"));
+
+        // If-Range con otro ETag: el archivo ha cambiado y se devuelve entero
+        MockHttpServletRequest stale = new MockHttpServletRequest("GET", "/movies/stream/1/movie.mp4");
+        stale.addHeader("Range", "bytes=0-9");
+        stale.addHeader("If-Range", "\"otro\"");
+        MockHttpServletResponse full = new MockHttpServletResponse();
+        writer.write(stale, full, file, "video/mp4", "inline");
+        assertEquals(200, full.getStatus());
+        assertEquals(100, full.getContentAsByteArray().length);
+    }
+
+    private Path video() throws Exception {
+        Path file = dir.resolve("movie.mp4");
+        Files.writeString(file, "0123456789".repeat(10), StandardCharsets.US_ASCII);
+        return file;
+    }
+}